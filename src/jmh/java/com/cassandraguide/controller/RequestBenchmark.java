@@ -0,0 +1,155 @@
+package com.cassandraguide.controller;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationRequest;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Processing of the resources outside the repository: validation of the confirmation number,
+ * creation of a {@link Reservation} from a {@link ReservationRequest}, JSON (de)serialization of a
+ * reservation and of a list of reservations, sized as a default page (100) and a max page (1000).
+ *
+ * JSON is configured as in the service (dates as ISO strings).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBenchmark {
+
+    private static final TypeReference<List<Reservation>> RESERVATIONS = new TypeReference<List<Reservation>>() {};
+
+    private ObjectWriter reservationWriter;
+
+    private ObjectReader reservationReader;
+
+    private String confirmationNumber;
+
+    private ReservationRequest request;
+
+    private Reservation reservation;
+
+    private byte[] reservationJson;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = objectMapper();
+        reservationWriter  = objectMapper.writerFor(Reservation.class);
+        reservationReader  = objectMapper.readerFor(Reservation.class);
+        request            = request(new Random(42));
+        reservation        = new Reservation(request, UUID.randomUUID().toString());
+        confirmationNumber = reservation.getConfirmationNumber();
+        reservationJson    = reservationWriter.writeValueAsBytes(reservation);
+    }
+
+    /**
+     * List of reservations, as returned by a search or a page.
+     */
+    @State(Scope.Benchmark)
+    public static class Page {
+
+        /** Number of reservations of the list. */
+        @Param({ "" + ReservationsResource.DEFAULT_PAGE_SIZE, "" + ReservationsResource.MAX_PAGE_SIZE })
+        public int size;
+
+        private ObjectWriter writer;
+
+        private ObjectReader reader;
+
+        private List<Reservation> reservations;
+
+        private byte[] json;
+
+        @Setup
+        public void setup() throws IOException {
+            ObjectMapper objectMapper = objectMapper();
+            writer       = objectMapper.writerFor(RESERVATIONS);
+            reader       = objectMapper.readerFor(RESERVATIONS);
+            Random random = new Random(42);
+            reservations = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                reservations.add(new Reservation(request(random), UUID.randomUUID().toString()));
+            }
+            json = writer.writeValueAsBytes(reservations);
+        }
+    }
+
+    /**
+     * Configured as the one of the service.
+     */
+    private static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    private static ReservationRequest request(Random random) {
+        LocalDate startDate = LocalDate.of(2019, 1, 1).plusDays(random.nextInt(365));
+        ReservationRequest request = new ReservationRequest();
+        request.setHotelId("NY" + (100 + random.nextInt(900)));
+        request.setGuestId(UUID.randomUUID());
+        request.setRoomNumber((short) (100 + random.nextInt(400)));
+        request.setStartDate(startDate);
+        request.setEndDate(startDate.plusDays(1 + random.nextInt(7)));
+        return request;
+    }
+
+    @Benchmark
+    public String validateConfirmationNumber() {
+        ReservationsResource.validateConfirmationNumber(confirmationNumber);
+        return confirmationNumber;
+    }
+
+    @Benchmark
+    public Reservation newReservationFromRequest() {
+        return new Reservation(request);
+    }
+
+    @Benchmark
+    public byte[] serializeReservation() throws IOException {
+        return reservationWriter.writeValueAsBytes(reservation);
+    }
+
+    @Benchmark
+    public Reservation deserializeReservation() throws IOException {
+        return reservationReader.readValue(reservationJson);
+    }
+
+    @Benchmark
+    public byte[] serializeReservations(Page page) throws IOException {
+        return page.writer.writeValueAsBytes(page.reservations);
+    }
+
+    @Benchmark
+    public List<Reservation> deserializeReservations(Page page) throws IOException {
+        return page.reader.readValue(page.json);
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.cassandraguide.repository;
+
+import static com.cassandraguide.repository.ReservationRepository.CONFIRMATION_NUMBER;
+import static com.cassandraguide.repository.ReservationRepository.END_DATE;
+import static com.cassandraguide.repository.ReservationRepository.GUEST_ID;
+import static com.cassandraguide.repository.ReservationRepository.HOTEL_ID;
+import static com.cassandraguide.repository.ReservationRepository.ROOM_NUMBER;
+import static com.cassandraguide.repository.ReservationRepository.START_DATE;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cassandraguide.mapper.ReservationByConfirmationEntity;
+import com.cassandraguide.mapper.ReservationByHotelDateEntity;
+import com.cassandraguide.model.Reservation;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.ProtocolVersion;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.detach.AttachmentPoint;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodecs;
+import com.datastax.oss.driver.internal.core.cql.DefaultColumnDefinition;
+import com.datastax.oss.driver.internal.core.cql.DefaultColumnDefinitions;
+import com.datastax.oss.driver.internal.core.cql.DefaultRow;
+import com.datastax.oss.protocol.internal.ProtocolConstants;
+import com.datastax.oss.protocol.internal.response.result.ColumnSpec;
+import com.datastax.oss.protocol.internal.response.result.RawType;
+
+/**
+ * Mapping of a reservation between the driver and the model, per reservation: row of
+ * 'reservations_by_confirmation' to {@link Reservation} (simple and query builder implementations),
+ * {@link Reservation} to the entities and back (mapper implementation).
+ *
+ * The row is decoded by the driver from its serialized columns, as a row of a response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    /** Only its default methods are used, the session is never invoked. */
+    private ReservationRepository repository;
+
+    private Row row;
+
+    private Reservation reservation;
+
+    private ReservationByConfirmationEntity byConfirmation;
+
+    private ReservationByHotelDateEntity byHotelDate;
+
+    @Setup
+    public void setup() {
+        repository  = new ReservationRepositorySimpleStatement(
+                Mockito.mock(CqlSession.class), CqlIdentifier.fromCql("reservation"), true);
+        reservation = new Reservation();
+        reservation.setConfirmationNumber(UUID.randomUUID().toString());
+        reservation.setHotelId("NY456");
+        reservation.setGuestId(UUID.randomUUID());
+        reservation.setRoomNumber((short) 111);
+        reservation.setStartDate(LocalDate.of(2019, 6, 20));
+        reservation.setEndDate(LocalDate.of(2019, 6, 23));
+        row            = row(reservation);
+        byConfirmation = new ReservationByConfirmationEntity(reservation);
+        byHotelDate    = new ReservationByHotelDateEntity(reservation);
+    }
+
+    /**
+     * Row of 'reservations_by_confirmation', columns in the order of 'SELECT *'.
+     */
+    private static Row row(Reservation reservation) {
+        ProtocolVersion version = ProtocolVersion.DEFAULT;
+        List<ColumnDefinition> columns = new ArrayList<>();
+        List<ByteBuffer> values = new ArrayList<>();
+        column(columns, CONFIRMATION_NUMBER, ProtocolConstants.DataType.VARCHAR);
+        values.add(TypeCodecs.TEXT.encode(reservation.getConfirmationNumber(), version));
+        column(columns, END_DATE, ProtocolConstants.DataType.DATE);
+        values.add(TypeCodecs.DATE.encode(reservation.getEndDate(), version));
+        column(columns, GUEST_ID, ProtocolConstants.DataType.UUID);
+        values.add(TypeCodecs.UUID.encode(reservation.getGuestId(), version));
+        column(columns, HOTEL_ID, ProtocolConstants.DataType.VARCHAR);
+        values.add(TypeCodecs.TEXT.encode(reservation.getHotelId(), version));
+        column(columns, ROOM_NUMBER, ProtocolConstants.DataType.SMALLINT);
+        values.add(TypeCodecs.SMALLINT.encode(reservation.getRoomNumber(), version));
+        column(columns, START_DATE, ProtocolConstants.DataType.DATE);
+        values.add(TypeCodecs.DATE.encode(reservation.getStartDate(), version));
+        return new DefaultRow(DefaultColumnDefinitions.valueOf(columns), values, AttachmentPoint.NONE);
+    }
+
+    private static void column(List<ColumnDefinition> columns, CqlIdentifier name, int type) {
+        ColumnSpec spec = new ColumnSpec("reservation", "reservations_by_confirmation",
+                name.asInternal(), columns.size(), RawType.PRIMITIVES.get(type));
+        columns.add(new DefaultColumnDefinition(spec, AttachmentPoint.NONE));
+    }
+
+    @Benchmark
+    public Reservation mapRowToReservation() {
+        return repository.mapRowToReservation(row);
+    }
+
+    @Benchmark
+    public ReservationByConfirmationEntity newReservationByConfirmationEntity() {
+        return new ReservationByConfirmationEntity(reservation);
+    }
+
+    @Benchmark
+    public ReservationByHotelDateEntity newReservationByHotelDateEntity() {
+        return new ReservationByHotelDateEntity(reservation);
+    }
+
+    @Benchmark
+    public Reservation reservationByConfirmationAsReservation() {
+        return byConfirmation.asReservation();
+    }
+
+    @Benchmark
+    public Reservation reservationByHotelDateAsReservation() {
+        return byHotelDate.asReservation();
+    }
+
+}
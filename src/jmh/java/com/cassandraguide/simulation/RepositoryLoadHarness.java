@@ -0,0 +1,640 @@
+package com.cassandraguide.simulation;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.HdrHistogram.Histogram;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.repository.DenormalizedWriter;
+import com.cassandraguide.repository.PreparedStatementCache;
+import com.cassandraguide.repository.ReservationRepository;
+import com.cassandraguide.repository.ReservationRepositorySimpleStatement;
+import com.cassandraguide.repository.ReservationRepositoryWithMapper;
+import com.cassandraguide.repository.ReservationRepositoryWithQueryBuilder;
+import com.cassandraguide.repository.ReservationSchema;
+import com.cassandraguide.repository.SchemaMigrator;
+import com.cassandraguide.repository.TokenRangeScanner;
+import com.cassandraguide.repository.WriteStrategy;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.PrepareRequest;
+
+/**
+ * Throughput and latency of the three {@link ReservationRepository} implementations (simple statements,
+ * query builder, mapper) under the same load, against a {@link SimulatedCqlSession}: no Cassandra needed.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:java@harness [-Dharness.implementations=simple,mapper] [-Dharness.rate=2000]
+ * </pre>
+ *
+ * Settings (system properties):
+ * <ul>
+ * <li>harness.scenario: operations compared, see below (default load)</li>
+ * <li>harness.implementations: simple, querybuilder, mapper (default all)</li>
+ * <li>harness.concurrency: operations in flight, one thread each (default 32)</li>
+ * <li>harness.rate: operations per second, 0 to issue operations as fast as they complete (default 5000)</li>
+ * <li>harness.readRatio: part of reads by confirmation number, the rest are creations (default 0.9)</li>
+ * <li>harness.reservations: reservations loaded before the run, read by the reads (default 10000)</li>
+ * <li>harness.latency: latency of each request of the session, in ms (default 1)</li>
+ * <li>harness.p99: 99th percentile of a log-normal latency with harness.latency as median, in ms, 0 for
+ * the same latency for all requests (default 0)</li>
+ * <li>harness.batchlogLatency: latency added to logged batches, standing for the batchlog writes of the
+ * coordinator which the session does not simulate, in ms (default 0)</li>
+ * <li>harness.warmup, harness.duration: in seconds (default 10 and 30)</li>
+ * </ul>
+ *
+ * Scenarios, each compared for each implementation:
+ * <ul>
+ * <li>load: reads by confirmation number and creations, as per harness.readRatio</li>
+ * <li>delete: 'exists+delete', the existence check of the resources before the delete, against 'delete'
+ * alone, reading the reservation to delete and deleting it in one write. Each operation deletes another
+ * reservation, loaded before the run: a rate is required.</li>
+ * <li>async: reads by confirmation number, 'blocking' holding the worker until the response as the handlers
+ * of ReservationsResource hold a servlet thread, against 'async' releasing it as ReservationsAsyncResource.
+ * With harness.concurrency as the size of the pool of servlet threads, blocking reads are bounded to
+ * concurrency / latency per second.</li>
+ * <li>write-strategy: creations written with a 'LOGGED_BATCH' or in 'PARALLEL' (see WriteStrategy). The cost of
+ * the batchlog on the coordinator is an assumption, set with harness.batchlogLatency.</li>
+ * <li>prepared: the load of the simple statement implementation, statements executed as 'simple statements'
+ * or 'prepared' once by a PreparedStatementCache, other implementations ignored. The session does not parse
+ * statements for each execution as Cassandra does: only the cost on the client side is measured.</li>
+ * <li>startup: no load, time to create the repository on an empty keyspace then on a restart, averaged over
+ * harness.starts sessions (default 5). 'previous' creates the three implementations, each running the DDL
+ * of the tables as they did before the migrations, against each implementation alone after the migrations.
+ * Requests are counted with the ones to prepare apart, DDL and schema agreement cost harness.latency as
+ * any request.</li>
+ * </ul>
+ *
+ * Operations are scheduled at a fixed rate: latency is measured from the time an operation should have
+ * started, so that operations delayed by a slow one count the delay (coordinated omission). Service time is
+ * measured from the time the operation actually started. Operations which should have started before the end
+ * of the run but did not are reported as missed: the rate could not be sustained. Requests per operation
+ * are the executions sent to the session, requests to prepare included.
+ */
+public final class RepositoryLoadHarness {
+
+    /** Keyspace of the tables, the one of the queries of the mapper. */
+    private static final CqlIdentifier KEYSPACE = CqlIdentifier.fromCql("reservation");
+
+    /** Implementations, as in 'reservation.repository.implementation'. */
+    private static final String IMPLEMENTATIONS = "simple,querybuilder,mapper";
+
+    /** Scenarios, as in 'harness.scenario'. */
+    private static final String SCENARIOS = "load,delete,async,write-strategy,prepared,startup";
+
+    private final String scenario;
+
+    private final List<String> implementations;
+
+    private final int concurrency;
+
+    private final double rate;
+
+    private final double readRatio;
+
+    private final int reservations;
+
+    private final Duration latency;
+
+    private final Duration p99;
+
+    private final Duration batchlogLatency;
+
+    private final Duration warmup;
+
+    private final Duration duration;
+
+    /** Executions sent to the session of the variant running. */
+    private final LongAdder requests = new LongAdder();
+
+    /** Requests to prepare among the executions. */
+    private final LongAdder prepares = new LongAdder();
+
+    /** Created by the setup of the variant running, closed with its session. */
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    private RepositoryLoadHarness() {
+        this.scenario        = System.getProperty("harness.scenario", "load");
+        this.implementations = List.of(System.getProperty("harness.implementations", IMPLEMENTATIONS).split("\\s*,\\s*"));
+        this.concurrency     = Integer.getInteger("harness.concurrency", 32);
+        this.rate            = Double.parseDouble(System.getProperty("harness.rate", "5000"));
+        this.readRatio       = Double.parseDouble(System.getProperty("harness.readRatio", "0.9"));
+        this.reservations    = Integer.getInteger("harness.reservations", 10000);
+        this.latency         = millis(System.getProperty("harness.latency", "1"));
+        this.p99             = millis(System.getProperty("harness.p99", "0"));
+        this.batchlogLatency = millis(System.getProperty("harness.batchlogLatency", "0"));
+        this.warmup          = Duration.ofSeconds(Long.getLong("harness.warmup", 10));
+        this.duration        = Duration.ofSeconds(Long.getLong("harness.duration", 30));
+        if (concurrency < 1 || rate < 0 || readRatio < 0 || readRatio > 1 || reservations < 1
+                || latency.isNegative() || p99.isNegative() || batchlogLatency.isNegative()
+                || (!p99.isZero() && (latency.isZero() || p99.compareTo(latency) < 0))) {
+            throw new IllegalArgumentException("Invalid settings: " + this);
+        }
+        if ("delete".equals(scenario) && rate == 0) {
+            throw new IllegalArgumentException("Scenario 'delete' needs a rate to load the reservations to delete");
+        }
+    }
+
+    /**
+     * Run the harness, report on the standard output.
+     *
+     * @param args
+     *      none, settings are system properties
+     */
+    public static void main(String[] args) throws InterruptedException {
+        RepositoryLoadHarness harness = new RepositoryLoadHarness();
+        System.out.println("Load: " + harness);
+        if ("startup".equals(harness.scenario)) {
+            harness.startup(Integer.getInteger("harness.starts", 5));
+            return;
+        }
+        List<Result> results = new ArrayList<>();
+        for (Variant variant : harness.variants()) {
+            results.add(harness.run(variant));
+        }
+        System.out.println();
+        System.out.println(Result.HEADER);
+        results.forEach(System.out::println);
+    }
+
+    /**
+     * Variants compared by the scenario.
+     */
+    private List<Variant> variants() {
+        List<Variant> variants = new ArrayList<>();
+        if ("prepared".equals(scenario)) {
+            variants.add(new Variant("simple statements", session -> load(new ReservationRepositorySimpleStatement(
+                    session, KEYSPACE, new DenormalizedWriter(session, WriteStrategy.LOGGED_BATCH), null))));
+            variants.add(new Variant("simple prepared", session -> load(new ReservationRepositorySimpleStatement(
+                    session, KEYSPACE, new DenormalizedWriter(session, WriteStrategy.LOGGED_BATCH),
+                    PreparedStatementCache.registeredIn(session)))));
+            return variants;
+        }
+        for (String implementation : implementations) {
+            switch (scenario) {
+                case "load":
+                    variants.add(new Variant(implementation, session -> load(repository(implementation, session))));
+                    break;
+                case "delete":
+                    variants.add(new Variant(implementation + " exists+delete", session -> {
+                        ReservationRepository repository = repository(implementation, session);
+                        String[] confirmationNumbers = load(repository, deletes());
+                        AtomicInteger next = new AtomicInteger();
+                        return random -> {
+                            String confirmationNumber = confirmationNumbers[next.getAndIncrement() % confirmationNumbers.length];
+                            return CompletableFuture.completedFuture(repository.exists(confirmationNumber)
+                                    ? repository.delete(confirmationNumber) : null);
+                        };
+                    }));
+                    variants.add(new Variant(implementation + " delete", session -> {
+                        ReservationRepository repository = repository(implementation, session);
+                        String[] confirmationNumbers = load(repository, deletes());
+                        AtomicInteger next = new AtomicInteger();
+                        return random -> CompletableFuture.completedFuture(repository.delete(
+                                confirmationNumbers[next.getAndIncrement() % confirmationNumbers.length]));
+                    }));
+                    break;
+                case "async":
+                    variants.add(new Variant(implementation + " blocking", session -> {
+                        ReservationRepository repository = repository(implementation, session);
+                        String[] confirmationNumbers = load(repository, reservations);
+                        return random -> CompletableFuture.completedFuture(repository.findByConfirmationNumber(
+                                confirmationNumbers[random.nextInt(confirmationNumbers.length)]));
+                    }));
+                    variants.add(new Variant(implementation + " async", session -> {
+                        ReservationRepository repository = repository(implementation, session);
+                        String[] confirmationNumbers = load(repository, reservations);
+                        return random -> repository.findByConfirmationNumberAsync(
+                                confirmationNumbers[random.nextInt(confirmationNumbers.length)]);
+                    }));
+                    break;
+                case "write-strategy":
+                    for (WriteStrategy strategy : WriteStrategy.values()) {
+                        variants.add(new Variant(implementation + " " + strategy, session -> {
+                            DenormalizedWriter writer = new DenormalizedWriter(session, strategy);
+                            resources.add(writer);
+                            ReservationRepository repository = repository(implementation, session, writer);
+                            return random -> CompletableFuture.completedFuture(repository.create(reservation(random)));
+                        }));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown scenario '" + scenario + "', expected one of " + SCENARIOS);
+            }
+        }
+        return variants;
+    }
+
+    /**
+     * Create the repository on new sessions, report the average time of the first start and of a restart.
+     */
+    private void startup(int starts) {
+        Map<String, Consumer<CqlSession>> variants = new LinkedHashMap<>();
+        variants.put("previous", session -> {
+            for (String implementation : IMPLEMENTATIONS.split(",")) {
+                // Tables were created by each implementation on each start
+                ReservationSchema.V1_INITIAL_SCHEMA.statements(KEYSPACE).forEach(session::execute);
+                repository(implementation, session);
+            }
+        });
+        for (String implementation : implementations) {
+            variants.put(implementation + " only", session -> {
+                new SchemaMigrator(session, KEYSPACE).migrate();
+                repository(implementation, session);
+            });
+        }
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Consumer<CqlSession>> variant : variants.entrySet()) {
+            long[] first   = new long[3];
+            long[] restart = new long[3];
+            for (int i = 0; i < starts; i++) {
+                try (SimulatedCqlSession session = newSession(countingLatency())) {
+                    start(variant.getValue(), session, first);
+                    start(variant.getValue(), session, restart);
+                }
+            }
+            lines.add(String.format("%-28s %10.1f %8d %8d | %10.1f %8d %8d", variant.getKey(),
+                    first[0] / 1000000.0 / starts, first[1] / starts, first[2] / starts,
+                    restart[0] / 1000000.0 / starts, restart[1] / starts, restart[2] / starts));
+            System.out.println(lines.get(lines.size() - 1));
+        }
+        System.out.println();
+        System.out.println(String.format("%-28s %10s %8s %8s | %10s %8s %8s", "variant",
+                "first ms", "requests", "prepares", "restart ms", "requests", "prepares"));
+        lines.forEach(System.out::println);
+    }
+
+    /**
+     * Start the repository, adding elapsed nanoseconds, requests and prepares to the totals.
+     */
+    private void start(Consumer<CqlSession> variant, CqlSession session, long[] totals) {
+        requests.reset();
+        prepares.reset();
+        long start = System.nanoTime();
+        variant.accept(session);
+        totals[0] += System.nanoTime() - start;
+        totals[1] += requests.sum();
+        totals[2] += prepares.sum();
+    }
+
+    /**
+     * Reads by confirmation number and creations, as per the read ratio.
+     */
+    private Operation load(ReservationRepository repository) {
+        String[] confirmationNumbers = load(repository, reservations);
+        return random -> CompletableFuture.completedFuture((random.nextDouble() < readRatio)
+                ? repository.findByConfirmationNumber(confirmationNumbers[random.nextInt(confirmationNumbers.length)])
+                : repository.create(reservation(random)));
+    }
+
+    /**
+     * Reservations to delete: one per operation scheduled during the warmup and the run.
+     */
+    private int deletes() {
+        return (int) Math.ceil(rate * (warmup.getSeconds() + duration.getSeconds())) + concurrency;
+    }
+
+    /**
+     * Session of a single node with a statement cache registered as its schema change listener,
+     * as the session of the service.
+     */
+    private static SimulatedCqlSession newSession(SimulatedLatency latency) {
+        return new SimulatedCqlSession(KEYSPACE, 1, latency, null, new PreparedStatementCache());
+    }
+
+    /**
+     * Set up and run a variant with its own session.
+     */
+    private Result run(Variant variant) throws InterruptedException {
+        SimulatedCqlSession session = newSession(SimulatedLatency.none());
+        try {
+            new SchemaMigrator(session, KEYSPACE).migrate();
+            Operation operation = variant.setup.apply(session);
+            session.setLatency(countingLatency());
+            System.out.println(variant.label + ": warming up for " + warmup);
+            run(variant.label, operation, warmup);
+            System.out.println(variant.label + ": measuring for " + duration);
+            Result result = run(variant.label, operation, duration);
+            System.out.println(result);
+            return result;
+        } finally {
+            for (AutoCloseable resource : resources) {
+                try {
+                    resource.close();
+                } catch (Exception e) {
+                    System.err.println(variant.label + ": unable to close " + resource + ": " + e);
+                }
+            }
+            resources.clear();
+            session.close();
+        }
+    }
+
+    /**
+     * Latency of the requests of the run, the batchlog of logged batches added.
+     */
+    private SimulatedLatency requestLatency() {
+        SimulatedLatency requestLatency = p99.isZero()
+                ? SimulatedLatency.fixed(latency)
+                : SimulatedLatency.logNormal(latency, p99, 42);
+        if (batchlogLatency.isZero()) {
+            return requestLatency;
+        }
+        return (request, coordinator) -> {
+            Duration next = requestLatency.next(request, coordinator);
+            boolean logged = (request instanceof BatchStatement)
+                    && ((BatchStatement) request).getBatchType() == DefaultBatchType.LOGGED;
+            return logged ? next.plus(batchlogLatency) : next;
+        };
+    }
+
+    /**
+     * Latency of the requests of the run, counting them.
+     */
+    private SimulatedLatency countingLatency() {
+        SimulatedLatency requestLatency = requestLatency();
+        return (request, coordinator) -> {
+            requests.increment();
+            if (request instanceof PrepareRequest) {
+                prepares.increment();
+            }
+            return requestLatency.next(request, coordinator);
+        };
+    }
+
+    private static Duration millis(String value) {
+        return Duration.ofNanos((long) (Double.parseDouble(value) * 1000000));
+    }
+
+    private static ReservationRepository repository(String implementation, CqlSession session,
+            DenormalizedWriter denormalizedWriter) {
+        switch (implementation) {
+            case "simple":
+                return new ReservationRepositorySimpleStatement(session, KEYSPACE, denormalizedWriter);
+            case "querybuilder":
+                return new ReservationRepositoryWithQueryBuilder(session, KEYSPACE,
+                        new TokenRangeScanner(session, KEYSPACE), denormalizedWriter);
+            case "mapper":
+                return new ReservationRepositoryWithMapper(session, KEYSPACE, denormalizedWriter);
+            default:
+                throw new IllegalArgumentException("Unknown implementation '" + implementation + "', expected one of " + IMPLEMENTATIONS);
+        }
+    }
+
+    private static ReservationRepository repository(String implementation, CqlSession session) {
+        switch (implementation) {
+            case "simple":
+                return new ReservationRepositorySimpleStatement(session, KEYSPACE);
+            case "querybuilder":
+                return new ReservationRepositoryWithQueryBuilder(session, KEYSPACE);
+            case "mapper":
+                return new ReservationRepositoryWithMapper(session, KEYSPACE);
+            default:
+                throw new IllegalArgumentException("Unknown implementation '" + implementation + "', expected one of " + IMPLEMENTATIONS);
+        }
+    }
+
+    /**
+     * Create reservations before the run, the session has no latency yet.
+     */
+    private static String[] load(ReservationRepository repository, int count) {
+        Random random = new Random(42);
+        String[] confirmationNumbers = new String[count];
+        for (int i = 0; i < count; i++) {
+            confirmationNumbers[i] = repository.create(reservation(random));
+        }
+        System.out.println(count + " reservations loaded");
+        return confirmationNumbers;
+    }
+
+    private static Reservation reservation(Random random) {
+        LocalDate startDate = LocalDate.of(2019, 1, 1).plusDays(random.nextInt(365));
+        Reservation reservation = new Reservation();
+        reservation.setHotelId("NY" + (100 + random.nextInt(900)));
+        reservation.setGuestId(new UUID(random.nextLong(), random.nextLong()));
+        reservation.setRoomNumber((short) (100 + random.nextInt(400)));
+        reservation.setStartDate(startDate);
+        reservation.setEndDate(startDate.plusDays(1 + random.nextInt(7)));
+        return reservation;
+    }
+
+    /**
+     * Run the load for a duration, each worker issuing its share of the rate.
+     */
+    private Result run(String label, Operation operation, Duration runDuration) throws InterruptedException {
+        long interval = (rate > 0) ? (long) (TimeUnit.SECONDS.toNanos(1) * concurrency / rate) : 0;
+        requests.reset();
+        long start = System.nanoTime();
+        long end = start + runDuration.toNanos();
+        Worker[] workers = new Worker[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            // Workers are staggered over an interval, not all scheduled at the same time
+            workers[i] = new Worker(operation, new Random(i), start + interval * i / concurrency, interval, end);
+            workers[i].setName("harness-" + i);
+            workers[i].start();
+        }
+        Result result = new Result(label);
+        for (Worker worker : workers) {
+            worker.join();
+            result.add(worker);
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        result.requests     = requests.sum();
+        return result;
+    }
+
+    /**
+     * Operation issued by the workers, completing once done: blocking operations return a completed stage.
+     */
+    @FunctionalInterface
+    private interface Operation {
+
+        CompletionStage<?> issue(Random random);
+    }
+
+    /**
+     * Variant compared by a scenario, its operation is set up on a session without latency.
+     */
+    private static final class Variant {
+
+        private final String label;
+
+        private final Function<SimulatedCqlSession, Operation> setup;
+
+        Variant(String label, Function<SimulatedCqlSession, Operation> setup) {
+            this.label = label;
+            this.setup = setup;
+        }
+    }
+
+    /**
+     * Issue operations at a fixed interval, or as soon as the previous one completed. Operations completing
+     * later, on the threads of the session, are recorded when they complete.
+     */
+    private static final class Worker extends Thread {
+
+        private final Operation operation;
+
+        private final Random random;
+
+        private final long interval;
+
+        private final long end;
+
+        /** Time the next operation should start. */
+        private long intended;
+
+        /** Operations issued and not completed. */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final Histogram latency = new Histogram(3);
+
+        private final Histogram serviceTime = new Histogram(3);
+
+        private long operations;
+
+        private long errors;
+
+        private long missed;
+
+        Worker(Operation operation, Random random, long first, long interval, long end) {
+            this.operation = operation;
+            this.random    = random;
+            this.intended  = first;
+            this.interval  = interval;
+            this.end       = end;
+        }
+
+        @Override
+        public void run() {
+            while (intended < end) {
+                long now = System.nanoTime();
+                while (now < intended) {
+                    LockSupport.parkNanos(intended - now);
+                    now = System.nanoTime();
+                }
+                if (now >= end) {
+                    if (interval > 0) {
+                        // Late: operations scheduled until the end were not issued
+                        missed += (end - intended + interval - 1) / interval;
+                    }
+                    break;
+                }
+                long started = now;
+                long scheduled = (interval > 0) ? intended : now;
+                CompletableFuture<?> done;
+                try {
+                    done = operation.issue(random).toCompletableFuture();
+                } catch (RuntimeException e) {
+                    done = CompletableFuture.failedFuture(e);
+                }
+                inFlight.incrementAndGet();
+                done.whenComplete((result, error) -> record(scheduled, started, error));
+                if (interval > 0) {
+                    intended += interval;
+                } else {
+                    done.exceptionally(error -> null).join();
+                    intended = System.nanoTime();
+                }
+            }
+            // Operations still in flight are part of the run
+            while (inFlight.get() > 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            }
+        }
+
+        private synchronized void record(long scheduled, long started, Throwable error) {
+            long done = System.nanoTime();
+            latency.recordValue(done - scheduled);
+            serviceTime.recordValue(done - started);
+            operations++;
+            if (null != error) {
+                errors++;
+            }
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Measures of a variant, workers merged.
+     */
+    private static final class Result {
+
+        static final String HEADER = String.format("%-28s %10s %8s %8s %6s | %-9s %9s %9s %9s %9s %9s",
+                "variant", "ops/s", "errors", "missed", "req/op", "ms", "p50", "p90", "p99", "p99.9", "max");
+
+        private final String label;
+
+        private final Histogram latency = new Histogram(3);
+
+        private final Histogram serviceTime = new Histogram(3);
+
+        private long operations;
+
+        private long errors;
+
+        private long missed;
+
+        private long requests;
+
+        private long elapsedNanos;
+
+        Result(String label) {
+            this.label = label;
+        }
+
+        void add(Worker worker) {
+            synchronized (worker) {
+                latency.add(worker.latency);
+                serviceTime.add(worker.serviceTime);
+                operations += worker.operations;
+                errors     += worker.errors;
+                missed     += worker.missed;
+            }
+        }
+
+        @Override
+        public String toString() {
+            double throughput = operations * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+            double requestsPerOperation = (operations == 0) ? 0 : (double) requests / operations;
+            return String.format("%-28s %10.0f %8d %8d %6.2f | %s%n%-28s %10s %8s %8s %6s | %s",
+                    label, throughput, errors, missed, requestsPerOperation, percentiles("latency", latency),
+                    "", "", "", "", "", percentiles("service", serviceTime));
+        }
+
+        private static String percentiles(String name, Histogram histogram) {
+            return String.format("%-9s %9.3f %9.3f %9.3f %9.3f %9.3f", name,
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1000000.0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "scenario=" + scenario + ", implementations=" + implementations + ", concurrency=" + concurrency
+             + ", rate=" + rate + " ops/s, readRatio=" + readRatio + ", reservations=" + reservations
+             + ", latency=" + latency + ", p99=" + p99 + ", batchlogLatency=" + batchlogLatency + ", warmup=" + warmup + ", duration=" + duration;
+    }
+
+}
@@ -17,11 +17,17 @@ package com.cassandraguide;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Profiles;
 
 @SpringBootApplication
 public class ReservationServiceApp {
 
 	public static void main(String[] args) {
-		SpringApplication.run(ReservationServiceApp.class, args);
+		ConfigurableApplicationContext context = SpringApplication.run(ReservationServiceApp.class, args);
+		// Command line mode (see ReservationLoader): stop once the file has been loaded
+		if (context.getEnvironment().acceptsProfiles(Profiles.of("loader"))) {
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 }
@@ -4,6 +4,7 @@ import static com.datastax.oss.driver.api.querybuilder.SchemaBuilder.createKeysp
 import static com.datastax.oss.driver.api.querybuilder.SchemaBuilder.dropKeyspace;
 
 import java.net.InetSocketAddress;
+import java.time.Duration;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,9 +12,24 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import com.cassandraguide.repository.ReservationRepositoryWithQueryBuilder;
+import com.cassandraguide.conf.StartupTimings.Phase;
+import com.cassandraguide.repository.CompositeRequestTracker;
+import com.cassandraguide.repository.DenormalizedWriter;
+import com.cassandraguide.repository.PreparedStatementCache;
+import com.cassandraguide.repository.ReadLatencyTracker;
+import com.cassandraguide.repository.ReservationRepository;
+import com.cassandraguide.repository.SchemaMigrator;
+import com.cassandraguide.repository.SpeculativeReadPolicy;
+import com.cassandraguide.repository.StatementLatencyTracker;
+import com.cassandraguide.repository.TokenRangeScanner;
+import com.cassandraguide.repository.WriteRepairQueue;
+import com.cassandraguide.repository.WriteStrategy;
 import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.specex.SpeculativeExecutionPolicy;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
 
 /**
  * Import Configuration from Configuration File
@@ -22,7 +38,7 @@ import com.datastax.oss.driver.api.core.CqlSession;
 public class CassandraConfiguration {
     
     // Logger
-    private static final Logger logger = LoggerFactory.getLogger(ReservationRepositoryWithQueryBuilder.class);
+    private static final Logger logger = LoggerFactory.getLogger(CassandraConfiguration.class);
     
     // Contact point hostname, single host
     @Value("${cassandra.contactPoint:127.0.0.1}")
@@ -43,6 +59,42 @@ public class CassandraConfiguration {
     // Do you want to drop schema and generate tables at startup
     @Value("${cassandra.dropSchema:true}")
     public boolean dropSchema;
+    
+    // Max number of token ranges read concurrently in full table scans
+    @Value("${cassandra.scan.parallelism:4}")
+    protected int scanParallelism = 4;
+    
+    // Number of token ranges the ring is split into for full table scans
+    @Value("${cassandra.scan.splits:16}")
+    protected int scanSplits = 16;
+    
+    // Page size of token range queries, unset (0) for the one of the execution profile 'scan' (application.conf)
+    @Value("${cassandra.scan.pageSize:0}")
+    protected int scanPageSize = TokenRangeScanner.PROFILE_PAGE_SIZE;
+    
+    // Denormalized writes (both tables) with a logged batch or parallel statements
+    @Value("${cassandra.write.strategy:LOGGED_BATCH}")
+    protected WriteStrategy writeStrategy = WriteStrategy.LOGGED_BATCH;
+    
+    // Attempts of a failed statement of a parallel write, including the first one
+    @Value("${cassandra.write.repair.maxAttempts:10}")
+    protected int repairMaxAttempts = 10;
+    
+    // Delay before first retry of a failed statement, doubled for each attempt
+    @Value("${cassandra.write.repair.initialBackoff:100ms}")
+    protected Duration repairInitialBackoff = Duration.ofMillis(100);
+    
+    // Max number of failed statements waiting for a retry
+    @Value("${cassandra.write.repair.capacity:10000}")
+    protected int repairCapacity = 10000;
+    
+    // Max number of distinct CQL texts prepared by the simple statement implementation
+    @Value("${cassandra.statements.cacheSize:256}")
+    protected long statementCacheSize = PreparedStatementCache.DEFAULT_MAXIMUM_SIZE;
+    
+    // Requests slower than this one are logged with their statement, node and partition key
+    @Value("${cassandra.statements.slowThreshold:500ms}")
+    protected Duration slowThreshold = StatementLatencyTracker.DEFAULT_SLOW_THRESHOLD;
 
     /**
      * Default configuration.
@@ -79,29 +131,175 @@ public class CassandraConfiguration {
       return CqlIdentifier.fromCql(keyspaceName);
     }
     
+    /**
+     * Single session used for the whole bootstrap: the keyspace is created (eventually dropped) and
+     * migrated with the session serving requests, contact points and pools are set up only once.
+     * Schema metadata is disabled in application.conf while connecting and fetched once connected,
+     * each phase is timed by {@link StartupTimings}.
+     *
+     * @return
+     *      the session bean, using the keyspace
+     */
     @Bean
     public CqlSession cqlSession() {
-        logger.info("Creating (eventually dropping) keyspace and table to init");
-        try(CqlSession tmpSession = CqlSession.builder()
-                               .addContactPoint(new InetSocketAddress(getCassandraHost(), getCassandraPort()))
-                               .withLocalDatacenter(getLocalDataCenterName())
-                               .build()) {
-            if (isDropSchema()) {
-                tmpSession.execute(dropKeyspace(keyspace()).ifExists().build());
-                logger.debug("+ Keyspace '{}' has been dropped (if existed)", keyspace());
-            }
-            tmpSession.execute(createKeyspace(keyspace()).ifNotExists()
+        StartupTimings startupTimings = startupTimings();
+        CqlSession cqlSession = startupTimings.time(Phase.CONNECT, () -> CqlSession.builder()
+                .addContactPoint(new InetSocketAddress(getCassandraHost(), getCassandraPort()))
+                .withLocalDatacenter(getLocalDataCenterName())
+                .withSchemaChangeListener(preparedStatementCache()) // prepare again on schema change
+                .withRequestTracker(new CompositeRequestTracker(
+                        readLatencyTracker(),                        // delay of speculative reads
+                        statementLatencyTracker()))                  // latency by statement, slow requests
+                .build());
+        try {
+            startupTimings.time(Phase.METADATA, 
+                    () -> cqlSession.setSchemaMetadataEnabled(true).toCompletableFuture().join());
+            startupTimings.time(Phase.SCHEMA, () -> createSchema(cqlSession));
+        } catch (RuntimeException e) {
+            cqlSession.close();
+            throw e;
+        }
+        logger.info("Successfully initialized.");
+        return cqlSession;
+    }
+    
+    /**
+     * Create the keyspace if needed, switch the session to it and migrate its tables.
+     * 
+     * @param cqlSession
+     *      session not bound to a keyspace yet
+     */
+    private void createSchema(CqlSession cqlSession) {
+        if (isDropSchema()) {
+            cqlSession.execute(dropKeyspace(keyspace()).ifExists().build());
+            logger.debug("+ Keyspace '{}' has been dropped (if existed)", keyspace());
+        }
+        // No DDL when the keyspace already exists
+        SchemaMigrator schemaMigrator = new SchemaMigrator(cqlSession, keyspace());
+        if (isDropSchema() || !cqlSession.getMetadata().getKeyspace(keyspace()).isPresent()) {
+            cqlSession.execute(createKeyspace(keyspace()).ifNotExists()
                     .withSimpleStrategy(1)    // 1 is the replication factor
                     .withDurableWrites(true)
                     .build());
             logger.debug("+ Keyspace '{}' has been created (if needed)", keyspace());
+            schemaMigrator.awaitSchemaAgreement();
         }
-        logger.info("Successfully initialized.");
-        return CqlSession.builder()
-                .addContactPoint(new InetSocketAddress(getCassandraHost(), getCassandraPort()))
-                .withKeyspace(keyspace())
-                .withLocalDatacenter(getLocalDataCenterName())
-                .build();
+        // Pools switch to the keyspace before the statement completes, nothing else runs yet
+        cqlSession.execute("USE " + keyspace().asCql(true));
+        schemaMigrator.migrate();
+    }
+    
+    /**
+     * Latency of the reads, delay of speculative executions when percentile based (see application.conf).
+     *
+     * @return
+     *      the tracker bean, registered in the session
+     */
+    @Bean
+    public ReadLatencyTracker readLatencyTracker() {
+        return new ReadLatencyTracker();
+    }
+    
+    /**
+     * Latency of the requests by statement and log of the slow ones.
+     *
+     * @return
+     *      the tracker bean, registered in the session
+     */
+    @Bean
+    public StatementLatencyTracker statementLatencyTracker() {
+        return new StatementLatencyTracker(slowThreshold);
+    }
+    
+    /**
+     * Speculative executions of reads started and won, metrics 'reservation.reads.speculative.*'.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @return
+     *      the binder of the metrics, none if profile 'read' does not use {@link SpeculativeReadPolicy}
+     */
+    @Bean
+    public MeterBinder speculativeReadMetrics(CqlSession cqlSession) {
+        return registry -> {
+            SpeculativeExecutionPolicy policy = cqlSession.getContext()
+                    .getSpeculativeExecutionPolicy(ReservationRepository.PROFILE_READ);
+            if (policy instanceof SpeculativeReadPolicy) {
+                SpeculativeReadPolicy readPolicy = (SpeculativeReadPolicy) policy;
+                FunctionCounter.builder("reservation.reads.speculative.fired", readPolicy, SpeculativeReadPolicy::getFired)
+                               .description("Speculative executions of reads started")
+                               .register(registry);
+                FunctionCounter.builder("reservation.reads.speculative.won", readPolicy, SpeculativeReadPolicy::getWon)
+                               .description("Reads answered by a speculative execution")
+                               .register(registry);
+            }
+        };
+    }
+    
+    /**
+     * Session and node metrics of the driver, bridged as 'cassandra.driver.*' (see application.conf).
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @return
+     *      the binder of the metrics
+     */
+    @Bean
+    public DriverMetricsBinder driverMetrics(CqlSession cqlSession) {
+        return new DriverMetricsBinder(cqlSession);
+    }
+    
+    /**
+     * Duration of the phases of startup, logged once the service is ready.
+     * 
+     * @return
+     *      the timings bean
+     */
+    @Bean
+    public StartupTimings startupTimings() {
+        return new StartupTimings();
+    }
+    
+    /**
+     * Prepared statements of the simple statement implementation, by CQL text.
+     * Schema change listener of the session, cleared when tables change.
+     *
+     * @return
+     *      the cache bean
+     */
+    @Bean
+    public PreparedStatementCache preparedStatementCache() {
+        return new PreparedStatementCache(statementCacheSize);
+    }
+
+    /**
+     * Full table scans split on the token ring and executed in parallel.
+     * Scans in progress are stopped when the context is closed.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @return
+     *      the scanner bean
+     */
+    @Bean(destroyMethod = "close")
+    public TokenRangeScanner tokenRangeScanner(CqlSession cqlSession) {
+        return new TokenRangeScanner(cqlSession, keyspace(), scanParallelism, scanSplits, scanPageSize);
+    }
+
+    /**
+     * Writes of the reservation in both tables, with a repair queue for the PARALLEL strategy.
+     * Statements still waiting for a retry are logged when the context is closed.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @return
+     *      the writer bean
+     */
+    @Bean(destroyMethod = "close")
+    public DenormalizedWriter denormalizedWriter(CqlSession cqlSession) {
+        logger.info("Denormalized writes with strategy {}", writeStrategy);
+        return new DenormalizedWriter(cqlSession, writeStrategy, writeStrategy != WriteStrategy.PARALLEL ? null
+                : new WriteRepairQueue(cqlSession, repairMaxAttempts, repairInitialBackoff, repairCapacity));
     }
 
     /**
@@ -0,0 +1,198 @@
+package com.cassandraguide.conf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.Timer;
+import com.datastax.oss.driver.api.core.CqlSession;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Metrics of the Java driver (Dropwizard registry of the session) bridged into the Micrometer registry,
+ * exposed with the other metrics of the service (/actuator/prometheus). Metrics are enabled in
+ * application.conf ('advanced.metrics').
+ *
+ * The driver names metrics '[session].[path]' and '[session].nodes.[host:port].[path]', they become
+ * 'cassandra.driver.session.[path]' and 'cassandra.driver.node.[path]' tagged with the session (and
+ * the node). Metrics created later, when a node is added, are bridged as well.
+ *
+ * Driver timers (cql-requests, cql-messages) are exposed as function timers, in seconds, and gauges
+ * '[name].percentile' tagged 'phi' with the percentiles computed by the driver.
+ */
+public class DriverMetricsBinder implements MeterBinder {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(DriverMetricsBinder.class);
+
+    /** Prefix of the bridged metrics. */
+    public static final String PREFIX = "cassandra.driver.";
+
+    /** Percentiles of the driver timers exposed as gauges. */
+    private static final double[] PERCENTILES = { 0.5, 0.75, 0.95, 0.99, 0.999 };
+
+    /** Segment of the node metrics. */
+    private static final String NODES = ".nodes.";
+
+    /** Connectivity to Cassandra. */
+    private final CqlSession cqlSession;
+
+    /**
+     * Full initialization.
+     *
+     * @param cqlSession
+     *      session whose metrics are bridged
+     */
+    public DriverMetricsBinder(CqlSession cqlSession) {
+        this.cqlSession = cqlSession;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!cqlSession.getMetrics().isPresent()) {
+            logger.info("Driver metrics disabled, none bridged");
+            return;
+        }
+        // Invoked for existing metrics, then for each new one
+        cqlSession.getMetrics().get().getRegistry().addListener(new Bridge(registry));
+    }
+
+    /**
+     * Register and remove Micrometer meters when driver metrics are added and removed.
+     */
+    static class Bridge extends MetricRegistryListener.Base {
+
+        /** Target registry. */
+        private final MeterRegistry registry;
+
+        /** Micrometer meters of each driver metric, removed with it. */
+        private final Map<String, List<io.micrometer.core.instrument.Meter>> meters = new ConcurrentHashMap<>();
+
+        Bridge(MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onGaugeAdded(String name, com.codahale.metrics.Gauge<?> gauge) {
+            add(name, Gauge.builder(meterName(name), gauge, Bridge::toDouble)
+                           .tags(tags(name))
+                           .register(registry));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onCounterAdded(String name, Counter counter) {
+            // Counters of the driver only increase (errors, retries)
+            add(name, FunctionCounter.builder(meterName(name), counter, Counter::getCount)
+                                     .tags(tags(name))
+                                     .register(registry));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onMeterAdded(String name, Meter meter) {
+            add(name, FunctionCounter.builder(meterName(name), meter, Meter::getCount)
+                                     .tags(tags(name))
+                                     .register(registry));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onTimerAdded(String name, Timer timer) {
+            // Driver timers record nanoseconds
+            add(name, FunctionTimer.builder(meterName(name), timer, Timer::getCount,
+                                            t -> t.getSnapshot().getMean() * t.getCount(), TimeUnit.NANOSECONDS)
+                                   .tags(tags(name))
+                                   .register(registry));
+            for (double percentile : PERCENTILES) {
+                add(name, Gauge.builder(meterName(name) + ".percentile", timer,
+                                        t -> t.getSnapshot().getValue(percentile) / TimeUnit.SECONDS.toNanos(1))
+                               .tags(tags(name).and("phi", String.valueOf(percentile)))
+                               .baseUnit("seconds")
+                               .register(registry));
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onGaugeRemoved(String name) {
+            remove(name);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onCounterRemoved(String name) {
+            remove(name);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onMeterRemoved(String name) {
+            remove(name);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void onTimerRemoved(String name) {
+            remove(name);
+        }
+
+        private void add(String name, io.micrometer.core.instrument.Meter meter) {
+            meters.computeIfAbsent(name, n -> new ArrayList<>()).add(meter);
+        }
+
+        private void remove(String name) {
+            List<io.micrometer.core.instrument.Meter> removed = meters.remove(name);
+            if (null != removed) {
+                removed.forEach(registry::remove);
+            }
+        }
+
+        /**
+         * Name of the Micrometer meter, without session nor node.
+         */
+        static String meterName(String name) {
+            int nodes = name.indexOf(NODES);
+            if (nodes < 0) {
+                return PREFIX + "session." + name.substring(name.indexOf('.') + 1);
+            }
+            String nodeAndPath = name.substring(nodes + NODES.length());
+            return PREFIX + "node." + nodeAndPath.substring(nodeAndPath.indexOf('.') + 1);
+        }
+
+        /**
+         * Session, and node for node metrics.
+         */
+        static Tags tags(String name) {
+            Tags tags = Tags.of("session", name.substring(0, name.indexOf('.')));
+            int nodes = name.indexOf(NODES);
+            if (nodes < 0) {
+                return tags;
+            }
+            String nodeAndPath = name.substring(nodes + NODES.length());
+            return tags.and("node", nodeAndPath.substring(0, nodeAndPath.indexOf('.')));
+        }
+
+        private static double toDouble(com.codahale.metrics.Gauge<?> gauge) {
+            Object value = gauge.getValue();
+            return (value instanceof Number) ? ((Number) value).doubleValue() : Double.NaN;
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.cassandraguide.conf;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.cassandraguide.conf.StartupTimings.Phase;
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.repository.CachingReservationRepository;
+import com.cassandraguide.repository.ConfirmationNumberFilter;
+import com.cassandraguide.repository.FilteringReservationRepository;
+import com.cassandraguide.repository.FlightRecorderReservationRepository;
+import com.cassandraguide.repository.MeteredReservationRepository;
+import com.cassandraguide.repository.RepositoryWarmer;
+import com.cassandraguide.repository.ReservationRepository;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Assemble the repository used by the REST resources, bean 'reservation.repository':
+ * the implementation decorated with the optional layers (Flight Recorder events, metrics, cache, filter).
+ */
+@Configuration
+@EnableScheduling
+@Profile("!unit-test") // When I do some 'unit-test' no connectivity to DB
+public class RepositoryConfiguration {
+
+    // Logger
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryConfiguration.class);
+
+    /**
+     * Reservations by confirmation number, size bounded (W-TinyLFU eviction) and expiring.
+     *
+     * @param maximumSize
+     *      max number of reservations kept in memory
+     * @param ttl
+     *      time to live of an entry after it has been loaded
+     * @return
+     *      the cache bean, statistics are recorded
+     */
+    @Bean("reservation.cache")
+    @ConditionalOnProperty(name = "reservation.cache.enabled", havingValue = "true", matchIfMissing = true)
+    public Cache<String, Reservation> reservationCache(
+            @Value("${reservation.cache.maximumSize:10000}") long maximumSize,
+            @Value("${reservation.cache.ttl:10m}") Duration ttl) {
+        logger.info("Reservations cache enabled with maximumSize={} and ttl={}", maximumSize, ttl);
+        return Caffeine.newBuilder()
+                       .maximumSize(maximumSize)
+                       .expireAfterWrite(ttl)
+                       .recordStats()
+                       .build();
+    }
+
+    /**
+     * Existing confirmation numbers, loaded and rebuilt by {@link FilteringReservationRepository}.
+     * Disabled unless configured: the filter only avoids reads when it is authoritative.
+     *
+     * @param expectedInsertions
+     *      minimum number of reservations the filter is sized for
+     * @param falsePositiveProbability
+     *      target false positive probability
+     * @param authoritative
+     *      whether every writer of the table goes through the filter
+     * @return
+     *      the filter bean
+     */
+    @Bean("reservation.filter")
+    @ConditionalOnProperty(name = "reservation.filter.enabled", havingValue = "true")
+    public ConfirmationNumberFilter confirmationNumberFilter(
+            @Value("${reservation.filter.expectedInsertions:1000000}") long expectedInsertions,
+            @Value("${reservation.filter.falsePositiveProbability:0.01}") double falsePositiveProbability,
+            @Value("${reservation.filter.authoritative:false}") boolean authoritative) {
+        logger.info("Confirmation number filter enabled for {} reservations with fpp={}",
+                expectedInsertions, falsePositiveProbability);
+        if (!authoritative) {
+            logger.warn("Confirmation number filter is not authoritative: lookups still read Cassandra "
+                    + "and the filter is rebuilt with full table scans");
+        }
+        return new ConfirmationNumberFilter(expectedInsertions, falsePositiveProbability);
+    }
+
+    /**
+     * Repository injected in REST resources. Only the implementation selected by
+     * 'reservation.repository.implementation' (simple, querybuilder or mapper) is created:
+     * the others do not run their DDL nor prepare their statements. Its creation is the
+     * 'prepare' phase of startup.
+     *
+     * @param implementation
+     *      implementation accessing Cassandra, created here
+     * @param startupTimings
+     *      duration of the phases of startup
+     * @param implementationName
+     *      name of the implementation, tag of the metrics
+     * @param flightRecorderEnabled
+     *      whether operations of the implementation commit Flight Recorder events
+     * @param metricsEnabled
+     *      whether operations of the implementation are metered
+     * @param meterRegistry
+     *      registry of the metrics
+     * @param reservationCache
+     *      cache of reservations if enabled
+     * @param confirmationNumberFilter
+     *      filter of existing confirmation numbers if enabled
+     * @param filterAuthoritative
+     *      whether every writer of the table goes through the filter
+     * @return
+     *      the decorated repository
+     */
+    @Bean("reservation.repository")
+    public ReservationRepository reservationRepository(
+            @Qualifier("reservation.repository.active") ObjectProvider<ReservationRepository> implementation,
+            StartupTimings startupTimings,
+            @Value("${reservation.repository.implementation:querybuilder}") String implementationName,
+            @Value("${reservation.jfr.enabled:true}") boolean flightRecorderEnabled,
+            @Value("${reservation.metrics.enabled:true}") boolean metricsEnabled,
+            MeterRegistry meterRegistry,
+            @Qualifier("reservation.cache") Optional<Cache<String, Reservation>> reservationCache,
+            @Qualifier("reservation.filter") Optional<ConfirmationNumberFilter> confirmationNumberFilter,
+            @Value("${reservation.filter.authoritative:false}") boolean filterAuthoritative) {
+        ReservationRepository repository = startupTimings.time(Phase.PREPARE, () -> implementation.getObject());
+        logger.info("Reservations stored with {}", repository.getClass().getSimpleName());
+        // Innermost: cache hits and filtered lookups are not operations of the implementation
+        if (flightRecorderEnabled) {
+            repository = new FlightRecorderReservationRepository(repository, implementationName);
+        }
+        if (metricsEnabled) {
+            repository = new MeteredReservationRepository(repository, meterRegistry, implementationName);
+        }
+        if (reservationCache.isPresent()) {
+            repository = new CachingReservationRepository(repository, reservationCache.get());
+        }
+        // Filter first, unknown confirmation numbers do not even reach the cache
+        if (confirmationNumberFilter.isPresent()) {
+            repository = new FilteringReservationRepository(repository, confirmationNumberFilter.get(),
+                    filterAuthoritative);
+        }
+        return repository;
+    }
+
+    /**
+     * Warm-up of connections and of the implementation, run before the service reports ready.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @param implementation
+     *      implementation accessing Cassandra, not decorated
+     * @param reads
+     *      number of synthetic reads
+     * @param concurrency
+     *      number of reads executed concurrently
+     * @return
+     *      the warmer bean
+     */
+    @Bean
+    @Lazy
+    @ConditionalOnProperty(name = "reservation.warmup.enabled", havingValue = "true", matchIfMissing = true)
+    public RepositoryWarmer repositoryWarmer(CqlSession cqlSession,
+            @Qualifier("reservation.repository.active") ReservationRepository implementation,
+            @Value("${reservation.warmup.reads:1000}") int reads,
+            @Value("${reservation.warmup.concurrency:32}") int concurrency) {
+        return new RepositoryWarmer(cqlSession, implementation, reads, concurrency);
+    }
+
+    /**
+     * Health 'warmup', out of service until the warm-up has completed.
+     *
+     * @param repositoryWarmer
+     *      warm-up, created when it starts
+     * @param startupTimings
+     *      duration of the phases of startup
+     * @param meterRegistry
+     *      registry of the warm-up metrics
+     * @return
+     *      the health indicator bean, running the warm-up
+     */
+    @Bean
+    @ConditionalOnProperty(name = "reservation.warmup.enabled", havingValue = "true", matchIfMissing = true)
+    public WarmupHealthIndicator warmupHealthIndicator(ObjectProvider<RepositoryWarmer> repositoryWarmer,
+            StartupTimings startupTimings, MeterRegistry meterRegistry) {
+        logger.info("Warm-up enabled, service reported ready once completed");
+        return new WarmupHealthIndicator(repositoryWarmer, startupTimings, meterRegistry);
+    }
+
+}
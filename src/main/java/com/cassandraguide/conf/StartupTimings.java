@@ -0,0 +1,127 @@
+package com.cassandraguide.conf;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * Duration of the phases of startup, logged and exposed once the service is ready.
+ *
+ * Phases are timed by the code executing them, the last one ({@link Phase#READY}) is the time spent
+ * out of the other phases, from the creation of this bean to the first request which can be served.
+ */
+public class StartupTimings implements ApplicationListener<ApplicationReadyEvent> {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimings.class);
+
+    /**
+     * Phases of startup, in order.
+     */
+    public enum Phase {
+        /** Contact points, control connection, node list and connection pools. */
+        CONNECT,
+        /** Schema metadata of the cluster. */
+        METADATA,
+        /** Keyspace and schema migrations. */
+        SCHEMA,
+        /** Repository implementation and its prepared statements. */
+        PREPARE,
+        /** Connections, statements and code warmed before reporting ready. */
+        WARMUP,
+        /** Remaining of the Spring context (web server...), up to the first request. */
+        READY
+    }
+
+    /** Duration of the completed phases. */
+    private final Map<Phase, Duration> durations = new EnumMap<>(Phase.class);
+
+    /** Start of {@link Phase#READY}. */
+    private final long created = System.nanoTime();
+
+    /** JVM uptime when ready, 0 before. */
+    private long uptimeWhenReady;
+
+    /**
+     * Execute a phase of startup and record its duration.
+     *
+     * @param phase
+     *      phase executed
+     * @param step
+     *      code of the phase
+     * @return
+     *      result of the step
+     */
+    public <T> T time(Phase phase, Supplier<T> step) {
+        long top = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            record(phase, top);
+        }
+    }
+
+    /**
+     * Execute a phase of startup without result and record its duration.
+     *
+     * @param phase
+     *      phase executed
+     * @param step
+     *      code of the phase
+     */
+    public void time(Phase phase, Runnable step) {
+        time(phase, () -> {
+            step.run();
+            return null;
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        synchronized (this) {
+            Duration timed = durations.values().stream().reduce(Duration.ZERO, Duration::plus);
+            Duration total = Duration.ofNanos(System.nanoTime() - created);
+            durations.put(Phase.READY, timed.compareTo(total) < 0 ? total.minus(timed) : Duration.ZERO);
+            uptimeWhenReady = ManagementFactory.getRuntimeMXBean().getUptime();
+        }
+        logger.info("Started in {} ms (JVM uptime), phases in ms: {}", uptimeWhenReady, getPhases());
+    }
+
+    /**
+     * Duration of the completed phases in milliseconds, in order.
+     *
+     * @return
+     *      phase name to duration, absent phases have not run
+     */
+    public synchronized Map<String, Long> getPhases() {
+        Map<String, Long> phases = new LinkedHashMap<>();
+        durations.forEach((phase, duration) -> phases.put(phase.name().toLowerCase(), duration.toMillis()));
+        return phases;
+    }
+
+    /**
+     * Getter accessor for attribute 'uptimeWhenReady'.
+     *
+     * @return
+     *       JVM uptime in milliseconds when the first request could be served, 0 if not ready yet
+     */
+    public synchronized long getUptimeWhenReady() {
+        return uptimeWhenReady;
+    }
+
+    private synchronized void record(Phase phase, long start) {
+        // A phase executed several times (one session per test) accumulates
+        durations.merge(phase, Duration.ofNanos(System.nanoTime() - start), Duration::plus);
+        logger.debug("Startup phase {} completed in {} ms", phase, durations.get(phase).toMillis());
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.cassandraguide.conf;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import com.cassandraguide.conf.StartupTimings.Phase;
+import com.cassandraguide.repository.RepositoryWarmer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+/**
+ * Readiness gate: health 'warmup' is OUT_OF_SERVICE (HTTP 503 on /actuator/health) until the
+ * {@link RepositoryWarmer} has completed, load balancers only route requests to warm instances.
+ *
+ * The warm-up runs once the context is started, before the application is reported ready. Its duration
+ * is the 'warmup' phase of {@link StartupTimings} and metric 'reservation.warmup.duration'.
+ */
+public class WarmupHealthIndicator implements HealthIndicator, ApplicationRunner {
+
+    /** Created on first use: the creation of the repository is timed as phase 'prepare'. */
+    private final ObjectProvider<RepositoryWarmer> repositoryWarmer;
+
+    /** Duration of the phases of startup. */
+    private final StartupTimings startupTimings;
+
+    /** Warmer once created, null before. */
+    private volatile RepositoryWarmer warmer;
+
+    /**
+     * Full initialization.
+     *
+     * @param repositoryWarmer
+     *      warm-up of connections and repository, created when the warm-up starts
+     * @param startupTimings
+     *      duration of the phases of startup
+     * @param meterRegistry
+     *      registry of the warm-up metrics
+     */
+    public WarmupHealthIndicator(ObjectProvider<RepositoryWarmer> repositoryWarmer,
+            StartupTimings startupTimings, MeterRegistry meterRegistry) {
+        this.repositoryWarmer = repositoryWarmer;
+        this.startupTimings   = startupTimings;
+        TimeGauge.builder("reservation.warmup.duration", this, TimeUnit.MILLISECONDS,
+                        health -> (null == health.warmer || !health.warmer.isDone()) ? 0
+                                : health.warmer.getDuration().toMillis())
+                 .description("Duration of the warm-up before reporting ready")
+                 .register(meterRegistry);
+        Gauge.builder("reservation.warmup.failures", this,
+                        health -> (null == health.warmer) ? 0 : health.warmer.getFailures())
+             .description("Requests of the warm-up which failed")
+             .register(meterRegistry);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run(ApplicationArguments args) {
+        warmer = repositoryWarmer.getObject();
+        startupTimings.time(Phase.WARMUP, () -> warmer.warmUp());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Health health() {
+        RepositoryWarmer current = warmer;
+        if (null == current || !current.isDone()) {
+            return Health.outOfService().withDetail("warmup", "in progress").build();
+        }
+        return Health.up()
+                     .withDetail("duration", current.getDuration().toMillis())
+                     .withDetail("failures", current.getFailures())
+                     .build();
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.cassandraguide.conf;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.cassandraguide.controller.ReservationRequestEventInterceptor;
+
+/**
+ * Interceptors of the REST resources.
+ */
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+    /**
+     * Flight Recorder events of the reservations resources, free when not recording.
+     *
+     * @param registry
+     *      interceptors of Spring MVC
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReservationRequestEventInterceptor())
+                .addPathPatterns("/api/v1/reservations/**");
+    }
+
+}
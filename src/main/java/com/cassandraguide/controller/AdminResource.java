@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2017 Jeff Carpenter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cassandraguide.controller;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.web.bind.annotation.RequestMethod.DELETE;
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.cassandraguide.conf.StartupTimings;
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.repository.ConfirmationNumberFilter;
+import com.cassandraguide.repository.DenormalizedWriter;
+import com.cassandraguide.repository.StatementLatencyTracker;
+import com.cassandraguide.repository.StatementLatencyTracker.StatementLatency;
+import com.cassandraguide.repository.WriteRepairQueue;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+/**
+ * Operational view of the service.
+ *
+ * GET    /cache : statistics of the reservations cache
+ * DELETE /cache : evict all entries of the reservations cache
+ * GET    /filter : statistics of the confirmation number filter
+ * GET    /writes : write strategy and retries of failed statements
+ * GET    /startup : duration of the phases of startup
+ * GET    /statements : latency of the requests by statement
+ * DELETE /statements : forget the latency of the statements
+ */
+@RestController
+@Api(value = "/api/v1/admin",
+     description = "Operational Resources")
+@RequestMapping("/api/v1/admin")
+public class AdminResource {
+
+    /** Cache of reservations, absent when disabled. */
+    private Optional<Cache<String, Reservation>> reservationCache;
+
+    /** Filter of confirmation numbers, absent when disabled. */
+    private Optional<ConfirmationNumberFilter> confirmationNumberFilter;
+
+    /** Writes of reservations in both tables. */
+    private DenormalizedWriter denormalizedWriter;
+
+    /** Duration of the phases of startup. */
+    private StartupTimings startupTimings;
+
+    /** Latency of the requests by statement. */
+    private StatementLatencyTracker statementLatencyTracker;
+
+    /**
+     * Inversion of Control through constructor.
+     *
+     * @param reservationCache
+     *      cache of reservations if enabled
+     * @param confirmationNumberFilter
+     *      filter of confirmation numbers if enabled
+     * @param denormalizedWriter
+     *      writes of reservations in both tables
+     * @param startupTimings
+     *      duration of the phases of startup
+     * @param statementLatencyTracker
+     *      latency of the requests by statement
+     */
+    public AdminResource(
+            @Qualifier("reservation.cache")
+            Optional<Cache<String, Reservation>> reservationCache,
+            @Qualifier("reservation.filter")
+            Optional<ConfirmationNumberFilter> confirmationNumberFilter,
+            DenormalizedWriter denormalizedWriter,
+            StartupTimings startupTimings,
+            StatementLatencyTracker statementLatencyTracker) {
+        this.reservationCache         = reservationCache;
+        this.confirmationNumberFilter = confirmationNumberFilter;
+        this.denormalizedWriter       = denormalizedWriter;
+        this.startupTimings           = startupTimings;
+        this.statementLatencyTracker  = statementLatencyTracker;
+    }
+
+    /**
+     * Statistics of the reservations cache since startup.
+     *
+     * @return
+     *      hits, misses and evictions
+     */
+    @RequestMapping(method = GET, value = "/cache", produces = APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "Statistics of the reservations cache", response = Map.class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Cache statistics"),
+        @ApiResponse(code = 404, message = "Cache is disabled")
+    })
+    public ResponseEntity<Map<String, Object>> cacheStatistics() {
+        if (!reservationCache.isPresent()) {
+            return new ResponseEntity<Map<String, Object>>(HttpStatus.NOT_FOUND);
+        }
+        CacheStats stats = reservationCache.get().stats();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("size",          reservationCache.get().estimatedSize());
+        statistics.put("hitCount",      stats.hitCount());
+        statistics.put("missCount",     stats.missCount());
+        statistics.put("hitRate",       stats.hitRate());
+        statistics.put("evictionCount", stats.evictionCount());
+        return ResponseEntity.ok(statistics);
+    }
+
+    /**
+     * Evict all entries, next lookups will read Cassandra.
+     *
+     * @return
+     *      204 when evicted
+     */
+    @RequestMapping(method = DELETE, value = "/cache")
+    @ApiOperation(value = "Evict all entries of the reservations cache", response = Void.class)
+    @ApiResponses({
+        @ApiResponse(code = 204, message = "Cache has been cleared"),
+        @ApiResponse(code = 404, message = "Cache is disabled")
+    })
+    public ResponseEntity<Void> clearCache() {
+        if (!reservationCache.isPresent()) {
+            return new ResponseEntity<Void>(HttpStatus.NOT_FOUND);
+        }
+        reservationCache.get().invalidateAll();
+        return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
+    }
+
+    /**
+     * Statistics of the confirmation number filter since startup.
+     *
+     * @return
+     *      reads avoided and false positives
+     */
+    @RequestMapping(method = GET, value = "/filter", produces = APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "Statistics of the confirmation number filter", response = Map.class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Filter statistics"),
+        @ApiResponse(code = 404, message = "Filter is disabled")
+    })
+    public ResponseEntity<Map<String, Object>> filterStatistics() {
+        if (!confirmationNumberFilter.isPresent()) {
+            return new ResponseEntity<Map<String, Object>>(HttpStatus.NOT_FOUND);
+        }
+        ConfirmationNumberFilter filter = confirmationNumberFilter.get();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("ready",             filter.isReady());
+        statistics.put("lastRebuild",       filter.getLastRebuild());
+        statistics.put("lastRebuildCount",  filter.getLastRebuildCount());
+        statistics.put("numBits",           filter.getNumBits());
+        statistics.put("numHashes",         filter.getNumHashes());
+        statistics.put("readsAvoided",      filter.getReadsAvoided());
+        statistics.put("falsePositives",    filter.getFalsePositives());
+        statistics.put("falsePositiveRate", filter.getFalsePositiveRate());
+        statistics.put("unseenWrites",      filter.getUnseenWrites());
+        return ResponseEntity.ok(statistics);
+    }
+
+    /**
+     * Write strategy and background retries of the statements of parallel writes which failed.
+     *
+     * @return
+     *      pending, repaired and dropped statements, PARALLEL strategy only
+     */
+    @RequestMapping(method = GET, value = "/writes", produces = APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "Write strategy and repair queue statistics", response = Map.class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Write statistics")
+    })
+    public ResponseEntity<Map<String, Object>> writeStatistics() {
+        WriteRepairQueue repairQueue = denormalizedWriter.getRepairQueue();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("strategy", denormalizedWriter.getStrategy());
+        if (null != repairQueue) {
+            statistics.put("pending",  repairQueue.getPending());
+            statistics.put("repaired", repairQueue.getRepaired());
+            statistics.put("dropped",  repairQueue.getDropped());
+        }
+        return ResponseEntity.ok(statistics);
+    }
+
+    /**
+     * Duration of the phases of startup: connect, metadata, schema, prepare and ready.
+     *
+     * @return
+     *      JVM uptime when ready and phases in milliseconds
+     */
+    @RequestMapping(method = GET, value = "/startup", produces = APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "Duration of the phases of startup", response = Map.class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Startup timings")
+    })
+    public ResponseEntity<Map<String, Object>> startupTimings() {
+        Map<String, Object> timings = new LinkedHashMap<>();
+        timings.put("uptimeWhenReady", startupTimings.getUptimeWhenReady());
+        timings.put("phases",          startupTimings.getPhases());
+        return ResponseEntity.ok(timings);
+    }
+
+    /**
+     * Latency of the requests by statement since startup or last reset, slowest first.
+     *
+     * @return
+     *      percentiles in milliseconds, retries, errors and slow requests of each statement
+     */
+    @RequestMapping(method = GET, value = "/statements", produces = APPLICATION_JSON_VALUE)
+    @ApiOperation(value = "Latency of the requests by statement", response = List.class)
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Latency by statement")
+    })
+    public ResponseEntity<List<Map<String, Object>>> statementLatencies() {
+        return ResponseEntity.ok(statementLatencyTracker.getStatements().stream()
+                                                        .map(this::statementLatency)
+                                                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Forget the latency of the statements, to measure from now on.
+     *
+     * @return
+     *      204 when reset
+     */
+    @RequestMapping(method = DELETE, value = "/statements")
+    @ApiOperation(value = "Reset the latency of the statements", response = Void.class)
+    @ApiResponses({
+        @ApiResponse(code = 204, message = "Latency has been reset")
+    })
+    public ResponseEntity<Void> resetStatementLatencies() {
+        statementLatencyTracker.reset();
+        return new ResponseEntity<Void>(HttpStatus.NO_CONTENT);
+    }
+
+    private Map<String, Object> statementLatency(StatementLatency statement) {
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("cql",       statement.getCql());
+        latency.put("count",     statement.getCount());
+        latency.put("p50",       statement.getPercentileMillis(50));
+        latency.put("p99",       statement.getPercentileMillis(99));
+        latency.put("p999",      statement.getPercentileMillis(99.9));
+        latency.put("max",       statement.getMaxMillis());
+        latency.put("nextPages", statement.getNextPages());
+        latency.put("retries",   statement.getRetries());
+        latency.put("errors",    statement.getErrors());
+        latency.put("slow",      statement.getSlow());
+        return latency;
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2017 Jeff Carpenter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cassandraguide.controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of a request of the reservations resources, committed by
+ * {@link ReservationRequestEventInterceptor}. Its duration goes from the handler invocation to the
+ * completion of the response, async processing included; the operations of the repository it triggers
+ * are recorded within it (event 'com.cassandraguide.RepositoryOperation').
+ */
+@Name("com.cassandraguide.ReservationRequest")
+@Label("Reservation Request")
+@Category({ "Reservation Service", "REST" })
+@Description("Request of the reservations resources")
+@StackTrace(false)
+public class ReservationRequestEvent extends Event {
+
+    @Label("Handler")
+    String handler;
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Key")
+    @Description("Confirmation number, or hotel and date")
+    String key;
+
+    @Label("Status")
+    int status;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Error")
+    String error;
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2017 Jeff Carpenter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cassandraguide.controller;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Record a {@link ReservationRequestEvent} for each request of the reservations resources.
+ *
+ * When the event is not enabled nothing is stored in the request. Async handlers are dispatched twice,
+ * the event begins with the first dispatch and is committed after the second one.
+ */
+public class ReservationRequestEventInterceptor implements AsyncHandlerInterceptor {
+
+    /** Attribute of the request holding its event. */
+    static final String EVENT_ATTRIBUTE = ReservationRequestEvent.class.getName();
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (null != request.getAttribute(EVENT_ATTRIBUTE)) {
+            return true; // Async dispatch, started with the initial one
+        }
+        ReservationRequestEvent event = new ReservationRequestEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            request.setAttribute(EVENT_ATTRIBUTE, event);
+        }
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReservationRequestEvent event = (ReservationRequestEvent) request.getAttribute(EVENT_ATTRIBUTE);
+        if (null == event) {
+            return;
+        }
+        request.removeAttribute(EVENT_ATTRIBUTE);
+        event.handler      = (handler instanceof HandlerMethod) ? ((HandlerMethod) handler).getMethod().getName() : null;
+        event.method       = request.getMethod();
+        event.path         = request.getRequestURI();
+        event.key          = key(request);
+        event.status       = response.getStatus();
+        event.requestBytes = Math.max(0, request.getContentLengthLong());
+        event.error        = (null == ex) ? null : ex.getClass().getSimpleName();
+        event.commit();
+    }
+
+    /**
+     * Confirmation number of the path, or hotel and date of the parameters.
+     */
+    @SuppressWarnings("unchecked")
+    static String key(HttpServletRequest request) {
+        Map<String, String> pathVariables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (null != pathVariables && pathVariables.containsKey("confirmationNumber")) {
+            return pathVariables.get("confirmationNumber");
+        }
+        String hotelId = request.getParameter("hotelId");
+        if (null != hotelId) {
+            return hotelId + "/" + request.getParameter("date");
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2017 Jeff Carpenter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cassandraguide.controller;
+
+import static com.cassandraguide.controller.ReservationsResource.DEFAULT_PAGE_SIZE;
+import static com.cassandraguide.controller.ReservationsResource.MAX_PAGE_SIZE;
+import static com.cassandraguide.controller.ReservationsResource.rejectedPagingState;
+import static com.cassandraguide.controller.ReservationsResource.validateConfirmationNumber;
+import static com.cassandraguide.controller.ReservationsResource.validatePageSize;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_PLAIN_VALUE;
+import static org.springframework.web.bind.annotation.RequestMethod.DELETE;
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+import static org.springframework.web.bind.annotation.RequestMethod.POST;
+import static org.springframework.web.bind.annotation.RequestMethod.PUT;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
+import com.cassandraguide.model.ReservationRequest;
+import com.cassandraguide.repository.ReservationRepository;
+import com.datastax.oss.driver.api.core.DriverException;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+/**
+ * Same REST Resources as {@link ReservationsResource} but handlers are not blocking. Each handler
+ * returns a {@link CompletableFuture}, the servlet thread is released once the request has been sent
+ * to Cassandra and the response is written when the driver future completes.
+ *
+ * Enabled with 'reservation.api.async=true'. Each endpoint has its own timeout, when reached
+ * the client receives HTTP 503.
+ */
+@RestController
+@Api(value = "/api/v1/reservations",
+     description = "Reservation Services Rest Resources (non blocking)")
+@RequestMapping("/api/v1/reservations")
+@ConditionalOnProperty(name = "reservation.api.async", havingValue = "true")
+public class ReservationsAsyncResource {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(ReservationsAsyncResource.class);
+
+    /** Service implementation Injection. */
+    private ReservationRepository reservationService;
+
+    /** Timeout for each endpoint. */
+    @Value("${reservation.api.timeout.findAll:2s}")
+    private Duration findAllTimeout;
+
+    @Value("${reservation.api.timeout.create:2s}")
+    private Duration createTimeout;
+
+    @Value("${reservation.api.timeout.findByConfirmationNumber:1s}")
+    private Duration findByConfirmationNumberTimeout;
+
+    @Value("${reservation.api.timeout.upsert:2s}")
+    private Duration upsertTimeout;
+
+    @Value("${reservation.api.timeout.delete:2s}")
+    private Duration deleteTimeout;
+
+    @Value("${reservation.api.timeout.findByHotelAndDate:2s}")
+    private Duration findByHotelAndDateTimeout;
+
+    /**
+     * Inversion of Control through constructor.
+     *
+     * @param reservationService
+     *      service implementation
+     */
+    public ReservationsAsyncResource(
+            @Qualifier("reservation.repository")
+            ReservationRepository reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    /**
+     * List reservations in DB one page at a time.
+     *
+     * @param pageSize
+     *      maximum number of reservations returned
+     * @param pagingState
+     *      cursor returned with previous page
+     * @return
+     *      page of {@link Reservation} available in the table
+     */
+    @RequestMapping(
+            method = GET,
+            value = "/",
+            produces = APPLICATION_JSON_VALUE)
+    @ApiOperation(
+            value = "List reservations available in the table, page by page", response = ReservationPage.class)
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Page of reservations available in the table"),
+            @ApiResponse(code = 400, message = "Invalid page size or paging state")
+    })
+    public CompletableFuture<ResponseEntity<ReservationPage>> findAll(
+            @RequestParam(name = "pageSize", required = false, defaultValue = "" + DEFAULT_PAGE_SIZE)
+            @ApiParam(name = "pageSize", value = "Number of reservations per page (1-" + MAX_PAGE_SIZE + ")",
+                      example = "" + DEFAULT_PAGE_SIZE, required = false)
+            int pageSize,
+            @RequestParam(name = "pagingState", required = false)
+            @ApiParam(name = "pagingState", value = "Cursor returned with previous page", required = false)
+            String pagingState) {
+        validatePageSize(pageSize);
+        logger.debug("Fetching page of {} reservations", pageSize);
+        return withTimeout(reservationService.findAllAsync(pageSize, pagingState), findAllTimeout)
+                .exceptionally(error -> { throw rejectedPagingState(pagingState, error); })
+                .thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * As no confirmation number has been provided this will create a new reservation
+     * and GENERATE the confirmation number. If you already now it, use the PUT resource.
+     */
+    @RequestMapping(
+            method = POST,
+            value = "/",
+            consumes = APPLICATION_JSON_VALUE,
+            produces = TEXT_PLAIN_VALUE)
+    @ApiOperation(value = "Create a Reservation and generate confirmation number", response = String.class)
+    @ApiResponses({
+            @ApiResponse(code = 201, message = "Reservation has been created"),
+            @ApiResponse(code = 400, message = "Invalid ReservationRequest provided")
+    })
+    public CompletableFuture<ResponseEntity<String>> create(
+            HttpServletRequest request,
+            @RequestBody ReservationRequest reservationRequest) {
+        // Request is only available in servlet thread, build location template now
+        ServletUriComponentsBuilder locationBuilder = ServletUriComponentsBuilder.fromRequestUri(request);
+        return withTimeout(reservationService.createAsync(new Reservation(reservationRequest)), createTimeout)
+                .thenApply(confirmationNumber -> {
+                    URI location = locationBuilder
+                            .replacePath("/api/v1/reservations/{confirmationNumber}")
+                            .buildAndExpand(confirmationNumber)
+                            .toUri();
+                    return ResponseEntity.created(location).body(confirmationNumber);
+                });
+    }
+
+    /**
+     * Retrieve single reservation by confirmation number.
+     *
+     * @param confirmationNumber
+     *      unique confirmation number
+     * @return
+     *      reservation if exists
+     */
+    @RequestMapping(
+            value = "/{confirmationNumber}",
+            method = GET,
+            produces = APPLICATION_JSON_VALUE)
+    @ApiOperation(
+            value = "Access Reservation information if exists",
+            response = Reservation.class)
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Returnings Reservation"),
+            @ApiResponse(code = 400, message = "ConfirmationNumber is blank or contains invalid characters (expecting AlphaNumeric)"),
+            @ApiResponse(code = 404, message = "No reservation exists for the provided confirmation number ")
+    })
+    public CompletableFuture<ResponseEntity<Reservation>> findByConfirmationNumber(
+            @ApiParam(name="confirmationNumber",
+                     value="confirmation number for a reservation",
+                     example = "b9c5a9d8-9781-4de8-a00a-601a9cd6b366",
+                     required=true )
+            @PathVariable(value = "confirmationNumber") String confirmationNumber) {
+        validateConfirmationNumber(confirmationNumber);
+        logger.debug("Fetching reservation with confirmation number {}", confirmationNumber);
+        return withTimeout(reservationService.findByConfirmationNumberAsync(confirmationNumber),
+                           findByConfirmationNumberTimeout)
+                .thenApply(reservation -> {
+                    if (!reservation.isPresent()) {
+                        logger.warn("Reservation with confirmation number {} has not been found", confirmationNumber);
+                        return ResponseEntity.notFound().build();
+                    }
+                    return ResponseEntity.ok(reservation.get());
+                });
+    }
+
+    /**
+     * Upsert reservation when confirmation number is provided (specify with PUT HTTP Verb)
+     *
+     * @param confirmationNumber
+     *      unique confirmation number
+     * @return
+     *      true if entity has been created
+     */
+    @RequestMapping(
+            method = PUT,
+            value = "/{confirmationNumber}",
+            produces = APPLICATION_JSON_VALUE)
+    @ApiOperation(
+            value = "Create or update a Reservation based on a given confirmation number",
+            response = ResponseEntity.class)
+    @ApiResponses({
+        @ApiResponse(code = 201, message = "Reservation has been created"),
+        @ApiResponse(code = 204, message = "No content, reservation has been updated"),
+        @ApiResponse(code = 400, message = "ConfirmationNumber is blank or contains invalid characters (expecting AlphaNumeric)")
+    })
+    public CompletableFuture<ResponseEntity<Void>> upsert(
+            @ApiParam(name="confirmationNumber",
+                    example = "b9c5a9d8-9781-4de8-a00a-601a9cd6b366",
+                    value="confirmation number for a reservation",
+                    required=true )
+            @PathVariable(value = "confirmationNumber") String confirmationNumber,
+            @RequestBody ReservationRequest reservation) {
+        validateConfirmationNumber(confirmationNumber);
+        logger.debug("Request to update reservation {}", confirmationNumber);
+        return withTimeout(reservationService.upsertAsync(new Reservation(reservation, confirmationNumber)), upsertTimeout)
+                .thenApply(result -> new ResponseEntity<Void>(result.isCreated() ? HttpStatus.CREATED : HttpStatus.NO_CONTENT));
+    }
+
+    @RequestMapping(
+            method = DELETE,
+            value = "/{confirmationNumber}")
+    @ApiOperation(value = "Delete a reservation", response = ResponseEntity.class)
+    @ApiResponses({
+            @ApiResponse(code = 204, message = "No content, reservation has been deleted"),
+            @ApiResponse(code = 400, message = "ConfirmationNumber is blank or contains invalid characters (expecting AlphaNumeric)"),
+            @ApiResponse(code = 404, message = "The reservation does not exist")
+    })
+    public CompletableFuture<ResponseEntity<Void>> delete(
+            @ApiParam(name="confirmationNumber",
+                      value="confirmation number for a reservation",
+                      example = "b9c5a9d8-9781-4de8-a00a-601a9cd6b366",
+                      required=true)
+            @PathVariable(value = "confirmationNumber") String confirmationNumber) {
+        validateConfirmationNumber(confirmationNumber);
+        logger.debug("Fetching & Deleting reservation with confirmation number " + confirmationNumber);
+        return withTimeout(reservationService.deleteAsync(confirmationNumber)
+                .thenApply(deleted -> {
+                    if (!deleted.isPresent()) {
+                        logger.error("Unable to delete. Reservation with confirmation number " +
+                                confirmationNumber + " not found");
+                        return ResponseEntity.notFound().<Void>build();
+                    }
+                    return ResponseEntity.noContent().<Void>build();
+                }), deleteTimeout);
+    }
+
+    /**
+     * List reservation for an hotel id on a particular date.
+     *
+     * @param hotelId
+     *      uniquement hotel identifier
+     * @param date
+     *      target date
+     * @return
+     */
+    @RequestMapping(
+            value = "/findByHotelAndDate",
+            method = GET,
+            produces = APPLICATION_JSON_VALUE)
+    @ApiOperation(
+            value = "Access Reservation information for an hotel",
+            response = Reservation.class)
+    @ApiResponses({
+            @ApiResponse(code = 400, message = "Invalid Parameter Hotel id is blank or contains invalid characters "
+                    + "(expecting AlphaNumeric) or invalid date format expecting yyyy-MM-dd"),
+            @ApiResponse(code = 200, message = "Returnings Reservation")})
+    public CompletableFuture<ResponseEntity<List<Reservation>>> findByByHotelAndDate(
+            @RequestParam("hotelId")
+            @ApiParam(name="hotelId", value="Unique hotel identifier", required=true)
+            String hotelId,
+            @RequestParam(name="date", required=false)
+            @ApiParam(
+                        name="date",
+                        value="ISO value for date yyyy-MM-dd",
+                        example = "2019-06-20",
+                        required=false )
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate date) {
+        if (null == hotelId || hotelId.isEmpty()) {
+            throw new IllegalArgumentException("hotelId should not be null nor empty");
+        }
+        logger.debug("Receive request for hotelId:{}, {}", hotelId, date);
+        return withTimeout(reservationService.findByHotelAndDateAsync(hotelId, date), findByHotelAndDateTimeout)
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @ExceptionHandler(value = IllegalArgumentException.class)
+    @ResponseStatus(value = HttpStatus.BAD_REQUEST)
+    public String _errorBadRequestHandler(IllegalArgumentException ex) {
+        return "Invalid Parameter: " + ex.getMessage();
+    }
+
+    /**
+     * Converts {@link DriverException}s into HTTP 500 error codes and outputs the error message as
+     * the response body.
+     *
+     * @param e The {@link DriverException}.
+     * @return The error message to be used as response body.
+     */
+    @ExceptionHandler(DriverException.class)
+    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+    public String _errorDriverHandler(DriverException e) {
+      return e.getMessage();
+    }
+
+    /**
+     * Endpoint timeout has been reached before Cassandra answered.
+     *
+     * @param e The {@link TimeoutException}.
+     * @return The error message to be used as response body.
+     */
+    @ExceptionHandler(TimeoutException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String _errorTimeoutHandler(TimeoutException e) {
+      return "Request timed out";
+    }
+
+    /**
+     * Utility to bound the time a client waits for a response.
+     *
+     * @param stage
+     *      pending operation
+     * @param timeout
+     *      timeout for the endpoint
+     * @return
+     *      future failing with {@link TimeoutException} if not completed in time
+     */
+    private static <T> CompletableFuture<T> withTimeout(CompletionStage<T> stage, Duration timeout) {
+        // Copy as we do not want to complete the driver future ourselves
+        return stage.toCompletableFuture().copy().orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2017 Jeff Carpenter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cassandraguide.controller;
+
+import static com.cassandraguide.controller.ReservationsExportResource.APPLICATION_NDJSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.web.bind.annotation.RequestMethod.POST;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.Assert;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationBulkResult;
+import com.cassandraguide.model.ReservationRequest;
+import com.cassandraguide.repository.ReservationRepository;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+
+/**
+ * Bulk creation of reservations.
+ *
+ * The request body is a sequence of {@link ReservationRequest}, NDJSON or a JSON array, parsed one
+ * reservation at a time while the previous ones are being written. A malformed line of NDJSON fails
+ * that reservation only, the next line is parsed; a malformed JSON array stops the parsing. Writes are non blocking and at
+ * most 'reservation.api.bulk.maxInFlight' of them are pending: reading the request body pauses when
+ * the limit is reached and the client is slowed down by TCP flow control.
+ *
+ * The response is a stream of {@link ReservationBulkResult} as NDJSON, one per reservation, in completion
+ * order (not request order), with the position of the reservation in the request. Nothing is written to the
+ * response before the whole request body has been read: most clients only read the response once their
+ * request is sent, a result written while they are sending would fill the socket buffers and block both sides.
+ * Results are small and kept until then, at most 'reservation.api.bulk.maxReservations' per request: the
+ * following reservations are not read, reported by a single failed result.
+ */
+@RestController
+@Api(value = "/api/v1/reservations/bulk",
+     description = "Bulk creation of reservations")
+@RequestMapping("/api/v1/reservations")
+public class ReservationsBulkResource {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(ReservationsBulkResource.class);
+
+    /** Flush the output every N results to let the client process data. */
+    private static final int FLUSH_EVERY = 500;
+
+    /** Service implementation Injection. */
+    private ReservationRepository reservationService;
+
+    /** Parsing reservations one at a time. */
+    private ObjectReader requestReader;
+
+    /** Serializing results line by line, no flush after each value. */
+    private ObjectWriter resultWriter;
+
+    /** Max number of writes pending for a request. */
+    @Value("${reservation.api.bulk.maxInFlight:256}")
+    private int maxInFlight = 256;
+
+    /** Max number of reservations of a request, bounding the results kept while reading it. */
+    @Value("${reservation.api.bulk.maxReservations:100000}")
+    private int maxReservations = 100000;
+
+    /**
+     * Inversion of Control through constructor.
+     *
+     * @param reservationService
+     *      service implementation
+     * @param objectMapper
+     *      Jackson mapper configured by Spring Boot
+     */
+    public ReservationsBulkResource(
+            @Qualifier("reservation.repository")
+            ReservationRepository reservationService,
+            ObjectMapper objectMapper) {
+        this.reservationService = reservationService;
+        this.requestReader      = objectMapper.readerFor(ReservationRequest.class);
+        this.resultWriter       = objectMapper.writerFor(ReservationBulkResult.class)
+                                              .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                                              .withRootValueSeparator("\n");
+    }
+
+    /**
+     * Create all reservations of the request.
+     *
+     * @param body
+     *      reservations as NDJSON or JSON array, fully read before results are written
+     * @return
+     *      a {@link ReservationBulkResult} per reservation as NDJSON
+     */
+    @RequestMapping(
+            method = POST,
+            value = "/bulk",
+            consumes = { APPLICATION_NDJSON_VALUE, APPLICATION_JSON_VALUE },
+            produces = APPLICATION_NDJSON_VALUE)
+    @ApiOperation(
+            value = "Create reservations from a stream of reservation requests", response = ReservationBulkResult.class,
+            notes = "Results are streamed once the whole request has been read, reading the response while sending is "
+                  + "not required. Reservations beyond 'reservation.api.bulk.maxReservations' are not read.")
+    @ApiResponse(
+            code = 200,
+            message = "One result per reservation, in completion order")
+    public ResponseEntity<StreamingResponseBody> bulk(InputStream body) {
+        Assert.isTrue(maxInFlight > 0, "Max in flight should be greater than 0");
+        Assert.isTrue(maxReservations > 0, "Max reservations should be greater than 0");
+        return ResponseEntity.ok().body(out -> createAll(body, out));
+    }
+
+    /**
+     * Read and write reservations in a pipeline, then report them.
+     *
+     * @param in
+     *      request body
+     * @param out
+     *      response output stream
+     * @throws IOException
+     *      client went away
+     */
+    private void createAll(InputStream in, OutputStream out) throws IOException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        // Filled by driver threads, written by this thread only once the body has been read
+        BlockingQueue<ReservationBulkResult> completed = new LinkedBlockingQueue<>();
+        long submitted = 0;
+        long written   = 0;
+        BufferedInputStream body = new BufferedInputStream(in);
+        try (RequestSource requests = isJsonArray(body) ? new ArraySource(requestReader.readValues(body)) : new LineSource(body);
+             SequenceWriter results = resultWriter.writeValues(out)) {
+            while (true) {
+                long index = submitted;
+                ReservationRequest request;
+                try {
+                    if (!requests.hasNext()) {
+                        break;
+                    }
+                    if (index == maxReservations) {
+                        completed.add(ReservationBulkResult.failed(index, "More than " + maxReservations
+                                + " reservations in the request, this one and the following ones are not read"));
+                        submitted++;
+                        break;
+                    }
+                    request = requests.next();
+                } catch (JsonParseException invalidJson) {
+                    completed.add(ReservationBulkResult.failed(index, "Invalid JSON: " + invalidJson.getOriginalMessage()));
+                    submitted++;
+                    if (requests.canResync()) {
+                        continue;
+                    }
+                    // Cannot find next reservation, stop reading
+                    break;
+                } catch (JsonMappingException invalidReservation) {
+                    // Skip this one
+                    completed.add(ReservationBulkResult.failed(index, "Invalid reservation: " + invalidReservation.getOriginalMessage()));
+                    submitted++;
+                    continue;
+                }
+                acquire(inFlight);
+                submitted++;
+                create(index, request, inFlight, completed);
+            }
+            // Body read, the client reads the response: results are written as they complete
+            while (written < submitted) {
+                results.flush();
+                results.write(take(completed));
+                written++;
+                written += writeCompleted(results, completed, written);
+            }
+            results.flush();
+            if (written > 0) {
+                out.write('\n');
+            }
+        }
+        logger.debug("{} reservations processed in bulk", submitted);
+    }
+
+    /**
+     * Start the write of a reservation, its result is queued once completed and its permit released.
+     */
+    private void create(long index, ReservationRequest request, Semaphore inFlight, BlockingQueue<ReservationBulkResult> completed) {
+        try {
+            reservationService.createAsync(new Reservation(request)).whenComplete((confirmationNumber, error) -> {
+                inFlight.release();
+                completed.add(null == error
+                        ? ReservationBulkResult.created(index, confirmationNumber)
+                        : ReservationBulkResult.failed(index, errorMessage(error)));
+            });
+        } catch (RuntimeException invalid) {
+            // Rejected before any write, e.g. by validation
+            inFlight.release();
+            completed.add(ReservationBulkResult.failed(index, errorMessage(invalid)));
+        }
+    }
+
+    /**
+     * Write results already available without waiting, flush every {@link #FLUSH_EVERY} results.
+     */
+    private int writeCompleted(SequenceWriter results, BlockingQueue<ReservationBulkResult> completed, long alreadyWritten)
+    throws IOException {
+        int count = 0;
+        ReservationBulkResult result;
+        while (null != (result = completed.poll())) {
+            results.write(result);
+            count++;
+            if ((alreadyWritten + count) % FLUSH_EVERY == 0) {
+                results.flush();
+            }
+        }
+        return count;
+    }
+
+    private void acquire(Semaphore inFlight) throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for pending writes");
+        }
+    }
+
+    private ReservationBulkResult take(BlockingQueue<ReservationBulkResult> completed) throws IOException {
+        try {
+            return completed.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for pending writes");
+        }
+    }
+
+    /**
+     * Whether the body is a JSON array, NDJSON otherwise. Leading whitespace is consumed.
+     */
+    private static boolean isJsonArray(BufferedInputStream body) throws IOException {
+        int first;
+        do {
+            body.mark(1);
+            first = body.read();
+        } while (first == ' ' || first == '\t' || first == '\r' || first == '\n');
+        body.reset();
+        return first == '[';
+    }
+
+    /**
+     * Reservations of the request body, one at a time.
+     */
+    private interface RequestSource extends Closeable {
+
+        boolean hasNext() throws IOException;
+
+        /** Next reservation, consumed even when it cannot be parsed. */
+        ReservationRequest next() throws IOException;
+
+        /** Whether the next reservation can be found after a malformed one. */
+        boolean canResync();
+    }
+
+    /**
+     * JSON array (or concatenated values), parsed as a single document.
+     */
+    private static final class ArraySource implements RequestSource {
+
+        private final MappingIterator<ReservationRequest> values;
+
+        private ArraySource(MappingIterator<ReservationRequest> values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            return values.hasNextValue();
+        }
+
+        @Override
+        public ReservationRequest next() throws IOException {
+            return values.nextValue();
+        }
+
+        @Override
+        public boolean canResync() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            values.close();
+        }
+    }
+
+    /**
+     * NDJSON, each line parsed on its own: a malformed line does not prevent reading the next ones.
+     */
+    private final class LineSource implements RequestSource {
+
+        private final BufferedReader lines;
+
+        private String line;
+
+        private LineSource(InputStream body) {
+            this.lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            while (null == line) {
+                String next = lines.readLine();
+                if (null == next) {
+                    return false;
+                }
+                if (!next.isBlank()) {
+                    line = next;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public ReservationRequest next() throws IOException {
+            String current = line;
+            line = null;
+            return requestReader.readValue(current);
+        }
+
+        @Override
+        public boolean canResync() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            lines.close();
+        }
+    }
+
+    private String errorMessage(Throwable error) {
+        Throwable cause = (error instanceof CompletionException && null != error.getCause()) ? error.getCause() : error;
+        return cause.getClass().getSimpleName() + ": " + cause.getMessage();
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2017 Jeff Carpenter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cassandraguide.controller;
+
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.repository.ReservationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+
+/**
+ * Export of the full reservations table as NDJSON (one JSON document per line).
+ *
+ * Token ranges are read in parallel (see {@link ReservationRepository#scanAll}) and rows are written to
+ * the output stream page by page. While a page of a range is written its next page is already requested
+ * from Cassandra (prefetch), no further one: at most two pages are held per range in progress, heap usage
+ * is bounded by '2 x parallelism x pageSize' rows whatever the size of the table (parallelism and page size
+ * of the scans, see cassandra.scan.* and the execution profile 'scan'). When the client reads slowly the
+ * servlet output stream blocks, which stops the scan once the prefetched pages have arrived.
+ * Reservations are not sorted.
+ */
+@RestController
+@Api(value = "/api/v1/reservations/export",
+     description = "Export of all reservations")
+@RequestMapping("/api/v1/reservations")
+public class ReservationsExportResource {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(ReservationsExportResource.class);
+
+    /** Content type for newline delimited JSON. */
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    /** Flush the output every N reservations to let the client process data. */
+    private static final int FLUSH_EVERY = 500;
+
+    /** Service implementation Injection. */
+    private ReservationRepository reservationService;
+
+    /** Serializing reservations line by line, no flush after each value. */
+    private ObjectWriter lineWriter;
+
+    /**
+     * Inversion of Control through constructor.
+     *
+     * @param reservationService
+     *      service implementation
+     * @param objectMapper
+     *      Jackson mapper configured by Spring Boot
+     */
+    public ReservationsExportResource(
+            @Qualifier("reservation.repository")
+            ReservationRepository reservationService,
+            ObjectMapper objectMapper) {
+        this.reservationService = reservationService;
+        this.lineWriter         = objectMapper.writerFor(Reservation.class)
+                                              .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                                              .withRootValueSeparator("\n");
+    }
+
+    /**
+     * Stream all reservations available in the table.
+     *
+     * @return
+     *      all {@link Reservation} as NDJSON
+     */
+    @RequestMapping(
+            method = GET,
+            value = "/export",
+            produces = APPLICATION_NDJSON_VALUE)
+    @ApiOperation(
+            value = "Export all reservations available in the table as NDJSON", response = Reservation.class)
+    @ApiResponse(
+            code = 200,
+            message = "One reservation per line")
+    public ResponseEntity<StreamingResponseBody> export() {
+        logger.debug("Exporting all reservations");
+        return ResponseEntity.ok().body(this::writeAll);
+    }
+
+    /**
+     * Write reservations as they are read from Cassandra.
+     *
+     * @param out
+     *      response output stream
+     * @throws IOException
+     *      client went away
+     */
+    private void writeAll(OutputStream out) throws IOException {
+        AtomicLong count = new AtomicLong();
+        try (SequenceWriter sequenceWriter = lineWriter.writeValues(out)) {
+            // Token ranges are read in parallel, consumer is invoked by one thread at a time
+            reservationService.scanAll(reservation -> {
+                try {
+                    sequenceWriter.write(reservation);
+                    if (count.incrementAndGet() % FLUSH_EVERY == 0) {
+                        sequenceWriter.flush();
+                    }
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            });
+            // Last line is terminated as well
+            sequenceWriter.flush();
+            if (count.get() > 0) {
+                out.write('\n');
+            }
+        } catch (UncheckedIOException ioe) {
+            throw ioe.getCause();
+        }
+        logger.debug("{} reservations exported", count);
+    }
+
+}
@@ -27,12 +27,14 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -46,9 +48,13 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
 import com.cassandraguide.model.ReservationRequest;
+import com.cassandraguide.model.UpsertResult;
 import com.cassandraguide.repository.ReservationRepository;
 import com.datastax.oss.driver.api.core.DriverException;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import com.datastax.oss.driver.api.core.servererrors.ProtocolError;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiImplicitParam;
@@ -62,23 +68,30 @@ import io.swagger.annotations.ApiResponses;
  * REST Resources working with {@link Reservation}.
  * This CRUD resource leverages on standard HTTP Codes and patterns.
  * 
- * GET    /                     : Will list all Reservations
+ * GET    /                     : Will list Reservations, page by page
  * POST   /                     : Will create a new Reservation generating a confirmation Number
  * GET    /{confirmationNumber} : Will get the reservation if exist or send not found
  * DELETE /{confirmationNumber} : Will delete the reservation if exist or send not found
  * PUT    /{confirmationNumber} : Will upsert a reservation
  * GET    /findByHotelAndDate   : Search a list of reservations 
  * 
+ * Handlers are blocking, a servlet thread is held for the whole Cassandra round trip.
+ * Set 'reservation.api.async' to true to use {@link ReservationsAsyncResource} instead.
  */
 @RestController
 @Api(value = "/api/v1/reservations",  
      description = "Reservation Services Rest Resources")
 @RequestMapping("/api/v1/reservations")
+@ConditionalOnProperty(name = "reservation.api.async", havingValue = "false", matchIfMissing = true)
 public class ReservationsResource {
 
     /** Logger for the class. */
     private static final Logger logger = LoggerFactory.getLogger(ReservationsResource.class);
     
+    /** Page size when listing reservations. */
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE     = 1000;
+    
     /** Service implementation Injection. */
     private ReservationRepository reservationService;
 
@@ -90,31 +103,48 @@ public class ReservationsResource {
      */
     public ReservationsResource(
             //@Qualifier("reservation.repository.mapper")
-            @Qualifier("reservation.repository.querybuilder") 
+            @Qualifier("reservation.repository") 
             ReservationRepository reservationService) {
         this.reservationService = reservationService;
     }
     
     /**
-     * List all reservation in DB. Please not there is no implementation of paging. As such result can be
-     * really large. If you query tables with large number of rows, please use Paging.
+     * List reservations in DB one page at a time. Memory used by a request is bounded by the page size,
+     * to get next page provide the 'pagingState' returned with the current one.
      *  
+     * @param pageSize
+     *      maximum number of reservations returned
+     * @param pagingState
+     *      cursor returned with previous page
      * @return
-     *      list all {@link Reservation} available in the table 
+     *      page of {@link Reservation} available in the table 
      */
     @RequestMapping(
             method = GET,
             value = "/",
             produces = APPLICATION_JSON_VALUE)
     @ApiOperation(
-            value = "List all reservations available in the table", response = List.class)
-    @ApiResponse(
-            code = 200,
-            message = "List all reservations available in the table")
-    public ResponseEntity<List<Reservation>> findAll() {
-        logger.debug("Fetching all reservations");
-        // Returning an empty list is better than 204 code (meaning no valued expected)
-        return ResponseEntity.ok(reservationService.findAll());
+            value = "List reservations available in the table, page by page", response = ReservationPage.class)
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Page of reservations available in the table"),
+            @ApiResponse(code = 400, message = "Invalid page size or paging state")
+    })
+    public ResponseEntity<ReservationPage> findAll(
+            @RequestParam(name = "pageSize", required = false, defaultValue = "" + DEFAULT_PAGE_SIZE)
+            @ApiParam(name = "pageSize", value = "Number of reservations per page (1-" + MAX_PAGE_SIZE + ")",
+                      example = "" + DEFAULT_PAGE_SIZE, required = false)
+            int pageSize,
+            @RequestParam(name = "pagingState", required = false)
+            @ApiParam(name = "pagingState", value = "Cursor returned with previous page", required = false)
+            String pagingState) {
+        validatePageSize(pageSize);
+        logger.debug("Fetching page of {} reservations", pageSize);
+        // Returning an empty page is better than 204 code (meaning no valued expected)
+        try {
+            return ResponseEntity.ok(reservationService.findAll(pageSize, pagingState));
+        } catch (DriverException e) {
+            throw rejectedPagingState(pagingState, e);
+        }
     }
     
     /**
@@ -145,7 +175,7 @@ public class ReservationsResource {
             @RequestBody ReservationRequest reservationRequest) {
         // If reservation cannot be marshalled Spring will throw illegalArgument catch with badRequestHandler
         // As no reservation number provided, one has been generated and returned
-        String confirmationNumber = reservationService.upsert(new Reservation(reservationRequest));
+        String confirmationNumber = reservationService.create(new Reservation(reservationRequest));
         // HTTP Created spec, return target resource in 'location' header
         URI location = ServletUriComponentsBuilder.fromRequestUri(request)
                 .replacePath("/api/v1/reservations/{confirmationNumber}")
@@ -222,10 +252,8 @@ public class ReservationsResource {
             @RequestBody ReservationRequest reservation) {
         validateConfirmationNumber(confirmationNumber);
         logger.debug("Request to update reservation {}", confirmationNumber);
-        HttpStatus returnedStatus = reservationService.exists(confirmationNumber) ? 
-                HttpStatus.NO_CONTENT : HttpStatus.CREATED;
-        reservationService.upsert(new Reservation(reservation, confirmationNumber));
-        return new ResponseEntity<>(returnedStatus);
+        UpsertResult result = reservationService.upsert(new Reservation(reservation, confirmationNumber));
+        return new ResponseEntity<>(result.isCreated() ? HttpStatus.CREATED : HttpStatus.NO_CONTENT);
     }
 
     @RequestMapping(
@@ -245,12 +273,11 @@ public class ReservationsResource {
             @PathVariable(value = "confirmationNumber") String confirmationNumber) {
         validateConfirmationNumber(confirmationNumber);
         logger.debug("Fetching & Deleting reservation with confirmation number " + confirmationNumber);
-        if (!reservationService.exists(confirmationNumber)) {
+        if (!reservationService.delete(confirmationNumber).isPresent()) {
             logger.error("Unable to delete. Reservation with confirmation number " +
                     confirmationNumber + " not found");
             return ResponseEntity.notFound().build();
         }
-        reservationService.delete(confirmationNumber);
         return ResponseEntity.noContent().build();
     }
 
@@ -319,12 +346,45 @@ public class ReservationsResource {
      * @param cf
      *      confirmation number
      */
-    private void validateConfirmationNumber(String cf) {
+    static void validateConfirmationNumber(String cf) {
         if (null == cf || cf.isEmpty()) {
             throw new IllegalArgumentException("confirmationNumber should not be null nor empty");
         }
         // Should be a valid uuid AAAAAAAA-BBBB-CCCC-DDDD-EEEEEEEEEEEE or IllegalArgumentException
         UUID.fromString(cf);
     }
+    
+    /**
+     * Utility to validate page size.
+     * 
+     * @param pageSize
+     *      requested page size
+     */
+    static void validatePageSize(int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("pageSize should be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+    
+    /**
+     * Utility to tell a paging state rejected by Cassandra from other errors. The checksum of the cursor
+     * only detects accidental corruption, a forged cursor reaches Cassandra which rejects it with a
+     * protocol error or an invalid query: it is a bad request, not a server error.
+     * 
+     * @param pagingState
+     *      cursor sent by the client, can be null
+     * @param error
+     *      error of the query, possibly wrapped by a {@link CompletionException}
+     * @return
+     *      {@link IllegalArgumentException} for a rejected paging state, the error itself otherwise
+     */
+    static RuntimeException rejectedPagingState(String pagingState, Throwable error) {
+        Throwable cause = (error instanceof CompletionException && null != error.getCause()) ? error.getCause() : error;
+        if (null != pagingState && !pagingState.isEmpty()
+                && (cause instanceof ProtocolError || cause instanceof InvalidQueryException)) {
+            return new IllegalArgumentException("pagingState is not a cursor returned with a previous page", cause);
+        }
+        return (error instanceof RuntimeException) ? (RuntimeException) error : new CompletionException(error);
+    }
 
 }
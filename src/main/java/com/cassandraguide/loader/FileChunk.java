@@ -0,0 +1,195 @@
+package com.cassandraguide.loader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+/**
+ * Range of bytes of a file, [start, end), starting at the beginning of a line and ending after a
+ * line feed (or at end of file). Chunks are read independently through a memory mapping, the file
+ * is never loaded in the heap.
+ */
+public final class FileChunk {
+
+    /** Max size of a chunk, a single mapping is limited to 2GB. */
+    public static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    /** Line feed. */
+    private static final byte LF = '\n';
+
+    /** Carriage return, removed at end of line. */
+    private static final byte CR = '\r';
+
+    /** Position of the chunk in the file, starting at 0. */
+    private final int index;
+
+    /** First byte, inclusive. */
+    private final long start;
+
+    /** Last byte, exclusive. */
+    private final long end;
+
+    /**
+     * Full initialization.
+     *
+     * @param index
+     *      position of the chunk in the file
+     * @param start
+     *      first byte, inclusive
+     * @param end
+     *      last byte, exclusive
+     */
+    FileChunk(int index, long start, long end) {
+        this.index = index;
+        this.start = start;
+        this.end   = end;
+    }
+
+    /**
+     * Line consumer, the line is only valid during the call.
+     */
+    @FunctionalInterface
+    public interface LineConsumer {
+
+        /**
+         * Process a line.
+         *
+         * @param line
+         *      buffer holding the line, without line terminator
+         * @param length
+         *      number of bytes of the line, from the beginning of the buffer
+         */
+        void accept(byte[] line, int length);
+    }
+
+    /**
+     * Split a file in chunks of about 'chunkSize' bytes, each boundary is moved forward to the next line feed.
+     * The same file and chunk size always give the same chunks.
+     *
+     * @param channel
+     *      file to split
+     * @param chunkSize
+     *      target size of a chunk
+     * @return
+     *      chunks covering the whole file
+     * @throws IOException
+     *      file cannot be read
+     */
+    public static List<FileChunk> split(FileChannel channel, long chunkSize) throws IOException {
+        Assert.isTrue(chunkSize > 0 && chunkSize <= MAX_CHUNK_SIZE, "Chunk size should be in ]0, 1GB]");
+        long size = channel.size();
+        List<FileChunk> chunks = new ArrayList<>();
+        long start = 0;
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            // Move the boundary after the next line feed
+            search:
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == LF) {
+                        end += i + 1;
+                        break search;
+                    }
+                }
+                end += read;
+            }
+            Assert.isTrue(end - start <= Integer.MAX_VALUE, "A line longer than 1GB has been found");
+            chunks.add(new FileChunk(chunks.size(), start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Map the chunk and read its lines.
+     *
+     * @param channel
+     *      file of the chunk
+     * @param consumer
+     *      invoked for each line, empty lines included
+     * @throws IOException
+     *      file cannot be read
+     */
+    public void forEachLine(FileChannel channel, LineConsumer consumer) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        byte[] line = new byte[256];
+        int length = 0;
+        while (mapped.hasRemaining()) {
+            byte b = mapped.get();
+            if (b == LF) {
+                consumer.accept(line, (length > 0 && line[length - 1] == CR) ? length - 1 : length);
+                length = 0;
+            } else {
+                if (length == line.length) {
+                    byte[] larger = new byte[line.length * 2];
+                    System.arraycopy(line, 0, larger, 0, length);
+                    line = larger;
+                }
+                line[length++] = b;
+            }
+        }
+        if (length > 0) {
+            // Last line of the file, without line feed
+            consumer.accept(line, (line[length - 1] == CR) ? length - 1 : length);
+        }
+    }
+
+    /**
+     * Getter accessor for attribute 'index'.
+     *
+     * @return
+     *       current value of 'index'
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Getter accessor for attribute 'start'.
+     *
+     * @return
+     *       current value of 'start'
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * Getter accessor for attribute 'end'.
+     *
+     * @return
+     *       current value of 'end'
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * Number of bytes of the chunk.
+     *
+     * @return
+     *       end - start
+     */
+    public long size() {
+        return end - start;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "Chunk " + index + " [" + start + ", " + end + ")";
+    }
+
+}
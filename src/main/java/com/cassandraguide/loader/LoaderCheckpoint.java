@@ -0,0 +1,128 @@
+package com.cassandraguide.loader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Chunks of a file already loaded, so that an interrupted load resumes where it stopped.
+ *
+ * The checkpoint is a text file: a header identifying the input (size and chunk size, chunks
+ * would not match otherwise), then the index of each chunk fully written, one per line, appended
+ * and flushed when the chunk completes. A chunk is loaded again if the process stops before its
+ * index is written: rows are written again, which is harmless as writes are idempotent.
+ */
+public class LoaderCheckpoint implements AutoCloseable {
+
+    /** Checkpoint file. */
+    private final Path path;
+
+    /** Chunks already loaded. */
+    private final BitSet done = new BitSet();
+
+    /** Append completed chunks. */
+    private final BufferedWriter writer;
+
+    /**
+     * Open or create a checkpoint.
+     *
+     * @param path
+     *      checkpoint file
+     * @param fileSize
+     *      size of the file loaded
+     * @param chunkSize
+     *      chunk size of the load
+     * @throws IOException
+     *      checkpoint cannot be read or written
+     * @throws IllegalStateException
+     *      the checkpoint has been created for another file or chunk size
+     */
+    public LoaderCheckpoint(Path path, long fileSize, long chunkSize) throws IOException {
+        this.path     = path;
+        String header = "size=" + fileSize + " chunkSize=" + chunkSize;
+        if (Files.exists(path)) {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !header.equals(lines.get(0))) {
+                throw new IllegalStateException("Checkpoint " + path + " does not match the file to load ("
+                        + header + "), delete it to load the file from the beginning");
+            }
+            lines.stream().skip(1).filter(l -> !l.isBlank()).mapToInt(Integer::parseInt).forEach(done::set);
+            this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        } else {
+            this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            writer.write(header);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    /**
+     * Test if a chunk has been loaded by a previous execution.
+     *
+     * @param chunkIndex
+     *      index of the chunk
+     * @return
+     *      true if all rows of the chunk have been written
+     */
+    public synchronized boolean isDone(int chunkIndex) {
+        return done.get(chunkIndex);
+    }
+
+    /**
+     * Record a loaded chunk.
+     *
+     * @param chunkIndex
+     *      index of the chunk
+     * @throws IOException
+     *      checkpoint cannot be written
+     */
+    public synchronized void markDone(int chunkIndex) throws IOException {
+        done.set(chunkIndex);
+        writer.write(Integer.toString(chunkIndex));
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * Number of chunks loaded, by this execution and previous ones.
+     *
+     * @return
+     *      number of chunks loaded
+     */
+    public synchronized int countDone() {
+        return done.cardinality();
+    }
+
+    /**
+     * Close and remove the checkpoint, next execution will load the whole file.
+     *
+     * @throws IOException
+     *      checkpoint cannot be deleted
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Getter accessor for attribute 'path'.
+     *
+     * @return
+     *       current value of 'path'
+     */
+    public Path getPath() {
+        return path;
+    }
+
+}
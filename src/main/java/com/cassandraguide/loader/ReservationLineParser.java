@@ -0,0 +1,134 @@
+package com.cassandraguide.loader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import org.springframework.util.Assert;
+
+import com.cassandraguide.model.Reservation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Parse one line of a file to load into a {@link Reservation}.
+ *
+ * CSV lines hold, in this order and without quoting:
+ *
+ * confirmation_number,hotel_id,start_date,end_date,room_number,guest_id
+ *
+ * the header line, if any, is ignored. NDJSON lines are the JSON form of a {@link Reservation}, as
+ * produced by the export endpoint. The confirmation number is mandatory in both formats: loading the
+ * same file twice writes the same rows.
+ */
+public class ReservationLineParser {
+
+    /** Formats of the loaded files. */
+    public enum Format {
+
+        /** Comma separated values, one reservation per line. */
+        CSV,
+
+        /** Newline delimited JSON, one reservation per line. */
+        NDJSON;
+
+        /**
+         * Format from the extension of a file name, CSV unless the file ends with '.ndjson' or '.json'.
+         *
+         * @param fileName
+         *      name of the file to load
+         * @return
+         *      format of the file
+         */
+        public static Format fromFileName(String fileName) {
+            String lower = fileName.toLowerCase();
+            return (lower.endsWith(".ndjson") || lower.endsWith(".json")) ? NDJSON : CSV;
+        }
+    }
+
+    /** CSV Header starts with the first column. */
+    private static final String CSV_HEADER = "confirmation_number";
+
+    /** Number of CSV columns. */
+    private static final int CSV_COLUMNS = 6;
+
+    /** Format of the lines. */
+    private final Format format;
+
+    /** Reading JSON lines. */
+    private final ObjectReader jsonReader;
+
+    /**
+     * Full initialization.
+     *
+     * @param format
+     *      format of the lines
+     * @param objectMapper
+     *      Jackson mapper, JSON lines only
+     */
+    public ReservationLineParser(Format format, ObjectMapper objectMapper) {
+        Assert.notNull(format, "Format should not be null");
+        this.format     = format;
+        this.jsonReader = objectMapper.readerFor(Reservation.class);
+    }
+
+    /**
+     * Parse a line.
+     *
+     * @param line
+     *      buffer holding the line
+     * @param length
+     *      number of bytes of the line
+     * @return
+     *      the reservation, null for empty and header lines
+     * @throws RuntimeException
+     *      invalid line
+     */
+    public Reservation parse(byte[] line, int length) {
+        if (length == 0) {
+            return null;
+        }
+        Reservation reservation = (format == Format.CSV) ? parseCsv(line, length) : parseJson(line, length);
+        if (null != reservation) {
+            Assert.hasLength(reservation.getConfirmationNumber(), "ConfirmationNumber should not be null nor empty");
+        }
+        return reservation;
+    }
+
+    private Reservation parseCsv(byte[] line, int length) {
+        String text = new String(line, 0, length, StandardCharsets.UTF_8);
+        if (text.startsWith(CSV_HEADER)) {
+            return null;
+        }
+        String[] columns = text.split(",", -1);
+        Assert.isTrue(columns.length == CSV_COLUMNS, "Expecting " + CSV_COLUMNS + " columns, found " + columns.length);
+        Reservation reservation = new Reservation();
+        reservation.setConfirmationNumber(columns[0].trim());
+        reservation.setHotelId(columns[1].trim());
+        reservation.setStartDate(LocalDate.parse(columns[2].trim()));
+        reservation.setEndDate(LocalDate.parse(columns[3].trim()));
+        reservation.setRoomNumber(Short.parseShort(columns[4].trim()));
+        reservation.setGuestId(UUID.fromString(columns[5].trim()));
+        return reservation;
+    }
+
+    private Reservation parseJson(byte[] line, int length) {
+        try {
+            return jsonReader.readValue(line, 0, length);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Getter accessor for attribute 'format'.
+     *
+     * @return
+     *       current value of 'format'
+     */
+    public Format getFormat() {
+        return format;
+    }
+
+}
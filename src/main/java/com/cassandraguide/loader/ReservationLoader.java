@@ -0,0 +1,340 @@
+package com.cassandraguide.loader;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import org.springframework.util.unit.DataSize;
+
+import com.cassandraguide.loader.ReservationLineParser.Format;
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.repository.ReservationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Offline load of a file of reservations (migration, disaster recovery), started with profile 'loader':
+ *
+ * java -jar reservation-service.jar --spring.profiles.active=loader --loader.file=/data/reservations.csv
+ *
+ * The file is split in chunks ('loader.chunkSize') which are memory mapped and parsed in parallel
+ * ('loader.parallelism', all cores by default). Each reservation is written in both tables, without
+ * reading them, by {@link ReservationRepository#createAsync(Reservation)} of the implementation selected
+ * by 'reservation.repository.implementation' (prepared statements). At most 'loader.maxInFlight' writes
+ * are pending: parsing pauses when the cluster does not keep up.
+ *
+ * Loaded chunks are recorded in a {@link LoaderCheckpoint}, running the same command again after a
+ * failure or an interruption skips them. The checkpoint is deleted once all chunks have been loaded.
+ * Rows which cannot be parsed are logged and skipped, the exit code is then 1.
+ */
+@Component
+@Profile("loader")
+public class ReservationLoader implements CommandLineRunner, ExitCodeGenerator {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(ReservationLoader.class);
+
+    /** Only the first errors are logged with details, others are counted. */
+    private static final int MAX_LOGGED_ERRORS = 20;
+
+    /** Bytes in a MB, for the report. */
+    private static final double MB = 1024 * 1024;
+
+    /** Writes in both tables. */
+    private ReservationRepository reservationRepository;
+
+    /** Parsing JSON lines. */
+    private ObjectMapper objectMapper;
+
+    /** File to load. */
+    @Value("${loader.file:}")
+    private String file;
+
+    /** CSV or NDJSON, from the extension of the file if not provided. */
+    @Value("${loader.format:}")
+    private String format;
+
+    /** Target size of the chunks of the file. */
+    @Value("${loader.chunkSize:64MB}")
+    private DataSize chunkSize = DataSize.ofMegabytes(64);
+
+    /** Number of chunks parsed concurrently. */
+    @Value("${loader.parallelism:0}")
+    private int parallelism;
+
+    /** Max number of pending writes. */
+    @Value("${loader.maxInFlight:1024}")
+    private int maxInFlight = 1024;
+
+    /** Checkpoint file, next to the loaded file if not provided. */
+    @Value("${loader.checkpoint:}")
+    private String checkpointFile;
+
+    /** Rows written. */
+    private final AtomicLong rowsLoaded = new AtomicLong();
+
+    /** Rows which could not be parsed. */
+    private final AtomicLong rowsRejected = new AtomicLong();
+
+    /** Rows which could not be written. */
+    private final AtomicLong rowsFailed = new AtomicLong();
+
+    /** Bytes of the chunks processed. */
+    private final AtomicLong bytesLoaded = new AtomicLong();
+
+    /** Errors logged with details. */
+    private final AtomicInteger loggedErrors = new AtomicInteger();
+
+    /** Exit code of the application, 0 if the whole file has been loaded. */
+    private int exitCode;
+
+    /**
+     * Inversion of Control through constructor.
+     *
+     * @param reservationRepository
+     *      active implementation, without cache nor filter
+     * @param objectMapper
+     *      Jackson mapper configured by Spring Boot
+     */
+    public ReservationLoader(
+            @Qualifier("reservation.repository.active")
+            ReservationRepository reservationRepository,
+            ObjectMapper objectMapper) {
+        this.reservationRepository = reservationRepository;
+        this.objectMapper          = objectMapper;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void run(String... args) throws Exception {
+        Assert.hasLength(file, "Property 'loader.file' is required to load reservations");
+        Path path             = Paths.get(file);
+        Path checkpointPath   = Paths.get(checkpointFile.isEmpty() ? file + ".checkpoint" : checkpointFile);
+        Format fileFormat     = format.isEmpty() ? Format.fromFileName(file) : Format.valueOf(format.toUpperCase());
+        int threads           = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        ReservationLineParser parser = new ReservationLineParser(fileFormat, objectMapper);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             LoaderCheckpoint checkpoint = new LoaderCheckpoint(checkpointPath, channel.size(), chunkSize.toBytes())) {
+            List<FileChunk> chunks = FileChunk.split(channel, chunkSize.toBytes());
+            logger.info("Loading {} ({}, {} MB) in {} chunks with {} threads and {} writes in flight, checkpoint {}",
+                    path, fileFormat, String.format("%.1f", channel.size() / MB), chunks.size(), threads, maxInFlight, checkpointPath);
+
+            Semaphore inFlight = new Semaphore(maxInFlight);
+            ExecutorService parsers = Executors.newFixedThreadPool(threads, namedThreads("loader-parser"));
+            ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(namedThreads("loader-progress"));
+            long top = System.nanoTime();
+            progress.scheduleAtFixedRate(() -> report("Progress", top, checkpoint.countDone(), chunks.size()), 10, 10, TimeUnit.SECONDS);
+            List<CompletableFuture<Void>> loads = new ArrayList<>();
+            int skipped = 0;
+            try {
+                for (FileChunk chunk : chunks) {
+                    if (checkpoint.isDone(chunk.getIndex())) {
+                        skipped++;
+                        continue;
+                    }
+                    loads.add(CompletableFuture
+                            .supplyAsync(() -> loadChunk(channel, chunk, parser, inFlight, checkpoint), parsers)
+                            .thenCompose(load -> load)
+                            .exceptionally(error -> {
+                                logger.error("{} could not be loaded: {}", chunk, error.getMessage());
+                                return null;
+                            }));
+                }
+                CompletableFuture.allOf(loads.toArray(new CompletableFuture[0])).join();
+            } finally {
+                progress.shutdownNow();
+                parsers.shutdownNow();
+            }
+            if (skipped > 0) {
+                logger.info("{} chunks skipped, loaded by a previous execution", skipped);
+            }
+            report("Done", top, checkpoint.countDone(), chunks.size());
+            if (checkpoint.countDone() < chunks.size()) {
+                exitCode = 1;
+                logger.warn("File not fully loaded ({} chunks not loaded), run again to resume from {}",
+                        chunks.size() - checkpoint.countDone(), checkpointPath);
+                return;
+            }
+            // Rejected rows would be rejected again, loading the file again does not help
+            checkpoint.delete();
+            exitCode = (rowsRejected.get() == 0) ? 0 : 1;
+            logger.info("File processed, checkpoint {} removed", checkpointPath);
+            if (rowsRejected.get() > 0) {
+                logger.warn("{} rows rejected, see errors above", rowsRejected.get());
+            }
+        }
+    }
+
+    /**
+     * Parse a chunk and start the writes of its rows.
+     *
+     * @return
+     *      completes when all rows of the chunk have been written
+     */
+    private CompletableFuture<Void> loadChunk(FileChannel channel, FileChunk chunk,
+            ReservationLineParser parser, Semaphore inFlight, LoaderCheckpoint checkpoint) {
+        ChunkProgress progress = new ChunkProgress(chunk, checkpoint);
+        try {
+            chunk.forEachLine(channel, (line, length) -> {
+                Reservation reservation;
+                try {
+                    reservation = parser.parse(line, length);
+                } catch (RuntimeException invalid) {
+                    rowsRejected.incrementAndGet();
+                    logError("Invalid row in {}: {}", chunk, invalid.getMessage());
+                    return;
+                }
+                if (null == reservation) {
+                    return;
+                }
+                inFlight.acquireUninterruptibly();
+                progress.rowStarted();
+                try {
+                    reservationRepository.createAsync(reservation).whenComplete((cn, error) -> {
+                        inFlight.release();
+                        progress.rowCompleted(error);
+                    });
+                } catch (RuntimeException error) {
+                    inFlight.release();
+                    progress.rowCompleted(error);
+                }
+            });
+        } catch (IOException | RuntimeException readError) {
+            progress.chunkParsed(readError);
+            return progress.completion;
+        }
+        // All rows have been submitted
+        progress.chunkParsed(null);
+        return progress.completion;
+    }
+
+    /**
+     * Log the first errors only.
+     */
+    private void logError(String message, Object... args) {
+        if (loggedErrors.incrementAndGet() <= MAX_LOGGED_ERRORS) {
+            logger.warn(message, args);
+        } else if (loggedErrors.get() == MAX_LOGGED_ERRORS + 1) {
+            logger.warn("Too many errors, next ones are only counted");
+        }
+    }
+
+    /**
+     * Throughput since start of the execution.
+     */
+    private void report(String label, long top, int chunksDone, int chunks) {
+        double seconds = Math.max(1, System.nanoTime() - top) / 1e9;
+        logger.info("{}: {} rows loaded, {} rejected, {} failed, {}/{} chunks in {} s: {} rows/s, {} MB/s",
+                label, rowsLoaded.get(), rowsRejected.get(), rowsFailed.get(), chunksDone, chunks,
+                String.format("%.1f", seconds),
+                String.format("%.0f", rowsLoaded.get() / seconds),
+                String.format("%.1f", bytesLoaded.get() / MB / seconds));
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Pending writes of a chunk, the chunk is checkpointed when they all succeeded.
+     */
+    private class ChunkProgress {
+
+        private final FileChunk chunk;
+
+        private final LoaderCheckpoint checkpoint;
+
+        /** Rows written or being parsed, starts at 1 until the whole chunk has been parsed. */
+        private final AtomicLong pending = new AtomicLong(1);
+
+        /** At least one write failed, chunk is not checkpointed. */
+        private volatile boolean failed;
+
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        private ChunkProgress(FileChunk chunk, LoaderCheckpoint checkpoint) {
+            this.chunk      = chunk;
+            this.checkpoint = checkpoint;
+        }
+
+        private void rowStarted() {
+            pending.incrementAndGet();
+        }
+
+        /**
+         * A row has been written, or not.
+         */
+        private void rowCompleted(Throwable error) {
+            if (null == error) {
+                rowsLoaded.incrementAndGet();
+            } else {
+                failed = true;
+                rowsFailed.incrementAndGet();
+                logError("Write failed in {}: {}", chunk, error.getMessage());
+            }
+            release();
+        }
+
+        /**
+         * All rows of the chunk have been submitted, or reading stopped on error.
+         */
+        private void chunkParsed(Exception readError) {
+            if (null != readError) {
+                failed = true;
+                logger.error("Unable to read {}", chunk, readError);
+            }
+            release();
+        }
+
+        private void release() {
+            if (pending.decrementAndGet() > 0) {
+                return;
+            }
+            bytesLoaded.addAndGet(chunk.size());
+            if (failed) {
+                completion.completeExceptionally(new IllegalStateException("Some rows could not be written"));
+                return;
+            }
+            try {
+                checkpoint.markDone(chunk.getIndex());
+                completion.complete(null);
+            } catch (IOException e) {
+                completion.completeExceptionally(e);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+
+}
@@ -1,14 +1,24 @@
 package com.cassandraguide.mapper;
 
+import static com.cassandraguide.repository.ReservationRepository.PROFILE_READ;
+import static com.cassandraguide.repository.ReservationRepository.PROFILE_SCAN;
+
 import java.time.LocalDate;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 
 import com.cassandraguide.model.Reservation;
+import com.datastax.oss.driver.api.core.MappedAsyncPagingIterable;
 import com.datastax.oss.driver.api.core.PagingIterable;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
 import com.datastax.oss.driver.api.mapper.annotations.Dao;
 import com.datastax.oss.driver.api.mapper.annotations.Delete;
+import com.datastax.oss.driver.api.mapper.annotations.GetEntity;
 import com.datastax.oss.driver.api.mapper.annotations.Insert;
 import com.datastax.oss.driver.api.mapper.annotations.Query;
 import com.datastax.oss.driver.api.mapper.annotations.QueryProvider;
@@ -17,19 +27,22 @@ import com.datastax.oss.driver.api.mapper.annotations.StatementAttributes;
 
 /**
  * Using Java driver v2 mapping and annotation processing.
+ *
+ * Point reads are idempotent and executed with profile 'read' (speculative executions).
  */
 @Dao
 public interface ReservationDao {
     
     /** Search in table reservations_by_confirmation and retrieve record (if exist) by the PK. */
     @Select
-    @StatementAttributes(consistencyLevel = "ONE")
+    @StatementAttributes(consistencyLevel = "ONE", executionProfileName = PROFILE_READ, idempotence = true)
     Optional<ReservationByConfirmationEntity> findByConfirmation(String confirmationNumber);
     
     /** Accessing resulset is enough to evaluate existence leveraging on 'rs.one()' operation.*/
     @Query("SELECT confirmation_number "
          + "FROM reservation.reservations_by_confirmation "
          + "WHERE confirmation_number = :myConfNumber")
+    @StatementAttributes(executionProfileName = PROFILE_READ, idempotence = true)
     ResultSet existConfirmation(String myConfNumber);
     
     /** Insert into reservations_by_confirmation providing all values with the entity. */
@@ -68,12 +81,35 @@ public interface ReservationDao {
       entityHelpers = { ReservationByHotelDateEntity.class, ReservationByConfirmationEntity.class})
     void upsertWithQueryProvider(Reservation res);
     
+    /**
+     * Same as {@link #upsertWithQueryProvider(Reservation)}, also deleting the row of the previous
+     * version in 'reservations_by_hotel_date' when its key changed.
+     * @see ReservationDaoHelper
+     */
+    @QueryProvider(
+      providerClass = ReservationDaoHelper.class,
+      entityHelpers = { ReservationByHotelDateEntity.class, ReservationByConfirmationEntity.class})
+    void replaceWithQueryProvider(Reservation res, Reservation previous);
+    
     /**
      * Find All. For now select is limitating to single element.
      */
     @Query("SELECT * FROM ${keyspaceId}.${tableId}")
+    @StatementAttributes(executionProfileName = PROFILE_SCAN)
     PagingIterable<ReservationByConfirmationEntity> findAll();
     
+    /**
+     * Find All, statement is customized by caller to set page size and paging state.
+     */
+    @Query("SELECT * FROM ${keyspaceId}.${tableId}")
+    @StatementAttributes(executionProfileName = PROFILE_SCAN)
+    PagingIterable<ReservationByConfirmationEntity> findAll(
+            Function<BoundStatementBuilder, BoundStatementBuilder> setAttributes);
+    
+    /** Row of reservations_by_confirmation read by another statement (token range scans). */
+    @GetEntity
+    ReservationByConfirmationEntity asReservationByConfirmation(Row row);
+    
     @Delete
     void deleteReservationByConfirmation(ReservationByConfirmationEntity res);
     
@@ -89,6 +125,56 @@ public interface ReservationDao {
          + "FROM ${keyspaceId}.${tableId} "
          + "WHERE hotel_id = :hotel_id "
          + "AND start_date = :start_date")
+    @StatementAttributes(executionProfileName = PROFILE_READ, idempotence = true)
     PagingIterable<ReservationByHotelDateEntity> findByHotelAndDate(String hotel_id, LocalDate start_date);
     
+    /** Async version of {@link #findByConfirmation(String)}. */
+    @Select
+    @StatementAttributes(consistencyLevel = "ONE", executionProfileName = PROFILE_READ, idempotence = true)
+    CompletionStage<Optional<ReservationByConfirmationEntity>> findByConfirmationAsync(String confirmationNumber);
+    
+    /** Async version of {@link #existConfirmation(String)}. */
+    @Query("SELECT confirmation_number "
+         + "FROM reservation.reservations_by_confirmation "
+         + "WHERE confirmation_number = :myConfNumber")
+    @StatementAttributes(executionProfileName = PROFILE_READ, idempotence = true)
+    CompletionStage<AsyncResultSet> existConfirmationAsync(String myConfNumber);
+    
+    /** Async version of {@link #upsertWithQueryProvider(Reservation)}. */
+    @QueryProvider(
+      providerClass = ReservationDaoHelper.class,
+      entityHelpers = { ReservationByHotelDateEntity.class, ReservationByConfirmationEntity.class})
+    CompletionStage<Void> upsertWithQueryProviderAsync(Reservation res);
+    
+    /** Async version of {@link #replaceWithQueryProvider(Reservation, Reservation)}. */
+    @QueryProvider(
+      providerClass = ReservationDaoHelper.class,
+      entityHelpers = { ReservationByHotelDateEntity.class, ReservationByConfirmationEntity.class})
+    CompletionStage<Void> replaceWithQueryProviderAsync(Reservation res, Reservation previous);
+    
+    /** Async version of {@link #findAll()}, pages are fetched on demand. */
+    @Query("SELECT * FROM ${keyspaceId}.${tableId}")
+    @StatementAttributes(executionProfileName = PROFILE_SCAN)
+    CompletionStage<MappedAsyncPagingIterable<ReservationByConfirmationEntity>> findAllAsync();
+    
+    /** Async version of {@link #findAll(Function)}. */
+    @Query("SELECT * FROM ${keyspaceId}.${tableId}")
+    @StatementAttributes(executionProfileName = PROFILE_SCAN)
+    CompletionStage<MappedAsyncPagingIterable<ReservationByConfirmationEntity>> findAllAsync(
+            Function<BoundStatementBuilder, BoundStatementBuilder> setAttributes);
+    
+    /** Async version of {@link #deleteReservation(Reservation)}. */
+    @QueryProvider(
+            providerClass = ReservationDaoHelper.class,
+            entityHelpers = { ReservationByHotelDateEntity.class, ReservationByConfirmationEntity.class})
+    CompletionStage<Void> deleteReservationAsync(Reservation res);
+    
+    /** Async version of {@link #findByHotelAndDate(String, LocalDate)}. */
+    @Query("SELECT * "
+         + "FROM ${keyspaceId}.${tableId} "
+         + "WHERE hotel_id = :hotel_id "
+         + "AND start_date = :start_date")
+    @StatementAttributes(executionProfileName = PROFILE_READ, idempotence = true)
+    CompletionStage<MappedAsyncPagingIterable<ReservationByHotelDateEntity>> findByHotelAndDateAsync(String hotel_id, LocalDate start_date);
+    
 }
@@ -1,11 +1,17 @@
 package com.cassandraguide.mapper;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
 import com.cassandraguide.model.Reservation;
+import com.cassandraguide.repository.DenormalizedWriter;
+import com.cassandraguide.repository.ReservationRepository;
+import com.cassandraguide.repository.WriteStrategy;
 import com.datastax.oss.driver.api.core.CqlSession;
-import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
-import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.mapper.MapperContext;
 import com.datastax.oss.driver.api.mapper.entity.EntityHelper;
@@ -13,11 +19,15 @@ import com.datastax.oss.driver.api.mapper.entity.saving.NullSavingStrategy;
 
 /**
  * This class will help us generating a Request to insert 
- * in multiple tables using batch.
+ * in multiple tables using batch (or parallel statements, see {@link DenormalizedWriter}).
  */
 public class ReservationDaoHelper {
     
+    /** Key of the {@link DenormalizedWriter} in the custom state of the mapper. */
+    public static final String CUSTOM_STATE_WRITER = "denormalizedWriter";
+    
     private final CqlSession cqlSession;
+    private final DenormalizedWriter denormalizedWriter;
     private final EntityHelper<ReservationByConfirmationEntity> resaByConfirmationHelper;
     private final EntityHelper<ReservationByHotelDateEntity>    resaByHotelDateHelper;
     
@@ -31,6 +41,9 @@ public class ReservationDaoHelper {
             EntityHelper<ReservationByHotelDateEntity> resaHotelDate,
             EntityHelper<ReservationByConfirmationEntity> resaConfirm) {
         this.cqlSession               = context.getSession();
+        this.denormalizedWriter       = context.getCustomState().containsKey(CUSTOM_STATE_WRITER)
+                ? (DenormalizedWriter) context.getCustomState().get(CUSTOM_STATE_WRITER)
+                : new DenormalizedWriter(cqlSession, WriteStrategy.LOGGED_BATCH);
         this.resaByConfirmationHelper = resaConfirm;
         this.resaByHotelDateHelper    = resaHotelDate;
         this.psInsertReservationByHotelDate    = 
@@ -50,18 +63,75 @@ public class ReservationDaoHelper {
      *          current reservation to process
      */
     public void upsertWithQueryProvider(Reservation res) {
-        cqlSession.execute(
-            BatchStatement.builder(DefaultBatchType.LOGGED)
-                .addStatement(bind(psInsertReservationByHotelDate, 
-                                    new ReservationByHotelDateEntity(res), 
-                                    resaByHotelDateHelper))
-                .addStatement(bind(psInsertReservationByConfirmation, 
-                                    new ReservationByConfirmationEntity(res), 
-                                    resaByConfirmationHelper))
-                .build());
+        denormalizedWriter.execute(upsertBatch(res, null));
+    }
+    
+    /**
+     * Same signature as the Dao, previous version of the reservation is provided.
+     *
+     * @param res
+     *          current reservation to process
+     * @param previous
+     *          version currently stored
+     */
+    public void replaceWithQueryProvider(Reservation res, Reservation previous) {
+        denormalizedWriter.execute(upsertBatch(res, previous));
+    }
+    
+    /**
+     * Same signature as the Dao, async flavour.
+     *
+     * @param res
+     *          current reservation to process
+     * @return
+     *          completes when both tables have been written
+     */
+    public CompletionStage<Void> upsertWithQueryProviderAsync(Reservation res) {
+        return denormalizedWriter.executeAsync(upsertBatch(res, null));
+    }
+    
+    /**
+     * Same signature as the Dao, async flavour.
+     *
+     * @param res
+     *          current reservation to process
+     * @param previous
+     *          version currently stored
+     * @return
+     *          completes when both tables have been written
+     */
+    public CompletionStage<Void> replaceWithQueryProviderAsync(Reservation res, Reservation previous) {
+        return denormalizedWriter.executeAsync(upsertBatch(res, previous));
     }
     
     void deleteReservation(Reservation res) {
+       denormalizedWriter.execute(deleteBatch(res));
+    }
+    
+    CompletionStage<Void> deleteReservationAsync(Reservation res) {
+        return denormalizedWriter.executeAsync(deleteBatch(res));
+    }
+    
+    private List<BatchableStatement<?>> upsertBatch(Reservation res, Reservation previous) {
+        List<BatchableStatement<?>> batch = new ArrayList<>(3);
+        batch.add(bind(psInsertReservationByHotelDate, 
+                        new ReservationByHotelDateEntity(res), 
+                        resaByHotelDateHelper));
+        batch.add(bind(psInsertReservationByConfirmation, 
+                        new ReservationByConfirmationEntity(res), 
+                        resaByConfirmationHelper));
+        if (null != previous && ReservationRepository.isHotelDateKeyChanged(previous, res)) {
+            // Previous row is not reachable anymore with the new key
+            ReservationByHotelDateEntity r1 = new ReservationByHotelDateEntity();
+            r1.setHotelId(previous.getHotelId());
+            r1.setRoomNumber(previous.getRoomNumber());
+            r1.setStartDate(previous.getStartDate());
+            batch.add(bind(psDeleteReservationByHotelDate, r1, resaByHotelDateHelper));
+        }
+        return batch;
+    }
+    
+    private List<BatchableStatement<?>> deleteBatch(Reservation res) {
         
        // Mapping only attributes for the PK
        ReservationByHotelDateEntity r1 = new ReservationByHotelDateEntity();
@@ -72,11 +142,9 @@ public class ReservationDaoHelper {
        ReservationByConfirmationEntity r2 = new ReservationByConfirmationEntity();
        r2.setConfirmationNumber(res.getConfirmationNumber());
        
-       cqlSession.execute(
-            BatchStatement.builder(DefaultBatchType.LOGGED)
-                .addStatement(bind(psDeleteReservationByHotelDate, r1,resaByHotelDateHelper))
-                .addStatement(bind(psDeleteReservationByConfirmation, r2, resaByConfirmationHelper))
-                .build());
+       return List.of(
+                bind(psDeleteReservationByHotelDate, r1,resaByHotelDateHelper),
+                bind(psDeleteReservationByConfirmation, r2, resaByConfirmationHelper));
     }
     
     public static <T> BoundStatement bind(PreparedStatement preparedStatement, T entity, EntityHelper<T> entityHelper) {
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 Jeff Carpenter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cassandraguide.model;
+
+import java.io.Serializable;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Outcome of one reservation of a bulk ingest, either a confirmation number or an error.
+ */
+@ApiModel(value="ReservationBulkResult",
+          description="Outcome of one reservation of a bulk ingest")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReservationBulkResult implements Serializable {
+
+    /** Serial. */
+    private static final long serialVersionUID = 2706457651374562213L;
+
+    /** Position of the reservation in the request, starting at 0. */
+    @ApiModelProperty(value = "Position of the reservation in the request, starting at 0", example = "0")
+    private final long index;
+
+    /** Confirmation number when created. */
+    @ApiModelProperty(value = "Confirmation number when created", example = "b9c5a9d8-9781-4de8-a00a-601a9cd6b366")
+    private final String confirmationNumber;
+
+    /** Cause of the failure when not created. */
+    @ApiModelProperty(value = "Cause of the failure when not created")
+    private final String error;
+
+    /**
+     * Full initialization.
+     *
+     * @param index
+     *      position of the reservation in the request
+     * @param confirmationNumber
+     *      confirmation number when created
+     * @param error
+     *      cause of the failure when not created
+     */
+    private ReservationBulkResult(long index, String confirmationNumber, String error) {
+        this.index              = index;
+        this.confirmationNumber = confirmationNumber;
+        this.error              = error;
+    }
+
+    /**
+     * Reservation has been created.
+     *
+     * @param index
+     *      position of the reservation in the request
+     * @param confirmationNumber
+     *      generated confirmation number
+     * @return
+     *      the result
+     */
+    public static ReservationBulkResult created(long index, String confirmationNumber) {
+        return new ReservationBulkResult(index, confirmationNumber, null);
+    }
+
+    /**
+     * Reservation has not been created.
+     *
+     * @param index
+     *      position of the reservation in the request
+     * @param error
+     *      cause of the failure
+     * @return
+     *      the result
+     */
+    public static ReservationBulkResult failed(long index, String error) {
+        return new ReservationBulkResult(index, null, error);
+    }
+
+    /**
+     * Getter accessor for attribute 'index'.
+     *
+     * @return
+     *       current value of 'index'
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * Getter accessor for attribute 'confirmationNumber'.
+     *
+     * @return
+     *       current value of 'confirmationNumber'
+     */
+    public String getConfirmationNumber() {
+        return confirmationNumber;
+    }
+
+    /**
+     * Getter accessor for attribute 'error'.
+     *
+     * @return
+     *       current value of 'error'
+     */
+    public String getError() {
+        return error;
+    }
+
+}
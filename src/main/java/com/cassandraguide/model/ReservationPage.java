@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017 Jeff Carpenter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cassandraguide.model;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * A single page of {@link Reservation}. The paging state is the driver paging state encoded
+ * as an opaque string, provide it back to get next page. The cursor holds a checksum of the
+ * paging state: a cursor truncated or mangled by accident (copy, URL encoding) is rejected before
+ * reaching Cassandra. It is not an authentication, a cursor forged with a valid checksum is sent to
+ * Cassandra, whose rejection is answered as a bad request by the resources.
+ */
+@ApiModel(value="ReservationPage",
+          description="Page of reservations with the cursor to fetch next page")
+public class ReservationPage implements Serializable {
+
+    /** Serial. */
+    private static final long serialVersionUID = 4619376204431935837L;
+
+    /** Bytes of the checksum following the paging state in the cursor. */
+    private static final int CHECKSUM_BYTES = Integer.BYTES;
+
+    /** Reservations in the current page. */
+    @ApiModelProperty(value = "Reservations of the current page")
+    private List<Reservation> reservations = new ArrayList<>();
+
+    /** Cursor for the next page, null if this is the last page. */
+    @ApiModelProperty(value = "Opaque cursor to retrieve next page, absent on last page")
+    private String pagingState;
+
+    /**
+     * Default constructor
+     */
+    public ReservationPage() {
+    }
+
+    /**
+     * Initialization with driver paging state.
+     *
+     * @param reservations
+     *      reservations in the page
+     * @param pagingState
+     *      paging state returned by the driver, can be null
+     */
+    public ReservationPage(List<Reservation> reservations, ByteBuffer pagingState) {
+        this.reservations = reservations;
+        this.pagingState  = encodePagingState(pagingState);
+    }
+
+    /**
+     * Paging state is a binary blob, encoded in Base64 with its checksum to be used in URLs.
+     *
+     * @param pagingState
+     *      paging state returned by the driver
+     * @return
+     *      opaque cursor or null
+     */
+    public static String encodePagingState(ByteBuffer pagingState) {
+        if (null == pagingState) {
+            return null;
+        }
+        ByteBuffer copy = pagingState.duplicate();
+        byte[] bytes = new byte[copy.remaining() + CHECKSUM_BYTES];
+        int length   = copy.remaining();
+        copy.get(bytes, 0, length);
+        ByteBuffer.wrap(bytes, length, CHECKSUM_BYTES).putInt(checksum(bytes, length));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Decoding cursor sent back by client.
+     *
+     * @param pagingState
+     *      opaque cursor, can be null or empty for first page
+     * @return
+     *      paging state expected by the driver or null
+     * @throws IllegalArgumentException
+     *      invalid cursor, not Base64 or not matching its checksum
+     */
+    public static ByteBuffer decodePagingState(String pagingState) {
+        if (null == pagingState || pagingState.isEmpty()) {
+            return null;
+        }
+        byte[] bytes = Base64.getUrlDecoder().decode(pagingState);
+        int length   = bytes.length - CHECKSUM_BYTES;
+        if (length <= 0 || ByteBuffer.wrap(bytes, length, CHECKSUM_BYTES).getInt() != checksum(bytes, length)) {
+            throw new IllegalArgumentException("pagingState is not a cursor returned with a previous page");
+        }
+        return ByteBuffer.wrap(bytes, 0, length).slice();
+    }
+
+    /**
+     * Checksum of the paging state, against accidental corruption only.
+     */
+    private static int checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Getter accessor for attribute 'reservations'.
+     *
+     * @return
+     *       current value of 'reservations'
+     */
+    public List<Reservation> getReservations() {
+        return reservations;
+    }
+
+    /**
+     * Setter accessor for attribute 'reservations'.
+     * @param reservations
+     *      new value for 'reservations '
+     */
+    public void setReservations(List<Reservation> reservations) {
+        this.reservations = reservations;
+    }
+
+    /**
+     * Getter accessor for attribute 'pagingState'.
+     *
+     * @return
+     *       current value of 'pagingState'
+     */
+    public String getPagingState() {
+        return pagingState;
+    }
+
+    /**
+     * Setter accessor for attribute 'pagingState'.
+     * @param pagingState
+     *      new value for 'pagingState '
+     */
+    public void setPagingState(String pagingState) {
+        this.pagingState = pagingState;
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2017 Jeff Carpenter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.cassandraguide.model;
+
+import java.io.Serializable;
+
+/**
+ * Outcome of an upsert: confirmation number and whether the reservation has been
+ * created or an existing one has been updated.
+ */
+public class UpsertResult implements Serializable {
+
+    /** Serial. */
+    private static final long serialVersionUID = -3260312935470913871L;
+
+    /** Confirmation number of the written reservation. */
+    private final String confirmationNumber;
+
+    /** True if the reservation did not exist before. */
+    private final boolean created;
+
+    /**
+     * Full initialization.
+     *
+     * @param confirmationNumber
+     *      confirmation number of the written reservation
+     * @param created
+     *      true if the reservation did not exist before
+     */
+    public UpsertResult(String confirmationNumber, boolean created) {
+        this.confirmationNumber = confirmationNumber;
+        this.created            = created;
+    }
+
+    /**
+     * Getter accessor for attribute 'confirmationNumber'.
+     *
+     * @return
+     *       current value of 'confirmationNumber'
+     */
+    public String getConfirmationNumber() {
+        return confirmationNumber;
+    }
+
+    /**
+     * Getter accessor for attribute 'created'.
+     *
+     * @return
+     *       current value of 'created'
+     */
+    public boolean isCreated() {
+        return created;
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.cassandraguide.repository;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.util.Assert;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.UpsertResult;
+import com.github.benmanes.caffeine.cache.Cache;
+
+/**
+ * Read-through cache in front of 'reservations_by_confirmation'. Lookups by confirmation number
+ * ({@link #findByConfirmationNumber(String)}, {@link #exists(String)} and their async versions)
+ * are served from a bounded in-memory cache, other operations go to the decorated repository.
+ *
+ * Only existing reservations are cached, a missing one is always read from Cassandra. Entries are
+ * evicted on local {@link #upsert(Reservation)} and {@link #delete(String)}, changes made by other
+ * instances of the service become visible when the entry expires (TTL of the cache).
+ *
+ * A read is only cached if no eviction of its confirmation number happened since it started: a read
+ * returning the previous version of a reservation being written does not cache it back.
+ */
+public class CachingReservationRepository extends ForwardingReservationRepository {
+
+    /** Number of stripes of the versions, confirmation numbers sharing a stripe share a version. */
+    private static final int VERSION_STRIPES = 1024;
+
+    /** Reservations by confirmation number, eviction and statistics are configured by the owner. */
+    private final Cache<String, Reservation> cache;
+
+    /** Versions of the confirmation numbers by stripe, incremented before each eviction. */
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    /**
+     * Decorate a repository with a cache.
+     *
+     * @param delegate
+     *      decorated repository
+     * @param cache
+     *      cache of reservations by confirmation number
+     */
+    public CachingReservationRepository(ReservationRepository delegate, Cache<String, Reservation> cache) {
+        super(delegate);
+        Assert.notNull(cache, "Cache should not be null");
+        this.cache = cache;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean exists(String confirmationNumber) {
+        return findByConfirmationNumber(confirmationNumber).isPresent();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Reservation> findByConfirmationNumber(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        Reservation cached = cache.getIfPresent(confirmationNumber);
+        if (null != cached) {
+            return Optional.of(cached);
+        }
+        long version = version(confirmationNumber);
+        Optional<Reservation> reservation = delegate.findByConfirmationNumber(confirmationNumber);
+        reservation.ifPresent(r -> cacheIfUnchanged(confirmationNumber, version, r));
+        return reservation;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public UpsertResult upsert(Reservation reservation) {
+        evict(reservation);
+        UpsertResult result = null;
+        try {
+            result = delegate.upsert(reservation);
+            return result;
+        } finally {
+            evictWritten(reservation, null == result ? null : result.getConfirmationNumber());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String create(Reservation reservation) {
+        evict(reservation);
+        String confirmationNumber = null;
+        try {
+            confirmationNumber = delegate.create(reservation);
+            return confirmationNumber;
+        } finally {
+            evictWritten(reservation, confirmationNumber);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Reservation> delete(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        invalidate(confirmationNumber);
+        try {
+            // Not using the cached entry: if stale, the wrong 'reservations_by_hotel_date' row would be deleted
+            return delegate.delete(confirmationNumber);
+        } finally {
+            invalidate(confirmationNumber);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Boolean> existsAsync(String confirmationNumber) {
+        return findByConfirmationNumberAsync(confirmationNumber).thenApply(Optional::isPresent);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> findByConfirmationNumberAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        Reservation cached = cache.getIfPresent(confirmationNumber);
+        if (null != cached) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+        long version = version(confirmationNumber);
+        return delegate.findByConfirmationNumberAsync(confirmationNumber).thenApply(reservation -> {
+            reservation.ifPresent(r -> cacheIfUnchanged(confirmationNumber, version, r));
+            return reservation;
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<UpsertResult> upsertAsync(Reservation reservation) {
+        evict(reservation);
+        return delegate.upsertAsync(reservation).whenComplete((result, error) ->
+            evictWritten(reservation, null == result ? null : result.getConfirmationNumber()));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<String> createAsync(Reservation reservation) {
+        evict(reservation);
+        return delegate.createAsync(reservation).whenComplete((confirmationNumber, error) ->
+            evictWritten(reservation, confirmationNumber));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> deleteAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        invalidate(confirmationNumber);
+        return delegate.deleteAsync(confirmationNumber)
+                       .whenComplete((v, error) -> invalidate(confirmationNumber));
+    }
+
+    /**
+     * Evict before writing so that readers do not get the previous version during the write. Reads started
+     * before the eviction completed are not cached, evicting again once the write completed (even failed)
+     * removes the entries of reads cached before the write was applied.
+     */
+    private void evict(Reservation reservation) {
+        if (null != reservation && null != reservation.getConfirmationNumber()) {
+            invalidate(reservation.getConfirmationNumber());
+        }
+    }
+
+    /**
+     * Evict again once the write completed, also when it failed: a write failing on the client (timeout)
+     * may still be applied, a read completed meanwhile would otherwise cache the previous version.
+     */
+    private void evictWritten(Reservation reservation, String confirmationNumber) {
+        if (null != confirmationNumber) {
+            invalidate(confirmationNumber);
+        } else {
+            evict(reservation);
+        }
+    }
+
+    /**
+     * Change the version of the confirmation number, then remove it from the cache.
+     */
+    private void invalidate(String confirmationNumber) {
+        versions.incrementAndGet(stripe(confirmationNumber));
+        cache.invalidate(confirmationNumber);
+    }
+
+    /**
+     * Cache a reservation read from the decorated repository, unless evicted since the read started.
+     * Checked and cached atomically: an eviction either happens before (not cached) or after (removed).
+     */
+    private void cacheIfUnchanged(String confirmationNumber, long version, Reservation reservation) {
+        cache.asMap().compute(confirmationNumber, (key, cached) ->
+            (version(confirmationNumber) == version) ? reservation : cached);
+    }
+
+    private long version(String confirmationNumber) {
+        return versions.get(stripe(confirmationNumber));
+    }
+
+    private static int stripe(String confirmationNumber) {
+        return Math.floorMod(confirmationNumber.hashCode(), VERSION_STRIPES);
+    }
+
+}
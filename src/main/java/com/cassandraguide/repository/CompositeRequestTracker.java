@@ -0,0 +1,98 @@
+package com.cassandraguide.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.config.DriverExecutionProfile;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.tracker.RequestTracker;
+
+/**
+ * The session accepts a single {@link RequestTracker}: this one forwards every event to several trackers,
+ * in order.
+ */
+public class CompositeRequestTracker implements RequestTracker {
+
+    /** Trackers receiving the events. */
+    private final List<RequestTracker> trackers;
+
+    /**
+     * Full initialization.
+     *
+     * @param trackers
+     *      trackers receiving the events
+     */
+    public CompositeRequestTracker(RequestTracker... trackers) {
+        Assert.notEmpty(trackers, "At least one tracker is expected");
+        this.trackers = List.of(trackers);
+    }
+
+    /**
+     * Tracker of a type registered in the session, directly or in a composite.
+     *
+     * @param tracker
+     *      tracker of the session
+     * @param type
+     *      expected type
+     * @return
+     *      the tracker, empty if none of this type
+     */
+    public static <T extends RequestTracker> Optional<T> find(RequestTracker tracker, Class<T> type) {
+        if (type.isInstance(tracker)) {
+            return Optional.of(type.cast(tracker));
+        }
+        if (tracker instanceof CompositeRequestTracker) {
+            return ((CompositeRequestTracker) tracker).trackers.stream()
+                    .filter(type::isInstance).map(type::cast).findFirst();
+        }
+        return Optional.empty();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onSuccess(Request request, long latencyNanos,
+            DriverExecutionProfile executionProfile, Node node, String requestLogPrefix) {
+        for (RequestTracker tracker : trackers) {
+            tracker.onSuccess(request, latencyNanos, executionProfile, node, requestLogPrefix);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onError(Request request, Throwable error, long latencyNanos,
+            DriverExecutionProfile executionProfile, Node node, String requestLogPrefix) {
+        for (RequestTracker tracker : trackers) {
+            tracker.onError(request, error, latencyNanos, executionProfile, node, requestLogPrefix);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onNodeSuccess(Request request, long latencyNanos,
+            DriverExecutionProfile executionProfile, Node node, String requestLogPrefix) {
+        for (RequestTracker tracker : trackers) {
+            tracker.onNodeSuccess(request, latencyNanos, executionProfile, node, requestLogPrefix);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onNodeError(Request request, Throwable error, long latencyNanos,
+            DriverExecutionProfile executionProfile, Node node, String requestLogPrefix) {
+        for (RequestTracker tracker : trackers) {
+            tracker.onNodeError(request, error, latencyNanos, executionProfile, node, requestLogPrefix);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() throws Exception {
+        for (RequestTracker tracker : trackers) {
+            tracker.close();
+        }
+    }
+
+}
@@ -0,0 +1,354 @@
+package com.cassandraguide.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.springframework.util.Assert;
+
+/**
+ * Bloom filter over existing confirmation numbers. When it answers 'not present' the reservation
+ * does not exist and Cassandra does not need to be queried, when it answers 'present' the reservation
+ * probably exists and the table has to be read to be sure.
+ *
+ * Confirmation numbers are added when reservations are written. Deleted reservations cannot be removed
+ * from a Bloom filter, they stay false positives until next {@link #rebuild(Consumer)} which reloads
+ * the filter from the table. Until the first rebuild completes every confirmation number might be present.
+ *
+ * The filter only knows the confirmation numbers added through it and the ones read by the last rebuild: it
+ * is authoritative only if every writer of the table adds to it (see {@link FilteringReservationRepository}).
+ *
+ * Thread-safe, testing does not lock. Additions share a read lock, excluded by the swap of the filters at the
+ * end of a rebuild: an addition is either in the filter being loaded, or made to the new filter.
+ */
+public class ConfirmationNumberFilter {
+
+    /** Minimum number of elements the filter is sized for. */
+    private final long expectedInsertions;
+
+    /** Target false positive probability. */
+    private final double falsePositiveProbability;
+
+    /** Filter answering requests. */
+    private volatile Bits current;
+
+    /** Filter being loaded by a rebuild, receives additions as well. */
+    private volatile Bits next;
+
+    /** Additions (shared) and swap of the filters (exclusive). */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    /** Flag set when the filter has been loaded from the table once. */
+    private volatile boolean ready = false;
+
+    /** Number of confirmation numbers loaded by last rebuild. */
+    private volatile long lastRebuildCount = 0;
+
+    /** End of last rebuild. */
+    private volatile Instant lastRebuild;
+
+    /** Confirmation numbers reported as absent, each is a read avoided. */
+    private final LongAdder readsAvoided = new LongAdder();
+
+    /** Confirmation numbers reported as present but not found in the table. */
+    private final LongAdder falsePositives = new LongAdder();
+
+    /** Confirmation numbers unknown to the filter but found in the table, written by another writer. */
+    private final LongAdder unseenWrites = new LongAdder();
+
+    /**
+     * Empty filter, not ready until first {@link #rebuild(Consumer)}.
+     *
+     * @param expectedInsertions
+     *      minimum number of elements the filter is sized for
+     * @param falsePositiveProbability
+     *      target false positive probability, between 0 and 1
+     */
+    public ConfirmationNumberFilter(long expectedInsertions, double falsePositiveProbability) {
+        Assert.isTrue(expectedInsertions > 0, "Expected insertions should be greater than 0");
+        Assert.isTrue(falsePositiveProbability > 0 && falsePositiveProbability < 1,
+                "False positive probability should be between 0 and 1");
+        this.expectedInsertions       = expectedInsertions;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.current                  = new Bits(expectedInsertions, falsePositiveProbability);
+    }
+
+    /**
+     * Add a confirmation number.
+     *
+     * @param confirmationNumber
+     *      confirmation number of a written reservation
+     */
+    public void put(String confirmationNumber) {
+        swapLock.readLock().lock();
+        try {
+            current.put(confirmationNumber);
+            Bits loading = next;
+            if (null != loading) {
+                loading.put(confirmationNumber);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Test a confirmation number, a negative answer is counted as a read avoided.
+     *
+     * @param confirmationNumber
+     *      confirmation number to test
+     * @return
+     *      false if the reservation does not exist, true if it might exist
+     */
+    public boolean mightContain(String confirmationNumber) {
+        if (!ready) {
+            return true;
+        }
+        if (current.mightContain(confirmationNumber)) {
+            return true;
+        }
+        readsAvoided.increment();
+        return false;
+    }
+
+    /**
+     * Test a confirmation number without counting a read avoided, for callers reading the table anyway.
+     *
+     * @param confirmationNumber
+     *      confirmation number to test
+     * @return
+     *      false if the confirmation number is unknown to the filter, true if it might exist
+     */
+    public boolean isKnown(String confirmationNumber) {
+        return !ready || current.mightContain(confirmationNumber);
+    }
+
+    /**
+     * Report a confirmation number unknown to the filter but found in the table, and add it.
+     *
+     * @param confirmationNumber
+     *      confirmation number written by another writer since the last rebuild
+     */
+    public void recordUnseenWrite(String confirmationNumber) {
+        put(confirmationNumber);
+        unseenWrites.increment();
+    }
+
+    /**
+     * Report a confirmation number for which {@link #mightContain(String)} was true but
+     * the reservation does not exist.
+     */
+    public void recordFalsePositive() {
+        if (ready) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * Reload the filter, deleted reservations are purged. Additions performed during the rebuild
+     * are kept. Previous filter is kept if the source fails.
+     *
+     * @param source
+     *      feeding all existing confirmation numbers to the provided consumer
+     */
+    public synchronized void rebuild(Consumer<Consumer<String>> source) {
+        Bits loading = new Bits(Math.max(expectedInsertions, 2 * lastRebuildCount), falsePositiveProbability);
+        AtomicLong count = new AtomicLong();
+        swap(loading, null);
+        boolean loaded = false;
+        try {
+            source.accept(confirmationNumber -> {
+                loading.put(confirmationNumber);
+                count.incrementAndGet();
+            });
+            loaded = true;
+        } finally {
+            // No addition in progress: all of them are in the new filter
+            swap(null, loaded ? loading : null);
+        }
+        lastRebuildCount = count.get();
+        lastRebuild      = Instant.now();
+        ready            = true;
+    }
+
+    /**
+     * Change the filters with no addition in progress.
+     *
+     * @param loading
+     *      filter receiving the additions as well, null for none
+     * @param loaded
+     *      new filter answering requests, null to keep the current one
+     */
+    private void swap(Bits loading, Bits loaded) {
+        swapLock.writeLock().lock();
+        try {
+            if (null != loaded) {
+                current = loaded;
+            }
+            next = loading;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Observed false positive rate: false positives among confirmation numbers absent from the table.
+     *
+     * @return
+     *      rate between 0 and 1
+     */
+    public double getFalsePositiveRate() {
+        long fp = falsePositives.sum();
+        long total = fp + readsAvoided.sum();
+        return total == 0 ? 0 : (double) fp / total;
+    }
+
+    /**
+     * Getter accessor for attribute 'ready'.
+     *
+     * @return
+     *       current value of 'ready'
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Getter accessor for attribute 'readsAvoided'.
+     *
+     * @return
+     *       current value of 'readsAvoided'
+     */
+    public long getReadsAvoided() {
+        return readsAvoided.sum();
+    }
+
+    /**
+     * Getter accessor for attribute 'falsePositives'.
+     *
+     * @return
+     *       current value of 'falsePositives'
+     */
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * Getter accessor for attribute 'unseenWrites'.
+     *
+     * @return
+     *       current value of 'unseenWrites'
+     */
+    public long getUnseenWrites() {
+        return unseenWrites.sum();
+    }
+
+    /**
+     * Getter accessor for attribute 'lastRebuildCount'.
+     *
+     * @return
+     *       current value of 'lastRebuildCount'
+     */
+    public long getLastRebuildCount() {
+        return lastRebuildCount;
+    }
+
+    /**
+     * Getter accessor for attribute 'lastRebuild'.
+     *
+     * @return
+     *       current value of 'lastRebuild', null before first rebuild
+     */
+    public Instant getLastRebuild() {
+        return lastRebuild;
+    }
+
+    /**
+     * Size of the filter in bits.
+     *
+     * @return
+     *       number of bits
+     */
+    public long getNumBits() {
+        return current.numBits;
+    }
+
+    /**
+     * Number of hash functions.
+     *
+     * @return
+     *       number of bits set for each element
+     */
+    public int getNumHashes() {
+        return current.numHashes;
+    }
+
+    /**
+     * Bit array and hash functions. Indexes are computed with double hashing
+     * (h1 + i * h2) from a 64 bits hash of the UTF-8 bytes.
+     */
+    private static final class Bits {
+
+        private final AtomicLongArray words;
+        private final long numBits;
+        private final int numHashes;
+
+        private Bits(long expectedInsertions, double falsePositiveProbability) {
+            double ln2 = Math.log(2);
+            long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2));
+            this.words     = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6)));
+            this.numBits   = words.length() * 64L;
+            this.numHashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * ln2));
+        }
+
+        private void put(String element) {
+            long h1 = hash(element);
+            long h2 = fmix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < numHashes; i++) {
+                long index = Math.floorMod(h1 + i * h2, numBits);
+                long mask  = 1L << index;
+                int word   = (int) (index >>> 6);
+                if ((words.get(word) & mask) == 0) {
+                    words.getAndAccumulate(word, mask, (a, b) -> a | b);
+                }
+            }
+        }
+
+        private boolean mightContain(String element) {
+            long h1 = hash(element);
+            long h2 = fmix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < numHashes; i++) {
+                long index = Math.floorMod(h1 + i * h2, numBits);
+                if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** FNV-1a then Murmur3 finalizer to spread bits. */
+        private static long hash(String element) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : element.getBytes(StandardCharsets.UTF_8)) {
+                h ^= (b & 0xff);
+                h *= 0x100000001b3L;
+            }
+            return fmix(h);
+        }
+
+        private static long fmix(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+
+}
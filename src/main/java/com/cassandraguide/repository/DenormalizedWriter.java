@@ -0,0 +1,211 @@
+package com.cassandraguide.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverException;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.Statement;
+
+/**
+ * Execute the statements of a denormalized write, one per table, with the configured {@link WriteStrategy}.
+ *
+ * With {@link WriteStrategy#PARALLEL} all statements get the same client side timestamp, are flagged
+ * idempotent and are executed concurrently. The write fails if every statement failed. If only some of
+ * them failed, the write succeeds and the failed ones are handed to the {@link WriteRepairQueue}: the
+ * tables are inconsistent until they are retried.
+ *
+ * Statements without an execution profile are sent with {@link ReservationRepository#PROFILE_WRITE}.
+ */
+public class DenormalizedWriter implements AutoCloseable {
+
+    /** Connectivity to Cassandra. */
+    private final CqlSession cqlSession;
+
+    /** Logged batch or parallel statements. */
+    private final WriteStrategy strategy;
+
+    /** Retries of failed statements, PARALLEL strategy only (null otherwise). */
+    private final WriteRepairQueue repairQueue;
+
+    /** Last timestamp generated, in microseconds. */
+    private final AtomicLong lastTimestamp = new AtomicLong();
+
+    /**
+     * Writer with a default repair queue, created for the PARALLEL strategy only.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @param strategy
+     *      how statements are sent
+     */
+    public DenormalizedWriter(CqlSession cqlSession, WriteStrategy strategy) {
+        this(cqlSession, strategy, strategy == WriteStrategy.PARALLEL ? new WriteRepairQueue(cqlSession) : null);
+    }
+
+    /**
+     * Full initialization.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @param strategy
+     *      how statements are sent
+     * @param repairQueue
+     *      retries of failed statements, closed with the writer, required by the PARALLEL strategy only
+     */
+    public DenormalizedWriter(CqlSession cqlSession, WriteStrategy strategy, WriteRepairQueue repairQueue) {
+        Assert.notNull(strategy, "Write strategy should not be null");
+        Assert.isTrue(strategy != WriteStrategy.PARALLEL || null != repairQueue,
+                "Repair queue should not be null with strategy PARALLEL");
+        this.cqlSession  = cqlSession;
+        this.strategy    = strategy;
+        this.repairQueue = repairQueue;
+    }
+
+    /**
+     * Write and wait for completion.
+     *
+     * @param statements
+     *      one statement per table
+     */
+    public void execute(List<BatchableStatement<?>> statements) {
+        if (strategy == WriteStrategy.LOGGED_BATCH) {
+            RepositoryOperation operation = RepositoryOperation.current();
+            long start = System.nanoTime();
+            cqlSession.execute(loggedBatch(statements));
+            RepositoryOperation.driverResponse(operation, start, null);
+            return;
+        }
+        try {
+            executeParallel(statements).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing", e);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof DriverException)
+                ? ((DriverException) e.getCause()).copy() // stack trace of the caller
+                : new CompletionException(e.getCause());
+        }
+    }
+
+    /**
+     * Write without blocking.
+     *
+     * @param statements
+     *      one statement per table
+     * @return
+     *      completes when written, see class documentation for partial failures
+     */
+    public CompletionStage<Void> executeAsync(List<BatchableStatement<?>> statements) {
+        if (strategy == WriteStrategy.LOGGED_BATCH) {
+            RepositoryOperation operation = RepositoryOperation.current();
+            long start = System.nanoTime();
+            return cqlSession.executeAsync(loggedBatch(statements)).thenApply(rs -> {
+                RepositoryOperation.driverResponse(operation, start, null);
+                return null;
+            });
+        }
+        return executeParallel(statements);
+    }
+
+    /**
+     * Single logged batch, the profile of the batch applies to all its statements.
+     */
+    private BatchStatement loggedBatch(List<BatchableStatement<?>> statements) {
+        return BatchStatement.newInstance(DefaultBatchType.LOGGED, statements)
+                             .setExecutionProfileName(ReservationRepository.PROFILE_WRITE);
+    }
+
+    /**
+     * Write profile, unless the caller has chosen one.
+     */
+    private static Statement<?> withWriteProfile(Statement<?> statement) {
+        if (null != statement.getExecutionProfileName() || null != statement.getExecutionProfile()) {
+            return statement;
+        }
+        return statement.setExecutionProfileName(ReservationRepository.PROFILE_WRITE);
+    }
+
+    /**
+     * Send all statements, then hand the failed ones to the repair queue if at least one succeeded.
+     */
+    private CompletableFuture<Void> executeParallel(List<BatchableStatement<?>> statements) {
+        long timestamp = nextTimestamp();
+        RepositoryOperation operation = RepositoryOperation.current();
+        long start = System.nanoTime();
+        List<Statement<?>> sent = new ArrayList<>(statements.size());
+        List<CompletableFuture<Throwable>> results = new ArrayList<>(statements.size());
+        for (BatchableStatement<?> statement : statements) {
+            Statement<?> leg = withWriteProfile(statement).setIdempotent(true).setQueryTimestamp(timestamp);
+            sent.add(leg);
+            results.add(cqlSession.executeAsync(leg).toCompletableFuture()
+                                  .handle((rs, error) -> error));
+        }
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).thenApply(v -> {
+            // Statements are concurrent, the wait is the slowest of them
+            RepositoryOperation.driverResponse(operation, start, null);
+            List<Throwable> errors = new ArrayList<>();
+            results.forEach(r -> errors.add(r.join()));
+            if (errors.stream().allMatch(e -> e != null)) {
+                // Nothing written, the caller can retry the whole write
+                throw new CompletionException(unwrap(errors.get(0)));
+            }
+            for (int i = 0; i < errors.size(); i++) {
+                if (null != errors.get(i)) {
+                    repairQueue.submit(sent.get(i), unwrap(errors.get(i)));
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Strictly increasing microseconds, so that two writes of the same row by this writer are applied in order.
+     */
+    private long nextTimestamp() {
+        return lastTimestamp.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis() * 1000));
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return (error instanceof CompletionException && null != error.getCause()) ? error.getCause() : error;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        if (null != repairQueue) {
+            repairQueue.close();
+        }
+    }
+
+    /**
+     * Getter accessor for attribute 'strategy'.
+     *
+     * @return
+     *       current value of 'strategy'
+     */
+    public WriteStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Getter accessor for attribute 'repairQueue'.
+     *
+     * @return
+     *       current value of 'repairQueue', null unless the strategy is PARALLEL
+     */
+    public WriteRepairQueue getRepairQueue() {
+        return repairQueue;
+    }
+
+}
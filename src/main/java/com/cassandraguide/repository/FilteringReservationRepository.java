@@ -0,0 +1,264 @@
+package com.cassandraguide.repository;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.Assert;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.UpsertResult;
+
+/**
+ * Answer lookups of unknown confirmation numbers without querying Cassandra, using a
+ * {@link ConfirmationNumberFilter}. Freshly generated confirmation numbers (PUT of a new reservation)
+ * are not in the filter, {@link #exists(String)} returns false and, when the filter is authoritative,
+ * {@link #upsert(Reservation)} writes without reading the previous version: a single interaction with
+ * Cassandra.
+ *
+ * The filter only knows the reservations written through this instance and the ones read by its last
+ * rebuild: reservations written by other instances of the service, the loader or cqlsh are unknown until
+ * the next rebuild. Unless the filter is authoritative (every writer of the table goes through it, e.g. a
+ * single instance), lookups of unknown confirmation numbers read through to Cassandra and the numbers
+ * found are added to the filter.
+ */
+public class FilteringReservationRepository extends ForwardingReservationRepository {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(FilteringReservationRepository.class);
+
+    /** Existing confirmation numbers. */
+    private final ConfirmationNumberFilter filter;
+
+    /** Whether every write of the table goes through the filter, unknown numbers are then absent. */
+    private final boolean authoritative;
+
+    /**
+     * Decorate a repository with a filter which is not authoritative.
+     *
+     * @param delegate
+     *      decorated repository
+     * @param filter
+     *      filter of existing confirmation numbers
+     */
+    public FilteringReservationRepository(ReservationRepository delegate, ConfirmationNumberFilter filter) {
+        this(delegate, filter, false);
+    }
+
+    /**
+     * Decorate a repository with a filter.
+     *
+     * @param delegate
+     *      decorated repository
+     * @param filter
+     *      filter of existing confirmation numbers
+     * @param authoritative
+     *      whether every write of the table goes through this filter: lookups of unknown numbers
+     *      are then answered without reading Cassandra
+     */
+    public FilteringReservationRepository(ReservationRepository delegate, ConfirmationNumberFilter filter,
+            boolean authoritative) {
+        super(delegate);
+        Assert.notNull(filter, "Filter should not be null");
+        this.filter        = filter;
+        this.authoritative = authoritative;
+    }
+
+    /**
+     * Reload the filter from the table, deleted reservations are purged. First execution at startup
+     * does not delay the startup, the filter is not used until loaded.
+     */
+    @Scheduled(
+            initialDelayString = "${reservation.filter.initialDelay:PT0S}",
+            fixedDelayString   = "${reservation.filter.rebuildPeriod:PT1H}")
+    public void rebuildFilter() {
+        long top = System.currentTimeMillis();
+        try {
+            filter.rebuild(sink -> delegate.scanAll(r -> sink.accept(r.getConfirmationNumber())));
+            logger.info("Confirmation number filter rebuilt with {} entries in {} ms",
+                    filter.getLastRebuildCount(), System.currentTimeMillis() - top);
+        } catch (RuntimeException e) {
+            logger.error("Unable to rebuild confirmation number filter, keeping previous one", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean exists(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        boolean known = isKnown(confirmationNumber);
+        if (!known && authoritative) {
+            return false;
+        }
+        return recordResult(confirmationNumber, known, delegate.exists(confirmationNumber));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Reservation> findByConfirmationNumber(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        boolean known = isKnown(confirmationNumber);
+        if (!known && authoritative) {
+            return Optional.empty();
+        }
+        Optional<Reservation> reservation = delegate.findByConfirmationNumber(confirmationNumber);
+        recordResult(confirmationNumber, known, reservation.isPresent());
+        return reservation;
+    }
+
+    /**
+     * A reservation unknown to an authoritative filter is created without reading the previous version.
+     * Otherwise the previous version is read: it might have been written elsewhere, with another hotel or
+     * start date whose row of 'reservations_by_hotel_date' has to be deleted.
+     */
+    @Override
+    public UpsertResult upsert(Reservation reservation) {
+        Assert.notNull(reservation, "Reservation object should not be null nor empty");
+        String confirmationNumber = reservation.getConfirmationNumber();
+        boolean known = null != confirmationNumber && isKnown(confirmationNumber);
+        if (null != confirmationNumber && !known && authoritative) {
+            return new UpsertResult(create(reservation), true);
+        }
+        putBeforeWrite(reservation);
+        UpsertResult result = delegate.upsert(reservation);
+        filter.put(result.getConfirmationNumber());
+        recordResult(result.getConfirmationNumber(), known, !result.isCreated());
+        return result;
+    }
+
+    /**
+     * Confirmation number is added before the write so that it can be read during the write, and after
+     * so that it is not lost if the filter is rebuilt meanwhile.
+     */
+    @Override
+    public String create(Reservation reservation) {
+        putBeforeWrite(reservation);
+        String confirmationNumber = delegate.create(reservation);
+        filter.put(confirmationNumber);
+        return confirmationNumber;
+    }
+
+    /**
+     * Always executed by the implementation, even if the filter is authoritative: a delete skipped on a
+     * wrong answer of the filter would leave the reservation in the table.
+     */
+    @Override
+    public Optional<Reservation> delete(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        boolean known = filter.isKnown(confirmationNumber);
+        Optional<Reservation> deleted = delegate.delete(confirmationNumber);
+        recordResult(confirmationNumber, known, deleted.isPresent());
+        return deleted;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Boolean> existsAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        boolean known = isKnown(confirmationNumber);
+        if (!known && authoritative) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return delegate.existsAsync(confirmationNumber)
+                .thenApply(exists -> recordResult(confirmationNumber, known, exists));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> findByConfirmationNumberAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        boolean known = isKnown(confirmationNumber);
+        if (!known && authoritative) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return delegate.findByConfirmationNumberAsync(confirmationNumber).thenApply(reservation -> {
+            recordResult(confirmationNumber, known, reservation.isPresent());
+            return reservation;
+        });
+    }
+
+    /**
+     * Same as {@link #delete(String)}, always executed by the implementation.
+     */
+    @Override
+    public CompletionStage<Optional<Reservation>> deleteAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        boolean known = filter.isKnown(confirmationNumber);
+        return delegate.deleteAsync(confirmationNumber).thenApply(deleted -> {
+            recordResult(confirmationNumber, known, deleted.isPresent());
+            return deleted;
+        });
+    }
+
+    /**
+     * Same as {@link #upsert(Reservation)}, blind write only when the filter is authoritative.
+     */
+    @Override
+    public CompletionStage<UpsertResult> upsertAsync(Reservation reservation) {
+        Assert.notNull(reservation, "Reservation object should not be null nor empty");
+        String confirmationNumber = reservation.getConfirmationNumber();
+        boolean known = null != confirmationNumber && isKnown(confirmationNumber);
+        if (null != confirmationNumber && !known && authoritative) {
+            return createAsync(reservation).thenApply(cn -> new UpsertResult(cn, true));
+        }
+        putBeforeWrite(reservation);
+        return delegate.upsertAsync(reservation).thenApply(result -> {
+            filter.put(result.getConfirmationNumber());
+            recordResult(result.getConfirmationNumber(), known, !result.isCreated());
+            return result;
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<String> createAsync(Reservation reservation) {
+        putBeforeWrite(reservation);
+        return delegate.createAsync(reservation).thenApply(cn -> {
+            filter.put(cn);
+            return cn;
+        });
+    }
+
+    /**
+     * Generated confirmation numbers are only known after the write.
+     */
+    private void putBeforeWrite(Reservation reservation) {
+        if (null != reservation && null != reservation.getConfirmationNumber()) {
+            filter.put(reservation.getConfirmationNumber());
+        }
+    }
+
+    /**
+     * Test the filter, a read avoided is only counted when the filter is authoritative.
+     */
+    private boolean isKnown(String confirmationNumber) {
+        return authoritative ? filter.mightContain(confirmationNumber) : filter.isKnown(confirmationNumber);
+    }
+
+    /**
+     * Result of a read: known and absent is a false positive, unknown and present a write made elsewhere.
+     */
+    private boolean recordResult(String confirmationNumber, boolean known, boolean exists) {
+        if (!known) {
+            if (exists) {
+                filter.recordUnseenWrite(confirmationNumber);
+            }
+            return exists;
+        }
+        return recordResult(exists);
+    }
+
+    /**
+     * Filter said 'might exist', count a false positive when it does not.
+     */
+    private boolean recordResult(boolean exists) {
+        if (!exists) {
+            filter.recordFalsePositive();
+        }
+        return exists;
+    }
+
+}
@@ -0,0 +1,228 @@
+package com.cassandraguide.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import org.springframework.util.Assert;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
+import com.cassandraguide.model.UpsertResult;
+
+/**
+ * Commit a {@link RepositoryOperationEvent} for each operation of the decorated repository, with the key
+ * (confirmation number, or hotel and date) so that latency outliers of a recording point to their data.
+ *
+ * When the event is not enabled (no recording, or disabled in the settings of the recording) the operation
+ * is invoked directly: the cost is a check of the event type, the event is not even allocated once compiled.
+ * {@link #streamAll()} returns lazily and is not recorded.
+ */
+public class FlightRecorderReservationRepository extends ForwardingReservationRepository {
+
+    /** Name of the decorated implementation. */
+    private final String implementation;
+
+    /**
+     * Decorate a repository with Flight Recorder events.
+     *
+     * @param delegate
+     *      decorated repository
+     * @param implementation
+     *      name of the decorated implementation
+     */
+    public FlightRecorderReservationRepository(ReservationRepository delegate, String implementation) {
+        super(delegate);
+        Assert.hasLength(implementation, "Implementation should not be null nor empty");
+        this.implementation = implementation;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean exists(String confirmationNumber) {
+        return record("exists", confirmationNumber, () -> delegate.exists(confirmationNumber), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Reservation> findByConfirmationNumber(String confirmationNumber) {
+        return record("findByConfirmationNumber", confirmationNumber,
+                () -> delegate.findByConfirmationNumber(confirmationNumber), r -> r.isPresent() ? 1 : 0);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public UpsertResult upsert(Reservation reservation) {
+        return record("upsert", reservation.getConfirmationNumber(), () -> delegate.upsert(reservation), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String create(Reservation reservation) {
+        return record("create", reservation.getConfirmationNumber(), () -> delegate.create(reservation), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Reservation> findAll() {
+        return record("findAll", null, () -> delegate.findAll(), List::size);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ReservationPage findAll(int pageSize, String pagingState) {
+        return record("findAllPage", pagingState, () -> delegate.findAll(pageSize, pagingState),
+                page -> page.getReservations().size());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void scanAll(Consumer<Reservation> consumer) {
+        int[] rows = new int[1];
+        record("scanAll", null, () -> {
+            delegate.scanAll(r -> {
+                rows[0]++; // consumer is never invoked concurrently
+                consumer.accept(r);
+            });
+            return rows;
+        }, r -> r[0]);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Reservation> delete(String confirmationNumber) {
+        return record("delete", confirmationNumber, () -> delegate.delete(confirmationNumber), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Reservation> findByHotelAndDate(String hotelId, LocalDate date) {
+        return record("findByHotelAndDate", hotelId + "/" + date, () -> delegate.findByHotelAndDate(hotelId, date), List::size);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Boolean> existsAsync(String confirmationNumber) {
+        return recordAsync("existsAsync", confirmationNumber, () -> delegate.existsAsync(confirmationNumber), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> findByConfirmationNumberAsync(String confirmationNumber) {
+        return recordAsync("findByConfirmationNumberAsync", confirmationNumber,
+                () -> delegate.findByConfirmationNumberAsync(confirmationNumber), r -> r.isPresent() ? 1 : 0);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<UpsertResult> upsertAsync(Reservation reservation) {
+        return recordAsync("upsertAsync", reservation.getConfirmationNumber(), () -> delegate.upsertAsync(reservation), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<String> createAsync(Reservation reservation) {
+        return recordAsync("createAsync", reservation.getConfirmationNumber(), () -> delegate.createAsync(reservation), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<List<Reservation>> findAllAsync() {
+        return recordAsync("findAllAsync", null, () -> delegate.findAllAsync(), List::size);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<ReservationPage> findAllAsync(int pageSize, String pagingState) {
+        return recordAsync("findAllPageAsync", pagingState, () -> delegate.findAllAsync(pageSize, pagingState),
+                page -> page.getReservations().size());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> deleteAsync(String confirmationNumber) {
+        return recordAsync("deleteAsync", confirmationNumber, () -> delegate.deleteAsync(confirmationNumber), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<List<Reservation>> findByHotelAndDateAsync(String hotelId, LocalDate date) {
+        return recordAsync("findByHotelAndDateAsync", hotelId + "/" + date,
+                () -> delegate.findByHotelAndDateAsync(hotelId, date), List::size);
+    }
+
+    /**
+     * Record a blocking operation.
+     *
+     * @param operation
+     *      name of the operation
+     * @param key
+     *      confirmation number, hotel and date or paging state, may be null
+     * @param call
+     *      invocation of the delegate
+     * @param rowCount
+     *      number of reservations of the result, null if the operation does not return rows
+     */
+    private <T> T record(String operation, String key, Supplier<T> call, ToIntFunction<T> rowCount) {
+        RepositoryOperationEvent event = new RepositoryOperationEvent();
+        if (!event.isEnabled()) {
+            return call.get();
+        }
+        long start = System.nanoTime();
+        event.begin();
+        RepositoryOperation current = RepositoryOperation.enter();
+        try {
+            T result = call.get();
+            complete(event, operation, key, start, current, result, rowCount, null);
+            return result;
+        } catch (RuntimeException e) {
+            complete(event, operation, key, start, current, null, null, e);
+            throw e;
+        } finally {
+            current.exit();
+        }
+    }
+
+    /**
+     * Record an async operation, committed on completion.
+     */
+    private <T> CompletionStage<T> recordAsync(String operation, String key,
+            Supplier<CompletionStage<T>> call, ToIntFunction<T> rowCount) {
+        RepositoryOperationEvent event = new RepositoryOperationEvent();
+        if (!event.isEnabled()) {
+            return call.get();
+        }
+        long start = System.nanoTime();
+        event.begin();
+        RepositoryOperation current = RepositoryOperation.enter();
+        try {
+            return call.get().whenComplete((result, error) ->
+                    complete(event, operation, key, start, current, result, rowCount, error));
+        } catch (RuntimeException e) {
+            complete(event, operation, key, start, current, null, null, e);
+            throw e;
+        } finally {
+            current.exit();
+        }
+    }
+
+    private <T> void complete(RepositoryOperationEvent event, String operation, String key, long start,
+            RepositoryOperation current, T result, ToIntFunction<T> rowCount, Throwable error) {
+        event.implementation = implementation;
+        event.operation      = operation;
+        event.key            = key;
+        if (null != error) {
+            Throwable cause = (error instanceof CompletionException && null != error.getCause()) ? error.getCause() : error;
+            event.error = cause.getClass().getSimpleName();
+        } else if (null != rowCount) {
+            event.rows = rowCount.applyAsInt(result);
+        }
+        event.complete(System.nanoTime() - start, current);
+    }
+
+}
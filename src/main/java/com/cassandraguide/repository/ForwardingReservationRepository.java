@@ -0,0 +1,144 @@
+package com.cassandraguide.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.springframework.util.Assert;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
+import com.cassandraguide.model.UpsertResult;
+
+/**
+ * Base class for decorators of {@link ReservationRepository}: every operation is forwarded
+ * to the delegate, subclasses override the ones they enhance.
+ */
+public abstract class ForwardingReservationRepository implements ReservationRepository {
+
+    /** Decorated repository. */
+    protected final ReservationRepository delegate;
+
+    /**
+     * Decorate a repository.
+     *
+     * @param delegate
+     *      decorated repository
+     */
+    protected ForwardingReservationRepository(ReservationRepository delegate) {
+        Assert.notNull(delegate, "Decorated repository should not be null");
+        this.delegate = delegate;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean exists(String confirmationNumber) {
+        return delegate.exists(confirmationNumber);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Reservation> findByConfirmationNumber(String confirmationNumber) {
+        return delegate.findByConfirmationNumber(confirmationNumber);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public UpsertResult upsert(Reservation reservation) {
+        return delegate.upsert(reservation);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String create(Reservation reservation) {
+        return delegate.create(reservation);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Reservation> findAll() {
+        return delegate.findAll();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ReservationPage findAll(int pageSize, String pagingState) {
+        return delegate.findAll(pageSize, pagingState);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Stream<Reservation> streamAll() {
+        return delegate.streamAll();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void scanAll(Consumer<Reservation> consumer) {
+        delegate.scanAll(consumer);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Reservation> delete(String confirmationNumber) {
+        return delegate.delete(confirmationNumber);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Reservation> findByHotelAndDate(String hotelId, LocalDate date) {
+        return delegate.findByHotelAndDate(hotelId, date);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Boolean> existsAsync(String confirmationNumber) {
+        return delegate.existsAsync(confirmationNumber);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> findByConfirmationNumberAsync(String confirmationNumber) {
+        return delegate.findByConfirmationNumberAsync(confirmationNumber);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<UpsertResult> upsertAsync(Reservation reservation) {
+        return delegate.upsertAsync(reservation);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<String> createAsync(Reservation reservation) {
+        return delegate.createAsync(reservation);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<List<Reservation>> findAllAsync() {
+        return delegate.findAllAsync();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<ReservationPage> findAllAsync(int pageSize, String pagingState) {
+        return delegate.findAllAsync(pageSize, pagingState);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> deleteAsync(String confirmationNumber) {
+        return delegate.deleteAsync(confirmationNumber);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<List<Reservation>> findByHotelAndDateAsync(String hotelId, LocalDate date) {
+        return delegate.findByHotelAndDateAsync(hotelId, date);
+    }
+
+}
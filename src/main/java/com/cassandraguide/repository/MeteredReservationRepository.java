@@ -0,0 +1,336 @@
+package com.cassandraguide.repository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+import org.springframework.util.Assert;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
+import com.cassandraguide.model.UpsertResult;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Duration of each operation of the decorated repository (timer 'reservation.repository') and number of
+ * reservations returned by the reads of several rows (summary 'reservation.repository.rows'). Meters are
+ * tagged with the implementation and the operation, timers with the exception as well ('None' on success).
+ *
+ * The duration of successful operations is split between the time waiting for the driver, as reported by
+ * the implementation to the {@link RepositoryOperation} (timer 'reservation.repository.driver'), and the rest,
+ * mostly mapping rows (timer 'reservation.repository.mapping'). Async operations are timed until their
+ * completion, {@link #streamAll()} until the stream is closed and without split: its pages are fetched while
+ * the caller iterates.
+ */
+public class MeteredReservationRepository extends ForwardingReservationRepository {
+
+    /** Timer of the operations. */
+    public static final String METRIC_DURATION = "reservation.repository";
+
+    /** Distribution of the number of reservations returned. */
+    public static final String METRIC_ROWS = "reservation.repository.rows";
+
+    /** Time of the successful operations waiting for the driver. */
+    public static final String METRIC_DRIVER_WAIT = "reservation.repository.driver";
+
+    /** Time of the successful operations outside the driver. */
+    public static final String METRIC_MAPPING = "reservation.repository.mapping";
+
+    /** Exception tag of successful operations, as for the HTTP requests. */
+    private static final String NO_EXCEPTION = "None";
+
+    /** Registry of the meters. */
+    private final MeterRegistry meterRegistry;
+
+    /** Tag of all meters. */
+    private final String implementation;
+
+    /** Meters of successful operations, by operation. */
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /** Number of reservations returned, by operation. */
+    private final ConcurrentMap<String, DistributionSummary> rows = new ConcurrentHashMap<>();
+
+    /** Driver wait of successful operations, by operation. */
+    private final ConcurrentMap<String, Timer> driverWaitTimers = new ConcurrentHashMap<>();
+
+    /** Time outside the driver of successful operations, by operation. */
+    private final ConcurrentMap<String, Timer> mappingTimers = new ConcurrentHashMap<>();
+
+    /**
+     * Decorate a repository with metrics.
+     *
+     * @param delegate
+     *      decorated repository
+     * @param meterRegistry
+     *      registry of the meters
+     * @param implementation
+     *      name of the decorated implementation, tag 'implementation'
+     */
+    public MeteredReservationRepository(ReservationRepository delegate, MeterRegistry meterRegistry, String implementation) {
+        super(delegate);
+        Assert.notNull(meterRegistry, "Meter registry should not be null");
+        Assert.hasLength(implementation, "Implementation should not be null nor empty");
+        this.meterRegistry  = meterRegistry;
+        this.implementation = implementation;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean exists(String confirmationNumber) {
+        return time("exists", () -> delegate.exists(confirmationNumber), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Reservation> findByConfirmationNumber(String confirmationNumber) {
+        return time("findByConfirmationNumber", () -> delegate.findByConfirmationNumber(confirmationNumber), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public UpsertResult upsert(Reservation reservation) {
+        return time("upsert", () -> delegate.upsert(reservation), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String create(Reservation reservation) {
+        return time("create", () -> delegate.create(reservation), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Reservation> findAll() {
+        return time("findAll", () -> delegate.findAll(), List::size);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ReservationPage findAll(int pageSize, String pagingState) {
+        return time("findAllPage", () -> delegate.findAll(pageSize, pagingState), page -> page.getReservations().size());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Stream<Reservation> streamAll() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Stream<Reservation> reservations;
+        try {
+            reservations = delegate.streamAll();
+        } catch (RuntimeException e) {
+            sample.stop(timer("streamAll", e));
+            throw e;
+        }
+        LongAdder count = new LongAdder();
+        return reservations.peek(r -> count.increment()).onClose(() -> {
+            sample.stop(timer("streamAll", null));
+            rows("streamAll").record(count.sum());
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void scanAll(Consumer<Reservation> consumer) {
+        LongAdder count = new LongAdder();
+        time("scanAll", () -> {
+            delegate.scanAll(r -> {
+                count.increment();
+                consumer.accept(r);
+            });
+            return null;
+        }, null);
+        rows("scanAll").record(count.sum());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Reservation> delete(String confirmationNumber) {
+        return time("delete", () -> delegate.delete(confirmationNumber), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Reservation> findByHotelAndDate(String hotelId, LocalDate date) {
+        return time("findByHotelAndDate", () -> delegate.findByHotelAndDate(hotelId, date), List::size);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Boolean> existsAsync(String confirmationNumber) {
+        return timeAsync("existsAsync", () -> delegate.existsAsync(confirmationNumber), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> findByConfirmationNumberAsync(String confirmationNumber) {
+        return timeAsync("findByConfirmationNumberAsync", () -> delegate.findByConfirmationNumberAsync(confirmationNumber), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<UpsertResult> upsertAsync(Reservation reservation) {
+        return timeAsync("upsertAsync", () -> delegate.upsertAsync(reservation), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<String> createAsync(Reservation reservation) {
+        return timeAsync("createAsync", () -> delegate.createAsync(reservation), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<List<Reservation>> findAllAsync() {
+        return timeAsync("findAllAsync", () -> delegate.findAllAsync(), List::size);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<ReservationPage> findAllAsync(int pageSize, String pagingState) {
+        return timeAsync("findAllPageAsync", () -> delegate.findAllAsync(pageSize, pagingState),
+                page -> page.getReservations().size());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> deleteAsync(String confirmationNumber) {
+        return timeAsync("deleteAsync", () -> delegate.deleteAsync(confirmationNumber), null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<List<Reservation>> findByHotelAndDateAsync(String hotelId, LocalDate date) {
+        return timeAsync("findByHotelAndDateAsync", () -> delegate.findByHotelAndDateAsync(hotelId, date), List::size);
+    }
+
+    /**
+     * Time a blocking operation.
+     *
+     * @param operation
+     *      tag 'operation'
+     * @param call
+     *      invocation of the delegate
+     * @param rowCount
+     *      number of reservations of the result, null if the operation does not return several rows
+     */
+    private <T> T time(String operation, Supplier<T> call, ToIntFunction<T> rowCount) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        RepositoryOperation current = RepositoryOperation.enter();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            sample.stop(timer(operation, e));
+            throw e;
+        } finally {
+            current.exit();
+        }
+        split(operation, current, sample.stop(timer(operation, null)));
+        if (null != rowCount) {
+            rows(operation).record(rowCount.applyAsInt(result));
+        }
+        return result;
+    }
+
+    /**
+     * Time an async operation until its completion.
+     */
+    private <T> CompletionStage<T> timeAsync(String operation, Supplier<CompletionStage<T>> call, ToIntFunction<T> rowCount) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        RepositoryOperation current = RepositoryOperation.enter();
+        CompletionStage<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            sample.stop(timer(operation, e));
+            throw e;
+        } finally {
+            current.exit();
+        }
+        return result.whenComplete((value, error) -> {
+            long elapsedNanos = sample.stop(timer(operation, error));
+            if (null == error) {
+                split(operation, current, elapsedNanos);
+                if (null != rowCount) {
+                    rows(operation).record(rowCount.applyAsInt(value));
+                }
+            }
+        });
+    }
+
+    /**
+     * Split the duration of a successful operation, the time outside the driver is the mapping time.
+     */
+    private void split(String operation, RepositoryOperation current, long elapsedNanos) {
+        long driverWait = Math.min(current.getDriverWaitNanos(), elapsedNanos);
+        driverWaitTimers.computeIfAbsent(operation, op -> phaseTimer(METRIC_DRIVER_WAIT, op,
+                "Time of the operations of the reservation repository waiting for the driver"))
+                        .record(driverWait, TimeUnit.NANOSECONDS);
+        mappingTimers.computeIfAbsent(operation, op -> phaseTimer(METRIC_MAPPING, op,
+                "Time of the operations of the reservation repository outside the driver, mostly mapping rows"))
+                     .record(elapsedNanos - driverWait, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Timer of an operation, successful ones are cached: they are the hot path.
+     */
+    private Timer timer(String operation, Throwable error) {
+        if (null == error) {
+            return timers.computeIfAbsent(operation, op -> timerBuilder(op, NO_EXCEPTION).register(meterRegistry));
+        }
+        Throwable cause = (error instanceof CompletionException && null != error.getCause()) ? error.getCause() : error;
+        return timerBuilder(operation, cause.getClass().getSimpleName()).register(meterRegistry);
+    }
+
+    private Timer.Builder timerBuilder(String operation, String exception) {
+        return Timer.builder(METRIC_DURATION)
+                    .description("Duration of the operations of the reservation repository")
+                    .tag("implementation", implementation)
+                    .tag("operation", operation)
+                    .tag("exception", exception)
+                    // Buckets exported for percentiles aggregated by Prometheus over instances
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30));
+    }
+
+    private Timer phaseTimer(String name, String operation, String description) {
+        return Timer.builder(name)
+                    .description(description)
+                    .tag("implementation", implementation)
+                    .tag("operation", operation)
+                    .publishPercentileHistogram()
+                    // Mapping a few rows takes microseconds
+                    .minimumExpectedValue(Duration.of(10, ChronoUnit.MICROS))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(meterRegistry);
+    }
+
+    private DistributionSummary rows(String operation) {
+        return rows.computeIfAbsent(operation, op -> DistributionSummary.builder(METRIC_ROWS)
+                .description("Reservations returned by the operations of the reservation repository")
+                .baseUnit("rows")
+                .tag("implementation", implementation)
+                .tag("operation", op)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(1_000_000L)
+                .register(meterRegistry));
+    }
+
+}
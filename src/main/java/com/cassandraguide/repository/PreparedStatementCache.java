@@ -0,0 +1,313 @@
+package com.cassandraguide.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverException;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.SchemaChangeListener;
+import com.datastax.oss.driver.api.core.metadata.schema.SchemaChangeListenerBase;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+import com.datastax.oss.driver.api.core.session.Session;
+import com.datastax.oss.driver.api.core.type.UserDefinedType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Prepared statements keyed by CQL text, so that code building {@link SimpleStatement}s executes
+ * prepared (parsed once by Cassandra, token aware) statements instead.
+ *
+ * A statement is prepared on first use of its CQL, concurrent first uses share the same preparation,
+ * and a failed preparation is not cached. Values of the simple statement (positional or named) and its
+ * execution options (page size, paging state, consistency, idempotence, timestamp...) are copied to
+ * the bound statement.
+ *
+ * The number of distinct CQL texts is bounded: values have to be bind markers, never concatenated
+ * in the CQL. Registered as the schema change listener of the session (see CassandraConfiguration),
+ * the cache is cleared when a table or a type changes and statements are prepared again, result
+ * metadata of 'SELECT *' would be stale otherwise.
+ */
+public class PreparedStatementCache extends SchemaChangeListenerBase {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(PreparedStatementCache.class);
+
+    /** Default max number of statements. */
+    public static final long DEFAULT_MAXIMUM_SIZE = 256;
+
+    /** Preparations by CQL text, completed or in progress. */
+    private final Cache<String, CompletableFuture<PreparedStatement>> statements;
+
+    /** Prepare requests sent to Cassandra. */
+    private final AtomicLong prepareCount = new AtomicLong();
+
+    /** Times the cache has been cleared on schema change. */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Cache registered as the schema change listener of a session, the only one kept up to date.
+     *
+     * @param session
+     *      connectivity to Cassandra
+     * @return
+     *      the cache of the session, or null if its listener is not a cache
+     */
+    public static PreparedStatementCache registeredIn(Session session) {
+        SchemaChangeListener listener = session.getContext().getSchemaChangeListener();
+        return (listener instanceof PreparedStatementCache) ? (PreparedStatementCache) listener : null;
+    }
+
+    /**
+     * Cache with the default size.
+     */
+    public PreparedStatementCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Full initialization.
+     *
+     * @param maximumSize
+     *      max number of distinct CQL texts, least used statements are evicted above
+     */
+    public PreparedStatementCache(long maximumSize) {
+        Assert.isTrue(maximumSize > 0, "Maximum size should be greater than 0");
+        this.statements = Caffeine.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * Prepared statement of a CQL text, prepared on first use.
+     *
+     * @param cqlSession
+     *      session preparing the statement
+     * @param cql
+     *      CQL text with bind markers
+     * @return
+     *      completes when the statement has been prepared
+     */
+    public CompletionStage<PreparedStatement> prepareAsync(CqlSession cqlSession, String cql) {
+        Assert.hasLength(cql, "Cql should not be null nor empty");
+        CompletableFuture<PreparedStatement> preparation = statements.get(cql, key -> {
+            prepareCount.incrementAndGet();
+            logger.debug("Preparing {}", key);
+            return cqlSession.prepareAsync(key).toCompletableFuture();
+        });
+        // Do not keep failures, next use will try again
+        preparation.whenComplete((ps, error) -> {
+            if (null != error) {
+                statements.asMap().remove(cql, preparation);
+            }
+        });
+        return preparation;
+    }
+
+    /**
+     * Prepared statement of a CQL text, prepared on first use (blocking only then).
+     *
+     * @param cqlSession
+     *      session preparing the statement
+     * @param cql
+     *      CQL text with bind markers
+     * @return
+     *      the prepared statement
+     */
+    public PreparedStatement prepare(CqlSession cqlSession, String cql) {
+        try {
+            return prepareAsync(cqlSession, cql).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof DriverException) {
+                throw ((DriverException) e.getCause()).copy(); // stack trace of the caller
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Prepared equivalent of a simple statement.
+     *
+     * @param cqlSession
+     *      session preparing the statement
+     * @param statement
+     *      query, values and options
+     * @return
+     *      a bound statement with the values and options of the simple statement
+     */
+    public BoundStatement bind(CqlSession cqlSession, SimpleStatement statement) {
+        Assert.notNull(statement, "Statement should not be null");
+        return bind(prepare(cqlSession, statement.getQuery()), statement);
+    }
+
+    /**
+     * Prepared equivalent of a simple statement, non blocking.
+     *
+     * @param cqlSession
+     *      session preparing the statement
+     * @param statement
+     *      query, values and options
+     * @return
+     *      completes with a bound statement with the values and options of the simple statement
+     */
+    public CompletionStage<BoundStatement> bindAsync(CqlSession cqlSession, SimpleStatement statement) {
+        Assert.notNull(statement, "Statement should not be null");
+        return prepareAsync(cqlSession, statement.getQuery()).thenApply(ps -> bind(ps, statement));
+    }
+
+    /**
+     * Bind the values of a simple statement to the prepared statement of its query.
+     *
+     * @param ps
+     *      prepared statement of the query
+     * @param statement
+     *      values and options
+     * @return
+     *      bound statement
+     */
+    public static BoundStatement bind(PreparedStatement ps, SimpleStatement statement) {
+        BoundStatement bound;
+        if (statement.getNamedValues().isEmpty()) {
+            bound = ps.bind(statement.getPositionalValues().toArray());
+        } else {
+            // Named values in the order of the bind markers
+            Map<CqlIdentifier, Object> namedValues = statement.getNamedValues();
+            List<Object> values = new ArrayList<>();
+            for (ColumnDefinition variable : ps.getVariableDefinitions()) {
+                Assert.isTrue(namedValues.containsKey(variable.getName()), "No value for :" + variable.getName());
+                values.add(namedValues.get(variable.getName()));
+            }
+            bound = ps.bind(values.toArray());
+        }
+        return copyOptions(statement, bound);
+    }
+
+    /**
+     * Execution options of the simple statement, only those which have been set.
+     */
+    private static BoundStatement copyOptions(SimpleStatement from, BoundStatement to) {
+        if (from.getPageSize() > 0) {
+            to = to.setPageSize(from.getPageSize());
+        }
+        if (null != from.getPagingState()) {
+            to = to.setPagingState(from.getPagingState());
+        }
+        if (null != from.getConsistencyLevel()) {
+            to = to.setConsistencyLevel(from.getConsistencyLevel());
+        }
+        if (null != from.getSerialConsistencyLevel()) {
+            to = to.setSerialConsistencyLevel(from.getSerialConsistencyLevel());
+        }
+        if (null != from.isIdempotent()) {
+            to = to.setIdempotent(from.isIdempotent());
+        }
+        if (Long.MIN_VALUE != from.getQueryTimestamp()) { // no default timestamp
+            to = to.setQueryTimestamp(from.getQueryTimestamp());
+        }
+        if (null != from.getTimeout()) {
+            to = to.setTimeout(from.getTimeout());
+        }
+        if (null != from.getExecutionProfileName()) {
+            to = to.setExecutionProfileName(from.getExecutionProfileName());
+        }
+        if (null != from.getExecutionProfile()) {
+            to = to.setExecutionProfile(from.getExecutionProfile());
+        }
+        if (from.isTracing()) {
+            to = to.setTracing(true);
+        }
+        return to;
+    }
+
+    /**
+     * Remove all statements, they will be prepared again on next use.
+     */
+    public void invalidateAll() {
+        statements.invalidateAll();
+        invalidationCount.incrementAndGet();
+    }
+
+    /**
+     * Schema changed, result metadata of prepared statements may be outdated.
+     */
+    private void schemaChanged(String element) {
+        long size = statements.estimatedSize();
+        invalidateAll();
+        if (size > 0) {
+            logger.info("{} changed, {} prepared statements will be prepared again", element, size);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onTableCreated(TableMetadata table) {
+        schemaChanged("Table " + table.getName());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onTableUpdated(TableMetadata current, TableMetadata previous) {
+        schemaChanged("Table " + current.getName());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onTableDropped(TableMetadata table) {
+        schemaChanged("Table " + table.getName());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onUserDefinedTypeUpdated(UserDefinedType current, UserDefinedType previous) {
+        schemaChanged("Type " + current.getName());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onKeyspaceDropped(KeyspaceMetadata keyspace) {
+        schemaChanged("Keyspace " + keyspace.getName());
+    }
+
+    /**
+     * Number of statements currently prepared.
+     *
+     * @return
+     *       estimated number of entries
+     */
+    public long size() {
+        return statements.estimatedSize();
+    }
+
+    /**
+     * Getter accessor for attribute 'prepareCount'.
+     *
+     * @return
+     *       number of prepare requests sent
+     */
+    public long getPrepareCount() {
+        return prepareCount.get();
+    }
+
+    /**
+     * Getter accessor for attribute 'invalidationCount'.
+     *
+     * @return
+     *       number of times the cache has been cleared
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+}
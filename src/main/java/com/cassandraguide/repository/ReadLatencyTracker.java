@@ -0,0 +1,114 @@
+package com.cassandraguide.repository;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.config.DriverExecutionProfile;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.tracker.RequestTracker;
+
+/**
+ * Latency of the responses of nodes to requests executed with profile {@link ReservationRepository#PROFILE_READ},
+ * source of the delay of {@link SpeculativeReadPolicy} when it is percentile based.
+ *
+ * Each execution is recorded (a speculative one as well), so that percentiles describe nodes and not
+ * requests already hedged. Percentiles are computed on the last complete interval: they follow changes of
+ * the cluster and reading them does not block recording.
+ */
+public class ReadLatencyTracker implements RequestTracker {
+
+    /** Default duration of an interval. */
+    public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(30);
+
+    /** Default minimum number of responses in an interval for its percentiles to be used. */
+    public static final long DEFAULT_MIN_SAMPLES = 100;
+
+    /** Highest latency tracked, greater ones are recorded as this one. */
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    /** Responses of the current interval. */
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 2);
+
+    /** Duration of an interval. */
+    private final long intervalNanos;
+
+    /** Minimum number of responses in an interval. */
+    private final long minSamples;
+
+    /** Last complete interval, null until one has enough samples. */
+    private volatile Histogram lastInterval;
+
+    /** Start of the current interval. */
+    private volatile long intervalStart = System.nanoTime();
+
+    /**
+     * Default intervals.
+     */
+    public ReadLatencyTracker() {
+        this(DEFAULT_INTERVAL, DEFAULT_MIN_SAMPLES);
+    }
+
+    /**
+     * Full initialization.
+     *
+     * @param interval
+     *      duration of an interval
+     * @param minSamples
+     *      minimum number of responses in an interval for its percentiles to be used
+     */
+    public ReadLatencyTracker(Duration interval, long minSamples) {
+        Assert.isTrue(!interval.isNegative() && !interval.isZero(), "Interval should be positive");
+        Assert.isTrue(minSamples > 0, "Minimum number of samples should be greater than 0");
+        this.intervalNanos = interval.toNanos();
+        this.minSamples    = minSamples;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onNodeSuccess(Request request, long latencyNanos,
+            DriverExecutionProfile executionProfile, Node node, String requestLogPrefix) {
+        if (ReservationRepository.PROFILE_READ.equals(executionProfile.getName())) {
+            recorder.recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS));
+        }
+    }
+
+    /**
+     * Latency of the responses at a percentile, on the last complete interval.
+     *
+     * @param percentile
+     *      percentile between 0 and 100
+     * @return
+     *      latency in nanoseconds, -1 while no interval has enough responses
+     */
+    public long getLatencyAtPercentile(double percentile) {
+        long now = System.nanoTime();
+        if (now - intervalStart >= intervalNanos) {
+            swapInterval(now);
+        }
+        Histogram histogram = lastInterval;
+        return (null == histogram) ? -1 : histogram.getValueAtPercentile(percentile);
+    }
+
+    private synchronized void swapInterval(long now) {
+        if (now - intervalStart < intervalNanos) {
+            return; // Swapped by another thread
+        }
+        // Not recycled: readers may still use the previous interval
+        Histogram interval = recorder.getIntervalHistogram();
+        intervalStart = now;
+        // Not enough traffic, the previous percentiles are kept
+        if (interval.getTotalCount() >= minSamples) {
+            lastInterval = interval;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {}
+
+}
@@ -0,0 +1,146 @@
+package com.cassandraguide.repository;
+
+import java.util.function.Function;
+
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+
+/**
+ * Operation of the repository in progress on a thread, accumulating the time spent waiting for the driver
+ * and the size of its responses. Implementations capture it with {@link #current()} before sending a request
+ * and report the response with {@link #driverResponse(RepositoryOperation, long, ExecutionInfo)}; the
+ * decorators timing operations ({@link MeteredReservationRepository}, {@link FlightRecorderReservationRepository})
+ * enter it and tell the driver wait from the rest of the operation, mostly mapping rows.
+ *
+ * Requests sent from the continuations of async operations, on the threads of the driver, are attributed
+ * when the continuation is wrapped with {@link #withCurrent(Function)}. Pages fetched while iterating results
+ * are not reported and count as mapping. Nested decorators share the operation entered first.
+ */
+final class RepositoryOperation {
+
+    /** Operation in progress on the thread, null when no decorator is timing operations. */
+    private static final ThreadLocal<RepositoryOperation> CURRENT = new ThreadLocal<>();
+
+    /** Decorators which entered the operation and did not exit yet, only used by the calling thread. */
+    private int depth;
+
+    /** Total time waiting for responses. */
+    private long driverWaitNanos;
+
+    /** Total size of the responses. */
+    private long responseBytes;
+
+    private RepositoryOperation() {
+    }
+
+    /**
+     * Operation in progress, to capture before sending a request.
+     *
+     * @return
+     *      operation in progress, null when operations are not timed
+     */
+    static RepositoryOperation current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Enter the operation in progress on the calling thread, starting it if none, must be followed by
+     * {@link #exit()} on the same thread once the requests of the operation have been sent.
+     *
+     * @return
+     *      operation in progress
+     */
+    static RepositoryOperation enter() {
+        RepositoryOperation operation = CURRENT.get();
+        if (null == operation) {
+            operation = new RepositoryOperation();
+            CURRENT.set(operation);
+        }
+        operation.depth++;
+        return operation;
+    }
+
+    /**
+     * Continuation of an async operation running with the operation of the calling thread as current operation:
+     * the requests it sends from the threads of the driver are attributed to the operation.
+     *
+     * @param continuation
+     *      continuation of a stage of the operation
+     * @return
+     *      continuation restoring the operation, the continuation itself when operations are not timed
+     */
+    static <T, R> Function<T, R> withCurrent(Function<T, R> continuation) {
+        RepositoryOperation operation = CURRENT.get();
+        if (null == operation) {
+            return continuation;
+        }
+        return value -> {
+            RepositoryOperation previous = CURRENT.get();
+            CURRENT.set(operation);
+            try {
+                return continuation.apply(value);
+            } finally {
+                if (null == previous) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Record a response of the driver.
+     *
+     * @param operation
+     *      operation captured with {@link #current()} when sending, nothing is recorded if null
+     * @param startNanos
+     *      when the request was sent, from {@link System#nanoTime()}
+     * @param executionInfo
+     *      execution of the request, may be null
+     */
+    static void driverResponse(RepositoryOperation operation, long startNanos, ExecutionInfo executionInfo) {
+        if (null != operation) {
+            operation.addDriverResponse(System.nanoTime() - startNanos,
+                    (null == executionInfo) ? 0 : executionInfo.getResponseSizeInBytes());
+        }
+    }
+
+    /**
+     * Requests of the operation have been sent, responses may still be recorded from the threads of the driver.
+     * The operation is no longer current once all decorators which entered it exited.
+     */
+    void exit() {
+        if (--depth == 0) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Responses of async operations are recorded from the threads of the driver.
+     */
+    private synchronized void addDriverResponse(long latencyNanos, int responseBytes) {
+        this.driverWaitNanos += latencyNanos;
+        this.responseBytes   += Math.max(0, responseBytes);
+    }
+
+    /**
+     * Getter accessor for attribute 'driverWaitNanos'.
+     *
+     * @return
+     *       current value of 'driverWaitNanos'
+     */
+    synchronized long getDriverWaitNanos() {
+        return driverWaitNanos;
+    }
+
+    /**
+     * Getter accessor for attribute 'responseBytes'.
+     *
+     * @return
+     *       current value of 'responseBytes'
+     */
+    synchronized long getResponseBytes() {
+        return responseBytes;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.cassandraguide.repository;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event of an operation of the repository, committed by {@link FlightRecorderReservationRepository}.
+ *
+ * The time of the operation is split between waiting for the driver, as reported to the {@link RepositoryOperation}
+ * by the implementation, and the rest, mostly mapping rows.
+ */
+@Name("com.cassandraguide.RepositoryOperation")
+@Label("Repository Operation")
+@Category({ "Reservation Service", "Repository" })
+@Description("Operation of the reservation repository")
+@StackTrace(false)
+public class RepositoryOperationEvent extends Event {
+
+    @Label("Implementation")
+    String implementation;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Key")
+    @Description("Confirmation number, or hotel and date")
+    String key;
+
+    @Label("Rows")
+    @Description("Reservations returned")
+    int rows;
+
+    @Label("Response Size")
+    @Description("Size of the responses of Cassandra")
+    @DataAmount
+    long bytes;
+
+    @Label("Driver Wait")
+    @Timespan
+    long driverWait;
+
+    @Label("Mapping")
+    @Description("Time of the operation outside the driver, mostly mapping rows")
+    @Timespan
+    long mapping;
+
+    @Label("Error")
+    String error;
+
+    /**
+     * Commit, the time outside the driver is the mapping time.
+     *
+     * @param elapsedNanos
+     *      duration of the operation
+     * @param operation
+     *      driver wait and responses of the operation
+     */
+    void complete(long elapsedNanos, RepositoryOperation operation) {
+        driverWait = operation.getDriverWaitNanos();
+        bytes      = operation.getResponseBytes();
+        mapping    = Math.max(0, elapsedNanos - driverWait);
+        commit();
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.cassandraguide.repository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.loadbalancing.NodeDistance;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.NodeState;
+
+/**
+ * Warm-up executed before the service reports ready, so that the first requests after a deploy do not
+ * pay for cold connections, statements prepared lazily and code not compiled yet.
+ *
+ * <ul>
+ *   <li>every connection of the pool of every node which is up is used once (query on 'system.local'
+ *   pinned to the node),</li>
+ *   <li>synthetic reads of unknown reservations are executed with the repository: its read statements
+ *   run on all nodes (load balancing spreads random keys) and are prepared by implementations preparing
+ *   lazily.</li>
+ * </ul>
+ *
+ * Statements prepared when the repository is created are sent to all nodes by the driver
+ * ('prepare-on-all-nodes' in application.conf). Writes are not warmed, they would create data.
+ * Failures are logged and counted, they do not prevent the service from starting.
+ */
+public class RepositoryWarmer {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryWarmer.class);
+
+    /** Default number of synthetic reads. */
+    public static final int DEFAULT_READS = 1000;
+
+    /** Default number of reads executed concurrently. */
+    public static final int DEFAULT_CONCURRENCY = 32;
+
+    /** Prefix of the confirmation numbers read, no reservation uses it. */
+    private static final String WARMUP_PREFIX = "WARMUP-";
+
+    /** Lightweight query pinned to each node. */
+    private static final SimpleStatement PING = SimpleStatement.newInstance(
+            "SELECT release_version FROM system.local WHERE key = 'local'");
+
+    /** Connectivity to Cassandra. */
+    private final CqlSession cqlSession;
+
+    /** Implementation warmed, not decorated (a filter would skip unknown reservations). */
+    private final ReservationRepository repository;
+
+    /** Number of synthetic reads. */
+    private final int reads;
+
+    /** Number of reads executed concurrently. */
+    private final int concurrency;
+
+    /** Requests of the warm-up which failed. */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /** Duration of the last warm-up, null while not done. */
+    private volatile Duration duration;
+
+    /**
+     * Full initialization.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @param repository
+     *      implementation accessing Cassandra, not decorated
+     * @param reads
+     *      number of synthetic reads, 0 to only warm connections
+     * @param concurrency
+     *      number of reads executed concurrently
+     */
+    public RepositoryWarmer(CqlSession cqlSession, ReservationRepository repository, int reads, int concurrency) {
+        Assert.notNull(cqlSession, "Session should not be null");
+        Assert.notNull(repository, "Repository should not be null");
+        Assert.isTrue(reads >= 0, "Number of reads should not be negative");
+        Assert.isTrue(concurrency > 0, "Concurrency should be greater than 0");
+        this.cqlSession  = cqlSession;
+        this.repository  = repository;
+        this.reads       = reads;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Warm connections then the repository, waiting for all requests.
+     *
+     * @return
+     *      duration of the warm-up
+     */
+    public Duration warmUp() {
+        long top = System.nanoTime();
+        int nodes = warmConnections();
+        warmRepository();
+        duration = Duration.ofNanos(System.nanoTime() - top);
+        logger.info("Warm-up of {} node(s) and {} reads completed in {} ms ({} failures)",
+                nodes, reads, duration.toMillis(), failures.get());
+        return duration;
+    }
+
+    /**
+     * Ping each connection of the pools of the nodes which are up.
+     *
+     * @return
+     *      number of nodes warmed
+     */
+    private int warmConnections() {
+        int poolSize = cqlSession.getContext().getConfig().getDefaultProfile()
+                                 .getInt(DefaultDriverOption.CONNECTION_POOL_LOCAL_SIZE);
+        List<CompletableFuture<?>> pings = new ArrayList<>();
+        int nodes = 0;
+        for (Node node : cqlSession.getMetadata().getNodes().values()) {
+            if (node.getState() == NodeState.UP && node.getDistance() != NodeDistance.IGNORED) {
+                nodes++;
+                // Concurrent requests are spread on the connections of the pool
+                for (int i = 0; i < poolSize; i++) {
+                    pings.add(track(cqlSession.executeAsync(PING.setNode(node))));
+                }
+            }
+        }
+        CompletableFuture.allOf(pings.toArray(new CompletableFuture[0])).join();
+        return nodes;
+    }
+
+    /**
+     * Synthetic reads with at most 'concurrency' pending.
+     */
+    private void warmRepository() {
+        Semaphore inFlight = new Semaphore(concurrency);
+        for (int i = 0; i < reads; i++) {
+            inFlight.acquireUninterruptibly();
+            CompletionStage<?> read;
+            try {
+                read = read(i);
+            } catch (RuntimeException e) {
+                read = CompletableFuture.failedFuture(e);
+            }
+            track(read).whenComplete((result, error) -> inFlight.release());
+        }
+        inFlight.acquireUninterruptibly(concurrency);
+    }
+
+    /**
+     * Rotate on the read operations of the repository, keys are random.
+     */
+    private CompletionStage<?> read(int i) {
+        String confirmationNumber = WARMUP_PREFIX + UUID.randomUUID();
+        switch (i % 3) {
+            case 0:
+                return repository.existsAsync(confirmationNumber);
+            case 1:
+                return repository.findByConfirmationNumberAsync(confirmationNumber);
+            default:
+                return repository.findByHotelAndDateAsync(confirmationNumber,
+                        LocalDate.ofEpochDay(ThreadLocalRandom.current().nextInt(365 * 50)));
+        }
+    }
+
+    /**
+     * Count failures, the warm-up goes on.
+     */
+    private CompletableFuture<?> track(CompletionStage<?> request) {
+        return request.handle((result, error) -> {
+            if (null != error && failures.incrementAndGet() == 1) {
+                logger.warn("Warm-up request failed (next failures are only counted): {}", error.toString());
+            }
+            return null;
+        }).toCompletableFuture();
+    }
+
+    /**
+     * Whether the warm-up is done.
+     *
+     * @return
+     *       true once {@link #warmUp()} has completed
+     */
+    public boolean isDone() {
+        return null != duration;
+    }
+
+    /**
+     * Getter accessor for attribute 'duration'.
+     *
+     * @return
+     *       duration of the warm-up, null while not done
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Getter accessor for attribute 'failures'.
+     *
+     * @return
+     *       number of warm-up requests which failed
+     */
+    public int getFailures() {
+        return failures.get();
+    }
+
+}
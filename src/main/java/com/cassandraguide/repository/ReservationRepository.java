@@ -1,19 +1,24 @@
 package com.cassandraguide.repository;
 
-import static com.datastax.oss.driver.api.querybuilder.SchemaBuilder.createTable;
-import static com.datastax.oss.driver.api.querybuilder.SchemaBuilder.createType;
-
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
+import com.cassandraguide.model.UpsertResult;
+import com.datastax.oss.driver.api.core.AsyncPagingIterable;
 import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.PagingIterable;
 import com.datastax.oss.driver.api.core.cql.Row;
-import com.datastax.oss.driver.api.core.metadata.schema.ClusteringOrder;
-import com.datastax.oss.driver.api.core.type.DataTypes;
-import com.datastax.oss.driver.api.core.type.UserDefinedType;
 
 /**
  * Definition of functions expected in Data Access Object (DAO). We provide
@@ -23,6 +28,15 @@ import com.datastax.oss.driver.api.core.type.UserDefinedType;
  */
 public interface ReservationRepository {
     
+    /** Execution profile of the point reads, idempotent and hedged (see application.conf). */
+    String PROFILE_READ  = "read";
+    
+    /** Execution profile of the writes, executed by {@link DenormalizedWriter}. */
+    String PROFILE_WRITE = "write";
+    
+    /** Execution profile of the full table scans. */
+    String PROFILE_SCAN  = "scan";
+    
     /**
      * Reservation Keyspace constants (tables names, columns names)
      */
@@ -72,18 +86,39 @@ public interface ReservationRepository {
     Optional<Reservation> findByConfirmationNumber(final String confirmationNumber);
     
     /**
-     * Create new entry in multiple tables for this reservation.
+     * Create or update a reservation in multiple tables. Without confirmation number a new one is
+     * generated and the reservation is written without any read. Otherwise the previous version is read
+     * to tell creation from update and to remove its 'reservations_by_hotel_date' row if hotel, date
+     * or room changed, then both tables are written with a single batch.
+     *
+     * With a confirmation number this is two round trips, as many as the exists() and write it replaces:
+     * the result only saves the caller a separate exists(). A conditional write (IF NOT EXISTS) cannot
+     * span both tables: a single round trip needs the reservation to be known as new,
+     * see {@link #create(Reservation)}.
      *
      * @param reservation
      *      current reservation object
      * @return
-     *      
+     *      confirmation number and whether the reservation has been created
      */
-     String upsert(Reservation reservation);
+     UpsertResult upsert(Reservation reservation);
+     
+     /**
+      * Write a reservation known not to exist, no read is performed. A confirmation number
+      * is generated if none has been provided.
+      *
+      * @param reservation
+      *      new reservation
+      * @return
+      *      reservation confirmation number
+      */
+     String create(Reservation reservation);
      
      /**
       * We pick 'reservations_by_confirmation' table to list reservations
       * BUT we could have used 'reservations_by_hotel_date' (as no key provided in request)
+      * 
+      * All rows are loaded in memory, for large tables use {@link #findAll(int, String)}.
       *  
       * @returns
       *      list all reservations
@@ -91,12 +126,53 @@ public interface ReservationRepository {
      List<Reservation> findAll();
      
      /**
-      * Deleting a reservation. As not returned value why not switching to ASYNC.
+      * Read a single page of 'reservations_by_confirmation', memory used is bounded
+      * by the page size whatever the size of the table.
+      *
+      * @param pageSize
+      *      maximum number of reservations in the page
+      * @param pagingState
+      *      cursor returned with previous page, null or empty for first page
+      * @return
+      *      page of reservations with cursor for next one
+      */
+     ReservationPage findAll(int pageSize, String pagingState);
+     
+     /**
+      * Lazy iteration on 'reservations_by_confirmation'. Rows are mapped as they are consumed and
+      * next page is only fetched when current one has been consumed: a slow consumer does not make
+      * the heap grow, whatever the size of the table.
+      *
+      * @return
+      *      stream of all reservations, to be consumed once
+      */
+     Stream<Reservation> streamAll();
+     
+     /**
+      * Hand every reservation of 'reservations_by_confirmation' to the consumer, in no particular order.
+      * The consumer is never invoked concurrently. Default implementation iterates {@link #streamAll()},
+      * implementations can split the token ring to read ranges in parallel (see {@link TokenRangeScanner}).
+      *
+      * @param consumer
+      *      receiving each reservation
+      */
+     default void scanAll(Consumer<Reservation> consumer) {
+         try (Stream<Reservation> reservations = streamAll()) {
+             reservations.forEach(consumer);
+         }
+     }
+     
+     /**
+      * Deleting a reservation from both tables. The reservation is read once to get the key of
+      * 'reservations_by_hotel_date' then deleted with a single batch: one read and one write,
+      * no need to test existence before.
       *
       * @param confirmationNumber
       *      unique identifier for confirmation.
+      * @return
+      *      deleted reservation, empty if it did not exist
       */
-     void delete(String confirmationNumber);
+     Optional<Reservation> delete(String confirmationNumber);
      
      /**
       * Search all reservation for an hotel id and LocalDate.
@@ -109,6 +185,168 @@ public interface ReservationRepository {
       */
       List<Reservation> findByHotelAndDate(String hotelId, LocalDate date);
       
+      /**
+       * Non blocking version of {@link #exists(String)}, the calling thread is released
+       * as soon as the request has been sent to Cassandra.
+       *
+       * @param confirmationNumber
+       *      unique identifier for confirmation
+       * @return
+       *      completes with existence of the reservation
+       */
+      CompletionStage<Boolean> existsAsync(String confirmationNumber);
+      
+      /**
+       * Non blocking version of {@link #findByConfirmationNumber(String)}.
+       *
+       * @param confirmationNumber
+       *      unique identifier for confirmation
+       * @return
+       *      completes with reservation if present or empty
+       */
+      CompletionStage<Optional<Reservation>> findByConfirmationNumberAsync(String confirmationNumber);
+      
+      /**
+       * Non blocking version of {@link #upsert(Reservation)}.
+       *
+       * @param reservation
+       *      current reservation object
+       * @return
+       *      completes with confirmation number and whether the reservation has been created
+       */
+      CompletionStage<UpsertResult> upsertAsync(Reservation reservation);
+      
+      /**
+       * Non blocking version of {@link #create(Reservation)}.
+       *
+       * @param reservation
+       *      new reservation
+       * @return
+       *      completes with reservation confirmation number
+       */
+      CompletionStage<String> createAsync(Reservation reservation);
+      
+      /**
+       * Non blocking version of {@link #findAll()}. Pages are fetched one after the other
+       * without blocking any thread.
+       *
+       * @return
+       *      completes with all reservations
+       */
+      CompletionStage<List<Reservation>> findAllAsync();
+      
+      /**
+       * Non blocking version of {@link #findAll(int, String)}.
+       *
+       * @param pageSize
+       *      maximum number of reservations in the page
+       * @param pagingState
+       *      cursor returned with previous page, null or empty for first page
+       * @return
+       *      completes with page of reservations
+       */
+      CompletionStage<ReservationPage> findAllAsync(int pageSize, String pagingState);
+      
+      /**
+       * Non blocking version of {@link #delete(String)}.
+       *
+       * @param confirmationNumber
+       *      unique identifier for confirmation.
+       * @return
+       *      completes with deleted reservation, empty if it did not exist
+       */
+      CompletionStage<Optional<Reservation>> deleteAsync(String confirmationNumber);
+      
+      /**
+       * Non blocking version of {@link #findByHotelAndDate(String, LocalDate)}.
+       *
+       * @param hotelId
+       *      hotel identifier
+       * @param date
+       *      searched Date
+       * @return
+       *      completes with reservations for the hotel at this date
+       */
+      CompletionStage<List<Reservation>> findByHotelAndDateAsync(String hotelId, LocalDate date);
+      
+      /**
+       * Test if the key of 'reservations_by_hotel_date' differs between two versions of a reservation,
+       * the row of the previous version has to be deleted when writing the new one.
+       *
+       * @param previous
+       *      version currently stored
+       * @param reservation
+       *      version being written
+       * @return
+       *      true if hotel, start date or room number changed
+       */
+      static boolean isHotelDateKeyChanged(Reservation previous, Reservation reservation) {
+          return !Objects.equals(previous.getHotelId(),    reservation.getHotelId())
+              || !Objects.equals(previous.getStartDate(),  reservation.getStartDate())
+              || !Objects.equals(previous.getRoomNumber(), reservation.getRoomNumber());
+      }
+      
+      /**
+       * Utility method to map only the rows of the current page, no extra page is fetched.
+       *
+       * @param page
+       *      current result
+       * @param mapper
+       *      mapping of each element
+       * @return
+       *      mapped elements of the page
+       */
+      static <T, R> List<R> mapCurrentPage(PagingIterable<T> page, Function<T, R> mapper) {
+          int available = page.getAvailableWithoutFetching();
+          List<R> result = new ArrayList<>(available);
+          for (int i = 0; i < available; i++) {
+              result.add(mapper.apply(page.one()));
+          }
+          return result;
+      }
+      
+      /**
+       * Async flavour of {@link #mapCurrentPage(PagingIterable, Function)}.
+       *
+       * @param page
+       *      current result
+       * @param mapper
+       *      mapping of each element
+       * @return
+       *      mapped elements of the page
+       */
+      static <T, R> List<R> mapCurrentPage(AsyncPagingIterable<T, ?> page, Function<T, R> mapper) {
+          List<R> result = new ArrayList<>(page.remaining());
+          page.currentPage().forEach(element -> result.add(mapper.apply(element)));
+          return result;
+      }
+      
+      /**
+       * Utility method to go through all pages of an async result, mapping each element. Next page
+       * is only requested when the current one has been consumed.
+       *
+       * @param page
+       *      current page of results
+       * @param mapper
+       *      mapping of each element
+       * @return
+       *      completes with all mapped elements
+       */
+      static <T, R, S extends AsyncPagingIterable<T, S>> CompletionStage<List<R>> 
+      collectAllPages(S page, Function<T, R> mapper) {
+          return collectAllPages(page, mapper, new ArrayList<>());
+      }
+      
+      /** Recursive part of {@link #collectAllPages(AsyncPagingIterable, Function)}. */
+      private static <T, R, S extends AsyncPagingIterable<T, S>> CompletionStage<List<R>> 
+      collectAllPages(S page, Function<T, R> mapper, List<R> result) {
+          page.currentPage().forEach(element -> result.add(mapper.apply(element)));
+          if (!page.hasMorePages()) {
+              return CompletableFuture.completedFuture(result);
+          }
+          return page.fetchNextPage().thenCompose(next -> collectAllPages(next, mapper, result));
+      }
+      
       /**
        * Utility method to marshall a row as expected Reservation Bean.
        *
@@ -129,7 +367,9 @@ public interface ReservationRepository {
      }
       
      /**
-      * Create Keyspace and relevant tables as per defined in 'reservation.cql'.
+      * Create relevant tables as per defined in 'reservation.cql', only the versions of the schema
+      * missing in the keyspace are applied (see {@link ReservationSchema} and {@link SchemaMigrator}).
+      * Implementations do not create them: the schema is migrated before they are instantiated.
       *
       * @param cqlSession
       *          connectivity to Cassandra
@@ -137,122 +377,7 @@ public interface ReservationRepository {
       *          keyspace name
       */
       default void createTables(CqlSession cqlSession, CqlIdentifier keyspaceName) {
-         
-         /**
-          * Create TYPE 'Address' if not exists
-          * 
-          * CREATE TYPE reservation.address (
-          *   street text,
-          *   city text,
-          *   state_or_province text,
-          *   postal_code text,
-          *   country text
-          * );
-          */
-         cqlSession.execute(
-                 createType(keyspaceName, TYPE_ADDRESS)
-                 .ifNotExists()
-                 .withField(STREET, DataTypes.TEXT)
-                 .withField(CITY, DataTypes.TEXT)
-                 .withField(STATE_PROVINCE, DataTypes.TEXT)
-                 .withField(POSTAL_CODE, DataTypes.TEXT)
-                 .withField(COUNTRY, DataTypes.TEXT)
-                 .build());
-         
-         /** 
-          * CREATE TABLE reservation.reservations_by_hotel_date (
-          *  hotel_id text,
-          *  start_date date,
-          *  end_date date,
-          *  room_number smallint,
-          *  confirmation_number text,
-          *  guest_id uuid,
-          *  PRIMARY KEY ((hotel_id, start_date), room_number)
-          * ) WITH comment = 'Q7. Find reservations by hotel and date';
-          */
-         cqlSession.execute(createTable(keyspaceName, TABLE_RESERVATION_BY_HOTEL)
-                         .ifNotExists()
-                         .withPartitionKey(HOTEL_ID, DataTypes.TEXT)
-                         .withPartitionKey(START_DATE, DataTypes.DATE)
-                         .withClusteringColumn(ROOM_NUMBER, DataTypes.SMALLINT)
-                         .withColumn(END_DATE, DataTypes.DATE)
-                         .withColumn(CONFIRMATION_NUMBER, DataTypes.TEXT)
-                         .withColumn(GUEST_ID, DataTypes.UUID)
-                         .withClusteringOrder(ROOM_NUMBER, ClusteringOrder.ASC)
-                         .withComment("Q7. Find reservations by hotel and date")
-                         .build());
-         
-         /**
-          * CREATE TABLE reservation.reservations_by_confirmation (
-          *   confirmation_number text PRIMARY KEY,
-          *   hotel_id text,
-          *   start_date date,
-          *   end_date date,
-          *   room_number smallint,
-          *   guest_id uuid
-          * );
-          */
-         cqlSession.execute(createTable(keyspaceName, TABLE_RESERVATION_BY_CONFI)
-                 .ifNotExists()
-                 .withPartitionKey(CONFIRMATION_NUMBER, DataTypes.TEXT)
-                 .withColumn(HOTEL_ID, DataTypes.TEXT)
-                 .withColumn(START_DATE, DataTypes.DATE)
-                 .withColumn(END_DATE, DataTypes.DATE)
-                 .withColumn(ROOM_NUMBER, DataTypes.SMALLINT)
-                 .withColumn(GUEST_ID, DataTypes.UUID)
-                 .build());
-          
-          /**
-           * CREATE TABLE reservation.reservations_by_guest (
-           *  guest_last_name text,
-           *  hotel_id text,
-           *  start_date date,
-           *  end_date date,
-           *  room_number smallint,
-           *  confirmation_number text,
-           *  guest_id uuid,
-           *  PRIMARY KEY ((guest_last_name), hotel_id)
-           * ) WITH comment = 'Q8. Find reservations by guest name';
-           */
-          cqlSession.execute(createTable(keyspaceName, TABLE_RESERVATION_BY_GUEST)
-                  .ifNotExists()
-                  .withPartitionKey(GUEST_LAST_NAME, DataTypes.TEXT)
-                  .withClusteringColumn(HOTEL_ID, DataTypes.TEXT)
-                  .withColumn(START_DATE, DataTypes.DATE)
-                  .withColumn(END_DATE, DataTypes.DATE)
-                  .withColumn(ROOM_NUMBER, DataTypes.SMALLINT)
-                  .withColumn(CONFIRMATION_NUMBER, DataTypes.TEXT)
-                  .withColumn(GUEST_ID, DataTypes.UUID)
-                  .withComment("Q8. Find reservations by guest name")
-                  .build());
-           
-           /**
-            * CREATE TABLE reservation.guests (
-            *   guest_id uuid PRIMARY KEY,
-            *   first_name text,
-            *   last_name text,
-            *   title text,
-            *   emails set<text>,
-            *   phone_numbers list<text>,
-            *   addresses map<text, frozen<address>>,
-            *   confirmation_number text
-            * ) WITH comment = 'Q9. Find guest by ID';
-            */
-           UserDefinedType  udtAddressType = 
-                   cqlSession.getMetadata().getKeyspace(keyspaceName).get() // Retrieving KeySpaceMetadata
-                             .getUserDefinedType(TYPE_ADDRESS).get();        // Looking for UDT (extending DataType)
-           cqlSession.execute(createTable(keyspaceName, TABLE_GUESTS)
-                   .ifNotExists()
-                   .withPartitionKey(GUEST_ID, DataTypes.UUID)
-                   .withColumn(FIRSTNAME, DataTypes.TEXT)
-                   .withColumn(LASTNAME, DataTypes.TEXT)
-                   .withColumn(TITLE, DataTypes.TEXT)
-                   .withColumn(EMAILS, DataTypes.setOf(DataTypes.TEXT))
-                   .withColumn(PHONE_NUMBERS, DataTypes.listOf(DataTypes.TEXT))
-                   .withColumn(ADDRESSES, DataTypes.mapOf(DataTypes.TEXT, udtAddressType, true))
-                   .withColumn(CONFIRMATION_NUMBER, DataTypes.TEXT)
-                   .withComment("Q9. Find guest by ID")
-                   .build());
-     }
+          new SchemaMigrator(cqlSession, keyspaceName).migrate();
+      }
       
 }
@@ -1,33 +1,47 @@
 package com.cassandraguide.repository;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Profile;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
 import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
+import com.cassandraguide.model.UpsertResult;
 import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
-import com.datastax.oss.driver.api.core.cql.BatchStatement;
-import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
 import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
 
 /**
  * Implementation Reservation methods with Mapper.
  */
 @Repository("reservation.repository.simple")
 @Profile("!unit-test") // When I do some 'unit-test' no connectivity to DB
+@ConditionalOnProperty(name = "reservation.repository.implementation", havingValue = "simple")
+@Qualifier("reservation.repository.active")
 public class ReservationRepositorySimpleStatement implements ReservationRepository {
 
     /** Logger for the class. */
@@ -36,45 +50,89 @@ public class ReservationRepositorySimpleStatement implements ReservationReposito
     /** CqlSession holding metadata to interact with Cassandra. */
     private CqlSession     cqlSession;
     
+    /** Writes in both tables, logged batch or parallel statements. */
+    private DenormalizedWriter denormalizedWriter;
+    
+    /** Simple statements are executed as prepared statements, as is if null. */
+    private PreparedStatementCache statementCache;
+    
+    /** Full table reads split on the token ring. */
+    private TokenRangeScanner tokenRangeScanner;
+    
     /** External Initialization. */
     public ReservationRepositorySimpleStatement(
             @NonNull CqlSession cqlSession, 
             @NonNull @Qualifier("keyspace") CqlIdentifier keyspaceName) {
-        this.cqlSession   = cqlSession;
-        createTables(cqlSession, keyspaceName);
+        this(cqlSession, keyspaceName, new DenormalizedWriter(cqlSession, WriteStrategy.LOGGED_BATCH));
+    }
+    
+    /** 
+     * External Initialization, denormalized writes are executed with the provided writer. Statements are
+     * prepared with the cache registered as schema change listener of the session, executed as simple
+     * statements if there is none: a cache not notified of schema changes would keep stale statements.
+     */
+    public ReservationRepositorySimpleStatement(
+            @NonNull CqlSession cqlSession, 
+            @NonNull @Qualifier("keyspace") CqlIdentifier keyspaceName,
+            @NonNull DenormalizedWriter denormalizedWriter) {
+        this(cqlSession, keyspaceName, denormalizedWriter, PreparedStatementCache.registeredIn(cqlSession));
+    }
+    
+    /** 
+     * External Initialization, statements are prepared once with the provided cache, 
+     * executed as simple statements if the cache is null.
+     */
+    public ReservationRepositorySimpleStatement(
+            @NonNull CqlSession cqlSession, 
+            @NonNull @Qualifier("keyspace") CqlIdentifier keyspaceName,
+            @NonNull DenormalizedWriter denormalizedWriter,
+            PreparedStatementCache statementCache) {
+        this(cqlSession, keyspaceName, new TokenRangeScanner(cqlSession, keyspaceName), 
+             denormalizedWriter, statementCache);
+    }
+    
+    /** 
+     * External Initialization, full table reads are split with the provided scanner and statements
+     * are prepared once with the provided cache, executed as simple statements if the cache is null.
+     */
+    @Autowired
+    public ReservationRepositorySimpleStatement(
+            @NonNull CqlSession cqlSession, 
+            @NonNull @Qualifier("keyspace") CqlIdentifier keyspaceName,
+            @NonNull TokenRangeScanner tokenRangeScanner,
+            @NonNull DenormalizedWriter denormalizedWriter,
+            PreparedStatementCache statementCache) {
+        this.cqlSession         = cqlSession;
+        this.tokenRangeScanner  = tokenRangeScanner;
+        this.denormalizedWriter = denormalizedWriter;
+        this.statementCache     = statementCache;
         logger.info("Application initialized.");
     }
     
     /**
-     * Dedicated constructor for test not creating tables.
+     * Dedicated constructor for test, statements are executed as simple statements.
      */
     public ReservationRepositorySimpleStatement(
             @NonNull CqlSession cqlSession, 
             @NonNull @Qualifier("keyspace") CqlIdentifier keyspaceName, boolean test) {
-        this.cqlSession   = cqlSession;
+        this.cqlSession         = cqlSession;
+        this.tokenRangeScanner  = new TokenRangeScanner(cqlSession, keyspaceName);
+        this.denormalizedWriter = new DenormalizedWriter(cqlSession, WriteStrategy.LOGGED_BATCH);
     }
     
     /** {@inheritDoc} */
     @Override
     public boolean exists(String confirmationNumber) {
         Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
-        return cqlSession.execute(SimpleStatement.builder(
-                "SELECT confirmation_number FROM reservations_by_confirmation WHERE confirmation_number = ?")
-                .addPositionalValue(confirmationNumber)
-                .build())
-                .getAvailableWithoutFetching() > 0;
+        return execute(existsStatement(confirmationNumber))
+                         .getAvailableWithoutFetching() > 0;
     }
 
     /** {@inheritDoc} */
     @Override
     public Optional<Reservation> findByConfirmationNumber(String confirmationNumber) {
         Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
-        SimpleStatement ssFindByConfirmationNumber = SimpleStatement.builder(
-                "SELECT * FROM reservations_by_confirmation WHERE confirmation_number = :num")
-                .addNamedValue("num", confirmationNumber) // Hint: Instead of using position you can use names
-                .build();
-        
-        ResultSet resultSet = cqlSession.execute(ssFindByConfirmationNumber);
+        ResultSet resultSet = execute(findByConfirmationNumberStatement(confirmationNumber));
         
         // Hint: an empty result might not be an error as this method is sometimes used to check whether a
         // reservation with this confirmation number exists
@@ -92,7 +150,19 @@ public class ReservationRepositorySimpleStatement implements ReservationReposito
 
     /** {@inheritDoc} */
     @Override
-    public String upsert(Reservation reservation) {
+    public UpsertResult upsert(Reservation reservation) {
+        Assert.notNull(reservation, "reservation should not be null");
+        if (null == reservation.getConfirmationNumber()) {
+            return new UpsertResult(create(reservation), true);
+        }
+        Optional<Reservation> previous = findByConfirmationNumber(reservation.getConfirmationNumber());
+        denormalizedWriter.execute(prepareAll(upsertStatement(reservation, previous)));
+        return new UpsertResult(reservation.getConfirmationNumber(), previous.isEmpty());
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public String create(Reservation reservation) {
         Assert.notNull(reservation, "reservation should not be null");
         
         if (null == reservation.getConfirmationNumber()) {
@@ -100,36 +170,7 @@ public class ReservationRepositorySimpleStatement implements ReservationReposito
             reservation.setConfirmationNumber(UUID.randomUUID().toString());
         }
         
-        // SimpleStatement to insert into 'reservations_by_hotel_date'
-        SimpleStatement ssInsertReservationByHotelDate = SimpleStatement.builder(
-                "INSERT INTO reservations_by_hotel_date (confirmation_number, hotel_id, start_date, " +
-                        "end_date, room_number, guest_id) VALUES (?, ?, ?, ?, ?, ?)")
-                .addPositionalValue(reservation.getConfirmationNumber())
-                .addPositionalValue(reservation.getHotelId())
-                .addPositionalValue(reservation.getStartDate())
-                .addPositionalValue(reservation.getEndDate())
-                .addPositionalValue(reservation.getRoomNumber())
-                .addPositionalValue(reservation.getGuestId())
-                .build();
-
-        // SimpleStatement to insert into 'reservations_by_hotel_date'
-        SimpleStatement ssInsertRreservationByConfirmation = SimpleStatement.builder(
-                 "INSERT INTO reservations_by_confirmation (confirmation_number, hotel_id, start_date, " +
-                         "end_date, room_number, guest_id) VALUES (?, ?, ?, ?, ?, ?)")
-                 .addPositionalValue(reservation.getConfirmationNumber())
-                 .addPositionalValue(reservation.getHotelId())
-                 .addPositionalValue(reservation.getStartDate())
-                 .addPositionalValue(reservation.getEndDate())
-                 .addPositionalValue(reservation.getRoomNumber())
-                 .addPositionalValue(reservation.getGuestId())
-                 .build();
-
-        // Group Statements in a Batch
-        cqlSession.execute(BatchStatement
-                .builder(DefaultBatchType.LOGGED)
-                .addStatement(ssInsertReservationByHotelDate)
-                .addStatement(ssInsertRreservationByConfirmation)
-                .build());
+        denormalizedWriter.execute(prepareAll(upsertStatement(reservation, Optional.empty())));
         
         return reservation.getConfirmationNumber();
     }
@@ -137,45 +178,43 @@ public class ReservationRepositorySimpleStatement implements ReservationReposito
     /** {@inheritDoc} */
     @Override
     public List<Reservation> findAll() {
-        // SimpleStatement to read all rows from 'reservations_by_confirmation'
-        SimpleStatement ssFindAll = SimpleStatement.newInstance("SELECT * FROM reservations_by_confirmation");
+        // Token ranges are read in parallel, no ordering
+        return tokenRangeScanner.scanAll(TABLE_RESERVATION_BY_CONFI, List.of(CONFIRMATION_NUMBER), this::mapRowToReservation);
+    }
 
-        return cqlSession.execute(ssFindAll)
-                  .all()                          // no paging we retrieve all objects
-                  .stream()                       // because we are good people
-                  .map(this::mapRowToReservation) // Mapping row as Reservation
-                  .collect(Collectors.toList());  // Back to list objects
+    /** {@inheritDoc} */
+    @Override
+    public ReservationPage findAll(int pageSize, String pagingState) {
+        Assert.isTrue(pageSize > 0, "Page size should be greater than 0");
+        ResultSet rs = execute(findAllStatement()
+                .setPageSize(pageSize)
+                .setPagingState(ReservationPage.decodePagingState(pagingState)));
+        return new ReservationPage(
+                ReservationRepository.mapCurrentPage(rs, this::mapRowToReservation), // only current page
+                rs.getExecutionInfo().getPagingState());                               // cursor for next one
     }
 
     /** {@inheritDoc} */
     @Override
-    public void delete(String confirmationNumber) {
+    public Stream<Reservation> streamAll() {
+        return StreamSupport.stream(execute(findAllStatement()).spliterator(), false) // pages fetched on demand
+                            .map(this::mapRowToReservation);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void scanAll(Consumer<Reservation> consumer) {
+        Assert.notNull(consumer, "Consumer should not be null");
+        tokenRangeScanner.scan(TABLE_RESERVATION_BY_CONFI, List.of(CONFIRMATION_NUMBER), this::mapRowToReservation, consumer);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Reservation> delete(String confirmationNumber) {
         Assert.hasLength(confirmationNumber, "ConfirmationNumber cannot be null nor empty");
         Optional<Reservation> existingReservation = findByConfirmationNumber(confirmationNumber);
-        if (!existingReservation.isEmpty()) {
-            
-            Reservation reservation = existingReservation.get();
-            
-            // Create SimpleStatement to delete from 'reservations_by_hotel_date'
-            SimpleStatement ssDeleteReservationByHotelDate = SimpleStatement.builder(
-                    "DELETE FROM reservations_by_hotel_date WHERE hotel_id = ? AND start_date = ? AND room_number = ?")
-                    .addPositionalValue(reservation.getHotelId())
-                    .addPositionalValue(reservation.getStartDate())
-                    .addPositionalValue(reservation.getRoomNumber())
-                    .build();
-            
-            // Create SimpleStatement to delete from 'reservations_by_confirmation'
-            SimpleStatement ssDeleteReservationByConfirmation = SimpleStatement.builder(
-                    "DELETE FROM reservations_by_confirmation WHERE confirmation_number = ?")
-                    .addPositionalValue(reservation.getConfirmationNumber())
-                    .build();
-            
-            cqlSession.execute(BatchStatement
-                .builder(DefaultBatchType.LOGGED)
-                .addStatement(ssDeleteReservationByHotelDate)
-                .addStatement(ssDeleteReservationByConfirmation)
-                .build());
-        };
+        existingReservation.ifPresent(res -> denormalizedWriter.execute(prepareAll(deleteStatement(res))));
+        return existingReservation;
     }
 
     /** {@inheritDoc} */
@@ -183,19 +222,269 @@ public class ReservationRepositorySimpleStatement implements ReservationReposito
     public List<Reservation> findByHotelAndDate(String hotelId, LocalDate localDate) {
         Assert.hasLength(hotelId, "Hotel Id should not be null nor empty");
         Assert.notNull(localDate, "Local Date object should not be null nor empty");
-   
-        // Create SimpleStatement to search 'reservations_by_hotel_date'
-        SimpleStatement ssSearchReservationByHotelDate = SimpleStatement.builder(
+        return execute(findByHotelAndDateStatement(hotelId, localDate))
+                         .all()                          // no paging we retrieve all objects
+                         .stream()                       // because we are good people
+                         .map(this::mapRowToReservation) // Mapping row as Reservation
+                         .collect(Collectors.toList());  // Back to list objects
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Boolean> existsAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        return executeAsync(existsStatement(confirmationNumber))
+                         .thenApply(rs -> rs.remaining() > 0);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> findByConfirmationNumberAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        return executeAsync(findByConfirmationNumberStatement(confirmationNumber))
+                         .thenApply(AsyncResultSet::one)
+                         .thenApply(row -> Optional.ofNullable(row).map(this::mapRowToReservation));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<UpsertResult> upsertAsync(Reservation reservation) {
+        Assert.notNull(reservation, "reservation should not be null");
+        if (null == reservation.getConfirmationNumber()) {
+            return createAsync(reservation).thenApply(cn -> new UpsertResult(cn, true));
+        }
+        return findByConfirmationNumberAsync(reservation.getConfirmationNumber())
+                .thenCompose(RepositoryOperation.withCurrent(previous ->
+            prepareAllAsync(upsertStatement(reservation, previous))
+                      .thenCompose(RepositoryOperation.withCurrent(denormalizedWriter::executeAsync))
+                      .thenApply(rs -> new UpsertResult(reservation.getConfirmationNumber(), previous.isEmpty()))));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<String> createAsync(Reservation reservation) {
+        Assert.notNull(reservation, "reservation should not be null");
+        if (null == reservation.getConfirmationNumber()) {
+            // Generating a new reservation number if none has been provided
+            reservation.setConfirmationNumber(UUID.randomUUID().toString());
+        }
+        return prepareAllAsync(upsertStatement(reservation, Optional.empty()))
+                         .thenCompose(RepositoryOperation.withCurrent(denormalizedWriter::executeAsync))
+                         .thenApply(rs -> reservation.getConfirmationNumber());
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<List<Reservation>> findAllAsync() {
+        return executeAsync(findAllStatement())
+                         .thenCompose(rs -> ReservationRepository.collectAllPages(rs, this::mapRowToReservation));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<ReservationPage> findAllAsync(int pageSize, String pagingState) {
+        Assert.isTrue(pageSize > 0, "Page size should be greater than 0");
+        return executeAsync(findAllStatement()
+                            .setPageSize(pageSize)
+                            .setPagingState(ReservationPage.decodePagingState(pagingState)))
+                         .thenApply(rs -> new ReservationPage(
+                                 ReservationRepository.mapCurrentPage(rs, this::mapRowToReservation),
+                                 rs.getExecutionInfo().getPagingState()));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> deleteAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber cannot be null nor empty");
+        return findByConfirmationNumberAsync(confirmationNumber)
+                .thenCompose(RepositoryOperation.withCurrent(existingReservation ->
+            existingReservation
+                .map(res -> prepareAllAsync(deleteStatement(res))
+                        .thenCompose(RepositoryOperation.withCurrent(denormalizedWriter::executeAsync))
+                        .thenApply(rs -> existingReservation))
+                .orElse(CompletableFuture.completedFuture(existingReservation))));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<List<Reservation>> findByHotelAndDateAsync(String hotelId, LocalDate localDate) {
+        Assert.hasLength(hotelId, "Hotel Id should not be null nor empty");
+        Assert.notNull(localDate, "Local Date object should not be null nor empty");
+        return executeAsync(findByHotelAndDateStatement(hotelId, localDate))
+                         .thenCompose(rs -> ReservationRepository.collectAllPages(rs, this::mapRowToReservation));
+    }
+    
+    /**
+     * Prepared equivalent of the statement when statements are cached.
+     */
+    private Statement<?> prepare(SimpleStatement statement) {
+        return (null == statementCache) ? statement : statementCache.bind(cqlSession, statement);
+    }
+    
+    /**
+     * Execute a statement, recording whether a speculative execution answered and the wait for the driver.
+     */
+    private ResultSet execute(SimpleStatement statement) {
+        RepositoryOperation operation = RepositoryOperation.current();
+        long start = System.nanoTime();
+        ResultSet resultSet = cqlSession.execute(prepare(statement));
+        RepositoryOperation.driverResponse(operation, start, resultSet.getExecutionInfo());
+        SpeculativeReadPolicy.recordOutcome(cqlSession, resultSet.getExecutionInfo());
+        return resultSet;
+    }
+    
+    private CompletionStage<AsyncResultSet> executeAsync(SimpleStatement statement) {
+        RepositoryOperation operation = RepositoryOperation.current();
+        long start = System.nanoTime();
+        CompletionStage<AsyncResultSet> result = (null == statementCache) 
+                ? cqlSession.executeAsync(statement)
+                : statementCache.bindAsync(cqlSession, statement).thenCompose(cqlSession::executeAsync);
+        return result.thenApply(resultSet -> {
+            RepositoryOperation.driverResponse(operation, start, resultSet.getExecutionInfo());
+            SpeculativeReadPolicy.recordOutcome(cqlSession, resultSet.getExecutionInfo());
+            return resultSet;
+        });
+    }
+    
+    /**
+     * Prepared equivalents of the statements of a denormalized write, the preparation counting as driver wait.
+     */
+    private List<BatchableStatement<?>> prepareAll(List<SimpleStatement> statements) {
+        if (null == statementCache) {
+            return new ArrayList<>(statements);
+        }
+        RepositoryOperation operation = RepositoryOperation.current();
+        long start = System.nanoTime();
+        List<BatchableStatement<?>> prepared = statements.stream()
+                         .<BatchableStatement<?>>map(statement -> statementCache.bind(cqlSession, statement))
+                         .collect(Collectors.toList());
+        RepositoryOperation.driverResponse(operation, start, null);
+        return prepared;
+    }
+    
+    private CompletionStage<List<BatchableStatement<?>>> prepareAllAsync(List<SimpleStatement> statements) {
+        if (null == statementCache) {
+            return CompletableFuture.completedFuture(new ArrayList<>(statements));
+        }
+        RepositoryOperation operation = RepositoryOperation.current();
+        long start = System.nanoTime();
+        List<CompletableFuture<BoundStatement>> bound = statements.stream()
+                .map(statement -> statementCache.bindAsync(cqlSession, statement).toCompletableFuture())
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(bound.toArray(new CompletableFuture[0]))
+                                .whenComplete((v, error) -> RepositoryOperation.driverResponse(operation, start, null))
+                                .thenApply(v -> bound.stream()
+                                        .<BatchableStatement<?>>map(CompletableFuture::join)
+                                        .collect(Collectors.toList()));
+    }
+    
+    /**
+     * SimpleStatement to test existence in 'reservations_by_confirmation'.
+     */
+    private SimpleStatement existsStatement(String confirmationNumber) {
+        return SimpleStatement.builder(
+                "SELECT confirmation_number FROM reservations_by_confirmation WHERE confirmation_number = ?")
+                .addPositionalValue(confirmationNumber)
+                .setIdempotence(true)
+                .setExecutionProfileName(PROFILE_READ)
+                .build();
+    }
+    
+    /**
+     * SimpleStatement to read a single row from 'reservations_by_confirmation'.
+     */
+    private SimpleStatement findByConfirmationNumberStatement(String confirmationNumber) {
+        return SimpleStatement.builder(
+                "SELECT * FROM reservations_by_confirmation WHERE confirmation_number = :num")
+                .addNamedValue("num", confirmationNumber) // Hint: Instead of using position you can use names
+                .setIdempotence(true)                     // Point reads are hedged (profile 'read')
+                .setExecutionProfileName(PROFILE_READ)
+                .build();
+    }
+    
+    /**
+     * SimpleStatement to read all rows from 'reservations_by_confirmation'.
+     */
+    private SimpleStatement findAllStatement() {
+        return SimpleStatement.newInstance("SELECT * FROM reservations_by_confirmation")
+                              .setExecutionProfileName(PROFILE_SCAN);
+    }
+    
+    /**
+     * SimpleStatement to search 'reservations_by_hotel_date'.
+     */
+    private SimpleStatement findByHotelAndDateStatement(String hotelId, LocalDate localDate) {
+        return SimpleStatement.builder(
                 "SELECT * FROM reservations_by_hotel_date WHERE hotel_id = ? AND start_date = ?")
                 .addPositionalValue(hotelId)
                 .addPositionalValue(localDate)
+                .setIdempotence(true)
+                .setExecutionProfileName(PROFILE_READ)
+                .build();
+    }
+    
+    /**
+     * Statements inserting the reservation in 'reservations_by_hotel_date' and 'reservations_by_confirmation',
+     * the row of the previous version in 'reservations_by_hotel_date' is deleted if its key changed.
+     */
+    private List<SimpleStatement> upsertStatement(Reservation reservation, Optional<Reservation> previous) {
+        // SimpleStatement to insert into 'reservations_by_hotel_date'
+        SimpleStatement ssInsertReservationByHotelDate = SimpleStatement.builder(
+                "INSERT INTO reservations_by_hotel_date (confirmation_number, hotel_id, start_date, " +
+                        "end_date, room_number, guest_id) VALUES (?, ?, ?, ?, ?, ?)")
+                .addPositionalValue(reservation.getConfirmationNumber())
+                .addPositionalValue(reservation.getHotelId())
+                .addPositionalValue(reservation.getStartDate())
+                .addPositionalValue(reservation.getEndDate())
+                .addPositionalValue(reservation.getRoomNumber())
+                .addPositionalValue(reservation.getGuestId())
                 .build();
 
-        return cqlSession.execute(ssSearchReservationByHotelDate)
-                         .all()                          // no paging we retrieve all objects
-                         .stream()                       // because we are good people
-                         .map(this::mapRowToReservation) // Mapping row as Reservation
-                         .collect(Collectors.toList());  // Back to list objects
+        // SimpleStatement to insert into 'reservations_by_confirmation'
+        SimpleStatement ssInsertRreservationByConfirmation = SimpleStatement.builder(
+                 "INSERT INTO reservations_by_confirmation (confirmation_number, hotel_id, start_date, " +
+                         "end_date, room_number, guest_id) VALUES (?, ?, ?, ?, ?, ?)")
+                 .addPositionalValue(reservation.getConfirmationNumber())
+                 .addPositionalValue(reservation.getHotelId())
+                 .addPositionalValue(reservation.getStartDate())
+                 .addPositionalValue(reservation.getEndDate())
+                 .addPositionalValue(reservation.getRoomNumber())
+                 .addPositionalValue(reservation.getGuestId())
+                 .build();
+
+        // Group Statements, written by a batch or in parallel
+        List<SimpleStatement> statements = new ArrayList<>(3);
+        statements.add(ssInsertReservationByHotelDate);
+        statements.add(ssInsertRreservationByConfirmation);
+        previous.filter(p -> ReservationRepository.isHotelDateKeyChanged(p, reservation))
+                .ifPresent(p -> statements.add(SimpleStatement.builder(
+                        "DELETE FROM reservations_by_hotel_date WHERE hotel_id = ? AND start_date = ? AND room_number = ?")
+                        .addPositionalValue(p.getHotelId())
+                        .addPositionalValue(p.getStartDate())
+                        .addPositionalValue(p.getRoomNumber())
+                        .build()));
+        return statements;
+    }
+    
+    /**
+     * Statements deleting the reservation from 'reservations_by_hotel_date' and 'reservations_by_confirmation'.
+     */
+    private List<SimpleStatement> deleteStatement(Reservation reservation) {
+        // Create SimpleStatement to delete from 'reservations_by_hotel_date'
+        SimpleStatement ssDeleteReservationByHotelDate = SimpleStatement.builder(
+                "DELETE FROM reservations_by_hotel_date WHERE hotel_id = ? AND start_date = ? AND room_number = ?")
+                .addPositionalValue(reservation.getHotelId())
+                .addPositionalValue(reservation.getStartDate())
+                .addPositionalValue(reservation.getRoomNumber())
+                .build();
+        
+        // Create SimpleStatement to delete from 'reservations_by_confirmation'
+        SimpleStatement ssDeleteReservationByConfirmation = SimpleStatement.builder(
+                "DELETE FROM reservations_by_confirmation WHERE confirmation_number = ?")
+                .addPositionalValue(reservation.getConfirmationNumber())
+                .build();
+        
+        return List.of(ssDeleteReservationByHotelDate, ssDeleteReservationByConfirmation);
     }
 
 }
@@ -4,11 +4,19 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Profile;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
@@ -17,16 +25,24 @@ import org.springframework.util.Assert;
 import com.cassandraguide.mapper.ReservationByConfirmationEntity;
 import com.cassandraguide.mapper.ReservationByHotelDateEntity;
 import com.cassandraguide.mapper.ReservationDao;
+import com.cassandraguide.mapper.ReservationDaoHelper;
 import com.cassandraguide.mapper.ReservationMapperBuilder;
 import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
+import com.cassandraguide.model.UpsertResult;
 import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.PagingIterable;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
 
 /**
  * Implementation Reservation methods with Mapper.
  */
 @Repository("reservation.repository.mapper")
 @Profile("!unit-test") // When I do some 'unit-test' no connectivity to DB
+@ConditionalOnProperty(name = "reservation.repository.implementation", havingValue = "mapper")
+@Qualifier("reservation.repository.active")
 public class ReservationRepositoryWithMapper implements ReservationRepository {
 
     /** Logger for the class. */
@@ -35,13 +51,40 @@ public class ReservationRepositoryWithMapper implements ReservationRepository {
     /** CqlSession holding metadata to interact with Cassandra. */
     private ReservationDao reservationDao;
     
+    /** Connectivity to Cassandra, outcome of speculative executions is recorded with its policy. */
+    private CqlSession cqlSession;
+    
+    /** Full table reads split on the token ring, rows mapped by the DAO. */
+    private TokenRangeScanner tokenRangeScanner;
+    
     /** External Initialization. */
     public ReservationRepositoryWithMapper(
             @NonNull CqlSession cqlSession, 
             @NonNull @Qualifier("keyspace") CqlIdentifier keyspaceName) {
-        createTables(cqlSession, keyspaceName);
-        reservationDao = 
-                new ReservationMapperBuilder(cqlSession).build().reservationDao(keyspaceName);
+        this(cqlSession, keyspaceName, new DenormalizedWriter(cqlSession, WriteStrategy.LOGGED_BATCH));
+    }
+    
+    /** External Initialization, denormalized writes of the DAO are executed with the provided writer. */
+    public ReservationRepositoryWithMapper(
+            @NonNull CqlSession cqlSession, 
+            @NonNull @Qualifier("keyspace") CqlIdentifier keyspaceName,
+            @NonNull DenormalizedWriter denormalizedWriter) {
+        this(cqlSession, keyspaceName, new TokenRangeScanner(cqlSession, keyspaceName), denormalizedWriter);
+    }
+    
+    /** External Initialization, full table reads and denormalized writes are executed with the provided helpers. */
+    @Autowired
+    public ReservationRepositoryWithMapper(
+            @NonNull CqlSession cqlSession, 
+            @NonNull @Qualifier("keyspace") CqlIdentifier keyspaceName,
+            @NonNull TokenRangeScanner tokenRangeScanner,
+            @NonNull DenormalizedWriter denormalizedWriter) {
+        this.cqlSession        = cqlSession;
+        this.tokenRangeScanner = tokenRangeScanner;
+        // Statements of the DAO are prepared here, tables are created by the migrations
+        reservationDao = new ReservationMapperBuilder(cqlSession)
+                .withCustomState(ReservationDaoHelper.CUSTOM_STATE_WRITER, denormalizedWriter)
+                .build().reservationDao(keyspaceName);
         logger.info("Application initialized.");
     }
     
@@ -49,20 +92,34 @@ public class ReservationRepositoryWithMapper implements ReservationRepository {
     @Override
     public boolean exists(String confirmationNumber) {
         Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
-        return (reservationDao.existConfirmation(confirmationNumber).one() != null);
+        ResultSet resultSet = read(() -> reservationDao.existConfirmation(confirmationNumber));
+        SpeculativeReadPolicy.recordOutcome(cqlSession, resultSet.getExecutionInfo());
+        return (resultSet.one() != null);
     }
 
     /** {@inheritDoc} */
     @Override
     public Optional<Reservation> findByConfirmationNumber(String confirmationNumber) {
         Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
-        Optional<ReservationByConfirmationEntity> daoRes = reservationDao.findByConfirmation(confirmationNumber);
+        Optional<ReservationByConfirmationEntity> daoRes = read(() -> reservationDao.findByConfirmation(confirmationNumber));
         return (daoRes.isPresent()) ? Optional.ofNullable(daoRes.get().asReservation()) : Optional.empty();
     }
     
     /** {@inheritDoc} */
     @Override
-    public String upsert(Reservation res) {
+    public UpsertResult upsert(Reservation res) {
+        Assert.notNull(res, "reservation should not be null");
+        if (null == res.getConfirmationNumber()) {
+            return new UpsertResult(create(res), true);
+        }
+        Optional<Reservation> previous = findByConfirmationNumber(res.getConfirmationNumber());
+        reservationDao.replaceWithQueryProvider(res, previous.orElse(null));
+        return new UpsertResult(res.getConfirmationNumber(), previous.isEmpty());
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public String create(Reservation res) {
         
         Assert.notNull(res, "reservation should not be null");
         if (null == res.getConfirmationNumber()) {
@@ -93,17 +150,43 @@ public class ReservationRepositoryWithMapper implements ReservationRepository {
     /** {@inheritDoc} */
     @Override
     public List<Reservation> findAll() {
-        return reservationDao.findAll()             // Get first page from Query
-                .all().stream()                     // There are not billions of records, give me them all
-                .map(ReservationByConfirmationEntity::asReservation) // Map as Reservation
-                .collect(Collectors.toList());      // Collect as expected list
+        // Token ranges are read in parallel, no ordering
+        return tokenRangeScanner.scanAll(TABLE_RESERVATION_BY_CONFI, List.of(CONFIRMATION_NUMBER), this::mapRow);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ReservationPage findAll(int pageSize, String pagingState) {
+        Assert.isTrue(pageSize > 0, "Page size should be greater than 0");
+        PagingIterable<ReservationByConfirmationEntity> page = read(() -> reservationDao.findAll(bsb -> bsb
+                .setPageSize(pageSize)
+                .setPagingState(ReservationPage.decodePagingState(pagingState))));
+        return new ReservationPage(
+                ReservationRepository.mapCurrentPage(page, ReservationByConfirmationEntity::asReservation),
+                page.getExecutionInfo().getPagingState());
     }
 
     /** {@inheritDoc} */
     @Override
-    public void delete(String confirmationNumber) {
+    public Stream<Reservation> streamAll() {
+        return StreamSupport.stream(reservationDao.findAll().spliterator(), false) // pages fetched on demand
+                            .map(ReservationByConfirmationEntity::asReservation);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public void scanAll(Consumer<Reservation> consumer) {
+        Assert.notNull(consumer, "Consumer should not be null");
+        tokenRangeScanner.scan(TABLE_RESERVATION_BY_CONFI, List.of(CONFIRMATION_NUMBER), this::mapRow, consumer);
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Reservation> delete(String confirmationNumber) {
         Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
-        findByConfirmationNumber(confirmationNumber).ifPresent(reservationDao::deleteReservation);
+        Optional<Reservation> existingReservation = findByConfirmationNumber(confirmationNumber);
+        existingReservation.ifPresent(reservationDao::deleteReservation);
+        return existingReservation;
     }
 
     /** {@inheritDoc} */
@@ -111,10 +194,126 @@ public class ReservationRepositoryWithMapper implements ReservationRepository {
     public List<Reservation> findByHotelAndDate(String hotelId, LocalDate localDate) {
         Assert.hasLength(hotelId, "Hotel Id should not be null nor empty");
         Assert.notNull(localDate, "Local Date object should not be null nor empty");
-        return reservationDao.findByHotelAndDate(hotelId, localDate)
+        PagingIterable<ReservationByHotelDateEntity> reservations = read(() -> reservationDao.findByHotelAndDate(hotelId, localDate));
+        SpeculativeReadPolicy.recordOutcome(cqlSession, reservations.getExecutionInfo());
+        return reservations
                 .all().stream()                                   // Because we are good people
                 .map(ReservationByHotelDateEntity::asReservation) // Mapping row as Reservation
                 .collect(Collectors.toList());                    // Back to list objects
     }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Boolean> existsAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        return readAsync(() -> reservationDao.existConfirmationAsync(confirmationNumber))
+                             .thenApply(rs -> {
+                                 SpeculativeReadPolicy.recordOutcome(cqlSession, rs.getExecutionInfo());
+                                 return rs.one() != null;
+                             });
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> findByConfirmationNumberAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        return readAsync(() -> reservationDao.findByConfirmationAsync(confirmationNumber))
+                             .thenApply(daoRes -> daoRes.map(ReservationByConfirmationEntity::asReservation));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<UpsertResult> upsertAsync(Reservation res) {
+        Assert.notNull(res, "reservation should not be null");
+        if (null == res.getConfirmationNumber()) {
+            return createAsync(res).thenApply(cn -> new UpsertResult(cn, true));
+        }
+        return findByConfirmationNumberAsync(res.getConfirmationNumber())
+                .thenCompose(RepositoryOperation.withCurrent(previous ->
+            reservationDao.replaceWithQueryProviderAsync(res, previous.orElse(null))
+                          .thenApply(v -> new UpsertResult(res.getConfirmationNumber(), previous.isEmpty()))));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<String> createAsync(Reservation res) {
+        Assert.notNull(res, "reservation should not be null");
+        if (null == res.getConfirmationNumber()) {
+            // Generating a new reservation number if none has been provided
+            res.setConfirmationNumber(UUID.randomUUID().toString());
+        }
+        return reservationDao.upsertWithQueryProviderAsync(res)
+                             .thenApply(v -> res.getConfirmationNumber());
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<List<Reservation>> findAllAsync() {
+        return readAsync(() -> reservationDao.findAllAsync()).thenCompose(it -> 
+            ReservationRepository.collectAllPages(it, ReservationByConfirmationEntity::asReservation));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<ReservationPage> findAllAsync(int pageSize, String pagingState) {
+        Assert.isTrue(pageSize > 0, "Page size should be greater than 0");
+        return readAsync(() -> reservationDao.findAllAsync(bsb -> bsb
+                                .setPageSize(pageSize)
+                                .setPagingState(ReservationPage.decodePagingState(pagingState))))
+                             .thenApply(page -> new ReservationPage(
+                                 ReservationRepository.mapCurrentPage(page, ReservationByConfirmationEntity::asReservation),
+                                 page.getExecutionInfo().getPagingState()));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Optional<Reservation>> deleteAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        return findByConfirmationNumberAsync(confirmationNumber)
+                .thenCompose(RepositoryOperation.withCurrent(existingReservation ->
+            existingReservation
+                .map(res -> reservationDao.deleteReservationAsync(res).thenApply(v -> existingReservation))
+                .orElse(CompletableFuture.completedFuture(existingReservation))));
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<List<Reservation>> findByHotelAndDateAsync(String hotelId, LocalDate localDate) {
+        Assert.hasLength(hotelId, "Hotel Id should not be null nor empty");
+        Assert.notNull(localDate, "Local Date object should not be null nor empty");
+        return readAsync(() -> reservationDao.findByHotelAndDateAsync(hotelId, localDate)).thenCompose(it -> {
+            SpeculativeReadPolicy.recordOutcome(cqlSession, it.getExecutionInfo());
+            return ReservationRepository.collectAllPages(it, ReservationByHotelDateEntity::asReservation);
+        });
+    }
+    
+    /**
+     * Read of the DAO, recording the wait for the driver. Single entities are mapped by the DAO within the
+     * call and count as driver wait, iterables are mapped while iterating. Writes of the DAO are recorded
+     * by the {@link DenormalizedWriter}.
+     */
+    private static <T> T read(Supplier<T> daoCall) {
+        RepositoryOperation operation = RepositoryOperation.current();
+        long start = System.nanoTime();
+        T result = daoCall.get();
+        RepositoryOperation.driverResponse(operation, start, null);
+        return result;
+    }
+
+    private static <T> CompletionStage<T> readAsync(Supplier<CompletionStage<T>> daoCall) {
+        RepositoryOperation operation = RepositoryOperation.current();
+        long start = System.nanoTime();
+        return daoCall.get().thenApply(result -> {
+            RepositoryOperation.driverResponse(operation, start, null);
+            return result;
+        });
+    }
+
+    /**
+     * Row of a token range scan, mapped by the DAO.
+     */
+    private Reservation mapRow(Row row) {
+        return reservationDao.asReservationByConfirmation(row).asReservation();
+    }
 
 }
@@ -21,29 +21,41 @@ import static com.datastax.oss.driver.api.querybuilder.QueryBuilder.selectFrom;
 import static com.datastax.oss.driver.api.querybuilder.relation.Relation.column;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Profile;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
 import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
+import com.cassandraguide.model.UpsertResult;
 import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
-import com.datastax.oss.driver.api.core.cql.BatchStatement;
-import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
 import com.datastax.oss.driver.api.querybuilder.QueryBuilder;
 
 /**
@@ -53,6 +65,8 @@ import com.datastax.oss.driver.api.querybuilder.QueryBuilder;
  */
 @Repository("reservation.repository.querybuilder")
 @Profile("!unit-test") // When I do some 'unit-test' no connectivity to DB
+@ConditionalOnProperty(name = "reservation.repository.implementation", havingValue = "querybuilder", matchIfMissing = true)
+@Qualifier("reservation.repository.active")
 public class ReservationRepositoryWithQueryBuilder implements ReservationRepository {
 
     /** Logger for the class. */
@@ -70,6 +84,12 @@ public class ReservationRepositoryWithQueryBuilder implements ReservationReposit
     private PreparedStatement psDeleteReservationByHotelDate;
     private PreparedStatement psDeleteReservationByConfirmation;
     
+    /** Parallel reads of the token ring for full table scans. */
+    private TokenRangeScanner tokenRangeScanner;
+    
+    /** Writes in both tables, logged batch or parallel statements. */
+    private DenormalizedWriter denormalizedWriter;
+    
     /**
      * Default constructor is required for java reflection and Injection.
      */
@@ -80,13 +100,24 @@ public class ReservationRepositoryWithQueryBuilder implements ReservationReposit
     public ReservationRepositoryWithQueryBuilder(
             @NonNull CqlSession cqlSession, 
             @NonNull @Qualifier("keyspace") CqlIdentifier keyspaceName) {
-        this.cqlSession   = cqlSession;
-        this.keyspaceName = keyspaceName;
-        
-        // Will create tables (if they do not exist)
-        createTables(cqlSession, keyspaceName);
+        this(cqlSession, keyspaceName, 
+             new TokenRangeScanner(cqlSession, keyspaceName), 
+             new DenormalizedWriter(cqlSession, WriteStrategy.LOGGED_BATCH));
+    }
+    
+    /** External Initialization, full table reads and denormalized writes are executed with the provided helpers. */
+    @Autowired
+    public ReservationRepositoryWithQueryBuilder(
+            @NonNull CqlSession cqlSession, 
+            @NonNull @Qualifier("keyspace") CqlIdentifier keyspaceName,
+            @NonNull TokenRangeScanner tokenRangeScanner,
+            @NonNull DenormalizedWriter denormalizedWriter) {
+        this.cqlSession         = cqlSession;
+        this.keyspaceName       = keyspaceName;
+        this.tokenRangeScanner  = tokenRangeScanner;
+        this.denormalizedWriter = denormalizedWriter;
         
-        // Prepare Statements of reservation
+        // Prepare Statements of reservation, tables are created by the migrations
         prepareStatements();
         logger.info("Application initialized.");
     }
@@ -126,6 +157,8 @@ public class ReservationRepositoryWithQueryBuilder implements ReservationReposit
         this.psDeleteReservationByHotelDate     = psDeleteReservationByHotel;
         this.psDeleteReservationByConfirmation  = psDeleteReservationByConfirmation;
         this.psSearchReservation                = psSearchReservation;
+        this.tokenRangeScanner                  = new TokenRangeScanner(cqlSession, keyspaceName);
+        this.denormalizedWriter                 = new DenormalizedWriter(cqlSession, WriteStrategy.LOGGED_BATCH);
         logger.info("Application initialized (MOCK)");
     }
     
@@ -144,14 +177,14 @@ public class ReservationRepositoryWithQueryBuilder implements ReservationReposit
     /** {@inheritDoc} */
     public boolean exists(String confirmationNumber) {
         Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
-        return cqlSession.execute(psExistReservation.bind(confirmationNumber))
+        return read(psExistReservation.bind(confirmationNumber))
                          .getAvailableWithoutFetching() > 0;
     }
    
     /** {@inheritDoc} */
     public Optional<Reservation> findByConfirmationNumber(String confirmationNumber) {
         Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
-        ResultSet resultSet = cqlSession.execute(psFindReservation.bind(confirmationNumber));
+        ResultSet resultSet = read(psFindReservation.bind(confirmationNumber));
         // Hint: an empty result might not be an error as this method is sometimes used to check whether a
         // reservation with this confirmation number exists
         Row row = resultSet.one();
@@ -166,85 +199,231 @@ public class ReservationRepositoryWithQueryBuilder implements ReservationReposit
         return Optional.of(mapRowToReservation(row));
     }
     
-    /**
-     * Create new entry in multiple tables for this reservation.
-     *
-     * @param reservation
-     *      current reservation object
-     * @return
-     *      reservation confirmation number
-     */
-     public String upsert(Reservation r) {
+    /** {@inheritDoc} */
+     public UpsertResult upsert(Reservation r) {
+        Assert.notNull(r, "Reservation object should not be null nor empty");
+        if (null == r.getConfirmationNumber()) {
+            return new UpsertResult(create(r), true);
+        }
+        Optional<Reservation> previous = findByConfirmationNumber(r.getConfirmationNumber());
+        denormalizedWriter.execute(bindUpsertReservation(r, previous));
+        return new UpsertResult(r.getConfirmationNumber(), previous.isEmpty());
+    }
+    
+    /** {@inheritDoc} */
+    public String create(Reservation r) {
         Assert.notNull(r, "Reservation object should not be null nor empty");
         if (null == r.getConfirmationNumber()) {
             // Generating a new reservation number if none has been provided
             r.setConfirmationNumber(UUID.randomUUID().toString());
         }
-        cqlSession.execute(BatchStatement
-                .builder(DefaultBatchType.LOGGED)
-                .addStatement(psInsertReservationByHotelDate.bind(
-                                  r.getHotelId(), r.getStartDate(), r.getEndDate(), 
-                                  r.getRoomNumber(), r.getConfirmationNumber(), r.getGuestId()))
-                .addStatement(psInsertReservationByConfirmation.bind(
-                                  r.getConfirmationNumber(), r.getHotelId(), r.getStartDate(), 
-                                  r.getEndDate(), r.getRoomNumber(), r.getGuestId()))
-                .build());
+        denormalizedWriter.execute(bindUpsertReservation(r, Optional.empty()));
         return r.getConfirmationNumber();
     }
     
     /** {@inheritDoc} */
     public List<Reservation> findAll() {
-        return cqlSession.execute(selectFrom(keyspaceName, TABLE_RESERVATION_BY_CONFI).all().build())
-                  .all()                          // no paging we retrieve all objects
-                  .stream()                       // because we are good people
-                  .map(this::mapRowToReservation) // Mapping row as Reservation
-                  .collect(Collectors.toList());  // Back to list objects
+        // Token ranges are read in parallel, no ordering
+        return tokenRangeScanner.scanAll(TABLE_RESERVATION_BY_CONFI, List.of(CONFIRMATION_NUMBER), this::mapRowToReservation);
+    }
+    
+    /** {@inheritDoc} */
+    public ReservationPage findAll(int pageSize, String pagingState) {
+        Assert.isTrue(pageSize > 0, "Page size should be greater than 0");
+        ResultSet rs = read(findAllPageStatement(pageSize, pagingState));
+        return new ReservationPage(
+                ReservationRepository.mapCurrentPage(rs, this::mapRowToReservation), // only current page
+                rs.getExecutionInfo().getPagingState());                               // cursor for next one
+    }
+    
+    /** {@inheritDoc} */
+    public Stream<Reservation> streamAll() {
+        return StreamSupport.stream(cqlSession.execute(findAllStatement()).spliterator(), false) // pages fetched on demand
+                            .map(this::mapRowToReservation);
     }
     
     /** {@inheritDoc} */
-    public void delete(String confirmationNumber) {
+    @Override
+    public void scanAll(Consumer<Reservation> consumer) {
+        Assert.notNull(consumer, "Consumer should not be null");
+        tokenRangeScanner.scan(TABLE_RESERVATION_BY_CONFI, List.of(CONFIRMATION_NUMBER), this::mapRowToReservation, consumer);
+    }
+    
+    /** {@inheritDoc} */
+    public Optional<Reservation> delete(String confirmationNumber) {
         Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
         Optional<Reservation> existingReservation = findByConfirmationNumber(confirmationNumber);
-        if (!existingReservation.isEmpty()) {
-            Reservation res = existingReservation.get();
-            cqlSession.execute(BatchStatement
-                .builder(DefaultBatchType.LOGGED)
-                .addStatement(psDeleteReservationByConfirmation.bind(res.getConfirmationNumber()))
-                .addStatement(psDeleteReservationByHotelDate.bind(res.getHotelId(), res.getStartDate(), res.getRoomNumber()))
-                .build());
-        };
+        existingReservation.ifPresent(res -> denormalizedWriter.execute(bindDeleteReservation(res)));
+        return existingReservation;
     }
     
     /** {@inheritDoc} */
     public List<Reservation> findByHotelAndDate(String hotelId, LocalDate localDate) {
         Assert.hasLength(hotelId, "Hotel Id should not be null nor empty");
         Assert.notNull(localDate, "Local Date object should not be null nor empty");
-        return cqlSession.execute(psSearchReservation.bind(hotelId, localDate))
+        return read(psSearchReservation.bind(hotelId, localDate))
                          .all()                          // no paging we retrieve all objects
                          .stream()                       // because we are good people
                          .map(this::mapRowToReservation) // Mapping row as Reservation
                          .collect(Collectors.toList());  // Back to list objects
     }
-
     
+    /** {@inheritDoc} */
+    public CompletionStage<Boolean> existsAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        return readAsync(psExistReservation.bind(confirmationNumber))
+                         .thenApply(rs -> rs.remaining() > 0);
+    }
+    
+    /** {@inheritDoc} */
+    public CompletionStage<Optional<Reservation>> findByConfirmationNumberAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        return readAsync(psFindReservation.bind(confirmationNumber))
+                         .thenApply(AsyncResultSet::one)
+                         .thenApply(row -> Optional.ofNullable(row).map(this::mapRowToReservation));
+    }
     
+    /** {@inheritDoc} */
+    public CompletionStage<UpsertResult> upsertAsync(Reservation r) {
+        Assert.notNull(r, "Reservation object should not be null nor empty");
+        if (null == r.getConfirmationNumber()) {
+            return createAsync(r).thenApply(cn -> new UpsertResult(cn, true));
+        }
+        return findByConfirmationNumberAsync(r.getConfirmationNumber())
+                .thenCompose(RepositoryOperation.withCurrent(previous ->
+            denormalizedWriter.executeAsync(bindUpsertReservation(r, previous))
+                      .thenApply(rs -> new UpsertResult(r.getConfirmationNumber(), previous.isEmpty()))));
+    }
     
+    /** {@inheritDoc} */
+    public CompletionStage<String> createAsync(Reservation r) {
+        Assert.notNull(r, "Reservation object should not be null nor empty");
+        if (null == r.getConfirmationNumber()) {
+            // Generating a new reservation number if none has been provided
+            r.setConfirmationNumber(UUID.randomUUID().toString());
+        }
+        return denormalizedWriter.executeAsync(bindUpsertReservation(r, Optional.empty()))
+                         .thenApply(rs -> r.getConfirmationNumber());
+    }
+    
+    /** {@inheritDoc} */
+    public CompletionStage<List<Reservation>> findAllAsync() {
+        return readAsync(findAllStatement())
+                         .thenCompose(rs -> ReservationRepository.collectAllPages(rs, this::mapRowToReservation));
+    }
+    
+    /** {@inheritDoc} */
+    public CompletionStage<ReservationPage> findAllAsync(int pageSize, String pagingState) {
+        Assert.isTrue(pageSize > 0, "Page size should be greater than 0");
+        return readAsync(findAllPageStatement(pageSize, pagingState))
+                         .thenApply(rs -> new ReservationPage(
+                                 ReservationRepository.mapCurrentPage(rs, this::mapRowToReservation),
+                                 rs.getExecutionInfo().getPagingState()));
+    }
+    
+    /** {@inheritDoc} */
+    public CompletionStage<Optional<Reservation>> deleteAsync(String confirmationNumber) {
+        Assert.hasLength(confirmationNumber, "ConfirmationNumber should not be null nor empty");
+        return findByConfirmationNumberAsync(confirmationNumber)
+                .thenCompose(RepositoryOperation.withCurrent(existingReservation ->
+            existingReservation
+                .map(res -> denormalizedWriter.executeAsync(bindDeleteReservation(res)).thenApply(rs -> existingReservation))
+                .orElse(CompletableFuture.completedFuture(existingReservation))));
+    }
+    
+    /** {@inheritDoc} */
+    public CompletionStage<List<Reservation>> findByHotelAndDateAsync(String hotelId, LocalDate localDate) {
+        Assert.hasLength(hotelId, "Hotel Id should not be null nor empty");
+        Assert.notNull(localDate, "Local Date object should not be null nor empty");
+        return readAsync(psSearchReservation.bind(hotelId, localDate))
+                         .thenCompose(rs -> ReservationRepository.collectAllPages(rs, this::mapRowToReservation));
+    }
+    
+    /**
+     * Select all rows of 'reservations_by_confirmation', with the scan profile.
+     */
+    private SimpleStatement findAllStatement() {
+        return selectFrom(keyspaceName, TABLE_RESERVATION_BY_CONFI).all().build()
+                .setExecutionProfileName(PROFILE_SCAN);
+    }
+    
+    /**
+     * Select a single page of 'reservations_by_confirmation' starting at the provided cursor.
+     */
+    private SimpleStatement findAllPageStatement(int pageSize, String pagingState) {
+        return findAllStatement()
+                .setPageSize(pageSize)
+                .setPagingState(ReservationPage.decodePagingState(pagingState));
+    }
+    
+    /**
+     * Denormalization, the reservation is inserted in both tables. The row of the previous version
+     * in 'reservations_by_hotel_date' is deleted in the same write if its key changed.
+     */
+    private List<BatchableStatement<?>> bindUpsertReservation(Reservation r, Optional<Reservation> previous) {
+        List<BatchableStatement<?>> statements = new ArrayList<>(3);
+        statements.add(psInsertReservationByHotelDate.bind(
+                           r.getHotelId(), r.getStartDate(), r.getEndDate(), 
+                           r.getRoomNumber(), r.getConfirmationNumber(), r.getGuestId()));
+        statements.add(psInsertReservationByConfirmation.bind(
+                           r.getConfirmationNumber(), r.getHotelId(), r.getStartDate(), 
+                           r.getEndDate(), r.getRoomNumber(), r.getGuestId()));
+        previous.filter(p -> ReservationRepository.isHotelDateKeyChanged(p, r))
+                .ifPresent(p -> statements.add(psDeleteReservationByHotelDate.bind(
+                           p.getHotelId(), p.getStartDate(), p.getRoomNumber())));
+        return statements;
+    }
+    
+    /**
+     * Denormalization, the reservation is removed from both tables.
+     */
+    private List<BatchableStatement<?>> bindDeleteReservation(Reservation res) {
+        return List.of(
+                psDeleteReservationByConfirmation.bind(res.getConfirmationNumber()),
+                psDeleteReservationByHotelDate.bind(res.getHotelId(), res.getStartDate(), res.getRoomNumber()));
+    }
 
+    /**
+     * Execute a read, recording whether a speculative execution answered and the wait for the driver.
+     */
+    private ResultSet read(Statement<?> statement) {
+        RepositoryOperation operation = RepositoryOperation.current();
+        long start = System.nanoTime();
+        ResultSet resultSet = cqlSession.execute(statement);
+        RepositoryOperation.driverResponse(operation, start, resultSet.getExecutionInfo());
+        SpeculativeReadPolicy.recordOutcome(cqlSession, resultSet.getExecutionInfo());
+        return resultSet;
+    }
+    
+    private CompletionStage<AsyncResultSet> readAsync(Statement<?> statement) {
+        RepositoryOperation operation = RepositoryOperation.current();
+        long start = System.nanoTime();
+        return cqlSession.executeAsync(statement).thenApply(resultSet -> {
+            RepositoryOperation.driverResponse(operation, start, resultSet.getExecutionInfo());
+            SpeculativeReadPolicy.recordOutcome(cqlSession, resultSet.getExecutionInfo());
+            return resultSet;
+        });
+    }
+
+    /**
+     * Point reads are idempotent and executed with profile 'read' (speculative executions), bound
+     * statements inherit both. Writes keep the default profile and are never hedged.
+     */
     private void prepareStatements() {
         if (psExistReservation == null) {
             psExistReservation = cqlSession.prepare(
                                 selectFrom(keyspaceName, TABLE_RESERVATION_BY_CONFI).column(CONFIRMATION_NUMBER)
                                 .where(column(CONFIRMATION_NUMBER).isEqualTo(bindMarker(CONFIRMATION_NUMBER)))
-                                .build());
+                                .build().setIdempotent(true).setExecutionProfileName(PROFILE_READ));
             psFindReservation = cqlSession.prepare(
                                 selectFrom(keyspaceName, TABLE_RESERVATION_BY_CONFI).all()
                                 .where(column(CONFIRMATION_NUMBER).isEqualTo(bindMarker(CONFIRMATION_NUMBER)))
-                                .build());
+                                .build().setIdempotent(true).setExecutionProfileName(PROFILE_READ));
             psSearchReservation = cqlSession.prepare(
                                 selectFrom(keyspaceName, TABLE_RESERVATION_BY_HOTEL).all()
                                 .where(column(HOTEL_ID).isEqualTo(bindMarker(HOTEL_ID)))
                                 .where(column(START_DATE).isEqualTo(bindMarker(START_DATE)))
-                                .build());
+                                .build().setIdempotent(true).setExecutionProfileName(PROFILE_READ));
             psDeleteReservationByConfirmation = cqlSession.prepare(
                                 deleteFrom(keyspaceName, TABLE_RESERVATION_BY_CONFI)
                                 .where(column(CONFIRMATION_NUMBER).isEqualTo(bindMarker(CONFIRMATION_NUMBER)))
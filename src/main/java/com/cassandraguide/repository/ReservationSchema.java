@@ -0,0 +1,173 @@
+package com.cassandraguide.repository;
+
+import static com.cassandraguide.repository.ReservationRepository.ADDRESSES;
+import static com.cassandraguide.repository.ReservationRepository.CITY;
+import static com.cassandraguide.repository.ReservationRepository.CONFIRMATION_NUMBER;
+import static com.cassandraguide.repository.ReservationRepository.COUNTRY;
+import static com.cassandraguide.repository.ReservationRepository.EMAILS;
+import static com.cassandraguide.repository.ReservationRepository.END_DATE;
+import static com.cassandraguide.repository.ReservationRepository.FIRSTNAME;
+import static com.cassandraguide.repository.ReservationRepository.GUEST_ID;
+import static com.cassandraguide.repository.ReservationRepository.GUEST_LAST_NAME;
+import static com.cassandraguide.repository.ReservationRepository.HOTEL_ID;
+import static com.cassandraguide.repository.ReservationRepository.LASTNAME;
+import static com.cassandraguide.repository.ReservationRepository.PHONE_NUMBERS;
+import static com.cassandraguide.repository.ReservationRepository.POSTAL_CODE;
+import static com.cassandraguide.repository.ReservationRepository.ROOM_NUMBER;
+import static com.cassandraguide.repository.ReservationRepository.START_DATE;
+import static com.cassandraguide.repository.ReservationRepository.STATE_PROVINCE;
+import static com.cassandraguide.repository.ReservationRepository.STREET;
+import static com.cassandraguide.repository.ReservationRepository.TABLE_GUESTS;
+import static com.cassandraguide.repository.ReservationRepository.TABLE_RESERVATION_BY_CONFI;
+import static com.cassandraguide.repository.ReservationRepository.TABLE_RESERVATION_BY_GUEST;
+import static com.cassandraguide.repository.ReservationRepository.TABLE_RESERVATION_BY_HOTEL;
+import static com.cassandraguide.repository.ReservationRepository.TITLE;
+import static com.cassandraguide.repository.ReservationRepository.TYPE_ADDRESS;
+import static com.datastax.oss.driver.api.querybuilder.SchemaBuilder.createTable;
+import static com.datastax.oss.driver.api.querybuilder.SchemaBuilder.createType;
+import static com.datastax.oss.driver.api.querybuilder.SchemaBuilder.udt;
+
+import java.util.List;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.metadata.schema.ClusteringOrder;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+
+/**
+ * Versions of the reservation schema, applied by {@link SchemaMigrator}.
+ *
+ * To change the schema add a migration with the next version at the end of {@link #MIGRATIONS},
+ * never modify one which has been released: it will not be applied again where it already has been.
+ */
+public final class ReservationSchema {
+
+    /** Component of the schema in the table of migrations. */
+    public static final String COMPONENT = "reservation";
+
+    /**
+     * V1, tables as per defined in 'reservation.cql'.
+     */
+    public static final SchemaMigration V1_INITIAL_SCHEMA = new SchemaMigration(1, "Initial schema", keyspaceName -> List.of(
+
+         /**
+          * CREATE TYPE reservation.address (
+          *   street text,
+          *   city text,
+          *   state_or_province text,
+          *   postal_code text,
+          *   country text
+          * );
+          */
+         createType(keyspaceName, TYPE_ADDRESS)
+                 .ifNotExists()
+                 .withField(STREET, DataTypes.TEXT)
+                 .withField(CITY, DataTypes.TEXT)
+                 .withField(STATE_PROVINCE, DataTypes.TEXT)
+                 .withField(POSTAL_CODE, DataTypes.TEXT)
+                 .withField(COUNTRY, DataTypes.TEXT)
+                 .build(),
+
+         /**
+          * CREATE TABLE reservation.reservations_by_hotel_date (
+          *  hotel_id text,
+          *  start_date date,
+          *  end_date date,
+          *  room_number smallint,
+          *  confirmation_number text,
+          *  guest_id uuid,
+          *  PRIMARY KEY ((hotel_id, start_date), room_number)
+          * ) WITH comment = 'Q7. Find reservations by hotel and date';
+          */
+         createTable(keyspaceName, TABLE_RESERVATION_BY_HOTEL)
+                 .ifNotExists()
+                 .withPartitionKey(HOTEL_ID, DataTypes.TEXT)
+                 .withPartitionKey(START_DATE, DataTypes.DATE)
+                 .withClusteringColumn(ROOM_NUMBER, DataTypes.SMALLINT)
+                 .withColumn(END_DATE, DataTypes.DATE)
+                 .withColumn(CONFIRMATION_NUMBER, DataTypes.TEXT)
+                 .withColumn(GUEST_ID, DataTypes.UUID)
+                 .withClusteringOrder(ROOM_NUMBER, ClusteringOrder.ASC)
+                 .withComment("Q7. Find reservations by hotel and date")
+                 .build(),
+
+         /**
+          * CREATE TABLE reservation.reservations_by_confirmation (
+          *   confirmation_number text PRIMARY KEY,
+          *   hotel_id text,
+          *   start_date date,
+          *   end_date date,
+          *   room_number smallint,
+          *   guest_id uuid
+          * );
+          */
+         createTable(keyspaceName, TABLE_RESERVATION_BY_CONFI)
+                 .ifNotExists()
+                 .withPartitionKey(CONFIRMATION_NUMBER, DataTypes.TEXT)
+                 .withColumn(HOTEL_ID, DataTypes.TEXT)
+                 .withColumn(START_DATE, DataTypes.DATE)
+                 .withColumn(END_DATE, DataTypes.DATE)
+                 .withColumn(ROOM_NUMBER, DataTypes.SMALLINT)
+                 .withColumn(GUEST_ID, DataTypes.UUID)
+                 .build(),
+
+         /**
+          * CREATE TABLE reservation.reservations_by_guest (
+          *  guest_last_name text,
+          *  hotel_id text,
+          *  start_date date,
+          *  end_date date,
+          *  room_number smallint,
+          *  confirmation_number text,
+          *  guest_id uuid,
+          *  PRIMARY KEY ((guest_last_name), hotel_id)
+          * ) WITH comment = 'Q8. Find reservations by guest name';
+          */
+         createTable(keyspaceName, TABLE_RESERVATION_BY_GUEST)
+                 .ifNotExists()
+                 .withPartitionKey(GUEST_LAST_NAME, DataTypes.TEXT)
+                 .withClusteringColumn(HOTEL_ID, DataTypes.TEXT)
+                 .withColumn(START_DATE, DataTypes.DATE)
+                 .withColumn(END_DATE, DataTypes.DATE)
+                 .withColumn(ROOM_NUMBER, DataTypes.SMALLINT)
+                 .withColumn(CONFIRMATION_NUMBER, DataTypes.TEXT)
+                 .withColumn(GUEST_ID, DataTypes.UUID)
+                 .withComment("Q8. Find reservations by guest name")
+                 .build(),
+
+         /**
+          * CREATE TABLE reservation.guests (
+          *   guest_id uuid PRIMARY KEY,
+          *   first_name text,
+          *   last_name text,
+          *   title text,
+          *   emails set<text>,
+          *   phone_numbers list<text>,
+          *   addresses map<text, frozen<address>>,
+          *   confirmation_number text
+          * ) WITH comment = 'Q9. Find guest by ID';
+          *
+          * The type is referenced by name: no need to wait for it to appear in the session metadata.
+          */
+         createTable(keyspaceName, TABLE_GUESTS)
+                 .ifNotExists()
+                 .withPartitionKey(GUEST_ID, DataTypes.UUID)
+                 .withColumn(FIRSTNAME, DataTypes.TEXT)
+                 .withColumn(LASTNAME, DataTypes.TEXT)
+                 .withColumn(TITLE, DataTypes.TEXT)
+                 .withColumn(EMAILS, DataTypes.setOf(DataTypes.TEXT))
+                 .withColumn(PHONE_NUMBERS, DataTypes.listOf(DataTypes.TEXT))
+                 .withColumn(ADDRESSES, DataTypes.mapOf(DataTypes.TEXT, udt(TYPE_ADDRESS, false), true))
+                 .withColumn(CONFIRMATION_NUMBER, DataTypes.TEXT)
+                 .withComment("Q9. Find guest by ID")
+                 .build()));
+
+    /** All versions of the schema, in order. */
+    public static final List<SchemaMigration> MIGRATIONS = List.of(V1_INITIAL_SCHEMA);
+
+    /**
+     * Hide constructor.
+     */
+    private ReservationSchema() {}
+
+}
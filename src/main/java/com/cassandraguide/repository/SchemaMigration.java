@@ -0,0 +1,86 @@
+package com.cassandraguide.repository;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+
+/**
+ * A version of the schema: the DDL statements applied to move from the previous version to this one.
+ *
+ * Statements are executed in order and must be idempotent (IF NOT EXISTS...): two instances starting
+ * at the same time may both apply a migration, and a migration interrupted before its version has
+ * been recorded is applied again.
+ */
+public final class SchemaMigration {
+
+    /** Version reached once applied, starting at 1. */
+    private final int version;
+
+    /** What the migration does. */
+    private final String description;
+
+    /** DDL statements for a keyspace. */
+    private final Function<CqlIdentifier, List<SimpleStatement>> statements;
+
+    /**
+     * Full initialization.
+     *
+     * @param version
+     *      version reached once applied
+     * @param description
+     *      what the migration does
+     * @param statements
+     *      DDL statements for a keyspace, executed in order
+     */
+    public SchemaMigration(int version, String description, Function<CqlIdentifier, List<SimpleStatement>> statements) {
+        Assert.isTrue(version > 0, "Version should be greater than 0");
+        Assert.hasLength(description, "Description should not be null nor empty");
+        Assert.notNull(statements, "Statements should not be null");
+        this.version     = version;
+        this.description = description;
+        this.statements  = statements;
+    }
+
+    /**
+     * DDL statements of the migration.
+     *
+     * @param keyspaceName
+     *      keyspace to migrate
+     * @return
+     *      statements to execute in order
+     */
+    public List<SimpleStatement> statements(CqlIdentifier keyspaceName) {
+        return statements.apply(keyspaceName);
+    }
+
+    /**
+     * Getter accessor for attribute 'version'.
+     *
+     * @return
+     *       current value of 'version'
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Getter accessor for attribute 'description'.
+     *
+     * @return
+     *       current value of 'description'
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "V" + version + " " + description;
+    }
+
+}
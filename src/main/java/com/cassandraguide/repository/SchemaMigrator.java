@@ -0,0 +1,333 @@
+package com.cassandraguide.repository;
+
+import static com.datastax.oss.driver.api.querybuilder.SchemaBuilder.createTable;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.NodeState;
+import com.datastax.oss.driver.api.core.metadata.schema.ClusteringOrder;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+
+/**
+ * Bring the schema of a keyspace to its latest version, applying only the missing {@link SchemaMigration}s.
+ *
+ * Applied versions are recorded in table 'schema_migrations' of the keyspace. When the schema is current,
+ * starting costs a read of 'system_schema.tables' (the schema metadata of the driver is disabled when
+ * migrating) and the read of a single row: no DDL and no wait for schema agreement. Otherwise the missing
+ * migrations are executed, all on the same coordinator, each DDL statement followed by a wait for all nodes
+ * to agree on the schema, so that the next one never races with it on another node.
+ *
+ * Migrations are applied under a lock, a row of 'schema_migrations' inserted with a lightweight transaction
+ * and expiring after {@link #LOCK_TTL} if its owner dies. Others wait for the lock, then find the schema
+ * current. The creation of 'schema_migrations' itself (IF NOT EXISTS) is the one statement run without the
+ * lock: instances starting together on a new keyspace may all execute it. A migration outliving
+ * {@link #LOCK_TTL} loses the lock, it is then logged when released.
+ *
+ * The driver does not wait for schema agreement after each DDL statement (see application.conf),
+ * code executing DDL is expected to call {@link #awaitSchemaAgreement()} when done.
+ */
+public class SchemaMigrator {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    /** Applied migrations. */
+    public static final CqlIdentifier TABLE_SCHEMA_MIGRATIONS = CqlIdentifier.fromCql("schema_migrations");
+
+    /** Default max time waiting for schema agreement, as the driver. */
+    public static final Duration DEFAULT_AGREEMENT_TIMEOUT = Duration.ofSeconds(10);
+
+    /** Interval between checks of schema agreement, as the driver. */
+    private static final Duration AGREEMENT_INTERVAL = Duration.ofMillis(200);
+
+    /** Time to live of the lock of the migrations, longer than any migration. */
+    public static final Duration LOCK_TTL = Duration.ofMinutes(5);
+
+    /** Interval between attempts to get the lock. */
+    private static final Duration LOCK_INTERVAL = Duration.ofSeconds(1);
+
+    /** Suffix of the component of the lock row in 'schema_migrations'. */
+    private static final String LOCK_SUFFIX = ".lock";
+
+    /** Columns of 'schema_migrations'. */
+    private static final CqlIdentifier COMPONENT   = CqlIdentifier.fromCql("component");
+    private static final CqlIdentifier VERSION     = CqlIdentifier.fromCql("version");
+    private static final CqlIdentifier DESCRIPTION = CqlIdentifier.fromCql("description");
+    private static final CqlIdentifier APPLIED_AT  = CqlIdentifier.fromCql("applied_at");
+
+    /** Connectivity to Cassandra. */
+    private final CqlSession cqlSession;
+
+    /** Keyspace to migrate. */
+    private final CqlIdentifier keyspaceName;
+
+    /** Name of the schema in 'schema_migrations'. */
+    private final String component;
+
+    /** Versions of the schema, in order. */
+    private final List<SchemaMigration> migrations;
+
+    /** Max time waiting for schema agreement. */
+    private final Duration agreementTimeout;
+
+    /** Coordinator of the DDL statements, schema versions are read from it. */
+    private Node coordinator;
+
+    /**
+     * Migrator of the reservation schema.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @param keyspaceName
+     *      keyspace to migrate
+     */
+    public SchemaMigrator(CqlSession cqlSession, CqlIdentifier keyspaceName) {
+        this(cqlSession, keyspaceName, ReservationSchema.COMPONENT, ReservationSchema.MIGRATIONS, DEFAULT_AGREEMENT_TIMEOUT);
+    }
+
+    /**
+     * Full initialization.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @param keyspaceName
+     *      keyspace to migrate
+     * @param component
+     *      name of the schema in 'schema_migrations'
+     * @param migrations
+     *      versions of the schema, in increasing order
+     * @param agreementTimeout
+     *      max time waiting for schema agreement
+     */
+    public SchemaMigrator(CqlSession cqlSession, CqlIdentifier keyspaceName, String component,
+            List<SchemaMigration> migrations, Duration agreementTimeout) {
+        Assert.notNull(cqlSession, "Session should not be null");
+        Assert.notNull(keyspaceName, "Keyspace should not be null");
+        Assert.hasLength(component, "Component should not be null nor empty");
+        Assert.notEmpty(migrations, "Migrations should not be empty");
+        for (int i = 1; i < migrations.size(); i++) {
+            Assert.isTrue(migrations.get(i).getVersion() > migrations.get(i - 1).getVersion(),
+                    "Migrations should be sorted by version");
+        }
+        this.cqlSession       = cqlSession;
+        this.keyspaceName     = keyspaceName;
+        this.component        = component;
+        this.migrations       = migrations;
+        this.agreementTimeout = agreementTimeout;
+    }
+
+    /**
+     * Apply the missing migrations.
+     *
+     * @return
+     *      version of the schema
+     * @throws IllegalStateException
+     *      when the lock of the migrations is not released in time
+     */
+    public int migrate() {
+        int latest  = migrations.get(migrations.size() - 1).getVersion();
+        int current = getCurrentVersion();
+        if (current >= latest) {
+            logger.info("Schema '{}' of keyspace {} is up to date (version {})", component, keyspaceName, current);
+            return current;
+        }
+        long top = System.nanoTime();
+        if (!hasMigrationsTable()) {
+            executeDdl(createTable(keyspaceName, TABLE_SCHEMA_MIGRATIONS)
+                    .ifNotExists()
+                    .withPartitionKey(COMPONENT, DataTypes.TEXT)
+                    .withClusteringColumn(VERSION, DataTypes.INT)
+                    .withColumn(DESCRIPTION, DataTypes.TEXT)
+                    .withColumn(APPLIED_AT, DataTypes.TIMESTAMP)
+                    .withClusteringOrder(VERSION, ClusteringOrder.DESC)
+                    .build());
+        }
+        String owner = lock();
+        try {
+            // Migrations applied by another instance while waiting for the lock
+            int locked = getCurrentVersion();
+            for (SchemaMigration migration : migrations) {
+                if (migration.getVersion() <= locked) {
+                    continue;
+                }
+                logger.info("Applying migration {} to keyspace {}", migration, keyspaceName);
+                migration.statements(keyspaceName).forEach(this::executeDdl);
+                // Recorded once all replicas know the tables, interrupted migrations are applied again
+                cqlSession.execute(SimpleStatement.newInstance(
+                        "INSERT INTO " + migrationsTable()
+                        + " (component, version, description, applied_at) VALUES (?, ?, ?, ?)",
+                        component, migration.getVersion(), migration.getDescription(), Instant.now()));
+            }
+            logger.info("Schema '{}' of keyspace {} migrated from version {} to {} in {} ms",
+                    component, keyspaceName, locked, latest, (System.nanoTime() - top) / 1000000);
+        } finally {
+            unlock(owner);
+        }
+        return latest;
+    }
+
+    /**
+     * Version of the schema recorded in 'schema_migrations', without any DDL.
+     *
+     * @return
+     *      last applied version, 0 if none
+     */
+    public int getCurrentVersion() {
+        if (!hasMigrationsTable()) {
+            return 0;
+        }
+        Row row = cqlSession.execute(SimpleStatement.newInstance(
+                "SELECT version FROM " + migrationsTable() + " WHERE component = ? LIMIT 1", component)).one();
+        return (null == row) ? 0 : row.getInt(VERSION);
+    }
+
+    /**
+     * Wait until all nodes which are up report the same schema version.
+     *
+     * @return
+     *      true if the schema is in agreement, false if the timeout expired (logged)
+     */
+    public boolean awaitSchemaAgreement() {
+        if (null == coordinator) {
+            // No DDL executed by this migrator, versions are still read from a single node
+            coordinator = cqlSession.getMetadata().getNodes().values().stream()
+                    .filter(node -> node.getState() == NodeState.UP)
+                    .findFirst().orElse(null);
+        }
+        long deadline = System.nanoTime() + agreementTimeout.toNanos();
+        while (!isSchemaInAgreement()) {
+            if (System.nanoTime() > deadline) {
+                logger.warn("Nodes do not agree on the schema of keyspace {} after {}, going on", keyspaceName, agreementTimeout);
+                return false;
+            }
+            try {
+                Thread.sleep(AGREEMENT_INTERVAL.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Schema versions of the coordinator and of its peers which are up.
+     */
+    private boolean isSchemaInAgreement() {
+        Set<UUID> versions = new HashSet<>();
+        Row local = cqlSession.execute(pinned(SimpleStatement.newInstance(
+                "SELECT schema_version FROM system.local WHERE key = 'local'"))).one();
+        if (null != local) {
+            versions.add(local.getUuid("schema_version"));
+        }
+        for (Row peer : cqlSession.execute(pinned(SimpleStatement.newInstance(
+                "SELECT peer, schema_version FROM system.peers")))) {
+            if (isUp(peer.getInetAddress("peer")) && null != peer.getUuid("schema_version")) {
+                versions.add(peer.getUuid("schema_version"));
+            }
+        }
+        return versions.size() <= 1;
+    }
+
+    /**
+     * Down nodes are ignored, unknown ones are not.
+     */
+    private boolean isUp(InetAddress peer) {
+        return cqlSession.getMetadata().getNodes().values().stream()
+                .filter(node -> node.getBroadcastAddress().map(a -> a.getAddress().equals(peer)).orElse(false))
+                .findFirst()
+                .map(node -> node.getState() != NodeState.DOWN && node.getState() != NodeState.FORCED_DOWN)
+                .orElse(true);
+    }
+
+    /**
+     * Read in 'system_schema.tables', the schema metadata of the session is not fetched yet.
+     */
+    private boolean hasMigrationsTable() {
+        return null != cqlSession.execute(pinned(SimpleStatement.newInstance(
+                "SELECT table_name FROM system_schema.tables WHERE keyspace_name = ? AND table_name = ?",
+                keyspaceName.asInternal(), TABLE_SCHEMA_MIGRATIONS.asInternal()))).one();
+    }
+
+    /**
+     * Wait for the lock of the migrations of the component, at most its time to live.
+     *
+     * @return
+     *      owner of the lock
+     */
+    private String lock() {
+        String owner = UUID.randomUUID().toString();
+        long deadline = System.nanoTime() + LOCK_TTL.toNanos();
+        while (!cqlSession.execute(SimpleStatement.newInstance(
+                "INSERT INTO " + migrationsTable() + " (component, version, description, applied_at)"
+                + " VALUES (?, ?, ?, ?) IF NOT EXISTS USING TTL " + LOCK_TTL.getSeconds(),
+                component + LOCK_SUFFIX, 0, owner, Instant.now())).wasApplied()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Schema '" + component + "' of keyspace " + keyspaceName
+                        + " is locked by another migration for more than " + LOCK_TTL);
+            }
+            logger.info("Schema '{}' of keyspace {} is migrated by another instance, waiting", component, keyspaceName);
+            try {
+                Thread.sleep(LOCK_INTERVAL.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the lock of the migrations", e);
+            }
+        }
+        logger.debug("Lock of schema '{}' of keyspace {} taken by {}", component, keyspaceName, owner);
+        return owner;
+    }
+
+    /**
+     * Release the lock if still held by its owner: a lock which expired during the migrations may have been
+     * taken by another instance since, and is left to it.
+     */
+    private void unlock(String owner) {
+        boolean released = cqlSession.execute(SimpleStatement.newInstance(
+                "DELETE FROM " + migrationsTable() + " WHERE component = ? AND version = ? IF description = ?",
+                component + LOCK_SUFFIX, 0, owner)).wasApplied();
+        if (released) {
+            logger.debug("Lock of schema '{}' of keyspace {} released by {}", component, keyspaceName, owner);
+        } else {
+            logger.warn("Lock of schema '{}' of keyspace {} expired before the end of the migrations of {} "
+                    + "(longer than {}), another instance may have migrated concurrently", component, keyspaceName, owner, LOCK_TTL);
+        }
+    }
+
+    /**
+     * Execute a DDL statement on the coordinator of the previous ones, then wait for schema agreement.
+     */
+    private void executeDdl(SimpleStatement ddl) {
+        logger.debug("+ {}", ddl.getQuery());
+        ResultSet rs = cqlSession.execute(pinned(ddl));
+        if (null == coordinator) {
+            coordinator = rs.getExecutionInfo().getCoordinator();
+        }
+        awaitSchemaAgreement();
+    }
+
+    private String migrationsTable() {
+        return keyspaceName.asCql(true) + "." + TABLE_SCHEMA_MIGRATIONS.asCql(true);
+    }
+
+    private SimpleStatement pinned(SimpleStatement statement) {
+        return (null == coordinator) ? statement : statement.setNode(coordinator);
+    }
+
+}
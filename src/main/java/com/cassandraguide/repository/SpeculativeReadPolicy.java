@@ -0,0 +1,174 @@
+package com.cassandraguide.repository;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import com.datastax.oss.driver.api.core.config.DriverExecutionProfile;
+import com.datastax.oss.driver.api.core.config.DriverOption;
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.specex.SpeculativeExecutionPolicy;
+
+/**
+ * Speculative executions of the reads (profile {@link ReservationRepository#PROFILE_READ} in application.conf):
+ * when a node has not answered after a delay the same read is sent to the next node, the first response wins
+ * and a single slow replica no longer sets the tail latency.
+ *
+ * The driver only hedges statements marked idempotent. The delay is constant ('delay') or, when 'percentile'
+ * is greater than 0, the latency of reads at this percentile measured by {@link ReadLatencyTracker};
+ * 'delay' is used until enough reads have been measured.
+ *
+ * The policy counts speculative executions started, repositories record which ones won with
+ * {@link #recordOutcome(CqlSession, ExecutionInfo)}.
+ */
+public class SpeculativeReadPolicy implements SpeculativeExecutionPolicy {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(SpeculativeReadPolicy.class);
+
+    /**
+     * Option of the policy not defined by the driver.
+     */
+    public enum Option implements DriverOption {
+        /** Percentile of the latency of reads used as delay, 0 for a constant delay. */
+        PERCENTILE("advanced.speculative-execution-policy.percentile");
+
+        private final String path;
+
+        Option(String path) {
+            this.path = path;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String getPath() {
+            return path;
+        }
+    }
+
+    /** Max executions of a request, including the first one. */
+    private final int maxExecutions;
+
+    /** Constant delay, or delay until percentiles are available, in milliseconds. */
+    private final long delayMillis;
+
+    /** Percentile of the latency of reads, 0 for a constant delay. */
+    private final double percentile;
+
+    /** Latency of reads, null for a constant delay. */
+    private final ReadLatencyTracker latencyTracker;
+
+    /** Speculative executions started. */
+    private final LongAdder fired = new LongAdder();
+
+    /** Requests answered by a speculative execution. */
+    private final LongAdder won = new LongAdder();
+
+    /**
+     * Constructor invoked by the driver.
+     *
+     * @param context
+     *      driver context
+     * @param profileName
+     *      execution profile of the policy
+     */
+    public SpeculativeReadPolicy(DriverContext context, String profileName) {
+        DriverExecutionProfile profile = context.getConfig().getProfile(profileName);
+        this.maxExecutions = profile.getInt(DefaultDriverOption.SPECULATIVE_EXECUTION_MAX);
+        this.delayMillis   = profile.getDuration(DefaultDriverOption.SPECULATIVE_EXECUTION_DELAY).toMillis();
+        double percentile  = profile.isDefined(Option.PERCENTILE) ? profile.getDouble(Option.PERCENTILE) : 0;
+        Optional<ReadLatencyTracker> tracker = CompositeRequestTracker.find(context.getRequestTracker(), ReadLatencyTracker.class);
+        if (percentile > 0 && !tracker.isPresent()) {
+            logger.warn("No ReadLatencyTracker registered in the session, constant delay of {} ms", delayMillis);
+            percentile = 0;
+        }
+        this.percentile     = percentile;
+        this.latencyTracker = (percentile > 0) ? tracker.get() : null;
+        logger.info("Speculative executions of profile '{}': max {} executions, delay {}", profileName, maxExecutions,
+                (percentile > 0) ? "p" + percentile + " of reads (" + delayMillis + " ms until measured)" : delayMillis + " ms");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long nextExecution(Node node, CqlIdentifier keyspace, Request request, int runningExecutions) {
+        if (runningExecutions > 1) {
+            // Invoked when an execution starts to schedule the next one: this one is speculative
+            fired.increment();
+        }
+        if (runningExecutions >= maxExecutions) {
+            return -1;
+        }
+        if (null != latencyTracker) {
+            long latency = latencyTracker.getLatencyAtPercentile(percentile);
+            if (latency >= 0) {
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(latency));
+            }
+        }
+        return delayMillis;
+    }
+
+    /**
+     * Record whether a read has been answered by a speculative execution.
+     *
+     * @param executionInfo
+     *      execution of a read
+     */
+    public void recordOutcome(ExecutionInfo executionInfo) {
+        if (executionInfo.getSuccessfulExecutionIndex() > 0) {
+            won.increment();
+        }
+    }
+
+    /**
+     * Record the outcome of a read with the policy of the session, if it is this one.
+     *
+     * @param cqlSession
+     *      session which executed the read
+     * @param executionInfo
+     *      execution of the read, ignored if null
+     */
+    public static void recordOutcome(CqlSession cqlSession, ExecutionInfo executionInfo) {
+        if (null == executionInfo || null == cqlSession.getContext()) {
+            return;
+        }
+        SpeculativeExecutionPolicy policy = cqlSession.getContext()
+                .getSpeculativeExecutionPolicy(ReservationRepository.PROFILE_READ);
+        if (policy instanceof SpeculativeReadPolicy) {
+            ((SpeculativeReadPolicy) policy).recordOutcome(executionInfo);
+        }
+    }
+
+    /**
+     * Getter accessor for attribute 'fired'.
+     *
+     * @return
+     *       number of speculative executions started
+     */
+    public long getFired() {
+        return fired.sum();
+    }
+
+    /**
+     * Getter accessor for attribute 'won'.
+     *
+     * @return
+     *       number of reads answered by a speculative execution
+     */
+    public long getWon() {
+        return won.sum();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {}
+
+}
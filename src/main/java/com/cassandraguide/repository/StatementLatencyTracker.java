@@ -0,0 +1,362 @@
+package com.cassandraguide.repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.config.DriverExecutionProfile;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.tracker.RequestTracker;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * Latency of the requests of the session by statement, and log of the slow ones.
+ *
+ * Statements are identified by their CQL text: the prepared statements of the repositories, the
+ * queries generated by the mapper, batches by the CQL of their statements. Each of them has an HDR
+ * histogram of the latency of its requests, from the first execution to the response, retries and
+ * speculative executions included. Pages of a query are distinct requests, the following ones are counted.
+ *
+ * A request slower than the threshold is logged (WARN) with the node which answered, the partition key
+ * bound (prepared statements only), whether it was a following page and the number of executions which
+ * failed before (retries, speculative executions). A failed execution reported after the response of its
+ * request (a speculative execution losing the race) is never counted, it expires after the highest latency
+ * tracked.
+ */
+public class StatementLatencyTracker implements RequestTracker {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(StatementLatencyTracker.class);
+
+    /** Default threshold of the slow requests. */
+    public static final Duration DEFAULT_SLOW_THRESHOLD = Duration.ofMillis(500);
+
+    /** Max number of statements tracked, others share a single histogram. */
+    public static final int MAX_STATEMENTS = 500;
+
+    /** Key of the statements beyond {@link #MAX_STATEMENTS}. */
+    public static final String OTHER_STATEMENTS = "(other statements)";
+
+    /** Highest latency tracked, greater ones are recorded as this one. */
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    /** Requests slower than this one are logged. */
+    private final long slowThresholdNanos;
+
+    /** Latency by CQL text. */
+    private final ConcurrentMap<String, StatementLatency> statements = new ConcurrentHashMap<>();
+
+    /** Failed executions of requests in progress, by log prefix of the request, expiring if never completed. */
+    private final Cache<String, AtomicInteger> nodeErrors;
+
+    /**
+     * Default threshold.
+     */
+    public StatementLatencyTracker() {
+        this(DEFAULT_SLOW_THRESHOLD);
+    }
+
+    /**
+     * Full initialization.
+     *
+     * @param slowThreshold
+     *      requests slower than this one are logged
+     */
+    public StatementLatencyTracker(Duration slowThreshold) {
+        this(slowThreshold, Ticker.systemTicker());
+    }
+
+    /**
+     * Initialization with the clock of the expiration of failed executions.
+     *
+     * @param slowThreshold
+     *      requests slower than this one are logged
+     * @param ticker
+     *      clock of the expiration of the failed executions of requests never completed
+     */
+    StatementLatencyTracker(Duration slowThreshold, Ticker ticker) {
+        Assert.isTrue(!slowThreshold.isNegative() && !slowThreshold.isZero(), "Slow threshold should be positive");
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.nodeErrors         = Caffeine.newBuilder()
+                                          .expireAfterWrite(HIGHEST_TRACKABLE_NANOS, TimeUnit.NANOSECONDS)
+                                          .ticker(ticker)
+                                          .build();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onSuccess(Request request, long latencyNanos,
+            DriverExecutionProfile executionProfile, Node node, String requestLogPrefix) {
+        record(request, latencyNanos, node, requestLogPrefix, null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onError(Request request, Throwable error, long latencyNanos,
+            DriverExecutionProfile executionProfile, Node node, String requestLogPrefix) {
+        record(request, latencyNanos, node, requestLogPrefix, error);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void onNodeError(Request request, Throwable error, long latencyNanos,
+            DriverExecutionProfile executionProfile, Node node, String requestLogPrefix) {
+        // Prefix of an execution is the prefix of its request followed by '|' and the execution index
+        int execution = requestLogPrefix.lastIndexOf('|');
+        String requestPrefix = (execution < 0) ? requestLogPrefix : requestLogPrefix.substring(0, execution);
+        nodeErrors.asMap().computeIfAbsent(requestPrefix, p -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void record(Request request, long latencyNanos, Node node, String requestLogPrefix, Throwable error) {
+        AtomicInteger failedExecutions = nodeErrors.asMap().remove(requestLogPrefix);
+        int retries = (null == failedExecutions) ? 0 : failedExecutions.get();
+        boolean nextPage = (request instanceof Statement) && null != ((Statement<?>) request).getPagingState();
+        String cql = cql(request);
+        StatementLatency latency = statements.get(cql);
+        if (null == latency) {
+            latency = (statements.size() < MAX_STATEMENTS)
+                ? statements.computeIfAbsent(cql, StatementLatency::new)
+                : statements.computeIfAbsent(OTHER_STATEMENTS, StatementLatency::new);
+        }
+        boolean slow = latencyNanos >= slowThresholdNanos;
+        latency.record(latencyNanos, nextPage, retries, error != null, slow);
+        if (slow) {
+            logger.warn("[{}] Slow {} in {} ms on {}, partition key [{}], {} page, {} failed executions before: {}",
+                    requestLogPrefix, (null == error) ? "request" : "failed request (" + error + ")",
+                    TimeUnit.NANOSECONDS.toMillis(latencyNanos), node, partitionKey(request),
+                    nextPage ? "next" : "first", retries, cql);
+        }
+    }
+
+    /**
+     * Latency of the statements, slowest (99th percentile) first.
+     *
+     * @return
+     *      statements tracked since startup or last reset
+     */
+    public List<StatementLatency> getStatements() {
+        List<StatementLatency> result = new ArrayList<>(statements.values());
+        result.sort(Comparator.comparingDouble((StatementLatency s) -> s.getPercentileMillis(99)).reversed());
+        return result;
+    }
+
+    /**
+     * Forget the statements tracked.
+     */
+    public void reset() {
+        statements.clear();
+    }
+
+    /**
+     * Requests with failed executions waiting for their response.
+     *
+     * @return
+     *      number of requests, expired ones excluded
+     */
+    long getPendingNodeErrors() {
+        nodeErrors.cleanUp();
+        return nodeErrors.estimatedSize();
+    }
+
+    /**
+     * Getter accessor for attribute 'slowThreshold'.
+     *
+     * @return
+     *       requests slower than this one are logged
+     */
+    public Duration getSlowThreshold() {
+        return Duration.ofNanos(slowThresholdNanos);
+    }
+
+    /**
+     * CQL identifying a request.
+     */
+    static String cql(Request request) {
+        if (request instanceof BoundStatement) {
+            return ((BoundStatement) request).getPreparedStatement().getQuery();
+        }
+        if (request instanceof SimpleStatement) {
+            return ((SimpleStatement) request).getQuery();
+        }
+        if (request instanceof BatchStatement) {
+            return StreamSupport.stream(((BatchStatement) request).spliterator(), false)
+                                .map(StatementLatencyTracker::cql)
+                                .collect(Collectors.joining("; ", "BATCH ", ""));
+        }
+        return request.getClass().getSimpleName();
+    }
+
+    /**
+     * Values of the partition key of a bound statement, of each statement of a batch.
+     */
+    static String partitionKey(Request request) {
+        if (request instanceof BatchStatement) {
+            return StreamSupport.stream(((BatchStatement) request).spliterator(), false)
+                                .map(StatementLatencyTracker::partitionKey)
+                                .collect(Collectors.joining("; "));
+        }
+        if (!(request instanceof BoundStatement)) {
+            return "unknown";
+        }
+        BoundStatement bound = (BoundStatement) request;
+        List<String> values = new ArrayList<>();
+        for (int index : bound.getPreparedStatement().getPartitionKeyIndices()) {
+            try {
+                values.add(bound.isSet(index) ? String.valueOf(bound.getObject(index)) : "unset");
+            } catch (RuntimeException e) {
+                values.add("?"); // no codec for the type, never fail the request for a log
+            }
+        }
+        return String.join(", ", values);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {}
+
+    /**
+     * Latency of the requests of a statement.
+     */
+    public static class StatementLatency {
+
+        /** CQL of the statement. */
+        private final String cql;
+
+        /** Latency of the requests, in nanoseconds. */
+        private final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 2);
+
+        /** Requests of a following page. */
+        private final LongAdder nextPages = new LongAdder();
+
+        /** Executions which failed before the response. */
+        private final LongAdder retries = new LongAdder();
+
+        /** Requests which failed. */
+        private final LongAdder errors = new LongAdder();
+
+        /** Requests slower than the threshold. */
+        private final LongAdder slow = new LongAdder();
+
+        StatementLatency(String cql) {
+            this.cql = cql;
+        }
+
+        void record(long latencyNanos, boolean nextPage, int failedExecutions, boolean error, boolean slowRequest) {
+            histogram.recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE_NANOS));
+            if (nextPage) {
+                nextPages.increment();
+            }
+            retries.add(failedExecutions);
+            if (error) {
+                errors.increment();
+            }
+            if (slowRequest) {
+                slow.increment();
+            }
+        }
+
+        /**
+         * Latency at a percentile.
+         *
+         * @param percentile
+         *      percentile between 0 and 100
+         * @return
+         *      latency in milliseconds
+         */
+        public double getPercentileMillis(double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1_000_000d;
+        }
+
+        /**
+         * Getter accessor for attribute 'cql'.
+         *
+         * @return
+         *       CQL of the statement
+         */
+        public String getCql() {
+            return cql;
+        }
+
+        /**
+         * Getter accessor for attribute 'count'.
+         *
+         * @return
+         *       number of requests
+         */
+        public long getCount() {
+            return histogram.getTotalCount();
+        }
+
+        /**
+         * Getter accessor for attribute 'maxMillis'.
+         *
+         * @return
+         *       highest latency in milliseconds
+         */
+        public double getMaxMillis() {
+            return histogram.getMaxValue() / 1_000_000d;
+        }
+
+        /**
+         * Getter accessor for attribute 'nextPages'.
+         *
+         * @return
+         *       requests of a following page
+         */
+        public long getNextPages() {
+            return nextPages.sum();
+        }
+
+        /**
+         * Getter accessor for attribute 'retries'.
+         *
+         * @return
+         *       executions which failed before the response
+         */
+        public long getRetries() {
+            return retries.sum();
+        }
+
+        /**
+         * Getter accessor for attribute 'errors'.
+         *
+         * @return
+         *       requests which failed
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * Getter accessor for attribute 'slow'.
+         *
+         * @return
+         *       requests slower than the threshold
+         */
+        public long getSlow() {
+            return slow.sum();
+        }
+    }
+
+}
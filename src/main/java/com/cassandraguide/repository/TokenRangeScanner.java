@@ -0,0 +1,315 @@
+package com.cassandraguide.repository;
+
+import static com.datastax.oss.driver.api.querybuilder.QueryBuilder.bindMarker;
+import static com.datastax.oss.driver.api.querybuilder.QueryBuilder.selectFrom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverException;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.api.core.metadata.token.TokenRange;
+
+/**
+ * Full table scan split on the token ring. The ring is divided in sub-ranges using the driver
+ * {@link TokenMap} and each range is read with
+ *
+ * SELECT * FROM table WHERE token(pk) > :start AND token(pk) <= :end
+ *
+ * Up to 'parallelism' range queries are executed concurrently with the asynchronous API, each one routed
+ * to a replica owning the range. Their pages are handed off to the thread calling the scan, which maps
+ * them and invokes the consumer: no thread is held by a slow consumer, it only delays the next pages.
+ * Each range has at most one page waiting and one being fetched, memory used is bounded by
+ * '2 x parallelism x pageSize' whatever the table size. Unless set, the page size is the one of the execution
+ * profile 'scan' (application.conf), as for other full scans.
+ *
+ * If the token map is not available (metadata disabled) a single sequential scan is executed.
+ */
+public class TokenRangeScanner implements AutoCloseable {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(TokenRangeScanner.class);
+
+    /** Default number of concurrent range queries. */
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /** Default number of ranges per concurrent query, the more the better balanced. */
+    public static final int DEFAULT_SPLITS_PER_THREAD = 4;
+
+    /** Page size of the execution profile 'scan'. */
+    public static final int PROFILE_PAGE_SIZE = 0;
+
+    /** Bind markers for range bounds. */
+    private static final String START = "start";
+    private static final String END   = "end";
+
+    /** Connectivity to Cassandra. */
+    private final CqlSession cqlSession;
+
+    /** Keyspace of scanned tables. */
+    private final CqlIdentifier keyspaceName;
+
+    /** Max number of concurrent range queries. */
+    private final int parallelism;
+
+    /** Target number of ranges the ring is split into. */
+    private final int splits;
+
+    /** Page size of range queries, {@link #PROFILE_PAGE_SIZE} for the one of the execution profile. */
+    private final int pageSize;
+
+    /** Set when closed, scans in progress stop. */
+    private volatile boolean closed = false;
+
+    /** Range statements prepared lazily, for each table: [ (start, end], (start, +inf), whole ring ]. */
+    private final Map<CqlIdentifier, PreparedStatement[]> rangeStatements = new ConcurrentHashMap<>();
+
+    /**
+     * Scanner with default settings.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @param keyspaceName
+     *      keyspace of scanned tables
+     */
+    public TokenRangeScanner(CqlSession cqlSession, CqlIdentifier keyspaceName) {
+        this(cqlSession, keyspaceName, DEFAULT_PARALLELISM, DEFAULT_PARALLELISM * DEFAULT_SPLITS_PER_THREAD, PROFILE_PAGE_SIZE);
+    }
+
+    /**
+     * Full initialization.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @param keyspaceName
+     *      keyspace of scanned tables
+     * @param parallelism
+     *      max number of concurrent range queries
+     * @param splits
+     *      target number of ranges
+     * @param pageSize
+     *      page size of range queries, {@link #PROFILE_PAGE_SIZE} for the one of the execution profile 'scan'
+     */
+    public TokenRangeScanner(CqlSession cqlSession, CqlIdentifier keyspaceName, int parallelism, int splits, int pageSize) {
+        Assert.isTrue(parallelism > 0, "Parallelism should be greater than 0");
+        Assert.isTrue(pageSize >= 0, "Page size should not be negative");
+        this.cqlSession   = cqlSession;
+        this.keyspaceName = keyspaceName;
+        this.parallelism  = parallelism;
+        this.splits       = Math.max(splits, parallelism);
+        this.pageSize     = pageSize;
+    }
+
+    /**
+     * Read all rows of a table and collect them. Order is not guaranteed.
+     *
+     * @param table
+     *      table to scan
+     * @param partitionKey
+     *      partition key column(s) of the table
+     * @param mapper
+     *      mapping of each row
+     * @return
+     *      all mapped rows
+     */
+    public <T> List<T> scanAll(CqlIdentifier table, List<CqlIdentifier> partitionKey, Function<Row, T> mapper) {
+        List<T> result = new ArrayList<>();
+        scan(table, partitionKey, mapper, result::add);
+        return result;
+    }
+
+    /**
+     * Read all rows of a table and hand each of them to the consumer. Rows are mapped and consumed by the
+     * calling thread, the consumer does not need to be thread-safe. A slow consumer slows down the scan
+     * (no buffering beyond the next page of each range). Order is not guaranteed. The method returns when
+     * the whole table has been read.
+     *
+     * @param table
+     *      table to scan
+     * @param partitionKey
+     *      partition key column(s) of the table
+     * @param mapper
+     *      mapping of each row
+     * @param consumer
+     *      receiving mapped rows
+     */
+    public <T> void scan(CqlIdentifier table, List<CqlIdentifier> partitionKey, Function<Row, T> mapper, Consumer<T> consumer) {
+        Optional<TokenMap> tokenMap = cqlSession.getMetadata().getTokenMap();
+        if (!tokenMap.isPresent()) {
+            logger.debug("Token map not available, scanning '{}' sequentially", table);
+            SimpleStatement statement = selectFrom(keyspaceName, table).all().build()
+                                        .setExecutionProfileName(ReservationRepository.PROFILE_SCAN);
+            cqlSession.execute(pageSize == PROFILE_PAGE_SIZE ? statement : statement.setPageSize(pageSize))
+                      .forEach(row -> consumer.accept(mapper.apply(row)));
+            return;
+        }
+        List<TokenRange> ranges = split(tokenMap.get());
+        logger.debug("Scanning '{}' with {} ranges, {} concurrent queries", table, ranges.size(), parallelism);
+        PreparedStatement[] statements = rangeStatements.computeIfAbsent(table, t -> prepareRangeStatements(t, partitionKey));
+        // Pages (AsyncResultSet) or errors (Throwable), at most one per range in progress
+        BlockingQueue<Object> pages = new LinkedBlockingQueue<>();
+        Iterator<TokenRange> nextRanges = ranges.iterator();
+        RepositoryOperation operation = RepositoryOperation.current();
+        int inProgress = 0;
+        for (; inProgress < parallelism && nextRanges.hasNext(); inProgress++) {
+            handOff(cqlSession.executeAsync(bindRange(statements, nextRanges.next())), pages);
+        }
+        while (inProgress > 0) {
+            // Queries are concurrent, the driver wait is the time the consumer waits for the next page
+            long start = System.nanoTime();
+            AsyncResultSet page = take(pages);
+            RepositoryOperation.driverResponse(operation, start, page.getExecutionInfo());
+            // Next page of the range, or next range, is fetched while this page is consumed
+            if (page.hasMorePages()) {
+                handOff(page.fetchNextPage(), pages);
+            } else if (nextRanges.hasNext()) {
+                handOff(cqlSession.executeAsync(bindRange(statements, nextRanges.next())), pages);
+            } else {
+                inProgress--;
+            }
+            for (Row row : page.currentPage()) {
+                consumer.accept(mapper.apply(row));
+            }
+        }
+    }
+
+    /**
+     * Split the ring in (at least) the expected number of non wrapping ranges.
+     *
+     * @param tokenMap
+     *      token map of the cluster
+     * @return
+     *      ranges covering the whole ring
+     */
+    List<TokenRange> split(TokenMap tokenMap) {
+        List<TokenRange> ringRanges = new ArrayList<>(tokenMap.getTokenRanges());
+        int splitsPerRange = Math.max(1, (int) Math.ceil((double) splits / ringRanges.size()));
+        List<TokenRange> ranges = new ArrayList<>();
+        for (TokenRange ringRange : ringRanges) {
+            for (TokenRange subRange : splitsPerRange > 1 ? ringRange.splitEvenly(splitsPerRange) : List.of(ringRange)) {
+                ranges.addAll(subRange.unwrap());
+            }
+        }
+        // Avoid hitting the same replicas with consecutive ranges
+        Collections.shuffle(ranges);
+        return ranges;
+    }
+
+    /**
+     * Bind range bounds. When the range ends with the minimum token (last range of the ring after unwrap)
+     * there is no upper bound. A range starting where it ends is the whole ring (single token ring not
+     * split), read without token predicate.
+     */
+    private Statement<?> bindRange(PreparedStatement[] statements, TokenRange range) {
+        BoundStatementBuilder builder;
+        if (range.getStart().equals(range.getEnd())) {
+            builder = statements[2].boundStatementBuilder();
+        } else if (range.getEnd().compareTo(range.getStart()) < 0) {
+            builder = statements[1].boundStatementBuilder().setToken(START, range.getStart());
+        } else {
+            builder = statements[0].boundStatementBuilder().setToken(START, range.getStart()).setToken(END, range.getEnd());
+        }
+        if (pageSize != PROFILE_PAGE_SIZE) {
+            builder.setPageSize(pageSize);
+        }
+        return builder.setRoutingToken(range.getEnd())
+                      .setIdempotence(true)
+                      .setExecutionProfileName(ReservationRepository.PROFILE_SCAN)
+                      .build();
+    }
+
+    /**
+     * Range queries for a table.
+     */
+    private PreparedStatement[] prepareRangeStatements(CqlIdentifier table, List<CqlIdentifier> partitionKey) {
+        return new PreparedStatement[] {
+            cqlSession.prepare(selectFrom(keyspaceName, table).all()
+                      .whereToken(partitionKey.toArray(new CqlIdentifier[0])).isGreaterThan(bindMarker(START))
+                      .whereToken(partitionKey.toArray(new CqlIdentifier[0])).isLessThanOrEqualTo(bindMarker(END))
+                      .build()),
+            cqlSession.prepare(selectFrom(keyspaceName, table).all()
+                      .whereToken(partitionKey.toArray(new CqlIdentifier[0])).isGreaterThan(bindMarker(START))
+                      .build()),
+            cqlSession.prepare(selectFrom(keyspaceName, table).all().build())
+        };
+    }
+
+    /**
+     * Queue the page once received, executed by a driver thread.
+     */
+    private static void handOff(CompletionStage<AsyncResultSet> page, BlockingQueue<Object> pages) {
+        page.whenComplete((rs, error) -> pages.add(null != error ? error : rs));
+    }
+
+    /**
+     * Wait for the next page of any range, first error stops the scan: pages of the ranges still in
+     * progress are received by a queue nobody reads anymore.
+     */
+    private AsyncResultSet take(BlockingQueue<Object> pages) {
+        Object page;
+        try {
+            page = pages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Scan has been interrupted");
+        }
+        if (closed) {
+            throw new CancellationException("Scanner has been closed");
+        }
+        if (page instanceof Throwable) {
+            Throwable error = (page instanceof CompletionException && null != ((Throwable) page).getCause())
+                    ? ((Throwable) page).getCause() : (Throwable) page;
+            if (error instanceof DriverException) {
+                // Stack trace of the caller
+                throw ((DriverException) error).copy();
+            }
+            throw (error instanceof RuntimeException)
+                ? (RuntimeException) error : new IllegalStateException("Scan failed", error);
+        }
+        return (AsyncResultSet) page;
+    }
+
+    /**
+     * Getter accessor for attribute 'parallelism'.
+     *
+     * @return
+     *       current value of 'parallelism'
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Stop the scans in progress, they fail with a {@link CancellationException} when their next page
+     * is received.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+}
@@ -0,0 +1,323 @@
+package com.cassandraguide.repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.servererrors.QueryValidationException;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodec;
+import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+import com.datastax.oss.protocol.internal.util.Bytes;
+
+/**
+ * Background retries of the statements of a denormalized write which failed while the others succeeded,
+ * so that both tables converge. Statements must be idempotent and carry their own write timestamp:
+ * a retry executed after a newer write of the same row does not overwrite it.
+ *
+ * Each statement is retried with an exponential backoff until it succeeds or 'maxAttempts' is reached.
+ * The queue is local and bounded: statements still pending when the service stops, or rejected because
+ * the queue is full, are logged as errors with their CQL for a manual repair.
+ */
+public class WriteRepairQueue implements AutoCloseable {
+
+    /** Logger for the class. */
+    private static final Logger logger = LoggerFactory.getLogger(WriteRepairQueue.class);
+
+    /** Default number of attempts of a statement, including the first one. */
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+    /** Default delay before first retry, doubled for each attempt. */
+    public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(100);
+
+    /** Default max number of statements waiting for a retry. */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /** Backoff is not increased beyond this value. */
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+
+    /** Connectivity to Cassandra. */
+    private final CqlSession cqlSession;
+
+    /** Number of attempts of a statement, including the first one. */
+    private final int maxAttempts;
+
+    /** Delay before first retry. */
+    private final Duration initialBackoff;
+
+    /** Max number of statements waiting for a retry. */
+    private final int capacity;
+
+    /** Statements waiting for a retry. */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /** Statements written by a retry. */
+    private final AtomicLong repaired = new AtomicLong();
+
+    /** Statements given up. */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Retries scheduled and not started yet, logged with their CQL if the queue is closed. */
+    private final Set<Retry> scheduled = ConcurrentHashMap.newKeySet();
+
+    /** Schedules the retries, the retries themselves are asynchronous. */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Queue with default settings.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     */
+    public WriteRepairQueue(CqlSession cqlSession) {
+        this(cqlSession, DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Full initialization.
+     *
+     * @param cqlSession
+     *      connectivity to Cassandra
+     * @param maxAttempts
+     *      number of attempts of a statement, including the first one
+     * @param initialBackoff
+     *      delay before first retry, doubled for each attempt
+     * @param capacity
+     *      max number of statements waiting for a retry
+     */
+    public WriteRepairQueue(CqlSession cqlSession, int maxAttempts, Duration initialBackoff, int capacity) {
+        Assert.isTrue(maxAttempts > 1, "Max attempts should be greater than 1");
+        Assert.isTrue(capacity > 0, "Capacity should be greater than 0");
+        Assert.notNull(initialBackoff, "Initial backoff should not be null");
+        this.cqlSession     = cqlSession;
+        this.maxAttempts    = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.capacity       = capacity;
+        this.scheduler      = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "write-repair-queue");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Retry a statement whose first attempt failed.
+     *
+     * @param statement
+     *      idempotent statement with a write timestamp
+     * @param error
+     *      cause of the failure of the first attempt
+     */
+    public void submit(Statement<?> statement, Throwable error) {
+        if (error instanceof QueryValidationException) {
+            // Invalid or unauthorized, would fail again
+            drop(statement, 1, error);
+            return;
+        }
+        if (pending.incrementAndGet() > capacity) {
+            pending.decrementAndGet();
+            drop(statement, 1, error);
+            return;
+        }
+        logger.warn("Write failed, scheduling retry: {}", error.getMessage());
+        schedule(statement, 2, error);
+    }
+
+    /**
+     * Execute the attempt 'attempt' of the statement after its backoff.
+     */
+    private void schedule(Statement<?> statement, int attempt, Throwable lastError) {
+        long delay = Math.min(MAX_BACKOFF.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 2, 20));
+        Retry retry = new Retry(statement, attempt, lastError);
+        scheduled.add(retry);
+        try {
+            scheduler.schedule(retry, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException shutdown) {
+            if (scheduled.remove(retry)) {
+                pending.decrementAndGet();
+                drop(statement, attempt - 1, lastError);
+            }
+        }
+    }
+
+    /**
+     * Attempt of a statement, scheduled after its backoff.
+     */
+    private final class Retry implements Runnable {
+
+        /** Statement to write. */
+        private final Statement<?> statement;
+
+        /** Number of this attempt, the first retry is the second attempt. */
+        private final int attempt;
+
+        /** Cause of the failure of the previous attempt. */
+        private final Throwable lastError;
+
+        private Retry(Statement<?> statement, int attempt, Throwable lastError) {
+            this.statement = statement;
+            this.attempt   = attempt;
+            this.lastError = lastError;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            if (!scheduled.remove(this)) {
+                // Already dropped by close()
+                return;
+            }
+            cqlSession.executeAsync(statement).whenComplete((rs, error) -> {
+                if (null == error) {
+                    pending.decrementAndGet();
+                    repaired.incrementAndGet();
+                } else if (attempt >= maxAttempts || error instanceof QueryValidationException) {
+                    pending.decrementAndGet();
+                    drop(statement, attempt, error);
+                } else {
+                    schedule(statement, attempt + 1, error);
+                }
+            });
+        }
+    }
+
+    /**
+     * Giving up, the statement is logged to be replayed manually.
+     */
+    private void drop(Statement<?> statement, int attempts, Throwable error) {
+        dropped.incrementAndGet();
+        logger.error("Write given up after {} attempt(s), tables are not consistent, replay manually: {} ({})",
+                attempts, describe(statement), error.getMessage());
+    }
+
+    /**
+     * CQL of the statement with its values as CQL literals and its write timestamp, to replay it with cqlsh.
+     *
+     * @param statement
+     *      simple or bound statement, other statements are described by their toString()
+     * @return
+     *      query, values and timestamp
+     */
+    static String describe(Statement<?> statement) {
+        String query;
+        List<String> values = new ArrayList<>();
+        if (statement instanceof SimpleStatement) {
+            SimpleStatement simple = (SimpleStatement) statement;
+            query = simple.getQuery();
+            simple.getPositionalValues().forEach(value -> values.add(format(value)));
+            simple.getNamedValues().forEach((name, value) -> values.add(name.asCql(true) + "=" + format(value)));
+        } else if (statement instanceof BoundStatement) {
+            BoundStatement bound = (BoundStatement) statement;
+            query = bound.getPreparedStatement().getQuery();
+            ColumnDefinitions variables = bound.getPreparedStatement().getVariableDefinitions();
+            for (int i = 0; i < variables.size(); i++) {
+                values.add(format(bound, i));
+            }
+        } else {
+            return statement.toString();
+        }
+        StringBuilder description = new StringBuilder(query);
+        if (!values.isEmpty()) {
+            description.append(' ').append(values);
+        }
+        if (statement.getQueryTimestamp() != Long.MIN_VALUE) {
+            description.append(" timestamp=").append(statement.getQueryTimestamp());
+        }
+        return description.toString();
+    }
+
+    /**
+     * Value of a simple statement, with the codec the driver would use to send it.
+     */
+    private static String format(Object value) {
+        if (null == value) {
+            return "NULL";
+        }
+        try {
+            return CodecRegistry.DEFAULT.codecFor(value).format(value);
+        } catch (RuntimeException noCodec) {
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * Value of a bound statement, with the codec of its variable.
+     */
+    private static String format(BoundStatement bound, int i) {
+        if (!bound.isSet(i)) {
+            return "<unset>";
+        }
+        try {
+            TypeCodec<Object> codec = bound.codecRegistry().codecFor(bound.getType(i));
+            return codec.format(bound.get(i, codec));
+        } catch (RuntimeException noCodec) {
+            return Bytes.toHexString(bound.getBytesUnsafe(i));
+        }
+    }
+
+    /**
+     * Stop retrying, statements still waiting for a retry are dropped and logged with their CQL.
+     * Retries already sent complete, and are logged if they fail.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        int cancelled = 0;
+        for (Retry retry : scheduled) {
+            if (scheduled.remove(retry)) {
+                pending.decrementAndGet();
+                drop(retry.statement, retry.attempt - 1, retry.lastError);
+                cancelled++;
+            }
+        }
+        if (cancelled > 0) {
+            logger.error("{} write(s) not repaired at shutdown, replay the statements logged above", cancelled);
+        }
+    }
+
+    /**
+     * Getter accessor for attribute 'pending'.
+     *
+     * @return
+     *       number of statements waiting for a retry
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Getter accessor for attribute 'repaired'.
+     *
+     * @return
+     *       number of statements written by a retry
+     */
+    public long getRepaired() {
+        return repaired.get();
+    }
+
+    /**
+     * Getter accessor for attribute 'dropped'.
+     *
+     * @return
+     *       number of statements given up
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.cassandraguide.repository;
+
+/**
+ * How the statements of a denormalized write (one per table) are sent to Cassandra.
+ */
+public enum WriteStrategy {
+
+    /**
+     * A single LOGGED batch: atomic, at the cost of a batchlog write on two other nodes
+     * before the coordinator applies the statements.
+     */
+    LOGGED_BATCH,
+
+    /**
+     * Idempotent statements executed concurrently, each one routed to a replica of its own partition.
+     * No batchlog, failed statements are retried in the background by a {@link WriteRepairQueue}.
+     */
+    PARALLEL;
+
+}
@@ -0,0 +1,49 @@
+#!/bin/bash
+
+# Compare blocking (ReservationsResource) and non blocking (ReservationsAsyncResource) handlers.
+#
+# Both modes run with the same, deliberately small, Tomcat thread pool so the servlet threads
+# are the bottleneck of the blocking mode. Requires a running Cassandra (docker-compose up),
+# 'wrk' (https://github.com/wg/wrk) and the packaged application (mvn package -DskipTests).
+# Without Cassandra, both modes are compared on a simulated session by the load harness, the workers
+# standing for the servlet threads:
+#   mvn -Pbenchmark test-compile exec:java@harness -Dharness.scenario=async -Dharness.concurrency=20 \
+#       -Dharness.latency=5 -Dharness.rate=6000
+#
+# Usage: ./benchmark_async_vs_blocking.sh [threads] [connections] [duration]
+
+TOMCAT_THREADS=${TOMCAT_THREADS:-20}
+WRK_THREADS=${1:-4}
+WRK_CONNECTIONS=${2:-200}
+DURATION=${3:-30s}
+PORT=8080
+JAR=$(ls target/reservation-service-*.jar | head -1)
+
+run_mode() {
+  local async=$1
+  echo "=================================================="
+  echo " reservation.api.async=${async}, server.tomcat.max-threads=${TOMCAT_THREADS}"
+  echo "=================================================="
+  java -jar "${JAR}" \
+       --server.port=${PORT} \
+       --server.tomcat.max-threads=${TOMCAT_THREADS} \
+       --reservation.api.async=${async} > /tmp/reservation-benchmark-${async}.log 2>&1 &
+  local pid=$!
+  until curl -s -o /dev/null http://localhost:${PORT}/api/v1/reservations/; do sleep 1; done
+
+  # Seed one reservation to read
+  local cn=$(curl -s -X POST -H "Content-Type: application/json" \
+       --data '{"hotelId": "NY456", "startDate": "2017-06-08", "endDate": "2017-06-10", "roomNumber": "111", "guestId": "1b4d86f4-ccff-4256-a63d-45c905df2677"}' \
+       http://localhost:${PORT}/api/v1/reservations/)
+
+  # Warm up then measure, requests per second and latency distribution (p99)
+  wrk -t${WRK_THREADS} -c${WRK_CONNECTIONS} -d10s http://localhost:${PORT}/api/v1/reservations/${cn} > /dev/null
+  wrk -t${WRK_THREADS} -c${WRK_CONNECTIONS} -d${DURATION} --latency \
+       http://localhost:${PORT}/api/v1/reservations/${cn} | grep -E "Requests/sec|99%|Latency "
+
+  kill ${pid}
+  wait ${pid} 2>/dev/null
+}
+
+run_mode false
+run_mode true
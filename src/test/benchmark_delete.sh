@@ -0,0 +1,32 @@
+#!/bin/bash
+
+# Latency of DELETE /api/v1/reservations/{confirmationNumber} against a running service.
+#
+# Run it once against a build of the previous version and once against the current one to compare
+# the delete paths. Requires a running service (default http://localhost:8080), 'curl' and 'bc'.
+# Without Cassandra, both paths are compared on a simulated session by the load harness:
+#   mvn -Pbenchmark test-compile exec:java@harness -Dharness.scenario=delete -Dharness.rate=2000
+#
+# Usage: ./benchmark_delete.sh [count] [baseUrl]
+
+COUNT=${1:-1000}
+BASE_URL=${2:-http://localhost:8080}/api/v1/reservations
+BODY='{"hotelId": "NY456", "startDate": "2017-06-08", "endDate": "2017-06-10", "roomNumber": "111", "guestId": "1b4d86f4-ccff-4256-a63d-45c905df2677"}'
+
+# Seed reservations to delete
+CNS=()
+for i in $(seq 1 ${COUNT}); do
+  CNS+=($(curl -s -X POST -H "Content-Type: application/json" --data "${BODY}" ${BASE_URL}/))
+done
+
+# Delete existing then unknown reservations, curl reports total time of each request in seconds
+measure() {
+  local label=$1; shift
+  printf "%s\n" "$@" | while read cn; do
+    curl -s -o /dev/null -w "%{time_total}\n" -X DELETE ${BASE_URL}/${cn}
+  done | sort -n | awk -v label="${label}" '{ t[NR] = $1; s += $1 } END {
+    printf "%-10s count=%d avg=%.2fms p50=%.2fms p99=%.2fms\n", label, NR, 1000 * s / NR,
+           1000 * t[int(NR * 0.5)], 1000 * t[int(NR * 0.99)] }'
+}
+measure existing "${CNS[@]}"
+measure unknown  $(for i in $(seq 1 ${COUNT}); do cat /proc/sys/kernel/random/uuid; done)
@@ -0,0 +1,24 @@
+#!/bin/bash
+
+# Compare the simple statement implementation (reservation.repository.simple) executing simple statements,
+# parsed by Cassandra for each request, and the same statements prepared once by PreparedStatementCache.
+# Creates then reads the same reservations in both modes and reports throughput and latency percentiles
+# (see PreparedStatementsBenchmark).
+#
+# Requires a running Cassandra (docker-compose up). Run from the project root.
+# Without Cassandra, the load harness compares both modes on a simulated session, which does not parse
+# statements: it measures the cost on the client side only.
+#   mvn -Pbenchmark test-compile exec:java@harness -Dharness.scenario=prepared
+#
+# Usage: ./src/test/benchmark_prepared_statements.sh [operations] [concurrency] [contactPoint] [port]
+
+OPERATIONS=${1:-20000}
+CONCURRENCY=${2:-64}
+CONTACT_POINT=${3:-127.0.0.1}
+PORT=${4:-9042}
+CP_FILE=target/benchmark-classpath.txt
+
+mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=${CP_FILE} || exit 1
+java -cp target/test-classes:target/classes:$(cat ${CP_FILE}) \
+     com.cassandraguide.repository.simple.PreparedStatementsBenchmark \
+     ${OPERATIONS} ${CONCURRENCY} ${CONTACT_POINT} ${PORT}
@@ -0,0 +1,42 @@
+#!/bin/bash
+
+# Startup time of the service for each repository implementation (reservation.repository.implementation).
+# Only the selected implementation is created: its tables and prepared statements only.
+#
+# Set BASELINE_JAR to a build of a previous version (all implementations created) to compare with it.
+# Startup time is the one reported by Spring Boot ("Started ReservationServiceApp in X seconds"),
+# averaged over RUNS starts. The phases of the last start (connect, metadata, schema, prepare, ready)
+# are printed as logged by the service, also available at /api/v1/admin/startup.
+#
+# Requires a running Cassandra (docker-compose up) and the packaged application (mvn package -DskipTests).
+# Without Cassandra, the load harness counts and times the requests of the repository creation on a
+# simulated session, Spring Boot left out:
+#   mvn -Pbenchmark test-compile exec:java@harness -Dharness.scenario=startup
+#
+# Usage: BASELINE_JAR=/tmp/reservation-service-baseline.jar ./benchmark_startup.sh [runs]
+
+RUNS=${1:-5}
+PORT=8080
+JAR=$(ls target/reservation-service-*.jar | head -1)
+
+# Average startup time in seconds of a jar with the provided arguments
+startup_time() {
+  local jar=$1; shift
+  for i in $(seq 1 ${RUNS}); do
+    local log=/tmp/reservation-benchmark-startup.log
+    java -jar "${jar}" --server.port=${PORT} "$@" > ${log} 2>&1 &
+    local pid=$!
+    until grep -q "Started ReservationServiceApp in\|APPLICATION FAILED TO START" ${log}; do sleep 0.2; done
+    grep -o "Started ReservationServiceApp in [0-9.]*" ${log} | awk '{ print $NF }'
+    kill ${pid}; wait ${pid} 2>/dev/null
+  done | awk '{ s += $1 } END { printf "%.2f s (%d runs)\n", s / NR, NR }'
+}
+
+if [ -n "${BASELINE_JAR}" ]; then
+  printf "%-14s %s\n" "baseline" "$(startup_time ${BASELINE_JAR})"
+fi
+for implementation in simple querybuilder mapper; do
+  printf "%-14s %s\n" "${implementation}" \
+         "$(startup_time ${JAR} --reservation.repository.implementation=${implementation})"
+  printf "%-14s %s\n" "" "$(grep -o 'phases in ms: .*' /tmp/reservation-benchmark-startup.log)"
+done
@@ -0,0 +1,69 @@
+#!/bin/bash
+
+# Compare the write strategies of the reservations (cassandra.write.strategy): LOGGED_BATCH and PARALLEL.
+#
+# For each strategy the service is started, then PUT /api/v1/reservations/{confirmationNumber} is loaded
+# with new confirmation numbers (unknown to the confirmation number filter: write only, no read). Reported:
+#   - service side: requests per second and latency distribution (wrk)
+#   - coordinator side: write latency percentiles (nodetool proxyhistograms) and number of writes
+#     to the batchlog table 'system.batches' (nodetool tablestats), the amplification avoided by PARALLEL.
+#
+# Requires a running Cassandra (docker-compose up), 'wrk' (https://github.com/wg/wrk) and the packaged
+# application (mvn package -DskipTests). Set NODETOOL if Cassandra does not run with docker-compose.
+# Without Cassandra, both strategies are compared on a simulated session by the load harness, the cost of
+# the batchlog being an assumption (harness.batchlogLatency, in ms):
+#   mvn -Pbenchmark test-compile exec:java@harness -Dharness.scenario=write-strategy -Dharness.rate=3000 \
+#       -Dharness.p99=10 -Dharness.batchlogLatency=1
+#
+# Usage: ./benchmark_write_strategy.sh [threads] [connections] [duration]
+
+WRK_THREADS=${1:-4}
+WRK_CONNECTIONS=${2:-64}
+DURATION=${3:-30s}
+PORT=8080
+JAR=$(ls target/reservation-service-*.jar | head -1)
+NODETOOL=${NODETOOL:-docker-compose exec -T cassandra nodetool}
+
+# PUT with a new confirmation number for each request
+LUA=/tmp/reservation-benchmark-put.lua
+cat > ${LUA} <<'EOF'
+counter = 0
+request = function()
+  counter = counter + 1
+  local cn = string.format("BENCH-%d-%d-%d", os.time(), math.random(1000000), counter)
+  return wrk.format("PUT", "/api/v1/reservations/" .. cn, { ["Content-Type"] = "application/json" },
+    '{"hotelId": "NY456", "startDate": "2017-06-08", "endDate": "2017-06-10", "roomNumber": "111", "guestId": "1b4d86f4-ccff-4256-a63d-45c905df2677"}')
+end
+EOF
+
+batchlog_writes() {
+  ${NODETOOL} tablestats system.batches | grep "Local write count" | awk '{ print $NF }'
+}
+
+run_strategy() {
+  local strategy=$1
+  echo "=================================================="
+  echo " cassandra.write.strategy=${strategy}"
+  echo "=================================================="
+  java -jar "${JAR}" \
+       --server.port=${PORT} \
+       --cassandra.write.strategy=${strategy} > /tmp/reservation-benchmark-${strategy}.log 2>&1 &
+  local pid=$!
+  until curl -s -o /dev/null http://localhost:${PORT}/api/v1/reservations/; do sleep 1; done
+
+  # Warm up, then reset coordinator histograms (they are cleared when read) and measure
+  wrk -t${WRK_THREADS} -c${WRK_CONNECTIONS} -d10s -s ${LUA} http://localhost:${PORT} > /dev/null
+  ${NODETOOL} proxyhistograms > /dev/null
+  local before=$(batchlog_writes)
+  wrk -t${WRK_THREADS} -c${WRK_CONNECTIONS} -d${DURATION} -s ${LUA} --latency \
+       http://localhost:${PORT} | grep -E "Requests/sec|99%|Latency "
+  ${NODETOOL} proxyhistograms | sed -n '1,12p'
+  echo "Batchlog writes: $(( $(batchlog_writes) - before ))"
+  curl -s http://localhost:${PORT}/api/v1/admin/writes; echo
+
+  kill ${pid}
+  wait ${pid} 2>/dev/null
+}
+
+run_strategy LOGGED_BATCH
+run_strategy PARALLEL
@@ -0,0 +1,74 @@
+package com.cassandraguide.conf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.metrics.Metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class DriverMetricsBinderUnitTest {
+
+    @Mock
+    protected CqlSession cqlSession;
+
+    @Mock
+    protected Metrics metrics;
+
+    protected MetricRegistry driverRegistry;
+
+    protected SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        driverRegistry = new MetricRegistry();
+        meterRegistry  = new SimpleMeterRegistry();
+        when(cqlSession.getMetrics()).thenReturn(Optional.of(metrics));
+        when(metrics.getRegistry()).thenReturn(driverRegistry);
+    }
+
+    @Test
+    @DisplayName("Session metrics are bridged, tagged with the session")
+    public void bindTo_should_bridge_session_metrics() {
+        driverRegistry.timer("s0.cql-requests").update(20, TimeUnit.MILLISECONDS);
+        driverRegistry.register("s0.connected-nodes", (com.codahale.metrics.Gauge<Integer>) () -> 3);
+        new DriverMetricsBinder(cqlSession).bindTo(meterRegistry);
+
+        assertThat(meterRegistry.get("cassandra.driver.session.cql-requests")
+                                .tag("session", "s0")
+                                .functionTimer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cassandra.driver.session.cql-requests.percentile")
+                                .tag("phi", "0.99")
+                                .gauge().value()).isEqualTo(0.02);
+        assertThat(meterRegistry.get("cassandra.driver.session.connected-nodes").gauge().value()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Node metrics added later are bridged with the node, removed with it")
+    public void bindTo_should_follow_node_metrics() {
+        new DriverMetricsBinder(cqlSession).bindTo(meterRegistry);
+        driverRegistry.counter("s0.nodes.127_0_0_1:9042.errors.request.read-timeouts").inc(2);
+
+        assertThat(meterRegistry.get("cassandra.driver.node.errors.request.read-timeouts")
+                                .tag("session", "s0")
+                                .tag("node", "127_0_0_1:9042")
+                                .functionCounter().count()).isEqualTo(2);
+
+        driverRegistry.remove("s0.nodes.127_0_0_1:9042.errors.request.read-timeouts");
+        assertThat(meterRegistry.find("cassandra.driver.node.errors.request.read-timeouts").meters()).isEmpty();
+    }
+
+}
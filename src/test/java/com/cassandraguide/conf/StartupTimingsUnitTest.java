@@ -0,0 +1,38 @@
+package com.cassandraguide.conf;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+
+import com.cassandraguide.conf.StartupTimings.Phase;
+
+public class StartupTimingsUnitTest {
+
+    @Test
+    @DisplayName("Phases are reported in order, ready when the application is")
+    public void phases_should_be_reported_in_order() {
+        StartupTimings startupTimings = new StartupTimings();
+        startupTimings.time(Phase.SCHEMA, () -> {});
+        assertThat(startupTimings.time(Phase.CONNECT, () -> "session")).isEqualTo("session");
+        assertThat(startupTimings.getUptimeWhenReady()).isEqualTo(0);
+
+        startupTimings.onApplicationEvent(mock(ApplicationReadyEvent.class));
+        assertThat(startupTimings.getPhases().keySet()).containsExactly("connect", "schema", "ready");
+        assertThat(startupTimings.getUptimeWhenReady()).isPositive();
+    }
+
+    @Test
+    @DisplayName("A failed phase is recorded")
+    public void failed_phase_should_be_recorded() {
+        StartupTimings startupTimings = new StartupTimings();
+        assertThatThrownBy(() -> startupTimings.time(Phase.CONNECT, () -> {
+            throw new IllegalStateException("No node available");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(startupTimings.getPhases()).containsOnlyKeys("connect");
+    }
+
+}
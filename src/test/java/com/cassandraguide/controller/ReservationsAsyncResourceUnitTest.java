@@ -0,0 +1,135 @@
+package com.cassandraguide.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
+import com.cassandraguide.model.ReservationRequest;
+import com.cassandraguide.model.UpsertResult;
+import com.cassandraguide.repository.ReservationRepository;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import com.datastax.oss.driver.api.core.servererrors.ProtocolError;
+
+@ExtendWith(MockitoExtension.class)
+public class ReservationsAsyncResourceUnitTest {
+
+    private static final String CONFIRMATION_NUMBER = "b9c5a9d8-9781-4de8-a00a-601a9cd6b366";
+
+    @Mock
+    protected ReservationRepository reservationRepository;
+
+    protected ReservationsAsyncResource testedResource;
+
+    @BeforeEach
+    public void _init() {
+        testedResource = new ReservationsAsyncResource(reservationRepository);
+        for (String timeout : new String[] { "findAllTimeout", "createTimeout", "findByConfirmationNumberTimeout",
+                                             "upsertTimeout", "deleteTimeout", "findByHotelAndDateTimeout" }) {
+            ReflectionTestUtils.setField(testedResource, timeout, Duration.ofMillis(200));
+        }
+    }
+
+    @Test
+    @DisplayName("Created reservation is located by its confirmation number")
+    public void create_should_return_location() throws Exception {
+        when(reservationRepository.createAsync(any(Reservation.class)))
+            .thenReturn(CompletableFuture.completedFuture(CONFIRMATION_NUMBER));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/reservations/");
+
+        ResponseEntity<String> response = testedResource.create(request, new ReservationRequest()).get();
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(response.getBody()).isEqualTo(CONFIRMATION_NUMBER);
+        assertThat(response.getHeaders().getLocation().getPath())
+            .isEqualTo("/api/v1/reservations/" + CONFIRMATION_NUMBER);
+    }
+
+    @Test
+    @DisplayName("Unknown reservation is not found, for reads and deletes")
+    public void findByConfirmationNumber_should_return_404_when_unknown() throws Exception {
+        when(reservationRepository.findByConfirmationNumberAsync(CONFIRMATION_NUMBER))
+            .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        when(reservationRepository.deleteAsync(CONFIRMATION_NUMBER))
+            .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        assertThat(testedResource.findByConfirmationNumber(CONFIRMATION_NUMBER).get().getStatusCode())
+            .isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(testedResource.delete(CONFIRMATION_NUMBER).get().getStatusCode())
+            .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    @DisplayName("Upsert answers 201 when created, 204 when updated")
+    public void upsert_should_tell_created_from_updated() throws Exception {
+        when(reservationRepository.upsertAsync(any(Reservation.class)))
+            .thenReturn(CompletableFuture.completedFuture(new UpsertResult(CONFIRMATION_NUMBER, true)))
+            .thenReturn(CompletableFuture.completedFuture(new UpsertResult(CONFIRMATION_NUMBER, false)));
+
+        assertThat(testedResource.upsert(CONFIRMATION_NUMBER, new ReservationRequest()).get().getStatusCode())
+            .isEqualTo(HttpStatus.CREATED);
+        assertThat(testedResource.upsert(CONFIRMATION_NUMBER, new ReservationRequest()).get().getStatusCode())
+            .isEqualTo(HttpStatus.NO_CONTENT);
+    }
+
+    @Test
+    @DisplayName("Endpoint timeout fails the response, not the pending operation")
+    public void findByConfirmationNumber_should_time_out() {
+        CompletableFuture<Optional<Reservation>> pending = new CompletableFuture<>();
+        when(reservationRepository.findByConfirmationNumberAsync(CONFIRMATION_NUMBER)).thenReturn(pending);
+
+        assertThatThrownBy(() -> testedResource.findByConfirmationNumber(CONFIRMATION_NUMBER).get())
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(pending).isNotDone();
+        assertThat(testedResource._errorTimeoutHandler(new TimeoutException())).isEqualTo("Request timed out");
+    }
+
+    @Test
+    @DisplayName("Paging state rejected by Cassandra is a bad request, other errors are not")
+    public void findAll_should_reject_paging_state_refused_by_cassandra() {
+        CompletableFuture<ReservationPage> rejected = new CompletableFuture<>();
+        rejected.completeExceptionally(new ProtocolError(null, "Invalid value for the paging state"));
+        CompletableFuture<ReservationPage> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new InvalidQueryException(null, "unconfigured table"));
+        doReturn(rejected).when(reservationRepository).findAllAsync(10, "AAAAAAAAAAA");
+        doReturn(failed).when(reservationRepository).findAllAsync(10, null);
+
+        assertThatThrownBy(() -> testedResource.findAll(10, "AAAAAAAAAAA").get())
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> testedResource.findAll(10, null).get())
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(InvalidQueryException.class);
+    }
+
+    @Test
+    @DisplayName("Invalid confirmation number is rejected before any request")
+    public void findByConfirmationNumber_should_reject_invalid_number() {
+        assertThatThrownBy(() -> testedResource.findByConfirmationNumber("not-a-uuid"))
+            .isInstanceOf(IllegalArgumentException.class);
+        verifyZeroInteractions(reservationRepository);
+    }
+
+}
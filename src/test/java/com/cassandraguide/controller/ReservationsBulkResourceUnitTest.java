@@ -0,0 +1,156 @@
+package com.cassandraguide.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.repository.ReservationRepository;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+@ExtendWith(MockitoExtension.class)
+public class ReservationsBulkResourceUnitTest {
+
+    private static final String NY123 = "{\"hotelId\":\"NY123\",\"startDate\":\"2020-06-01\",\"endDate\":\"2020-06-03\","
+            + "\"roomNumber\":42,\"guestId\":\"1b4d86f4-ccff-4256-a63d-45c905df2677\"}";
+
+    private static final String NY456 = NY123.replace("NY123", "NY456");
+
+    private static final String FAILING = NY123.replace("NY123", "FAILING");
+
+    private static final String DELAYED = NY123.replace("NY123", "DELAYED");
+
+    @Mock
+    protected ReservationRepository reservationRepository;
+
+    protected ObjectMapper objectMapper;
+
+    protected ReservationsBulkResource testedResource;
+
+    @BeforeEach
+    public void _init() {
+        objectMapper   = new ObjectMapper().registerModule(new JavaTimeModule());
+        testedResource = new ReservationsBulkResource(reservationRepository, objectMapper);
+        when(reservationRepository.createAsync(any(Reservation.class))).thenAnswer(invocation -> {
+            Reservation reservation = invocation.getArgument(0);
+            if ("DELAYED".equals(reservation.getHotelId())) {
+                return CompletableFuture.supplyAsync(() -> "CN-DELAYED",
+                        CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS));
+            }
+            return "FAILING".equals(reservation.getHotelId())
+                    ? CompletableFuture.failedFuture(new DriverTimeoutException("Query timed out after PT2S"))
+                    : CompletableFuture.completedFuture("CN-" + reservation.getHotelId());
+        });
+    }
+
+    @Test
+    @DisplayName("Failed writes are reported for their reservation only, the others are created")
+    public void bulk_should_report_partial_failure() throws IOException {
+        List<JsonNode> results = bulk(NY123 + "\n" + FAILING + "\n" + NY456 + "\n");
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).get("confirmationNumber").asText()).isEqualTo("CN-NY123");
+        assertThat(results.get(1).has("confirmationNumber")).isFalse();
+        assertThat(results.get(1).get("error").asText())
+            .isEqualTo("DriverTimeoutException: Query timed out after PT2S");
+        assertThat(results.get(2).get("confirmationNumber").asText()).isEqualTo("CN-NY456");
+    }
+
+    @Test
+    @DisplayName("A malformed NDJSON line fails its reservation only, parsing resumes at the next line")
+    public void bulk_should_resync_after_malformed_line() throws IOException {
+        List<JsonNode> results = bulk(NY123 + "\n"
+                + "{\"hotelId\": NY123}\n"
+                + "{\"hotelId\":\"NY789\",\"roomNumber\":\"not a number\"}\n"
+                + "\n"
+                + NY456 + "\n");
+
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0).get("confirmationNumber").asText()).isEqualTo("CN-NY123");
+        assertThat(results.get(1).get("error").asText()).startsWith("Invalid JSON");
+        assertThat(results.get(2).get("error").asText()).startsWith("Invalid reservation");
+        assertThat(results.get(3).get("confirmationNumber").asText()).isEqualTo("CN-NY456");
+        verify(reservationRepository, times(2)).createAsync(any(Reservation.class));
+    }
+
+    @Test
+    @DisplayName("A JSON array is parsed as a sequence of reservations")
+    public void bulk_should_accept_json_array() throws IOException {
+        List<JsonNode> results = bulk("  [" + NY123 + ", " + NY456 + "]");
+
+        assertThat(results).extracting(result -> result.get("confirmationNumber").asText())
+                           .containsExactly("CN-NY123", "CN-NY456");
+    }
+
+    @Test
+    @DisplayName("Nothing is written to the response while the request is read, clients need not be full duplex")
+    public void bulk_should_write_results_once_request_read() throws IOException {
+        // Each reservation waits for the write of the previous one
+        ReflectionTestUtils.setField(testedResource, "maxInFlight", 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] body = (DELAYED + "\n" + DELAYED + "\n" + DELAYED + "\n").getBytes(StandardCharsets.UTF_8);
+        // Read byte by byte, the response should still be empty when the body ends
+        InputStream in = new ByteArrayInputStream(body) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                assertThat(out.size()).isZero();
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        testedResource.bulk(in).getBody().writeTo(out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n")).hasSize(3);
+    }
+
+    @Test
+    @DisplayName("Reservations beyond the max of a request are not read, reported by a single failed result")
+    public void bulk_should_stop_reading_beyond_max_reservations() throws IOException {
+        ReflectionTestUtils.setField(testedResource, "maxReservations", 2);
+        List<JsonNode> results = bulk(NY123 + "\n" + NY456 + "\n" + NY123 + "\n" + NY456 + "\n");
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(2).get("error").asText()).startsWith("More than 2 reservations");
+        verify(reservationRepository, times(2)).createAsync(any(Reservation.class));
+    }
+
+    /**
+     * Results of a request, sorted by index of the reservation (they are written in completion order).
+     */
+    private List<JsonNode> bulk(String body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        testedResource.bulk(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))).getBody().writeTo(out);
+        String response = out.toString(StandardCharsets.UTF_8);
+        assertThat(response).endsWith("\n");
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : response.split("\n")) {
+            results.add(objectMapper.readTree(line));
+        }
+        results.sort(Comparator.comparingLong(result -> result.get("index").asLong()));
+        return results;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.cassandraguide.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.repository.ReservationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+@ExtendWith(MockitoExtension.class)
+public class ReservationsExportResourceUnitTest {
+
+    @Mock
+    protected ReservationRepository reservationRepository;
+
+    protected ObjectMapper objectMapper;
+
+    protected ReservationsExportResource testedResource;
+
+    @BeforeEach
+    public void _init() {
+        objectMapper   = new ObjectMapper().registerModule(new JavaTimeModule());
+        testedResource = new ReservationsExportResource(reservationRepository, objectMapper);
+    }
+
+    @Test
+    @DisplayName("Each reservation scanned is written on its own line")
+    public void export_should_write_one_reservation_per_line() throws IOException {
+        scan(2001);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        testedResource.export().getBody().writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        // Last line terminated
+        assertThat(lines).hasSize(2002);
+        assertThat(lines[2001]).isEmpty();
+        assertThat(objectMapper.readTree(lines[0]).get("confirmationNumber").asText()).isEqualTo("CN0");
+        assertThat(objectMapper.readTree(lines[2000]).get("confirmationNumber").asText()).isEqualTo("CN2000");
+    }
+
+    @Test
+    @DisplayName("Empty table is an empty body")
+    public void export_should_write_nothing_for_empty_table() throws IOException {
+        scan(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        testedResource.export().getBody().writeTo(out);
+        assertThat(out.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Client going away stops the scan with its IOException")
+    public void export_should_stop_when_client_goes_away() {
+        scan(1000);
+        OutputStream closed = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        assertThatThrownBy(() -> testedResource.export().getBody().writeTo(closed))
+            .isInstanceOf(IOException.class)
+            .hasMessage("Broken pipe");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void scan(int count) {
+        doAnswer(invocation -> {
+            Consumer<Reservation> consumer = invocation.getArgument(0);
+            for (int i = 0; i < count; i++) {
+                Reservation reservation = new Reservation();
+                reservation.setConfirmationNumber("CN" + i);
+                reservation.setHotelId("NY123");
+                consumer.accept(reservation);
+            }
+            return null;
+        }).when(reservationRepository).scanAll(any(Consumer.class));
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.cassandraguide.loader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileChunkUnitTest {
+
+    @TempDir
+    protected Path folder;
+
+    @Test
+    @DisplayName("Chunks end on line boundaries and cover all lines")
+    public void split_should_align_chunks_on_lines() throws IOException {
+        List<String> expected = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String line = "line-" + i + "-" + "x".repeat(i % 37);
+            expected.add(line);
+            content.append(line).append(i % 2 == 0 ? "\n" : "\r\n");
+        }
+        Path file = folder.resolve("lines.csv");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<FileChunk> chunks = FileChunk.split(channel, 1000);
+            assertThat(chunks.size()).isGreaterThan(1);
+            assertThat(chunks.get(0).getStart()).isEqualTo(0);
+            assertThat(chunks.get(chunks.size() - 1).getEnd()).isEqualTo(channel.size());
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                assertThat(chunks.get(i).getIndex()).isEqualTo(i);
+                if (i > 0) {
+                    assertThat(chunks.get(i).getStart()).isEqualTo(chunks.get(i - 1).getEnd());
+                }
+                chunks.get(i).forEachLine(channel, (line, length) ->
+                    lines.add(new String(line, 0, length, StandardCharsets.UTF_8)));
+            }
+            assertThat(lines).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    @DisplayName("Last line without line feed is read")
+    public void forEachLine_should_read_last_line() throws IOException {
+        Path file = folder.resolve("last.csv");
+        Files.write(file, "first\nsecond".getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<String> lines = new ArrayList<>();
+            for (FileChunk chunk : FileChunk.split(channel, 1024)) {
+                chunk.forEachLine(channel, (line, length) ->
+                    lines.add(new String(line, 0, length, StandardCharsets.UTF_8)));
+            }
+            assertThat(lines).containsExactly("first", "second");
+        }
+    }
+}
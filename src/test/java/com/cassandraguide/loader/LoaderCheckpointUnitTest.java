@@ -0,0 +1,109 @@
+package com.cassandraguide.loader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LoaderCheckpointUnitTest {
+
+    private static final long FILE_SIZE = 10_000;
+
+    private static final long CHUNK_SIZE = 1_000;
+
+    @TempDir
+    protected Path folder;
+
+    @Test
+    @DisplayName("Chunks loaded before an interruption are done when the checkpoint is opened again")
+    public void checkpoint_should_resume_partial_load() throws IOException {
+        Path path = folder.resolve("reservations.csv.checkpoint");
+        try (LoaderCheckpoint checkpoint = new LoaderCheckpoint(path, FILE_SIZE, CHUNK_SIZE)) {
+            assertThat(checkpoint.countDone()).isZero();
+            checkpoint.markDone(3);
+            checkpoint.markDone(0);
+            // Interrupted without delete
+        }
+
+        try (LoaderCheckpoint resumed = new LoaderCheckpoint(path, FILE_SIZE, CHUNK_SIZE)) {
+            assertThat(resumed.countDone()).isEqualTo(2);
+            assertThat(resumed.isDone(0)).isTrue();
+            assertThat(resumed.isDone(1)).isFalse();
+            assertThat(resumed.isDone(3)).isTrue();
+            resumed.markDone(1);
+        }
+
+        try (LoaderCheckpoint resumed = new LoaderCheckpoint(path, FILE_SIZE, CHUNK_SIZE)) {
+            assertThat(resumed.countDone()).isEqualTo(3);
+            assertThat(resumed.isDone(1)).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Each chunk is on disk as soon as it is marked, a crash loses no completed chunk")
+    public void markDone_should_flush() throws IOException {
+        Path path = folder.resolve("flushed.checkpoint");
+        try (LoaderCheckpoint checkpoint = new LoaderCheckpoint(path, FILE_SIZE, CHUNK_SIZE)) {
+            checkpoint.markDone(7);
+            assertThat(Files.readAllLines(path, StandardCharsets.UTF_8))
+                .containsExactly("size=" + FILE_SIZE + " chunkSize=" + CHUNK_SIZE, "7");
+        }
+    }
+
+    @Test
+    @DisplayName("Checkpoint of a file of another size is rejected")
+    public void checkpoint_should_reject_other_file_size() throws IOException {
+        Path path = checkpointWithChunk(folder.resolve("size.checkpoint"));
+        assertThatThrownBy(() -> new LoaderCheckpoint(path, FILE_SIZE + 1, CHUNK_SIZE))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("does not match");
+    }
+
+    @Test
+    @DisplayName("Checkpoint of a load with another chunk size is rejected")
+    public void checkpoint_should_reject_other_chunk_size() throws IOException {
+        Path path = checkpointWithChunk(folder.resolve("chunk.checkpoint"));
+        assertThatThrownBy(() -> new LoaderCheckpoint(path, FILE_SIZE, CHUNK_SIZE * 2))
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("does not match");
+        // Left untouched
+        try (LoaderCheckpoint checkpoint = new LoaderCheckpoint(path, FILE_SIZE, CHUNK_SIZE)) {
+            assertThat(checkpoint.isDone(2)).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("Empty checkpoint file is rejected, not taken as a new load")
+    public void checkpoint_should_reject_empty_file() throws IOException {
+        Path path = Files.createFile(folder.resolve("empty.checkpoint"));
+        assertThatThrownBy(() -> new LoaderCheckpoint(path, FILE_SIZE, CHUNK_SIZE))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Deleted checkpoint starts the next load from the beginning")
+    public void delete_should_remove_file() throws IOException {
+        Path path = checkpointWithChunk(folder.resolve("deleted.checkpoint"));
+        LoaderCheckpoint checkpoint = new LoaderCheckpoint(path, FILE_SIZE, CHUNK_SIZE);
+        checkpoint.delete();
+        assertThat(path).doesNotExist();
+        try (LoaderCheckpoint next = new LoaderCheckpoint(path, FILE_SIZE, CHUNK_SIZE * 2)) {
+            assertThat(next.countDone()).isZero();
+        }
+    }
+
+    private static Path checkpointWithChunk(Path path) throws IOException {
+        try (LoaderCheckpoint checkpoint = new LoaderCheckpoint(path, FILE_SIZE, CHUNK_SIZE)) {
+            checkpoint.markDone(2);
+        }
+        return path;
+    }
+
+}
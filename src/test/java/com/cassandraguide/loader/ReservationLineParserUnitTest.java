@@ -0,0 +1,124 @@
+package com.cassandraguide.loader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.cassandraguide.loader.ReservationLineParser.Format;
+import com.cassandraguide.model.Reservation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+public class ReservationLineParserUnitTest {
+
+    private static final String GUEST_ID = "1b4d86f4-ccff-4256-a63d-45c905df2677";
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    @DisplayName("CSV columns are mapped in order, header and empty lines are ignored")
+    public void parse_should_read_csv() {
+        ReservationLineParser parser = new ReservationLineParser(Format.CSV, objectMapper);
+        assertThat(parse(parser, "confirmation_number,hotel_id,start_date,end_date,room_number,guest_id")).isNull();
+        assertThat(parse(parser, "")).isNull();
+
+        Reservation reservation = parse(parser, "RS2G0Z, NY456 ,2020-06-08,2020-06-10,111," + GUEST_ID);
+        assertThat(reservation.getConfirmationNumber()).isEqualTo("RS2G0Z");
+        assertThat(reservation.getHotelId()).isEqualTo("NY456");
+        assertThat(reservation.getStartDate()).isEqualTo(LocalDate.of(2020, 6, 8));
+        assertThat(reservation.getEndDate()).isEqualTo(LocalDate.of(2020, 6, 10));
+        assertThat(reservation.getRoomNumber()).isEqualTo((short) 111);
+        assertThat(reservation.getGuestId()).isEqualTo(UUID.fromString(GUEST_ID));
+    }
+
+    @Test
+    @DisplayName("Only the given length of the buffer is parsed, buffers are reused between lines")
+    public void parse_should_ignore_bytes_after_length() {
+        ReservationLineParser parser = new ReservationLineParser(Format.CSV, objectMapper);
+        String line   = "RS2G0Z,NY456,2020-06-08,2020-06-10,111," + GUEST_ID;
+        byte[] buffer = Arrays.copyOf(line.getBytes(StandardCharsets.UTF_8), line.length() + 32);
+        Arrays.fill(buffer, line.length(), buffer.length, (byte) 'x');
+
+        assertThat(parser.parse(buffer, line.length()).getGuestId()).isEqualTo(UUID.fromString(GUEST_ID));
+    }
+
+    @Test
+    @DisplayName("Malformed CSV lines are rejected")
+    public void parse_should_reject_malformed_csv() {
+        ReservationLineParser parser = new ReservationLineParser(Format.CSV, objectMapper);
+        assertThatThrownBy(() -> parse(parser, "RS2G0Z,NY456,2020-06-08,2020-06-10,111"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Expecting 6 columns, found 5");
+        assertThatThrownBy(() -> parse(parser, "RS2G0Z,NY456,2020-06-08,2020-06-10,111," + GUEST_ID + ",extra"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Expecting 6 columns, found 7");
+        assertThatThrownBy(() -> parse(parser, "RS2G0Z,NY456,08/06/2020,2020-06-10,111," + GUEST_ID))
+            .isInstanceOf(DateTimeParseException.class);
+        assertThatThrownBy(() -> parse(parser, "RS2G0Z,NY456,2020-06-08,2020-06-10,room," + GUEST_ID))
+            .isInstanceOf(NumberFormatException.class);
+        assertThatThrownBy(() -> parse(parser, "RS2G0Z,NY456,2020-06-08,2020-06-10,111,guest"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> parse(parser, ",NY456,2020-06-08,2020-06-10,111," + GUEST_ID))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("ConfirmationNumber");
+    }
+
+    @Test
+    @DisplayName("NDJSON lines are read as exported")
+    public void parse_should_read_ndjson() throws Exception {
+        Reservation exported = new Reservation();
+        exported.setConfirmationNumber("RS2G0Z");
+        exported.setHotelId("NY456");
+        exported.setStartDate(LocalDate.of(2020, 6, 8));
+        exported.setEndDate(LocalDate.of(2020, 6, 10));
+        exported.setRoomNumber((short) 111);
+        exported.setGuestId(UUID.fromString(GUEST_ID));
+        ReservationLineParser parser = new ReservationLineParser(Format.NDJSON, objectMapper);
+
+        Reservation reservation = parse(parser, objectMapper.writeValueAsString(exported));
+        assertThat(reservation.getConfirmationNumber()).isEqualTo("RS2G0Z");
+        assertThat(reservation.getHotelId()).isEqualTo("NY456");
+        assertThat(reservation.getStartDate()).isEqualTo(LocalDate.of(2020, 6, 8));
+        assertThat(reservation.getRoomNumber()).isEqualTo((short) 111);
+        assertThat(reservation.getGuestId()).isEqualTo(UUID.fromString(GUEST_ID));
+        assertThat(parse(parser, "")).isNull();
+    }
+
+    @Test
+    @DisplayName("Malformed NDJSON lines are rejected")
+    public void parse_should_reject_malformed_ndjson() {
+        ReservationLineParser parser = new ReservationLineParser(Format.NDJSON, objectMapper);
+        assertThatThrownBy(() -> parse(parser, "{\"confirmationNumber\":\"RS2G0Z\",\"hotelId\": NY456}"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Invalid JSON");
+        assertThatThrownBy(() -> parse(parser, "{\"confirmationNumber\":\"RS2G0Z\",\"roomNumber\":\"room\"}"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageStartingWith("Invalid JSON");
+        assertThatThrownBy(() -> parse(parser, "{\"hotelId\":\"NY456\"}"))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("ConfirmationNumber");
+    }
+
+    @Test
+    @DisplayName("Format is NDJSON for .ndjson and .json files, CSV otherwise")
+    public void fromFileName_should_use_extension() {
+        assertThat(Format.fromFileName("/data/reservations.NDJSON")).isEqualTo(Format.NDJSON);
+        assertThat(Format.fromFileName("reservations.json")).isEqualTo(Format.NDJSON);
+        assertThat(Format.fromFileName("reservations.csv")).isEqualTo(Format.CSV);
+        assertThat(Format.fromFileName("reservations")).isEqualTo(Format.CSV);
+    }
+
+    private static Reservation parse(ReservationLineParser parser, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return parser.parse(bytes, bytes.length);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.cassandraguide.loader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.repository.ReservationRepository;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+@ExtendWith(MockitoExtension.class)
+public class ReservationLoaderUnitTest {
+
+    private static final int ROWS = 500;
+
+    @TempDir
+    protected Path folder;
+
+    @Mock
+    protected ReservationRepository reservationRepository;
+
+    @Test
+    @DisplayName("Load interrupted by failed writes resumes with the chunks not loaded only")
+    public void run_should_resume_partial_load() throws Exception {
+        StringBuilder content = new StringBuilder("confirmation_number,hotel_id,start_date,end_date,room_number,guest_id\n");
+        for (int i = 0; i < ROWS; i++) {
+            content.append(String.format("CN%04d,NY%03d,2020-06-08,2020-06-10,%d,1b4d86f4-ccff-4256-a63d-45c905df2677\n",
+                    i, i % 10, 100 + i % 50));
+        }
+        Path file = folder.resolve("reservations.csv");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+        Path checkpoint = folder.resolve("reservations.csv.checkpoint");
+
+        // First run: a single row fails, its chunk is not checkpointed
+        Set<String> written = ConcurrentHashMap.newKeySet();
+        when(reservationRepository.createAsync(any(Reservation.class))).thenAnswer(invocation -> {
+            Reservation reservation = invocation.getArgument(0);
+            if ("CN0250".equals(reservation.getConfirmationNumber())) {
+                return CompletableFuture.failedFuture(new DriverTimeoutException("Query timed out after PT2S"));
+            }
+            written.add(reservation.getConfirmationNumber());
+            return CompletableFuture.completedFuture(reservation.getConfirmationNumber());
+        });
+        ReservationLoader first = loader(file);
+        first.run();
+        assertThat(first.getExitCode()).isEqualTo(1);
+        assertThat(written).hasSize(ROWS - 1);
+        // Header, then the chunks loaded
+        List<String> lines = Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+        assertThat(lines.size()).isGreaterThan(2);
+
+        // Second run: only the rows of the failed chunk are written again
+        written.clear();
+        when(reservationRepository.createAsync(any(Reservation.class))).thenAnswer(invocation -> {
+            Reservation reservation = invocation.getArgument(0);
+            written.add(reservation.getConfirmationNumber());
+            return CompletableFuture.completedFuture(reservation.getConfirmationNumber());
+        });
+        ReservationLoader second = loader(file);
+        second.run();
+        assertThat(second.getExitCode()).isZero();
+        assertThat(written).contains("CN0250");
+        assertThat(written.size()).isLessThan(ROWS / 2);
+        assertThat(checkpoint).doesNotExist();
+    }
+
+    private ReservationLoader loader(Path file) {
+        ReservationLoader loader = new ReservationLoader(reservationRepository,
+                new ObjectMapper().registerModule(new JavaTimeModule()));
+        ReflectionTestUtils.setField(loader, "file", file.toString());
+        ReflectionTestUtils.setField(loader, "format", "");
+        ReflectionTestUtils.setField(loader, "checkpointFile", "");
+        ReflectionTestUtils.setField(loader, "chunkSize", DataSize.ofBytes(4096));
+        ReflectionTestUtils.setField(loader, "parallelism", 2);
+        return loader;
+    }
+
+}
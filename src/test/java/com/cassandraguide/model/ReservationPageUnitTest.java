@@ -0,0 +1,56 @@
+package com.cassandraguide.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ReservationPageUnitTest {
+
+    private static final ByteBuffer PAGING_STATE = ByteBuffer.wrap(
+            "\u0000\u0010partition-key\u0000\u0004mark\u0000\u0000\u0000d".getBytes(StandardCharsets.UTF_8));
+
+    @Test
+    @DisplayName("Cursor decodes to the paging state returned by the driver")
+    public void decodePagingState_should_return_encoded_state() {
+        String cursor = ReservationPage.encodePagingState(PAGING_STATE);
+        assertThat(ReservationPage.decodePagingState(cursor)).isEqualTo(PAGING_STATE);
+        // Not consumed by the encoding
+        assertThat(PAGING_STATE.position()).isZero();
+        assertThat(ReservationPage.decodePagingState(null)).isNull();
+        assertThat(ReservationPage.decodePagingState("")).isNull();
+        assertThat(ReservationPage.encodePagingState(null)).isNull();
+    }
+
+    @Test
+    @DisplayName("Valid Base64 which is not a cursor is rejected")
+    public void decodePagingState_should_reject_altered_cursor() {
+        String cursor = ReservationPage.encodePagingState(PAGING_STATE);
+        char[] altered = cursor.toCharArray();
+        altered[3] = (altered[3] == 'A') ? 'B' : 'A';
+
+        assertThatThrownBy(() -> ReservationPage.decodePagingState(new String(altered)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("pagingState");
+        assertThatThrownBy(() -> ReservationPage.decodePagingState(cursor.substring(0, cursor.length() - 4)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ReservationPage.decodePagingState(
+                Base64.getUrlEncoder().encodeToString("garbage".getBytes(StandardCharsets.UTF_8))))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ReservationPage.decodePagingState("AAA"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Cursor which is not Base64 is rejected")
+    public void decodePagingState_should_reject_invalid_base64() {
+        assertThatThrownBy(() -> ReservationPage.decodePagingState("not a cursor!"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
@@ -14,6 +14,8 @@ import org.testcontainers.containers.GenericContainer;
 
 import com.cassandraguide.conf.CassandraConfiguration;
 import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
+import com.cassandraguide.model.UpsertResult;
 
 /**
  * Integration test for implementations of {@link ReservationRepository}. We expect to run 
@@ -81,8 +83,10 @@ public abstract class AbstractReservationIntegrationTest {
         r1.setHotelId("12345");
         r1.setGuestId(UUID.randomUUID());
         r1.setRoomNumber(Short.valueOf("42"));
-        reservationRepo.upsert(r1);
-        // A new entry is created
+        UpsertResult result = reservationRepo.upsert(r1);
+        // A new entry is reported as created
+        Assertions.assertTrue(result.isCreated());
+        Assertions.assertEquals(confirmationNumber, result.getConfirmationNumber());
         Assertions.assertTrue(reservationRepo.exists(confirmationNumber));
         // And can be retrieved
         Assertions.assertTrue(reservationRepo.findByConfirmationNumber(confirmationNumber).isPresent());
@@ -98,7 +102,7 @@ public abstract class AbstractReservationIntegrationTest {
         r1.setHotelId("12345");
         r1.setGuestId(UUID.randomUUID());
         r1.setRoomNumber(Short.valueOf("42"));
-        String confirmationNumber = reservationRepo.upsert(r1);
+        String confirmationNumber = reservationRepo.upsert(r1).getConfirmationNumber();
         Assertions.assertTrue(reservationRepo.exists(confirmationNumber));
         
         // When upserting with same confirmation number
@@ -109,12 +113,16 @@ public abstract class AbstractReservationIntegrationTest {
         r2.setHotelId("9999");  // <-- updating hotel ID
         r2.setGuestId(UUID.randomUUID());
         r2.setRoomNumber(Short.valueOf("42"));
-        reservationRepo.upsert(r2);
+        UpsertResult result = reservationRepo.upsert(r2);
+        Assertions.assertFalse(result.isCreated());
         
         // Record should have been updated 
         Optional<Reservation> r3 = reservationRepo.findByConfirmationNumber(confirmationNumber);
         Assertions.assertTrue(r3.isPresent());
         Assertions.assertEquals(r2.getHotelId(), r3.get().getHotelId());
+        // And no more listed for previous hotel
+        Assertions.assertTrue(reservationRepo.findByHotelAndDate(r1.getHotelId(), r1.getStartDate()).isEmpty());
+        Assertions.assertEquals(1, reservationRepo.findByHotelAndDate(r2.getHotelId(), r2.getStartDate()).size());
     }
     
     @Test
@@ -127,12 +135,16 @@ public abstract class AbstractReservationIntegrationTest {
         r1.setHotelId("12345");
         r1.setGuestId(UUID.randomUUID());
         r1.setRoomNumber(Short.valueOf("42"));
-        String confirmationNumber = reservationRepo.upsert(r1);
+        String confirmationNumber = reservationRepo.upsert(r1).getConfirmationNumber();
         Assertions.assertTrue(reservationRepo.exists(confirmationNumber));
-        // When deleting by id
-        reservationRepo.delete(confirmationNumber);
+        // When deleting by id, deleted reservation is returned
+        Optional<Reservation> deleted = reservationRepo.delete(confirmationNumber);
+        Assertions.assertTrue(deleted.isPresent());
+        Assertions.assertEquals(r1.getHotelId(), deleted.get().getHotelId());
         // The record is no more present
         Assertions.assertFalse(reservationRepo.exists(confirmationNumber));
+        // Deleting again finds nothing
+        Assertions.assertFalse(reservationRepo.delete(confirmationNumber).isPresent());
     }
     
     @Test
@@ -146,15 +158,63 @@ public abstract class AbstractReservationIntegrationTest {
         r1.setGuestId(UUID.randomUUID());
         r1.setRoomNumber(Short.valueOf("42"));
         // When
-        String confirmationNumber1 = reservationRepo.upsert(r1);
+        String confirmationNumber1 = reservationRepo.upsert(r1).getConfirmationNumber();
         r1.setConfirmationNumber(null);
-        String confirmationNumber2 = reservationRepo.upsert(r1);
+        String confirmationNumber2 = reservationRepo.upsert(r1).getConfirmationNumber();
         // Then
         Assertions.assertTrue(reservationRepo.exists(confirmationNumber1));
         Assertions.assertTrue(reservationRepo.exists(confirmationNumber2));
         // The record is no more present
         Assertions.assertEquals(2, reservationRepo.findAll().size());
+        // And can be streamed as well
+        Assertions.assertEquals(2, reservationRepo.streamAll().count());
+    }
+    
+    @Test
+    @DisplayName("Creating and reading a reservation asynchronously")
+    public void upsertAsync_should_insert_entry() {
+        // Given a reservation
+        Reservation r1 = new Reservation();
+        r1.setEndDate(LocalDate.of(2020, 12, 20));
+        r1.setStartDate(LocalDate.now());
+        r1.setHotelId("12345");
+        r1.setGuestId(UUID.randomUUID());
+        r1.setRoomNumber(Short.valueOf("42"));
+        // When upserting without blocking
+        UpsertResult result = reservationRepo.upsertAsync(r1).toCompletableFuture().join();
+        Assertions.assertTrue(result.isCreated());
+        String confirmationNumber = result.getConfirmationNumber();
+        // Then it can be retrieved without blocking
+        Assertions.assertTrue(reservationRepo.existsAsync(confirmationNumber).toCompletableFuture().join());
+        Assertions.assertTrue(reservationRepo.findByConfirmationNumberAsync(confirmationNumber)
+                                             .toCompletableFuture().join().isPresent());
+        // And deleted without blocking
+        Assertions.assertTrue(reservationRepo.deleteAsync(confirmationNumber).toCompletableFuture().join().isPresent());
+        Assertions.assertFalse(reservationRepo.existsAsync(confirmationNumber).toCompletableFuture().join());
+    }
+    
+    @Test
+    @DisplayName("Listing reservations page by page")
+    public void findAllWithPaging_should_return_bounded_pages() {
+        // Given 3 reservations
+        Reservation r1 = new Reservation();
+        r1.setEndDate(LocalDate.of(2020, 12, 20));
+        r1.setStartDate(LocalDate.now());
+        r1.setHotelId("12345");
+        r1.setGuestId(UUID.randomUUID());
+        r1.setRoomNumber(Short.valueOf("42"));
+        for (int i = 0; i < 3; i++) {
+            r1.setConfirmationNumber(null);
+            reservationRepo.upsert(r1);
+        }
+        // When reading with page size of 2
+        ReservationPage page1 = reservationRepo.findAll(2, null);
+        // Then first page is full and provides a cursor
+        Assertions.assertEquals(2, page1.getReservations().size());
+        Assertions.assertNotNull(page1.getPagingState());
+        // And last page holds remaining reservation
+        ReservationPage page2 = reservationRepo.findAll(2, page1.getPagingState());
+        Assertions.assertEquals(1, page2.getReservations().size());
     }
 
 }
-
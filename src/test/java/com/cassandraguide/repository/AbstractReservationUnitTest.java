@@ -11,6 +11,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
@@ -40,6 +41,8 @@ public abstract class AbstractReservationUnitTest {
     protected BoundStatement mockBound;
     @Mock
     protected ResultSet mockResultSet;
+    @Mock
+    protected AsyncResultSet mockAsyncResultSet;
     
     /** To be implemented by sub classes. */
     protected abstract ReservationRepository initReservationRepository();
@@ -62,4 +65,12 @@ public abstract class AbstractReservationUnitTest {
             .hasMessageContaining("should not be null");
     }
     
+    @Test
+    @DisplayName("Confirmation is required to evaluate reservation existence (async)")
+    public void existReservationAsync_should_throw_if_null_confirmationnumber() {
+        assertThatThrownBy(() -> { testedRepository.existsAsync(null);})
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("should not be null");
+    }
+    
 }
@@ -0,0 +1,152 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.UpsertResult;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+@ExtendWith(MockitoExtension.class)
+public class CachingReservationRepositoryUnitTest {
+
+    @Mock
+    protected ReservationRepository delegate;
+
+    protected Cache<String, Reservation> cache;
+
+    protected ReservationRepository testedRepository;
+
+    protected Reservation reservation;
+
+    @BeforeEach
+    public void _init() {
+        cache            = Caffeine.newBuilder().maximumSize(10).recordStats().build();
+        testedRepository = new CachingReservationRepository(delegate, cache);
+        reservation      = new Reservation();
+        reservation.setConfirmationNumber("RS2G0Z");
+    }
+
+    @Test
+    @DisplayName("Confirmation is required to read the cache")
+    public void findByConfirmationNumber_should_throw_if_null_confirmationnumber() {
+        assertThatThrownBy(() -> { testedRepository.findByConfirmationNumber(null);})
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("should not be null");
+    }
+
+    @Test
+    @DisplayName("Second lookup is served by the cache")
+    public void findByConfirmationNumber_should_read_delegate_once() {
+        when(delegate.findByConfirmationNumber("RS2G0Z")).thenReturn(Optional.of(reservation));
+        assertThat(testedRepository.findByConfirmationNumber("RS2G0Z")).contains(reservation);
+        assertThat(testedRepository.findByConfirmationNumber("RS2G0Z")).contains(reservation);
+        assertThat(testedRepository.exists("RS2G0Z")).isTrue();
+        verify(delegate, times(1)).findByConfirmationNumber("RS2G0Z");
+        verifyNoMoreInteractions(delegate);
+        assertThat(cache.stats().hitCount()).isEqualTo(2);
+        assertThat(cache.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Missing reservations are not cached")
+    public void findByConfirmationNumber_should_not_cache_missing() {
+        when(delegate.findByConfirmationNumber("RS2G0Z")).thenReturn(Optional.empty());
+        assertThat(testedRepository.exists("RS2G0Z")).isFalse();
+        assertThat(testedRepository.exists("RS2G0Z")).isFalse();
+        verify(delegate, times(2)).findByConfirmationNumber("RS2G0Z");
+    }
+
+    @Test
+    @DisplayName("Upsert and delete evict the reservation")
+    public void upsert_and_delete_should_evict() {
+        cache.put("RS2G0Z", reservation);
+        when(delegate.upsert(reservation)).thenReturn(new UpsertResult("RS2G0Z", false));
+        testedRepository.upsert(reservation);
+        assertThat(cache.getIfPresent("RS2G0Z")).isNull();
+
+        cache.put("RS2G0Z", reservation);
+        testedRepository.delete("RS2G0Z");
+        verify(delegate).delete("RS2G0Z");
+        assertThat(cache.getIfPresent("RS2G0Z")).isNull();
+    }
+
+    @Test
+    @DisplayName("Read of the previous version concurrent with an upsert is not cached")
+    public void findByConfirmationNumber_should_not_cache_read_concurrent_with_upsert() {
+        Reservation updated = new Reservation();
+        updated.setConfirmationNumber("RS2G0Z");
+        when(delegate.upsert(updated)).thenReturn(new UpsertResult("RS2G0Z", false));
+        // The read returns the previous version, the upsert completes before the read is cached
+        when(delegate.findByConfirmationNumber("RS2G0Z"))
+            .thenAnswer(invocation -> {
+                testedRepository.upsert(updated);
+                return Optional.of(reservation);
+            })
+            .thenReturn(Optional.of(updated));
+        assertThat(testedRepository.findByConfirmationNumber("RS2G0Z")).contains(reservation);
+        assertThat(cache.getIfPresent("RS2G0Z")).isNull();
+        assertThat(testedRepository.findByConfirmationNumber("RS2G0Z")).contains(updated);
+        assertThat(cache.getIfPresent("RS2G0Z")).isSameAs(updated);
+    }
+
+    @Test
+    @DisplayName("Async read of the previous version concurrent with an upsert is not cached")
+    public void findByConfirmationNumberAsync_should_not_cache_read_concurrent_with_upsert() {
+        CompletableFuture<Optional<Reservation>> read = new CompletableFuture<>();
+        when(delegate.findByConfirmationNumberAsync("RS2G0Z")).thenReturn(read);
+        when(delegate.upsert(reservation)).thenReturn(new UpsertResult("RS2G0Z", false));
+        CompletableFuture<Optional<Reservation>> found =
+                testedRepository.findByConfirmationNumberAsync("RS2G0Z").toCompletableFuture();
+        testedRepository.upsert(reservation);
+        read.complete(Optional.of(reservation));
+        assertThat(found.join()).contains(reservation);
+        assertThat(cache.getIfPresent("RS2G0Z")).isNull();
+    }
+
+    @Test
+    @DisplayName("Read completed during an upsert failing on the client is evicted")
+    public void upsert_should_evict_when_write_fails() {
+        Reservation updated = new Reservation();
+        updated.setConfirmationNumber("RS2G0Z");
+        when(delegate.findByConfirmationNumber("RS2G0Z")).thenReturn(Optional.of(reservation));
+        // The previous version is read and cached while the write is in progress, the write times out
+        // on the client but may have been applied
+        when(delegate.upsert(updated)).thenAnswer(invocation -> {
+            testedRepository.findByConfirmationNumber("RS2G0Z");
+            throw new DriverTimeoutException("Query timed out");
+        });
+        assertThatThrownBy(() -> testedRepository.upsert(updated)).isInstanceOf(DriverTimeoutException.class);
+        assertThat(cache.getIfPresent("RS2G0Z")).isNull();
+    }
+
+    @Test
+    @DisplayName("Read completed during an async creation failing on the client is evicted")
+    public void createAsync_should_evict_when_write_fails() {
+        CompletableFuture<String> write = new CompletableFuture<>();
+        when(delegate.createAsync(reservation)).thenReturn(write);
+        when(delegate.findByConfirmationNumber("RS2G0Z")).thenReturn(Optional.of(reservation));
+        CompletableFuture<String> created = testedRepository.createAsync(reservation).toCompletableFuture();
+        testedRepository.findByConfirmationNumber("RS2G0Z");
+        write.completeExceptionally(new DriverTimeoutException("Query timed out"));
+        assertThat(created).isCompletedExceptionally();
+        assertThat(cache.getIfPresent("RS2G0Z")).isNull();
+    }
+
+}
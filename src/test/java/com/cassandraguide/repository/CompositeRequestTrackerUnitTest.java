@@ -0,0 +1,43 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.tracker.RequestTracker;
+
+@ExtendWith(MockitoExtension.class)
+public class CompositeRequestTrackerUnitTest {
+
+    @Mock
+    protected RequestTracker first;
+
+    @Mock
+    protected RequestTracker second;
+
+    @Test
+    @DisplayName("Events are forwarded to every tracker")
+    public void onSuccess_should_forward_to_all() {
+        SimpleStatement statement = SimpleStatement.newInstance("SELECT * FROM reservations_by_confirmation");
+        new CompositeRequestTracker(first, second).onSuccess(statement, 10, null, null, "s0|1");
+        verify(first).onSuccess(statement, 10, null, null, "s0|1");
+        verify(second).onSuccess(statement, 10, null, null, "s0|1");
+    }
+
+    @Test
+    @DisplayName("Trackers are found directly or in a composite")
+    public void find_should_look_into_composite() {
+        ReadLatencyTracker readLatency = new ReadLatencyTracker();
+        assertThat(CompositeRequestTracker.find(readLatency, ReadLatencyTracker.class)).containsSame(readLatency);
+        assertThat(CompositeRequestTracker.find(new CompositeRequestTracker(first, readLatency), ReadLatencyTracker.class))
+            .containsSame(readLatency);
+        assertThat(CompositeRequestTracker.find(first, ReadLatencyTracker.class)).isEmpty();
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ConfirmationNumberFilterUnitTest {
+
+    protected ConfirmationNumberFilter filter;
+
+    protected List<String> existing;
+
+    @BeforeEach
+    public void _init() {
+        filter   = new ConfirmationNumberFilter(10000, 0.01);
+        existing = IntStream.range(0, 10000)
+                            .mapToObj(i -> String.format("CN%06d", i))
+                            .collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Everything might be present until first rebuild")
+    public void mightContain_should_be_true_before_rebuild() {
+        assertThat(filter.isReady()).isFalse();
+        assertThat(filter.mightContain(UUID.randomUUID().toString())).isTrue();
+        assertThat(filter.getReadsAvoided()).isZero();
+    }
+
+    @Test
+    @DisplayName("No false negative and false positive rate close to target")
+    public void mightContain_should_not_return_false_negative() {
+        filter.rebuild(sink -> existing.forEach(sink));
+        assertThat(existing).allMatch(filter::mightContain);
+        long positives = IntStream.range(0, 10000)
+                                  .filter(i -> filter.mightContain(UUID.randomUUID().toString()))
+                                  .count();
+        assertThat(positives).isLessThan(300);
+        assertThat(filter.getReadsAvoided()).isEqualTo(10000 - positives);
+    }
+
+    @Test
+    @DisplayName("Additions are kept, deletions are purged by rebuild")
+    public void rebuild_should_purge_deleted() {
+        String deleted = "RS2G0Z";
+        filter.rebuild(sink -> sink.accept(deleted));
+        filter.put("NEW001");
+        assertThat(filter.mightContain("NEW001")).isTrue();
+        filter.rebuild(sink -> {
+            // Added during the rebuild, not read by the scan
+            filter.put("NEW002");
+            existing.forEach(sink);
+        });
+        assertThat(filter.mightContain("NEW002")).isTrue();
+        assertThat(filter.mightContain(deleted)).isFalse();
+        assertThat(filter.getLastRebuildCount()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("Additions concurrent with rebuilds are not lost")
+    public void put_should_not_be_lost_during_rebuild() throws Exception {
+        // Written as the repository does: added, written to the table, added again
+        Queue<String> table = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            Future<?> rebuilds = executor.submit(() -> {
+                while (writing.get()) {
+                    filter.rebuild(sink -> List.copyOf(table).forEach(sink));
+                }
+            });
+            List<Future<?>> writers = IntStream.range(0, 4).mapToObj(w -> executor.submit(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    String confirmationNumber = String.format("W%d%05d", w, i);
+                    filter.put(confirmationNumber);
+                    table.add(confirmationNumber);
+                    filter.put(confirmationNumber);
+                }
+            })).collect(Collectors.toList());
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            rebuilds.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(filter.getLastRebuild()).isNotNull();
+        assertThat(table).hasSize(20000).allMatch(filter::isKnown);
+    }
+
+}
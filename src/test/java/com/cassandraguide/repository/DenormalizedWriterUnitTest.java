@@ -0,0 +1,100 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+
+@ExtendWith(MockitoExtension.class)
+public class DenormalizedWriterUnitTest {
+
+    @Mock
+    protected CqlSession cqlSession;
+
+    @Mock
+    protected WriteRepairQueue repairQueue;
+
+    @Mock
+    protected AsyncResultSet mockAsyncResultSet;
+
+    protected List<BatchableStatement<?>> statements = List.of(
+            SimpleStatement.newInstance("INSERT INTO reservations_by_hotel_date ..."),
+            SimpleStatement.newInstance("INSERT INTO reservations_by_confirmation ..."));
+
+    @Test
+    @DisplayName("Logged batch strategy sends a single batch")
+    public void execute_should_send_a_batch() {
+        new DenormalizedWriter(cqlSession, WriteStrategy.LOGGED_BATCH, repairQueue).execute(statements);
+        ArgumentCaptor<BatchStatement> batch = ArgumentCaptor.forClass(BatchStatement.class);
+        verify(cqlSession).execute(batch.capture());
+        assertThat(batch.getValue().size()).isEqualTo(2);
+        assertThat(batch.getValue().getExecutionProfileName()).isEqualTo(ReservationRepository.PROFILE_WRITE);
+    }
+
+    @Test
+    @DisplayName("Parallel strategy sends idempotent statements with the same timestamp")
+    public void executeAsync_should_send_idempotent_statements() {
+        when(cqlSession.executeAsync(any(Statement.class)))
+            .thenReturn(CompletableFuture.completedFuture(mockAsyncResultSet));
+        new DenormalizedWriter(cqlSession, WriteStrategy.PARALLEL, repairQueue)
+            .executeAsync(statements).toCompletableFuture().join();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Statement<?>> sent = ArgumentCaptor.forClass(Statement.class);
+        verify(cqlSession, times(2)).executeAsync(sent.capture());
+        assertThat(sent.getAllValues()).allMatch(s -> Boolean.TRUE.equals(s.isIdempotent()));
+        assertThat(sent.getAllValues()).allMatch(s -> ReservationRepository.PROFILE_WRITE.equals(s.getExecutionProfileName()));
+        assertThat(sent.getAllValues().get(0).getQueryTimestamp())
+            .isEqualTo(sent.getAllValues().get(1).getQueryTimestamp())
+            .isNotEqualTo(Long.MIN_VALUE);
+        verify(repairQueue, never()).submit(any(), any());
+    }
+
+    @Test
+    @DisplayName("Partially failed parallel write succeeds and queues the failed statement")
+    public void executeAsync_should_repair_failed_statement() {
+        DriverTimeoutException timeout = new DriverTimeoutException("timeout");
+        when(cqlSession.executeAsync(any(Statement.class))).thenAnswer(invocation ->
+            ((SimpleStatement) invocation.getArgument(0)).getQuery().contains("hotel_date")
+                ? CompletableFuture.failedFuture(timeout)
+                : CompletableFuture.completedFuture(mockAsyncResultSet));
+        new DenormalizedWriter(cqlSession, WriteStrategy.PARALLEL, repairQueue).execute(statements);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Statement<?>> queued = ArgumentCaptor.forClass(Statement.class);
+        verify(repairQueue).submit(queued.capture(), eq(timeout));
+        assertThat(((SimpleStatement) queued.getValue()).getQuery()).contains("hotel_date");
+    }
+
+    @Test
+    @DisplayName("Parallel write fails when nothing has been written")
+    public void execute_should_fail_if_all_statements_failed() {
+        when(cqlSession.executeAsync(any(Statement.class)))
+            .thenReturn(CompletableFuture.failedFuture(new DriverTimeoutException("timeout")));
+        DenormalizedWriter writer = new DenormalizedWriter(cqlSession, WriteStrategy.PARALLEL, repairQueue);
+        assertThatThrownBy(() -> writer.execute(statements))
+            .isInstanceOf(DriverTimeoutException.class);
+        verify(repairQueue, never()).submit(any(), any());
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.UpsertResult;
+import com.cassandraguide.simulation.SimulatedCqlSession;
+import com.cassandraguide.simulation.SimulatedLatency;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+
+@ExtendWith(MockitoExtension.class)
+public class FilteringReservationRepositoryUnitTest {
+
+    @Mock
+    protected ReservationRepository delegate;
+
+    protected ConfirmationNumberFilter filter;
+
+    protected ReservationRepository testedRepository;
+
+    protected Reservation reservation;
+
+    @BeforeEach
+    public void _init() {
+        filter           = new ConfirmationNumberFilter(1000, 0.01);
+        filter.rebuild(sink -> sink.accept("EXISTS"));
+        testedRepository = new FilteringReservationRepository(delegate, filter);
+        reservation      = new Reservation();
+    }
+
+    @Test
+    @DisplayName("Upsert of an unknown reservation is a blind write when the filter is authoritative")
+    public void upsert_should_create_unknown_reservation() {
+        testedRepository = new FilteringReservationRepository(delegate, filter, true);
+        reservation.setConfirmationNumber("RS2G0Z");
+        when(delegate.create(reservation)).thenReturn("RS2G0Z");
+        UpsertResult result = testedRepository.upsert(reservation);
+        assertThat(result.isCreated()).isTrue();
+        assertThat(result.getConfirmationNumber()).isEqualTo("RS2G0Z");
+        verify(delegate).create(reservation);
+        verifyNoMoreInteractions(delegate);
+        assertThat(filter.mightContain("RS2G0Z")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Upsert of a known reservation reads the previous version")
+    public void upsert_should_delegate_known_reservation() {
+        reservation.setConfirmationNumber("EXISTS");
+        when(delegate.upsert(reservation)).thenReturn(new UpsertResult("EXISTS", false));
+        assertThat(testedRepository.upsert(reservation).isCreated()).isFalse();
+        verify(delegate).upsert(reservation);
+        verifyNoMoreInteractions(delegate);
+        assertThat(filter.getFalsePositives()).isZero();
+    }
+
+    @Test
+    @DisplayName("Lookup of a reservation written by another instance reads through")
+    public void find_should_read_through_unknown_reservation() {
+        reservation.setConfirmationNumber("OTHER1");
+        when(delegate.findByConfirmationNumber("OTHER1")).thenReturn(Optional.of(reservation));
+        assertThat(filter.isKnown("OTHER1")).isFalse();
+        assertThat(testedRepository.findByConfirmationNumber("OTHER1")).contains(reservation);
+        assertThat(filter.isKnown("OTHER1")).isTrue();
+        assertThat(filter.getUnseenWrites()).isEqualTo(1);
+        assertThat(filter.getReadsAvoided()).isZero();
+        // Now known, a false positive if it is deleted meanwhile
+        when(delegate.exists("OTHER1")).thenReturn(true);
+        assertThat(testedRepository.exists("OTHER1")).isTrue();
+        assertThat(filter.getUnseenWrites()).isEqualTo(1);
+        assertThat(filter.getFalsePositives()).isZero();
+    }
+
+    @Test
+    @DisplayName("Lookup of an unknown reservation skips Cassandra when the filter is authoritative")
+    public void exists_should_skip_unknown_reservation_when_authoritative() {
+        testedRepository = new FilteringReservationRepository(delegate, filter, true);
+        assertThat(testedRepository.exists("OTHER1")).isFalse();
+        assertThat(testedRepository.findByConfirmationNumber("OTHER1")).isEmpty();
+        verify(delegate, never()).exists("OTHER1");
+        verifyNoMoreInteractions(delegate);
+        assertThat(filter.getReadsAvoided()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Upsert moving a reservation written by another instance deletes the previous hotel row")
+    public void upsert_should_read_previous_version_of_unknown_reservation() {
+        CqlIdentifier keyspace = CqlIdentifier.fromCql("reservation");
+        LocalDate startDate = LocalDate.of(2020, 6, 1);
+        try (SimulatedCqlSession session = new SimulatedCqlSession(keyspace, 1, SimulatedLatency.none(), null)) {
+            new SchemaMigrator(session, keyspace).migrate();
+            ReservationRepository implementation = new ReservationRepositoryWithQueryBuilder(session, keyspace);
+            testedRepository = new FilteringReservationRepository(implementation, filter);
+            // Written by another instance after the rebuild of this filter
+            reservation.setHotelId("NY123");
+            reservation.setStartDate(startDate);
+            reservation.setEndDate(startDate.plusDays(2));
+            reservation.setRoomNumber((short) 42);
+            reservation.setGuestId(UUID.randomUUID());
+            String confirmationNumber = implementation.create(reservation);
+            reservation.setConfirmationNumber(confirmationNumber);
+            reservation.setHotelId("LA456");
+            UpsertResult result = testedRepository.upsert(reservation);
+            assertThat(result.isCreated()).isFalse();
+            assertThat(implementation.findByHotelAndDate("NY123", startDate)).isEmpty();
+            assertThat(implementation.findByHotelAndDate("LA456", startDate)).hasSize(1);
+            assertThat(filter.getUnseenWrites()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Delete of an unknown reservation is executed even when the filter is authoritative")
+    public void delete_should_not_be_skipped_by_filter() {
+        testedRepository = new FilteringReservationRepository(delegate, filter, true);
+        reservation.setConfirmationNumber("OTHER1");
+        when(delegate.delete("OTHER1")).thenReturn(Optional.of(reservation));
+        assertThat(testedRepository.delete("OTHER1")).contains(reservation);
+        verify(delegate).delete("OTHER1");
+        assertThat(filter.getReadsAvoided()).isZero();
+    }
+
+}
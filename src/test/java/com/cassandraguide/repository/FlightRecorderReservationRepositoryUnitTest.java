@@ -0,0 +1,140 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cassandraguide.model.Reservation;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+@ExtendWith(MockitoExtension.class)
+public class FlightRecorderReservationRepositoryUnitTest {
+
+    private static final String EVENT_NAME = "com.cassandraguide.RepositoryOperation";
+
+    @Mock
+    protected ReservationRepository delegate;
+
+    protected ReservationRepository testedRepository;
+
+    protected Recording recording;
+
+    @BeforeEach
+    public void _init() {
+        testedRepository = new FlightRecorderReservationRepository(delegate, "querybuilder");
+        recording        = new Recording();
+        recording.enable(EVENT_NAME).withoutThreshold();
+    }
+
+    @AfterEach
+    public void _close() {
+        recording.close();
+    }
+
+    @Test
+    @DisplayName("Operations are recorded with their key, rows and time waiting for the driver")
+    public void findByHotelAndDate_should_commit_event() throws IOException {
+        LocalDate date = LocalDate.of(2019, 6, 1);
+        when(delegate.findByHotelAndDate("NY456", date)).thenAnswer(invocation -> {
+            // Response of the driver received 5 ms after sending the request
+            RepositoryOperation.driverResponse(RepositoryOperation.current(),
+                    System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5), null);
+            return List.of(new Reservation(), new Reservation());
+        });
+        recording.start();
+        testedRepository.findByHotelAndDate("NY456", date);
+        recording.stop();
+
+        List<RecordedEvent> events = events();
+        assertThat(events).hasSize(1);
+        RecordedEvent event = events.get(0);
+        assertThat(event.getString("implementation")).isEqualTo("querybuilder");
+        assertThat(event.getString("operation")).isEqualTo("findByHotelAndDate");
+        assertThat(event.getString("key")).isEqualTo("NY456/2019-06-01");
+        assertThat(event.getInt("rows")).isEqualTo(2);
+        assertThat(event.getDuration("driverWait")).isGreaterThanOrEqualTo(Duration.ofMillis(5));
+        assertThat(event.getString("error")).isNull();
+    }
+
+    @Test
+    @DisplayName("Requests sent from the continuations of async operations on other threads are recorded")
+    public void deleteAsync_should_record_driver_wait_of_continuations() throws Exception {
+        ExecutorService driverThread = Executors.newSingleThreadExecutor();
+        try {
+            when(delegate.deleteAsync("RS2G0Z")).thenAnswer(invocation ->
+                // Read completed on a thread of the driver, then the write is sent from there
+                CompletableFuture.supplyAsync(Optional::<Reservation>empty, driverThread)
+                    .thenCompose(RepositoryOperation.withCurrent(previous -> {
+                        RepositoryOperation.driverResponse(RepositoryOperation.current(),
+                                System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5), null);
+                        return CompletableFuture.completedFuture(previous);
+                    })));
+            recording.start();
+            testedRepository.deleteAsync("RS2G0Z").toCompletableFuture().get();
+            recording.stop();
+        } finally {
+            driverThread.shutdown();
+        }
+
+        List<RecordedEvent> events = events();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getString("operation")).isEqualTo("deleteAsync");
+        assertThat(events.get(0).getDuration("driverWait")).isGreaterThanOrEqualTo(Duration.ofMillis(5));
+    }
+
+    @Test
+    @DisplayName("Failed operations are recorded with the exception")
+    public void exists_should_record_error() throws IOException {
+        when(delegate.exists("RS2G0Z")).thenThrow(new DriverTimeoutException("timeout"));
+        recording.start();
+        assertThatThrownBy(() -> testedRepository.exists("RS2G0Z")).isInstanceOf(DriverTimeoutException.class);
+        recording.stop();
+
+        List<RecordedEvent> events = events();
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getString("key")).isEqualTo("RS2G0Z");
+        assertThat(events.get(0).getString("error")).isEqualTo("DriverTimeoutException");
+    }
+
+    @Test
+    @DisplayName("Without recording no event is in progress")
+    public void exists_should_not_track_when_not_recording() {
+        when(delegate.exists("RS2G0Z")).thenAnswer(invocation -> RepositoryOperation.current() != null);
+        assertThat(testedRepository.exists("RS2G0Z")).isFalse();
+    }
+
+    private List<RecordedEvent> events() throws IOException {
+        Path file = Files.createTempFile("repository", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.simulation.SimulatedCqlSession;
+import com.cassandraguide.simulation.SimulatedLatency;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class MeteredReservationRepositoryUnitTest {
+
+    @Mock
+    protected ReservationRepository delegate;
+
+    protected SimpleMeterRegistry meterRegistry;
+
+    protected ReservationRepository testedRepository;
+
+    @BeforeEach
+    public void _init() {
+        meterRegistry    = new SimpleMeterRegistry();
+        testedRepository = new MeteredReservationRepository(delegate, meterRegistry, "querybuilder");
+    }
+
+    @Test
+    @DisplayName("Operations are timed by implementation and rows returned are counted")
+    public void findByHotelAndDate_should_record_duration_and_rows() {
+        LocalDate date = LocalDate.of(2019, 6, 1);
+        when(delegate.findByHotelAndDate("NY456", date)).thenReturn(List.of(new Reservation(), new Reservation()));
+        testedRepository.findByHotelAndDate("NY456", date);
+        testedRepository.findByHotelAndDate("NY456", date);
+
+        assertThat(meterRegistry.get(MeteredReservationRepository.METRIC_DURATION)
+                                .tag("implementation", "querybuilder")
+                                .tag("operation", "findByHotelAndDate")
+                                .tag("exception", "None")
+                                .timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get(MeteredReservationRepository.METRIC_ROWS)
+                                .tag("operation", "findByHotelAndDate")
+                                .summary().totalAmount()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Duration is split between the wait for the driver and the rest of the operation")
+    public void findByHotelAndDate_should_split_driver_wait_and_mapping() {
+        MockClock clock  = new MockClock();
+        meterRegistry    = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+        testedRepository = new MeteredReservationRepository(delegate, meterRegistry, "querybuilder");
+        LocalDate date = LocalDate.of(2019, 6, 1);
+        when(delegate.findByHotelAndDate("NY456", date)).thenAnswer(invocation -> {
+            // Response of the driver received 5 ms after sending the request, operation lasts 8 ms
+            RepositoryOperation.driverResponse(RepositoryOperation.current(),
+                    System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5), null);
+            clock.add(8, TimeUnit.MILLISECONDS);
+            return List.of(new Reservation());
+        });
+        testedRepository.findByHotelAndDate("NY456", date);
+
+        double driverWait = meterRegistry.get(MeteredReservationRepository.METRIC_DRIVER_WAIT)
+                                         .tag("implementation", "querybuilder")
+                                         .tag("operation", "findByHotelAndDate")
+                                         .timer().totalTime(TimeUnit.MILLISECONDS);
+        double mapping    = meterRegistry.get(MeteredReservationRepository.METRIC_MAPPING)
+                                         .tag("operation", "findByHotelAndDate")
+                                         .timer().totalTime(TimeUnit.MILLISECONDS);
+        assertThat(driverWait).isBetween(5.0, 6.0);
+        assertThat(driverWait + mapping).isEqualTo(8.0, offset(0.001));
+        assertThat(RepositoryOperation.current()).isNull();
+    }
+
+    @Test
+    @DisplayName("Driver wait of async operations includes the requests sent by continuations, once completed")
+    public void deleteAsync_should_split_on_completion() {
+        CompletableFuture<Optional<Reservation>> read = new CompletableFuture<>();
+        when(delegate.deleteAsync("RS2G0Z")).thenAnswer(invocation -> read
+                .thenCompose(RepositoryOperation.withCurrent(previous -> {
+                    RepositoryOperation.driverResponse(RepositoryOperation.current(),
+                            System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(3), null);
+                    return CompletableFuture.completedFuture(previous);
+                })));
+        CompletableFuture<Optional<Reservation>> deleted = testedRepository.deleteAsync("RS2G0Z").toCompletableFuture();
+        assertThat(RepositoryOperation.current()).isNull();
+        assertThat(meterRegistry.find(MeteredReservationRepository.METRIC_DRIVER_WAIT).timer()).isNull();
+
+        // Read completed by another thread, as the driver does
+        CompletableFuture.runAsync(() -> read.complete(Optional.empty())).join();
+        assertThat(deleted).isCompleted();
+        assertThat(meterRegistry.get(MeteredReservationRepository.METRIC_DRIVER_WAIT)
+                                .tag("operation", "deleteAsync")
+                                .timer().totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(3.0);
+    }
+
+    @Test
+    @DisplayName("Each implementation reports the wait for the driver, nested decorators share the operation")
+    public void implementations_should_report_driver_wait() {
+        CqlIdentifier keyspace = CqlIdentifier.fromCql("reservation");
+        try (SimulatedCqlSession session = new SimulatedCqlSession(keyspace, SimulatedLatency.fixed(Duration.ofMillis(2)))) {
+            new SchemaMigrator(session, keyspace).migrate();
+            Map<String, ReservationRepository> implementations = Map.of(
+                    "simple",       new ReservationRepositorySimpleStatement(session, keyspace),
+                    "querybuilder", new ReservationRepositoryWithQueryBuilder(session, keyspace),
+                    "mapper",       new ReservationRepositoryWithMapper(session, keyspace));
+            implementations.forEach((name, implementation) -> {
+                ReservationRepository repository = new MeteredReservationRepository(
+                        new FlightRecorderReservationRepository(implementation, name), meterRegistry, name);
+                Reservation reservation = new Reservation();
+                reservation.setHotelId("NY456");
+                reservation.setStartDate(LocalDate.of(2019, 6, 1));
+                reservation.setEndDate(LocalDate.of(2019, 6, 3));
+                String confirmationNumber = repository.create(reservation);
+                repository.findByConfirmationNumber(confirmationNumber);
+                repository.findByHotelAndDateAsync("NY456", LocalDate.of(2019, 6, 1)).toCompletableFuture().join();
+
+                for (String operation : List.of("create", "findByConfirmationNumber", "findByHotelAndDateAsync")) {
+                    assertThat(meterRegistry.get(MeteredReservationRepository.METRIC_DRIVER_WAIT)
+                                            .tag("implementation", name)
+                                            .tag("operation", operation)
+                                            .timer().totalTime(TimeUnit.MILLISECONDS))
+                        .as("%s %s", name, operation)
+                        .isGreaterThanOrEqualTo(2.0);
+                }
+            });
+        }
+    }
+
+    @Test
+    @DisplayName("Failed operations are tagged with the exception")
+    public void exists_should_tag_exception() {
+        when(delegate.exists("RS2G0Z")).thenThrow(new DriverTimeoutException("timeout"));
+        assertThatThrownBy(() -> testedRepository.exists("RS2G0Z")).isInstanceOf(DriverTimeoutException.class);
+        assertThat(meterRegistry.get(MeteredReservationRepository.METRIC_DURATION)
+                                .tag("operation", "exists")
+                                .tag("exception", "DriverTimeoutException")
+                                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Async operations are timed on completion")
+    public void findAllAsync_should_record_on_completion() {
+        CompletableFuture<List<Reservation>> pending = new CompletableFuture<>();
+        when(delegate.findAllAsync()).thenReturn(pending);
+        testedRepository.findAllAsync();
+        assertThat(meterRegistry.find(MeteredReservationRepository.METRIC_DURATION).timer()).isNull();
+
+        pending.complete(List.of(new Reservation()));
+        assertThat(meterRegistry.get(MeteredReservationRepository.METRIC_DURATION)
+                                .tag("operation", "findAllAsync")
+                                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(MeteredReservationRepository.METRIC_ROWS)
+                                .tag("operation", "findAllAsync")
+                                .summary().totalAmount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Streams are timed until closed")
+    public void streamAll_should_record_on_close() {
+        when(delegate.streamAll()).thenReturn(Stream.of(new Reservation(), new Reservation(), new Reservation()));
+        try (Stream<Reservation> reservations = testedRepository.streamAll()) {
+            assertThat(reservations.collect(Collectors.toList())).hasSize(3);
+            assertThat(meterRegistry.find(MeteredReservationRepository.METRIC_DURATION).timer()).isNull();
+        }
+        assertThat(meterRegistry.get(MeteredReservationRepository.METRIC_DURATION)
+                                .tag("operation", "streamAll")
+                                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(MeteredReservationRepository.METRIC_ROWS)
+                                .tag("operation", "streamAll")
+                                .summary().totalAmount()).isEqualTo(3);
+    }
+
+}
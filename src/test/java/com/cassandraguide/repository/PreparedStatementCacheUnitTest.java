@@ -0,0 +1,129 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cassandraguide.simulation.SimulatedCqlSession;
+import com.cassandraguide.simulation.SimulatedLatency;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+
+@ExtendWith(MockitoExtension.class)
+public class PreparedStatementCacheUnitTest {
+
+    private static final String CQL = "SELECT * FROM reservations_by_confirmation WHERE confirmation_number = ?";
+
+    @Mock
+    protected CqlSession cqlSession;
+
+    @Mock
+    protected PreparedStatement preparedStatement;
+
+    @Mock
+    protected BoundStatement mockBound;
+
+    @Mock
+    protected TableMetadata table;
+
+    protected PreparedStatementCache cache = new PreparedStatementCache(10);
+
+    @Test
+    @DisplayName("A CQL text is prepared once and bound with the values of each statement")
+    public void bind_should_prepare_once() {
+        when(cqlSession.prepareAsync(CQL)).thenReturn(CompletableFuture.completedFuture(preparedStatement));
+        ArgumentCaptor<Object> values = ArgumentCaptor.forClass(Object.class);
+        when(preparedStatement.bind(values.capture())).thenReturn(mockBound);
+        cache.bind(cqlSession, SimpleStatement.newInstance(CQL, "CN1"));
+        cache.bindAsync(cqlSession, SimpleStatement.newInstance(CQL, "CN2")).toCompletableFuture().join();
+        verify(cqlSession, times(1)).prepareAsync(CQL);
+        assertThat(values.getAllValues()).containsExactly("CN1", "CN2");
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getPrepareCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Named values are bound in the order of the bind markers, options are copied")
+    public void bind_should_order_named_values() {
+        String cql = "SELECT * FROM reservations_by_hotel_date WHERE hotel_id = :hotel AND start_date = :date";
+        when(cqlSession.prepareAsync(cql)).thenReturn(CompletableFuture.completedFuture(preparedStatement));
+        ColumnDefinitions variables = mock(ColumnDefinitions.class);
+        ColumnDefinition hotel = mock(ColumnDefinition.class);
+        ColumnDefinition date  = mock(ColumnDefinition.class);
+        when(hotel.getName()).thenReturn(CqlIdentifier.fromCql("hotel"));
+        when(date.getName()).thenReturn(CqlIdentifier.fromCql("date"));
+        when(variables.iterator()).thenReturn(List.of(hotel, date).iterator());
+        when(preparedStatement.getVariableDefinitions()).thenReturn(variables);
+        ArgumentCaptor<Object> values = ArgumentCaptor.forClass(Object.class);
+        when(preparedStatement.bind(values.capture())).thenReturn(mockBound);
+        when(mockBound.setPageSize(50)).thenReturn(mockBound);
+        cache.bind(cqlSession, SimpleStatement.builder(cql)
+                .addNamedValue("date", "2020-06-08")
+                .addNamedValue("hotel", "NY456")
+                .setPageSize(50)
+                .build());
+        assertThat(values.getAllValues()).containsExactly("NY456", "2020-06-08");
+        verify(mockBound).setPageSize(50);
+    }
+
+    @Test
+    @DisplayName("A failed preparation is not cached")
+    public void prepare_should_not_cache_failures() {
+        CompletableFuture<PreparedStatement> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new DriverTimeoutException("Query timed out"));
+        when(cqlSession.prepareAsync(CQL))
+            .thenReturn(failed)
+            .thenReturn(CompletableFuture.completedFuture(preparedStatement));
+        assertThatThrownBy(() -> cache.prepare(cqlSession, CQL)).isInstanceOf(DriverTimeoutException.class);
+        assertThat(cache.prepare(cqlSession, CQL)).isSameAs(preparedStatement);
+        verify(cqlSession, times(2)).prepareAsync(CQL);
+    }
+
+    @Test
+    @DisplayName("Statements are prepared again after a table change")
+    public void onTableUpdated_should_clear_statements() {
+        when(cqlSession.prepareAsync(CQL)).thenReturn(CompletableFuture.completedFuture(preparedStatement));
+        when(table.getName()).thenReturn(CqlIdentifier.fromCql("reservations_by_confirmation"));
+        cache.prepare(cqlSession, CQL);
+        cache.onTableUpdated(table, table);
+        assertThat(cache.size()).isEqualTo(0);
+        cache.prepare(cqlSession, CQL);
+        verify(cqlSession, times(2)).prepareAsync(CQL);
+        assertThat(cache.getInvalidationCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Only the cache registered as schema change listener of the session is used")
+    public void registeredIn_should_return_listener_of_session() {
+        CqlIdentifier keyspace = CqlIdentifier.fromCql("reservation");
+        try (SimulatedCqlSession registered = new SimulatedCqlSession(keyspace, 1, SimulatedLatency.none(), null, cache);
+             SimulatedCqlSession notRegistered = new SimulatedCqlSession(keyspace, SimulatedLatency.none())) {
+            assertThat(PreparedStatementCache.registeredIn(registered)).isSameAs(cache);
+            assertThat(PreparedStatementCache.registeredIn(notRegistered)).isNull();
+            // Tables created by the migration are notified to the cache
+            new SchemaMigrator(registered, keyspace).migrate();
+            assertThat(cache.getInvalidationCount()).isGreaterThan(0);
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import com.datastax.oss.driver.api.core.config.DriverConfig;
+import com.datastax.oss.driver.api.core.config.DriverExecutionProfile;
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.loadbalancing.NodeDistance;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.NodeState;
+import com.datastax.oss.driver.api.core.servererrors.ReadTimeoutException;
+
+@ExtendWith(MockitoExtension.class)
+public class RepositoryWarmerUnitTest {
+
+    @Mock
+    protected CqlSession cqlSession;
+
+    @Mock
+    protected DriverContext driverContext;
+
+    @Mock
+    protected DriverConfig driverConfig;
+
+    @Mock
+    protected DriverExecutionProfile defaultProfile;
+
+    @Mock
+    protected Metadata metadata;
+
+    @Mock
+    protected Node localNode;
+
+    @Mock
+    protected Node downNode;
+
+    @Mock
+    protected AsyncResultSet asyncResultSet;
+
+    @Mock
+    protected ReservationRepository repository;
+
+    @BeforeEach
+    public void setup() {
+        when(cqlSession.getContext()).thenReturn(driverContext);
+        when(driverContext.getConfig()).thenReturn(driverConfig);
+        when(driverConfig.getDefaultProfile()).thenReturn(defaultProfile);
+        when(defaultProfile.getInt(DefaultDriverOption.CONNECTION_POOL_LOCAL_SIZE)).thenReturn(2);
+        when(cqlSession.getMetadata()).thenReturn(metadata);
+        when(metadata.getNodes()).thenReturn(Map.of(UUID.randomUUID(), localNode, UUID.randomUUID(), downNode));
+        when(localNode.getState()).thenReturn(NodeState.UP);
+        when(localNode.getDistance()).thenReturn(NodeDistance.LOCAL);
+        when(downNode.getState()).thenReturn(NodeState.DOWN);
+        when(cqlSession.executeAsync(any(SimpleStatement.class)))
+            .thenReturn(CompletableFuture.completedFuture(asyncResultSet));
+    }
+
+    @Test
+    @DisplayName("Each connection of the nodes up is pinged, reads rotate on the repository")
+    public void warmUp_should_ping_nodes_and_read() {
+        when(repository.existsAsync(anyString())).thenReturn(CompletableFuture.completedFuture(false));
+        when(repository.findByConfirmationNumberAsync(anyString()))
+            .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        when(repository.findByHotelAndDateAsync(anyString(), any())).thenReturn(CompletableFuture.completedFuture(List.of()));
+
+        RepositoryWarmer warmer = new RepositoryWarmer(cqlSession, repository, 7, 2);
+        assertThat(warmer.isDone()).isFalse();
+        warmer.warmUp();
+
+        ArgumentCaptor<SimpleStatement> pings = ArgumentCaptor.forClass(SimpleStatement.class);
+        verify(cqlSession, times(2)).executeAsync(pings.capture());
+        assertThat(pings.getAllValues()).allMatch(ping -> ping.getNode() == localNode);
+        verify(repository, times(3)).existsAsync(anyString());
+        verify(repository, times(2)).findByConfirmationNumberAsync(anyString());
+        verify(repository, times(2)).findByHotelAndDateAsync(anyString(), any());
+        assertThat(warmer.isDone()).isTrue();
+        assertThat(warmer.getFailures()).isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Failed reads are counted and do not stop the warm-up")
+    public void warmUp_should_count_failures() {
+        CompletableFuture<Boolean> timeout = new CompletableFuture<>();
+        timeout.completeExceptionally(new ReadTimeoutException(localNode, null, 1, 2, false));
+        when(repository.existsAsync(anyString())).thenReturn(timeout);
+        when(repository.findByConfirmationNumberAsync(anyString())).thenThrow(new IllegalStateException());
+        when(repository.findByHotelAndDateAsync(anyString(), any())).thenReturn(CompletableFuture.completedFuture(List.of()));
+
+        RepositoryWarmer warmer = new RepositoryWarmer(cqlSession, repository, 3, 1);
+        warmer.warmUp();
+        assertThat(warmer.isDone()).isTrue();
+        assertThat(warmer.getFailures()).isEqualTo(2);
+    }
+
+}
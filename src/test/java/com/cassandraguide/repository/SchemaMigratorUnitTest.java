@@ -0,0 +1,145 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cassandraguide.simulation.SimulatedCqlSession;
+import com.cassandraguide.simulation.SimulatedLatency;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.tracker.RequestTracker;
+
+@ExtendWith(MockitoExtension.class)
+public class SchemaMigratorUnitTest {
+
+    private static final CqlIdentifier KEYSPACE = CqlIdentifier.fromCql("reservation");
+
+    private static final int LATEST = ReservationSchema.MIGRATIONS.get(ReservationSchema.MIGRATIONS.size() - 1).getVersion();
+
+    @Mock
+    protected RequestTracker requestTracker;
+
+    protected SimulatedCqlSession cqlSession;
+
+    @BeforeEach
+    public void _init() {
+        cqlSession = new SimulatedCqlSession(KEYSPACE, 3, SimulatedLatency.none(), requestTracker);
+    }
+
+    @AfterEach
+    public void _close() {
+        cqlSession.close();
+    }
+
+    @Test
+    @DisplayName("Missing migrations are applied, recorded, and the lock is released")
+    public void migrate_should_apply_missing_migrations() {
+        assertThat(new SchemaMigrator(cqlSession, KEYSPACE).migrate()).isEqualTo(LATEST);
+
+        assertThat(tables()).contains("schema_migrations", "reservations_by_confirmation",
+                "reservations_by_hotel_date", "reservations_by_guest", "guests");
+        List<Row> rows = cqlSession.execute("SELECT component, version FROM reservation.schema_migrations").all();
+        assertThat(rows).extracting(row -> row.getString("component")).containsOnly(ReservationSchema.COMPONENT);
+        assertThat(rows).extracting(row -> row.getInt("version")).contains(LATEST);
+    }
+
+    @Test
+    @DisplayName("No DDL when the schema is current, only the reads of the table of migrations")
+    public void migrate_should_skip_current_schema() {
+        new SchemaMigrator(cqlSession, KEYSPACE).migrate();
+        clearInvocations(requestTracker);
+        assertThat(new SchemaMigrator(cqlSession, KEYSPACE).migrate()).isEqualTo(LATEST);
+
+        ArgumentCaptor<Request> requests = ArgumentCaptor.forClass(Request.class);
+        verify(requestTracker, times(2)).onSuccess(requests.capture(), anyLong(), any(), any(), anyString());
+        assertThat(requests.getAllValues().stream()
+                .map(request -> ((SimpleStatement) request).getQuery())
+                .collect(Collectors.toList()))
+            .allMatch(query -> query.startsWith("SELECT"));
+    }
+
+    @Test
+    @DisplayName("Migrations wait for the lock taken by another instance")
+    public void migrate_should_wait_for_lock() throws Exception {
+        SchemaMigrator other = new SchemaMigrator(cqlSession, KEYSPACE);
+        assertThat(other.getCurrentVersion()).isZero();
+        // Another instance created the table of migrations and holds the lock
+        cqlSession.execute("CREATE TABLE reservation.schema_migrations (component text, version int, "
+                + "description text, applied_at timestamp, PRIMARY KEY (component, version)) "
+                + "WITH CLUSTERING ORDER BY (version DESC)");
+        cqlSession.execute(SimpleStatement.newInstance("INSERT INTO reservation.schema_migrations "
+                + "(component, version, description, applied_at) VALUES (?, ?, ?, ?) IF NOT EXISTS",
+                ReservationSchema.COMPONENT + ".lock", 0, "other", Instant.now()));
+
+        CompletableFuture<Integer> migration = CompletableFuture.supplyAsync(
+                () -> new SchemaMigrator(cqlSession, KEYSPACE).migrate());
+        Thread.sleep(1500);
+        assertThat(migration).isNotDone();
+        assertThat(tables()).doesNotContain("reservations_by_confirmation");
+
+        cqlSession.execute(SimpleStatement.newInstance("DELETE FROM reservation.schema_migrations "
+                + "WHERE component = ? AND version = ? IF EXISTS", ReservationSchema.COMPONENT + ".lock", 0));
+        assertThat(migration.get(10, TimeUnit.SECONDS)).isEqualTo(LATEST);
+        assertThat(tables()).contains("reservations_by_confirmation");
+    }
+
+    @Test
+    @DisplayName("A lock which expired during the migrations and was taken by another instance is not released")
+    public void migrate_should_not_release_lock_of_another_instance() {
+        String lock = ReservationSchema.COMPONENT + ".lock";
+        // The lock expires during the migration and another instance takes it
+        SchemaMigration outlivingLock = new SchemaMigration(1, "Outliving the lock", keyspaceName -> {
+            cqlSession.execute(SimpleStatement.newInstance("DELETE FROM reservation.schema_migrations "
+                    + "WHERE component = ? AND version = ?", lock, 0));
+            cqlSession.execute(SimpleStatement.newInstance("INSERT INTO reservation.schema_migrations "
+                    + "(component, version, description, applied_at) VALUES (?, ?, ?, ?) IF NOT EXISTS",
+                    lock, 0, "other", Instant.now()));
+            return Collections.emptyList();
+        });
+        assertThat(new SchemaMigrator(cqlSession, KEYSPACE, ReservationSchema.COMPONENT,
+                Collections.singletonList(outlivingLock), SchemaMigrator.DEFAULT_AGREEMENT_TIMEOUT).migrate()).isEqualTo(1);
+
+        Row row = cqlSession.execute(SimpleStatement.newInstance("SELECT description FROM reservation.schema_migrations "
+                + "WHERE component = ? AND version = ?", lock, 0)).one();
+        assertThat(row).isNotNull();
+        assertThat(row.getString("description")).isEqualTo("other");
+    }
+
+    @Test
+    @DisplayName("Version is 0 without the table of migrations")
+    public void getCurrentVersion_should_be_0_for_new_keyspace() {
+        assertThat(new SchemaMigrator(cqlSession, KEYSPACE).getCurrentVersion()).isEqualTo(0);
+    }
+
+    private List<String> tables() {
+        return cqlSession.execute(SimpleStatement.newInstance(
+                "SELECT table_name FROM system_schema.tables WHERE keyspace_name = ?", KEYSPACE.asInternal()))
+                .all().stream()
+                .map(row -> row.getString("table_name"))
+                .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import com.datastax.oss.driver.api.core.config.DriverConfig;
+import com.datastax.oss.driver.api.core.config.DriverExecutionProfile;
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+
+@ExtendWith(MockitoExtension.class)
+public class SpeculativeReadPolicyUnitTest {
+
+    @Mock
+    protected DriverContext driverContext;
+
+    @Mock
+    protected DriverConfig driverConfig;
+
+    @Mock
+    protected DriverExecutionProfile readProfile;
+
+    @Mock
+    protected ExecutionInfo executionInfo;
+
+    @BeforeEach
+    public void setup() {
+        when(driverContext.getConfig()).thenReturn(driverConfig);
+        when(driverConfig.getProfile(ReservationRepository.PROFILE_READ)).thenReturn(readProfile);
+        when(readProfile.getInt(DefaultDriverOption.SPECULATIVE_EXECUTION_MAX)).thenReturn(3);
+        when(readProfile.getDuration(DefaultDriverOption.SPECULATIVE_EXECUTION_DELAY)).thenReturn(Duration.ofMillis(50));
+    }
+
+    @Test
+    @DisplayName("Constant delay up to max executions, speculative executions counted")
+    public void nextExecution_should_use_constant_delay() {
+        when(readProfile.isDefined(SpeculativeReadPolicy.Option.PERCENTILE)).thenReturn(false);
+        SpeculativeReadPolicy policy = new SpeculativeReadPolicy(driverContext, ReservationRepository.PROFILE_READ);
+
+        assertThat(policy.nextExecution(null, null, null, 1)).isEqualTo(50);
+        assertThat(policy.getFired()).isEqualTo(0);
+        assertThat(policy.nextExecution(null, null, null, 2)).isEqualTo(50);
+        assertThat(policy.nextExecution(null, null, null, 3)).isEqualTo(-1);
+        assertThat(policy.getFired()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Percentile of the measured reads, constant delay until measured")
+    public void nextExecution_should_use_percentile() throws InterruptedException {
+        when(readProfile.isDefined(SpeculativeReadPolicy.Option.PERCENTILE)).thenReturn(true);
+        when(readProfile.getDouble(SpeculativeReadPolicy.Option.PERCENTILE)).thenReturn(90.0);
+        when(readProfile.getName()).thenReturn(ReservationRepository.PROFILE_READ);
+        ReadLatencyTracker tracker = new ReadLatencyTracker(Duration.ofMillis(10), 10);
+        when(driverContext.getRequestTracker()).thenReturn(tracker);
+        SpeculativeReadPolicy policy = new SpeculativeReadPolicy(driverContext, ReservationRepository.PROFILE_READ);
+
+        assertThat(policy.nextExecution(null, null, null, 1)).isEqualTo(50);
+        for (int i = 1; i <= 100; i++) {
+            tracker.onNodeSuccess(null, TimeUnit.MILLISECONDS.toNanos(i), readProfile, null, "s0");
+        }
+        Thread.sleep(20);
+        assertThat(policy.nextExecution(null, null, null, 1)).isBetween(89L, 91L);
+    }
+
+    @Test
+    @DisplayName("Reads answered by a speculative execution are won")
+    public void recordOutcome_should_count_wins() {
+        when(readProfile.isDefined(SpeculativeReadPolicy.Option.PERCENTILE)).thenReturn(false);
+        SpeculativeReadPolicy policy = new SpeculativeReadPolicy(driverContext, ReservationRepository.PROFILE_READ);
+        when(executionInfo.getSuccessfulExecutionIndex()).thenReturn(0, 1);
+        policy.recordOutcome(executionInfo);
+        policy.recordOutcome(executionInfo);
+        assertThat(policy.getWon()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cassandraguide.repository.StatementLatencyTracker.StatementLatency;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+
+@ExtendWith(MockitoExtension.class)
+public class StatementLatencyTrackerUnitTest {
+
+    private static final String FIND_CQL = "SELECT * FROM reservations_by_confirmation WHERE confirmation_number=?";
+
+    @Mock
+    protected PreparedStatement psFindReservation;
+
+    @Mock
+    protected BoundStatement findReservation;
+
+    protected StatementLatencyTracker tracker;
+
+    @BeforeEach
+    public void setup() {
+        tracker = new StatementLatencyTracker(Duration.ofMillis(100));
+        when(findReservation.getPreparedStatement()).thenReturn(psFindReservation);
+        when(psFindReservation.getQuery()).thenReturn(FIND_CQL);
+    }
+
+    @Test
+    @DisplayName("Requests are recorded by CQL of their prepared statement, with retries and slow ones")
+    public void onSuccess_should_record_by_statement() {
+        when(psFindReservation.getPartitionKeyIndices()).thenReturn(List.of(0));
+        when(findReservation.isSet(0)).thenReturn(true);
+        when(findReservation.getObject(0)).thenReturn("RS2G0Z");
+        tracker.onSuccess(findReservation, TimeUnit.MILLISECONDS.toNanos(5), null, null, "s0|1");
+        tracker.onNodeError(findReservation, new DriverTimeoutException("timeout"), 0, null, null, "s0|2|0");
+        tracker.onSuccess(findReservation, TimeUnit.MILLISECONDS.toNanos(150), null, null, "s0|2");
+
+        assertThat(tracker.getStatements()).hasSize(1);
+        StatementLatency latency = tracker.getStatements().get(0);
+        assertThat(latency.getCql()).isEqualTo(FIND_CQL);
+        assertThat(latency.getCount()).isEqualTo(2);
+        assertThat(latency.getRetries()).isEqualTo(1);
+        assertThat(latency.getSlow()).isEqualTo(1);
+        assertThat(latency.getMaxMillis()).isBetween(149d, 151d);
+        assertThat(StatementLatencyTracker.partitionKey(findReservation)).isEqualTo("RS2G0Z");
+    }
+
+    @Test
+    @DisplayName("Failed executions reported after the response of their request expire")
+    public void onNodeError_should_expire_after_completion() {
+        AtomicLong nanos = new AtomicLong();
+        StatementLatencyTracker tracker = new StatementLatencyTracker(Duration.ofMillis(100), nanos::get);
+        tracker.onSuccess(findReservation, TimeUnit.MILLISECONDS.toNanos(5), null, null, "s0|1");
+        // Speculative execution losing the race, failing once the request has completed
+        tracker.onNodeError(findReservation, new DriverTimeoutException("timeout"), 0, null, null, "s0|1|1");
+        assertThat(tracker.getPendingNodeErrors()).isEqualTo(1);
+
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(3));
+        assertThat(tracker.getPendingNodeErrors()).isZero();
+        assertThat(tracker.getStatements().get(0).getRetries()).isZero();
+    }
+
+    @Test
+    @DisplayName("Failed requests and following pages are counted, statements sorted by p99")
+    public void onError_should_count_errors_and_pages() {
+        SimpleStatement scan = SimpleStatement.newInstance("SELECT * FROM reservations_by_confirmation")
+                                              .setPagingState(ByteBuffer.wrap(new byte[] { 1 }));
+        tracker.onSuccess(scan, TimeUnit.MILLISECONDS.toNanos(20), null, null, "s0|1");
+        tracker.onError(findReservation, new DriverTimeoutException("timeout"), TimeUnit.SECONDS.toNanos(2), null, null, "s0|2");
+
+        List<StatementLatency> statements = tracker.getStatements();
+        assertThat(statements).extracting(StatementLatency::getCql)
+                              .containsExactly(FIND_CQL, "SELECT * FROM reservations_by_confirmation");
+        assertThat(statements.get(0).getErrors()).isEqualTo(1);
+        assertThat(statements.get(1).getNextPages()).isEqualTo(1);
+
+        tracker.reset();
+        assertThat(tracker.getStatements()).isEmpty();
+    }
+
+}
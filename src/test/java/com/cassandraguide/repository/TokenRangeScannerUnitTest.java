@@ -0,0 +1,223 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.simulation.SimulatedCqlSession;
+import com.cassandraguide.simulation.SimulatedLatency;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.api.core.metadata.token.TokenRange;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3Token;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3TokenRange;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenRangeScannerUnitTest {
+
+    private static final CqlIdentifier KEYSPACE = CqlIdentifier.fromCql("reservation");
+
+    @Mock
+    protected CqlSession cqlSession;
+    @Mock
+    protected CqlIdentifier keyspaceName;
+    @Mock
+    protected TokenMap tokenMap;
+    @Mock
+    protected Metadata metadata;
+
+    protected TokenRangeScanner scanner;
+
+    @BeforeEach
+    public void _init() {
+        scanner = new TokenRangeScanner(cqlSession, keyspaceName, 4, 16, 100);
+    }
+
+    @AfterEach
+    public void _close() {
+        scanner.close();
+    }
+
+    @Test
+    @DisplayName("Ring is split in contiguous non wrapping ranges")
+    public void split_should_cover_ring_without_wrapping() {
+        // 3 nodes, last range wraps around the ring
+        when(tokenMap.getTokenRanges()).thenReturn(Set.of(
+                range(-6_000_000_000_000_000_000L, 0L),
+                range(0L, 6_000_000_000_000_000_000L),
+                range(6_000_000_000_000_000_000L, -6_000_000_000_000_000_000L)));
+
+        List<TokenRange> ranges = scanner.split(tokenMap);
+
+        assertThat(ranges.size()).isGreaterThanOrEqualTo(16);
+        assertThat(ranges).noneMatch(TokenRange::isWrappedAround);
+        ranges.sort(Comparator.comparing(TokenRange::getStart));
+        for (int i = 0; i < ranges.size() - 1; i++) {
+            assertThat(ranges.get(i).getEnd()).isEqualTo(ranges.get(i + 1).getStart());
+        }
+        // Last range ends where the first one starts: ring is fully covered
+        assertThat(ranges.get(ranges.size() - 1).getEnd()).isEqualTo(ranges.get(0).getStart());
+    }
+
+    @Test
+    @DisplayName("Rows of all ranges are consumed once by the calling thread")
+    public void scan_should_consume_all_rows_on_calling_thread() {
+        try (SimulatedCqlSession simulatedSession = new SimulatedCqlSession(KEYSPACE, SimulatedLatency.fixed(Duration.ofMillis(1)))) {
+            List<String> confirmationNumbers = load(simulatedSession, 250);
+            TokenRangeScanner tokenScanner = new TokenRangeScanner(withTokenMap(simulatedSession), KEYSPACE, 2, 8, 10);
+            Thread caller = Thread.currentThread();
+            List<String> scanned = new ArrayList<>();
+            tokenScanner.scan(ReservationRepository.TABLE_RESERVATION_BY_CONFI,
+                    List.of(ReservationRepository.CONFIRMATION_NUMBER),
+                    row -> row.getString(ReservationRepository.CONFIRMATION_NUMBER),
+                    confirmationNumber -> {
+                        assertThat(Thread.currentThread()).isSameAs(caller);
+                        scanned.add(confirmationNumber);
+                    });
+            assertThat(scanned).containsExactlyInAnyOrderElementsOf(confirmationNumbers);
+        }
+    }
+
+    @Test
+    @DisplayName("A slow consumer does not hold up the other scans")
+    public void scan_should_not_be_blocked_by_slow_consumer() throws Exception {
+        try (SimulatedCqlSession simulatedSession = new SimulatedCqlSession(KEYSPACE, SimulatedLatency.none())) {
+            load(simulatedSession, 100);
+            TokenRangeScanner tokenScanner = new TokenRangeScanner(withTokenMap(simulatedSession), KEYSPACE, 2, 8, 10);
+            CountDownLatch blocked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<List<Reservation>> slowScan = CompletableFuture.supplyAsync(() -> {
+                List<Reservation> reservations = new ArrayList<>();
+                tokenScanner.scan(ReservationRepository.TABLE_RESERVATION_BY_CONFI,
+                        List.of(ReservationRepository.CONFIRMATION_NUMBER), row -> new Reservation(), r -> {
+                            blocked.countDown();
+                            awaitUninterruptibly(release);
+                            reservations.add(r);
+                        });
+                return reservations;
+            });
+            assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThat(tokenScanner.scanAll(
+                    ReservationRepository.TABLE_RESERVATION_BY_CONFI,
+                    List.of(ReservationRepository.CONFIRMATION_NUMBER), row -> new Reservation())).hasSize(100));
+            release.countDown();
+            assertThat(slowScan.get(10, TimeUnit.SECONDS)).hasSize(100);
+        }
+    }
+
+    @Test
+    @DisplayName("Single token ring read in one range is fully scanned")
+    public void scan_should_read_whole_ring_of_single_token() {
+        try (SimulatedCqlSession simulatedSession = new SimulatedCqlSession(KEYSPACE, SimulatedLatency.none())) {
+            List<String> confirmationNumbers = load(simulatedSession, 50);
+            // Single node with a single token: its range starts and ends with that token
+            when(tokenMap.getTokenRanges()).thenReturn(Set.of(range(42L, 42L)));
+            when(metadata.getTokenMap()).thenReturn(Optional.of(tokenMap));
+            CqlSession session = spy(simulatedSession);
+            doReturn(metadata).when(session).getMetadata();
+            TokenRangeScanner tokenScanner = new TokenRangeScanner(session, KEYSPACE, 1, 1, 10);
+
+            assertThat(tokenScanner.split(tokenMap)).containsExactly(range(42L, 42L));
+            assertThat(tokenScanner.scanAll(ReservationRepository.TABLE_RESERVATION_BY_CONFI,
+                    List.of(ReservationRepository.CONFIRMATION_NUMBER),
+                    row -> row.getString(ReservationRepository.CONFIRMATION_NUMBER)))
+                .containsExactlyInAnyOrderElementsOf(confirmationNumbers);
+        }
+    }
+
+    @Test
+    @DisplayName("Range queries have the page size of the profile 'scan' unless set")
+    public void scan_should_page_as_profile_unless_set() {
+        try (SimulatedCqlSession simulatedSession = new SimulatedCqlSession(KEYSPACE, SimulatedLatency.none())) {
+            load(simulatedSession, 20);
+            CqlSession session = withTokenMap(simulatedSession);
+            new TokenRangeScanner(session, KEYSPACE, 2, 8, TokenRangeScanner.PROFILE_PAGE_SIZE)
+                    .scanAll(ReservationRepository.TABLE_RESERVATION_BY_CONFI,
+                            List.of(ReservationRepository.CONFIRMATION_NUMBER), row -> row);
+            new TokenRangeScanner(session, KEYSPACE, 2, 8, 10)
+                    .scanAll(ReservationRepository.TABLE_RESERVATION_BY_CONFI,
+                            List.of(ReservationRepository.CONFIRMATION_NUMBER), row -> row);
+
+            ArgumentCaptor<Statement<?>> statements = ArgumentCaptor.forClass(Statement.class);
+            verify(session, atLeast(16)).executeAsync(statements.capture());
+            assertThat(statements.getAllValues()).extracting(Statement::getPageSize)
+                .containsOnly(Integer.MIN_VALUE, 10)
+                .filteredOn(pageSize -> pageSize == 10).hasSize(statements.getAllValues().size() / 2);
+        }
+    }
+
+    /**
+     * Reservations created in the tables of the session, their confirmation numbers.
+     */
+    private static List<String> load(CqlSession session, int count) {
+        new SchemaMigrator(session, KEYSPACE).migrate();
+        ReservationRepository repository = new ReservationRepositorySimpleStatement(session, KEYSPACE);
+        List<String> confirmationNumbers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setHotelId("NY" + i);
+            reservation.setStartDate(LocalDate.of(2020, 6, 1));
+            reservation.setEndDate(LocalDate.of(2020, 6, 3));
+            reservation.setRoomNumber((short) 42);
+            reservation.setGuestId(UUID.randomUUID());
+            confirmationNumbers.add(repository.create(reservation));
+        }
+        return confirmationNumbers;
+    }
+
+    /**
+     * Session whose metadata has a token map of 3 nodes, the simulated session has none.
+     */
+    private CqlSession withTokenMap(SimulatedCqlSession simulatedSession) {
+        when(tokenMap.getTokenRanges()).thenReturn(Set.of(
+                range(-6_000_000_000_000_000_000L, 0L),
+                range(0L, 6_000_000_000_000_000_000L),
+                range(6_000_000_000_000_000_000L, -6_000_000_000_000_000_000L)));
+        when(metadata.getTokenMap()).thenReturn(Optional.of(tokenMap));
+        CqlSession session = spy(simulatedSession);
+        doReturn(metadata).when(session).getMetadata();
+        return session;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static TokenRange range(long start, long end) {
+        return new Murmur3TokenRange(new Murmur3Token(start), new Murmur3Token(end));
+    }
+
+}
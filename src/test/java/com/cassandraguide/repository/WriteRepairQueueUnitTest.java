@@ -0,0 +1,85 @@
+package com.cassandraguide.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.cassandraguide.simulation.SimulatedCqlSession;
+import com.cassandraguide.simulation.SimulatedLatency;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+
+public class WriteRepairQueueUnitTest {
+
+    private static final CqlIdentifier KEYSPACE = CqlIdentifier.fromCql("reservation");
+
+    private static final String INSERT = "INSERT INTO reservations_by_confirmation "
+            + "(confirmation_number, hotel_id, start_date, end_date, room_number, guest_id) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final UUID GUEST_ID = UUID.fromString("1b4d86f4-ccff-4256-a63d-45c905df2677");
+
+    protected SimulatedCqlSession cqlSession;
+
+    protected WriteRepairQueue testedQueue;
+
+    @BeforeEach
+    public void _init() {
+        cqlSession  = new SimulatedCqlSession(KEYSPACE, SimulatedLatency.none());
+        new SchemaMigrator(cqlSession, KEYSPACE).migrate();
+        testedQueue = new WriteRepairQueue(cqlSession);
+    }
+
+    @AfterEach
+    public void _close() {
+        testedQueue.close();
+        cqlSession.close();
+    }
+
+    @Test
+    @DisplayName("Dropped bound statement is described with its query, values and timestamp")
+    public void describe_should_render_bound_statement() {
+        BoundStatement bound = cqlSession.prepare(INSERT)
+                .bind("RS2G0Z", "NY456", LocalDate.of(2017, 6, 8), LocalDate.of(2017, 6, 10), (short) 111, GUEST_ID)
+                .setQueryTimestamp(1560000000000000L);
+        testedQueue.submit(bound, new InvalidQueryException(null, "Invalid"));
+        assertThat(testedQueue.getDropped()).isEqualTo(1);
+        assertThat(testedQueue.getPending()).isZero();
+        assertThat(WriteRepairQueue.describe(bound)).isEqualTo(INSERT
+                + " ['RS2G0Z', 'NY456', '2017-06-08', '2017-06-10', 111, 1b4d86f4-ccff-4256-a63d-45c905df2677]"
+                + " timestamp=1560000000000000");
+    }
+
+    @Test
+    @DisplayName("Simple statement is described with its values as CQL literals")
+    public void describe_should_render_simple_statement() {
+        SimpleStatement simple = SimpleStatement.newInstance(
+                "DELETE FROM reservations_by_confirmation WHERE confirmation_number = ?", "RS2G0Z");
+        assertThat(WriteRepairQueue.describe(simple))
+            .isEqualTo("DELETE FROM reservations_by_confirmation WHERE confirmation_number = ? ['RS2G0Z']");
+    }
+
+    @Test
+    @DisplayName("Retries still waiting when the queue is closed are dropped")
+    public void close_should_drop_scheduled_retries() {
+        WriteRepairQueue queue = new WriteRepairQueue(cqlSession, 3, Duration.ofHours(1), 10);
+        SimpleStatement simple = SimpleStatement.newInstance(
+                "DELETE FROM reservations_by_confirmation WHERE confirmation_number = ?", "RS2G0Z");
+        queue.submit(simple, new DriverTimeoutException("timeout"));
+        assertThat(queue.getPending()).isEqualTo(1);
+        queue.close();
+        assertThat(queue.getPending()).isZero();
+        assertThat(queue.getDropped()).isEqualTo(1);
+        assertThat(queue.getRepaired()).isZero();
+    }
+
+}
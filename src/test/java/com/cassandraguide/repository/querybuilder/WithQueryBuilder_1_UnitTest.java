@@ -4,6 +4,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -59,5 +61,17 @@ public class WithQueryBuilder_1_UnitTest extends AbstractReservationUnitTest {
         assertThat(testedRepository.exists("11")).isFalse();
         verify(cqlSession).execute(mockBound);
     }
+    
+    @Test
+    @DisplayName("Return true asynchronously if reservation exist with the confirmation number")
+    public void existReservationAsync_should_return_true_if_reservation_exists() {
+        // GIVEN : Tell Mockito expect behaviour for PreparedStatement,BoundStatement,AsyncResultSet
+        given(psExistReservation.bind("12")).willReturn(mockBound);
+        given(cqlSession.executeAsync(mockBound)).willReturn(CompletableFuture.completedFuture(mockAsyncResultSet));
+        given(mockAsyncResultSet.remaining()).willReturn(1);
+        // WHEN THEN
+        assertThat(testedRepository.existsAsync("12").toCompletableFuture().join()).isTrue();
+        verify(cqlSession).executeAsync(mockBound);
+    }
 
 }
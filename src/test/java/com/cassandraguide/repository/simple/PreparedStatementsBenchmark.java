@@ -0,0 +1,121 @@
+package com.cassandraguide.repository.simple;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.cassandraguide.conf.CassandraConfiguration;
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.repository.DenormalizedWriter;
+import com.cassandraguide.repository.PreparedStatementCache;
+import com.cassandraguide.repository.ReservationRepository;
+import com.cassandraguide.repository.ReservationRepositorySimpleStatement;
+import com.cassandraguide.repository.WriteStrategy;
+import com.datastax.oss.driver.api.core.CqlSession;
+
+/**
+ * Compare {@link ReservationRepositorySimpleStatement} executing simple statements (parsed by Cassandra
+ * for each request) and the same statements prepared once with a {@link PreparedStatementCache}.
+ *
+ * Not a test: run by 'benchmark_prepared_statements.sh' against a running Cassandra.
+ *
+ * Arguments: [operations] [concurrency] [contactPoint] [port]
+ */
+public class PreparedStatementsBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int operations  = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        CassandraConfiguration cassandraConfig = new CassandraConfiguration();
+        cassandraConfig.setDropSchema(false);
+        cassandraConfig.setCassandraHost(args.length > 2 ? args[2] : "127.0.0.1");
+        cassandraConfig.setCassandraPort(args.length > 3 ? Integer.parseInt(args[3]) : 9042);
+
+        try (CqlSession cqlSession = cassandraConfig.cqlSession()) {
+            DenormalizedWriter writer = new DenormalizedWriter(cqlSession, WriteStrategy.LOGGED_BATCH);
+            // The one registered by cqlSession(), preparedStatementCache() creates another one outside of Spring
+            PreparedStatementCache statementCache = PreparedStatementCache.registeredIn(cqlSession);
+            ReservationRepository simple   = new ReservationRepositorySimpleStatement(
+                    cqlSession, cassandraConfig.keyspace(), writer, null);
+            ReservationRepository prepared = new ReservationRepositorySimpleStatement(
+                    cqlSession, cassandraConfig.keyspace(), writer, statementCache);
+
+            List<Reservation> reservations = IntStream.range(0, operations)
+                    .mapToObj(PreparedStatementsBenchmark::newReservation)
+                    .collect(Collectors.toList());
+            // Warm up connections and JIT, both modes
+            for (ReservationRepository repository : List.of(simple, prepared)) {
+                run(reservations.subList(0, Math.min(2000, operations)), concurrency, repository::createAsync);
+            }
+            for (int round = 1; round <= 2; round++) {
+                report("simple   create", run(reservations, concurrency, simple::createAsync));
+                report("prepared create", run(reservations, concurrency, prepared::createAsync));
+                report("simple   read  ", run(reservations, concurrency,
+                        r -> simple.findByConfirmationNumberAsync(r.getConfirmationNumber())));
+                report("prepared read  ", run(reservations, concurrency,
+                        r -> prepared.findByConfirmationNumberAsync(r.getConfirmationNumber())));
+            }
+            System.out.printf("Statements prepared: %d (cache size %d)%n",
+                    statementCache.getPrepareCount(), statementCache.size());
+        }
+    }
+
+    /**
+     * Execute one operation per reservation with at most 'concurrency' pending.
+     *
+     * @return
+     *      latency of each operation in nanoseconds, the last value is the total duration
+     */
+    private static long[] run(List<Reservation> reservations, int concurrency,
+            Function<Reservation, CompletionStage<?>> operation) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger errors = new AtomicInteger();
+        long[] latencies = new long[reservations.size() + 1];
+        long top = System.nanoTime();
+        for (int i = 0; i < reservations.size(); i++) {
+            int index = i;
+            inFlight.acquire();
+            long start = System.nanoTime();
+            operation.apply(reservations.get(i)).whenComplete((result, error) -> {
+                latencies[index] = System.nanoTime() - start;
+                if (null != error && errors.incrementAndGet() == 1) {
+                    System.err.println("Operation failed: " + error);
+                }
+                inFlight.release();
+            });
+        }
+        inFlight.acquire(concurrency);
+        latencies[reservations.size()] = System.nanoTime() - top;
+        if (errors.get() > 0) {
+            System.err.printf("%d operations failed%n", errors.get());
+        }
+        return latencies;
+    }
+
+    private static void report(String label, long[] latencies) {
+        int count = latencies.length - 1;
+        double seconds = latencies[count] / 1e9;
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.printf("%s: %8.0f ops/s  p50=%6.2fms  p99=%6.2fms  max=%6.2fms%n", label, count / seconds,
+                sorted[count / 2] / 1e6, sorted[(int) (count * 0.99)] / 1e6, sorted[count - 1] / 1e6);
+    }
+
+    private static Reservation newReservation(int i) {
+        Reservation reservation = new Reservation();
+        reservation.setConfirmationNumber("BENCH-" + i + "-" + UUID.randomUUID());
+        reservation.setHotelId("NY" + (i % 100));
+        reservation.setStartDate(LocalDate.of(2020, 6, 1).plusDays(i % 30));
+        reservation.setEndDate(reservation.getStartDate().plusDays(2));
+        reservation.setRoomNumber((short) (i % 500));
+        reservation.setGuestId(UUID.randomUUID());
+        return reservation;
+    }
+}
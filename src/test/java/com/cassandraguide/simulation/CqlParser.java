@@ -0,0 +1,591 @@
+package com.cassandraguide.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.cassandraguide.simulation.ParsedStatement.Kind;
+import com.cassandraguide.simulation.ParsedStatement.Relation;
+import com.cassandraguide.simulation.ParsedStatement.Term;
+import com.cassandraguide.simulation.ParsedStatement.Variable;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.servererrors.SyntaxError;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+
+/**
+ * Parser of the CQL understood by {@link SimulatedCqlSession}: SELECT (columns, '*' or count, restrictions
+ * on columns and on the token, LIMIT), INSERT, UPDATE, DELETE (IF [NOT] EXISTS, USING TIMESTAMP), batches,
+ * CREATE and DROP of keyspaces, types and tables, TRUNCATE. Other statements (indexes, ALTER, USE...)
+ * are accepted and ignored, unsupported clauses raise a {@link SyntaxError}.
+ */
+final class CqlParser {
+
+    /** Kinds of tokens. */
+    private enum Type { IDENTIFIER, STRING, NUMBER, SYMBOL, MARKER, NAMED_MARKER, END }
+
+    private static final class Token {
+
+        final Type type;
+
+        final String text;
+
+        Token(Type type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        boolean is(String keywordOrSymbol) {
+            return (type == Type.IDENTIFIER || type == Type.SYMBOL) && text.equalsIgnoreCase(keywordOrSymbol);
+        }
+
+        @Override
+        public String toString() {
+            return (type == Type.END) ? "end of statement" : "'" + text + "'";
+        }
+    }
+
+    private final String cql;
+
+    private final List<Token> tokens;
+
+    private final List<Variable> variables = new ArrayList<>();
+
+    private int position;
+
+    private CqlParser(String cql) {
+        this.cql    = cql;
+        this.tokens = tokenize(cql);
+    }
+
+    /**
+     * Parse a statement.
+     *
+     * @param cql
+     *      CQL text
+     * @return
+     *      statement parsed
+     * @throws SyntaxError
+     *      when the statement is not supported
+     */
+    static ParsedStatement parse(String cql) {
+        CqlParser parser = new CqlParser(cql);
+        ParsedStatement statement = parser.statement();
+        parser.accept(";");
+        parser.expect(Type.END);
+        return statement;
+    }
+
+    private ParsedStatement statement() {
+        Token first = next();
+        if (first.is("SELECT")) {
+            return select();
+        } else if (first.is("INSERT")) {
+            return insert();
+        } else if (first.is("UPDATE")) {
+            return update();
+        } else if (first.is("DELETE")) {
+            return delete();
+        } else if (first.is("BEGIN")) {
+            return batch();
+        } else if (first.is("CREATE")) {
+            return create();
+        } else if (first.is("DROP")) {
+            return drop();
+        } else if (first.is("TRUNCATE")) {
+            ParsedStatement truncate = new ParsedStatement(Kind.TRUNCATE, cql, variables);
+            accept("TABLE");
+            tableName(truncate);
+            return truncate;
+        }
+        return ignored();
+    }
+
+    private ParsedStatement select() {
+        ParsedStatement select = new ParsedStatement(Kind.SELECT, cql, variables);
+        if (accept("*")) {
+            select.selectors = null;
+        } else if (peek().is("COUNT")) {
+            next();
+            expect("(");
+            if (!accept("*")) {
+                expect(Type.NUMBER);
+            }
+            expect(")");
+            select.count = true;
+        } else {
+            select.selectors = new ArrayList<>();
+            do {
+                select.selectors.add(identifier());
+            } while (accept(","));
+        }
+        expect("FROM");
+        tableName(select);
+        where(select);
+        if (accept("LIMIT")) {
+            select.limit = term(select, null, ParsedStatement.LIMIT_VARIABLE);
+        }
+        if (accept("ALLOW")) {
+            expect("FILTERING");
+        }
+        return select;
+    }
+
+    private ParsedStatement insert() {
+        ParsedStatement insert = new ParsedStatement(Kind.INSERT, cql, variables);
+        expect("INTO");
+        tableName(insert);
+        expect("(");
+        List<CqlIdentifier> columns = new ArrayList<>();
+        do {
+            columns.add(identifier());
+        } while (accept(","));
+        expect(")");
+        expect("VALUES");
+        expect("(");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                expect(",");
+            }
+            insert.assignments.put(columns.get(i), term(insert, columns.get(i), null));
+        }
+        expect(")");
+        while (peek().is("IF") || peek().is("USING")) {
+            if (accept("IF")) {
+                expect("NOT");
+                expect("EXISTS");
+                insert.ifNotExists = true;
+            } else {
+                using(insert);
+            }
+        }
+        return insert;
+    }
+
+    private ParsedStatement update() {
+        ParsedStatement update = new ParsedStatement(Kind.UPDATE, cql, variables);
+        tableName(update);
+        if (peek().is("USING")) {
+            using(update);
+        }
+        expect("SET");
+        do {
+            CqlIdentifier column = identifier();
+            expect("=");
+            update.assignments.put(column, term(update, column, null));
+        } while (accept(","));
+        where(update);
+        if (accept("IF")) {
+            expect("EXISTS");
+            update.ifExists = true;
+        }
+        return update;
+    }
+
+    private ParsedStatement delete() {
+        ParsedStatement delete = new ParsedStatement(Kind.DELETE, cql, variables);
+        if (!peek().is("FROM")) {
+            do {
+                delete.assignments.put(identifier(), null);
+            } while (accept(","));
+        }
+        expect("FROM");
+        tableName(delete);
+        if (peek().is("USING")) {
+            using(delete);
+        }
+        where(delete);
+        if (accept("IF")) {
+            if (accept("EXISTS")) {
+                delete.ifExists = true;
+            } else {
+                do {
+                    CqlIdentifier column = identifier();
+                    expect("=");
+                    delete.conditions.put(column, term(delete, column, null));
+                } while (accept("AND"));
+            }
+        }
+        return delete;
+    }
+
+    private ParsedStatement batch() {
+        ParsedStatement batch = new ParsedStatement(Kind.BATCH, cql, variables);
+        if (!accept("UNLOGGED")) {
+            accept("LOGGED");
+        }
+        expect("BATCH");
+        if (peek().is("USING")) {
+            using(batch);
+        }
+        while (!peek().is("APPLY")) {
+            Token first = next();
+            ParsedStatement statement;
+            if (first.is("INSERT")) {
+                statement = insert();
+            } else if (first.is("UPDATE")) {
+                statement = update();
+            } else if (first.is("DELETE")) {
+                statement = delete();
+            } else {
+                throw syntaxError("INSERT, UPDATE or DELETE expected in batch, got " + first);
+            }
+            batch.batch.add(statement);
+            accept(";");
+        }
+        expect("APPLY");
+        expect("BATCH");
+        return batch;
+    }
+
+    private ParsedStatement create() {
+        if (accept("KEYSPACE")) {
+            ParsedStatement keyspace = new ParsedStatement(Kind.CREATE_KEYSPACE, cql, variables);
+            keyspace.ifNotExists = ifNotExists();
+            keyspace.name = identifier();
+            skipToEnd();
+            return keyspace;
+        }
+        if (accept("TYPE")) {
+            ParsedStatement type = new ParsedStatement(Kind.CREATE_TYPE, cql, variables);
+            type.ifNotExists = ifNotExists();
+            tableName(type);
+            expect("(");
+            do {
+                type.columns.put(identifier(), type());
+            } while (accept(","));
+            expect(")");
+            return type;
+        }
+        if (accept("TABLE") || accept("COLUMNFAMILY")) {
+            return createTable();
+        }
+        return ignored();
+    }
+
+    private ParsedStatement createTable() {
+        ParsedStatement table = new ParsedStatement(Kind.CREATE_TABLE, cql, variables);
+        table.ifNotExists = ifNotExists();
+        tableName(table);
+        expect("(");
+        do {
+            if (accept("PRIMARY")) {
+                expect("KEY");
+                expect("(");
+                if (accept("(")) {
+                    do {
+                        table.partitionKey.add(identifier());
+                    } while (accept(","));
+                    expect(")");
+                } else {
+                    table.partitionKey.add(identifier());
+                }
+                while (accept(",")) {
+                    table.clusteringColumns.add(identifier());
+                }
+                expect(")");
+            } else {
+                CqlIdentifier column = identifier();
+                table.columns.put(column, type());
+                accept("STATIC");
+                if (accept("PRIMARY")) {
+                    expect("KEY");
+                    table.partitionKey.add(column);
+                }
+            }
+        } while (accept(","));
+        expect(")");
+        if (accept("WITH")) {
+            while (peek().type != Type.END && !peek().is(";")) {
+                if (accept("CLUSTERING")) {
+                    expect("ORDER");
+                    expect("BY");
+                    expect("(");
+                    do {
+                        CqlIdentifier column = identifier();
+                        if (accept("DESC")) {
+                            table.descending.add(column);
+                        } else {
+                            accept("ASC");
+                        }
+                    } while (accept(","));
+                    expect(")");
+                } else {
+                    next(); // Options of the table have no effect here
+                }
+            }
+        }
+        if (table.partitionKey.isEmpty()) {
+            throw syntaxError("No PRIMARY KEY specified for table " + table.name);
+        }
+        return table;
+    }
+
+    private ParsedStatement drop() {
+        Kind kind;
+        if (accept("KEYSPACE")) {
+            kind = Kind.DROP_KEYSPACE;
+        } else if (accept("TABLE")) {
+            kind = Kind.DROP_TABLE;
+        } else {
+            return ignored();
+        }
+        ParsedStatement drop = new ParsedStatement(kind, cql, variables);
+        if (accept("IF")) {
+            expect("EXISTS");
+            drop.ifExists = true;
+        }
+        if (kind == Kind.DROP_KEYSPACE) {
+            drop.name = identifier();
+        } else {
+            tableName(drop);
+        }
+        return drop;
+    }
+
+    private ParsedStatement ignored() {
+        skipToEnd();
+        return new ParsedStatement(Kind.IGNORED, cql, variables);
+    }
+
+    private boolean ifNotExists() {
+        if (accept("IF")) {
+            expect("NOT");
+            expect("EXISTS");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 'USING TIMESTAMP t AND TTL t', the time to live is ignored.
+     */
+    private void using(ParsedStatement statement) {
+        expect("USING");
+        do {
+            if (accept("TIMESTAMP")) {
+                statement.timestamp = term(statement, null, ParsedStatement.TIMESTAMP_VARIABLE);
+            } else {
+                expect("TTL");
+                term(statement, null, ParsedStatement.TTL_VARIABLE);
+            }
+        } while (accept("AND"));
+    }
+
+    private void where(ParsedStatement statement) {
+        if (!accept("WHERE")) {
+            return;
+        }
+        do {
+            if (accept("TOKEN")) {
+                expect("(");
+                do {
+                    identifier(); // Always the partition key
+                } while (accept(","));
+                expect(")");
+                String operator = operator();
+                statement.where.add(new Relation(null, operator, term(statement, null, ParsedStatement.TOKEN_VARIABLE)));
+            } else {
+                CqlIdentifier column = identifier();
+                String operator = operator();
+                statement.where.add(new Relation(column, operator, term(statement, column, null)));
+            }
+        } while (accept("AND"));
+    }
+
+    private String operator() {
+        Token operator = next();
+        if (operator.type == Type.SYMBOL && List.of("=", "<", "<=", ">", ">=").contains(operator.text)) {
+            return operator.text;
+        }
+        throw syntaxError("Operator expected, got " + operator);
+    }
+
+    /**
+     * Value, a bind marker is a variable receiving a column or a special value.
+     */
+    private Term term(ParsedStatement statement, CqlIdentifier column, CqlIdentifier specialName) {
+        Token token = next();
+        switch (token.type) {
+            case MARKER:
+            case NAMED_MARKER:
+                CqlIdentifier name = (token.type == Type.NAMED_MARKER) ? CqlIdentifier.fromCql(token.text) : null;
+                if (null != column) {
+                    variables.add(Variable.column(name, statement, column));
+                } else if (ParsedStatement.TOKEN_VARIABLE.equals(specialName)) {
+                    variables.add(Variable.token(name));
+                } else if (ParsedStatement.TIMESTAMP_VARIABLE.equals(specialName)) {
+                    variables.add(Variable.special(name, specialName, DataTypes.BIGINT));
+                } else {
+                    variables.add(Variable.special(name, specialName, DataTypes.INT));
+                }
+                return Term.marker(variables.size() - 1);
+            case STRING:
+            case NUMBER:
+                return Term.literal(token.text);
+            case IDENTIFIER:
+                if (token.is("true") || token.is("false") || token.is("null")) {
+                    return Term.literal(token.text.toLowerCase(Locale.ROOT));
+                }
+                break;
+            default:
+                break;
+        }
+        throw syntaxError("Value expected, got " + token);
+    }
+
+    /**
+     * Type of a column or field, as its CQL text ('map<text, frozen<address>>').
+     */
+    private String type() {
+        StringBuilder type = new StringBuilder(expect(Type.IDENTIFIER).text);
+        int depth = 0;
+        while (peek().is("<") || depth > 0) {
+            Token token = next();
+            if (token.type == Type.END) {
+                throw syntaxError("Unterminated type " + type);
+            }
+            depth += token.is("<") ? 1 : token.is(">") ? -1 : 0;
+            type.append(token.text);
+        }
+        return type.toString();
+    }
+
+    private void tableName(ParsedStatement statement) {
+        CqlIdentifier first = identifier();
+        if (accept(".")) {
+            statement.keyspace = first;
+            statement.name     = identifier();
+        } else {
+            statement.name = first;
+        }
+    }
+
+    private CqlIdentifier identifier() {
+        return CqlIdentifier.fromCql(expect(Type.IDENTIFIER).text);
+    }
+
+    private void skipToEnd() {
+        while (peek().type != Type.END && !peek().is(";")) {
+            next();
+        }
+    }
+
+    private Token peek() {
+        return tokens.get(position);
+    }
+
+    private Token next() {
+        Token token = tokens.get(position);
+        if (token.type != Type.END) {
+            position++;
+        }
+        return token;
+    }
+
+    private boolean accept(String keywordOrSymbol) {
+        if (peek().is(keywordOrSymbol)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String keywordOrSymbol) {
+        if (!accept(keywordOrSymbol)) {
+            throw syntaxError("'" + keywordOrSymbol + "' expected, got " + peek());
+        }
+    }
+
+    private Token expect(Type type) {
+        Token token = next();
+        if (token.type != type) {
+            throw syntaxError(type + " expected, got " + token);
+        }
+        return token;
+    }
+
+    private SyntaxError syntaxError(String message) {
+        return new SyntaxError(null, message + " in: " + cql);
+    }
+
+    /**
+     * Identifiers (quoted identifiers keep their quotes), strings (with their quotes), numbers,
+     * symbols and bind markers, comments are skipped.
+     */
+    private static List<Token> tokenize(String cql) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < cql.length()) {
+            char c = cql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (cql.startsWith("--", i) || cql.startsWith("//", i)) {
+                int end = cql.indexOf('\n', i);
+                i = (end < 0) ? cql.length() : end;
+            } else if (cql.startsWith("/*", i)) {
+                int end = cql.indexOf("*/", i + 2);
+                i = (end < 0) ? cql.length() : end + 2;
+            } else if (c == '\'' || c == '"') {
+                int end = quoted(cql, i);
+                tokens.add(new Token((c == '\'') ? Type.STRING : Type.IDENTIFIER, cql.substring(i, end)));
+                i = end;
+            } else if (c == '?') {
+                tokens.add(new Token(Type.MARKER, "?"));
+                i++;
+            } else if (c == ':' && i + 1 < cql.length()
+                    && (Character.isLetter(cql.charAt(i + 1)) || cql.charAt(i + 1) == '"')) {
+                int end = (cql.charAt(i + 1) == '"') ? quoted(cql, i + 1) : word(cql, i + 1);
+                tokens.add(new Token(Type.NAMED_MARKER, cql.substring(i + 1, end)));
+                i = end;
+            } else if (Character.isDigit(c) || (c == '-' && i + 1 < cql.length() && Character.isDigit(cql.charAt(i + 1)))) {
+                int end = i + 1;
+                while (end < cql.length() && (Character.isLetterOrDigit(cql.charAt(end))
+                        || cql.charAt(end) == '.' || cql.charAt(end) == '-')) {
+                    end++;
+                }
+                tokens.add(new Token(Type.NUMBER, cql.substring(i, end)));
+                i = end;
+            } else if (Character.isLetter(c) || c == '_') {
+                int end = word(cql, i);
+                tokens.add(new Token(Type.IDENTIFIER, cql.substring(i, end)));
+                i = end;
+            } else if ((c == '<' || c == '>') && i + 1 < cql.length() && cql.charAt(i + 1) == '=') {
+                tokens.add(new Token(Type.SYMBOL, cql.substring(i, i + 2)));
+                i += 2;
+            } else {
+                tokens.add(new Token(Type.SYMBOL, String.valueOf(c)));
+                i++;
+            }
+        }
+        tokens.add(new Token(Type.END, ""));
+        return tokens;
+    }
+
+    private static int word(String cql, int start) {
+        int end = start;
+        while (end < cql.length() && (Character.isLetterOrDigit(cql.charAt(end)) || cql.charAt(end) == '_')) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * End of a quoted string or identifier, quotes are escaped by doubling them.
+     */
+    private static int quoted(String cql, int start) {
+        char quote = cql.charAt(start);
+        int end = start + 1;
+        while (end < cql.length()) {
+            if (cql.charAt(end) == quote) {
+                if (end + 1 < cql.length() && cql.charAt(end + 1) == quote) {
+                    end += 2;
+                    continue;
+                }
+                return end + 1;
+            }
+            end++;
+        }
+        throw new SyntaxError(null, "Unterminated quote in: " + cql);
+    }
+
+}
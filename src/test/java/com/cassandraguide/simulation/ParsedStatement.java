@@ -0,0 +1,189 @@
+package com.cassandraguide.simulation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.type.DataType;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+
+/**
+ * Statement parsed by {@link CqlParser}: the subset of CQL issued by the repositories, the mapper
+ * and the schema migrations. Bind markers are numbered in the order of the CQL text, batches included.
+ */
+final class ParsedStatement {
+
+    /** Kinds of statements. */
+    enum Kind { SELECT, INSERT, UPDATE, DELETE, BATCH, CREATE_KEYSPACE, CREATE_TYPE, CREATE_TABLE,
+                DROP_KEYSPACE, DROP_TABLE, TRUNCATE, IGNORED }
+
+    /** Name of the variable of a token restriction, as named by Cassandra. */
+    static final CqlIdentifier TOKEN_VARIABLE = CqlIdentifier.fromInternal("partition key token");
+
+    /** Name of the variable of a limit. */
+    static final CqlIdentifier LIMIT_VARIABLE = CqlIdentifier.fromInternal("[limit]");
+
+    /** Name of the variable of a write timestamp. */
+    static final CqlIdentifier TIMESTAMP_VARIABLE = CqlIdentifier.fromInternal("[timestamp]");
+
+    /** Name of the variable of a time to live. */
+    static final CqlIdentifier TTL_VARIABLE = CqlIdentifier.fromInternal("[ttl]");
+
+    final Kind kind;
+
+    final String cql;
+
+    /** Keyspace of the statement, null for the keyspace of the session. */
+    CqlIdentifier keyspace;
+
+    /** Table, type or keyspace created or dropped. */
+    CqlIdentifier name;
+
+    /** Selected columns, null for '*'. */
+    List<CqlIdentifier> selectors;
+
+    /** 'SELECT count(*)'. */
+    boolean count;
+
+    /** Restrictions of SELECT, UPDATE and DELETE. */
+    final List<Relation> where = new ArrayList<>();
+
+    /** Columns written by INSERT and UPDATE, deleted by DELETE. */
+    final Map<CqlIdentifier, Term> assignments = new LinkedHashMap<>();
+
+    /** 'IF NOT EXISTS' of an INSERT or of a CREATE. */
+    boolean ifNotExists;
+
+    /** 'IF EXISTS' of an UPDATE, DELETE or DROP. */
+    boolean ifExists;
+
+    /** 'IF column = value AND ...' of a DELETE, on regular columns. */
+    final Map<CqlIdentifier, Term> conditions = new LinkedHashMap<>();
+
+    Term limit;
+
+    Term timestamp;
+
+    /** Statements of a batch. */
+    final List<ParsedStatement> batch = new ArrayList<>();
+
+    /** Columns of a table or fields of a type to create, by name with their CQL type. */
+    final Map<CqlIdentifier, String> columns = new LinkedHashMap<>();
+
+    final List<CqlIdentifier> partitionKey = new ArrayList<>();
+
+    final List<CqlIdentifier> clusteringColumns = new ArrayList<>();
+
+    /** Clustering columns in descending order. */
+    final List<CqlIdentifier> descending = new ArrayList<>();
+
+    /** Bind markers, in the order of the CQL text. */
+    final List<Variable> variables;
+
+    ParsedStatement(Kind kind, String cql, List<Variable> variables) {
+        this.kind      = kind;
+        this.cql       = cql;
+        this.variables = variables;
+    }
+
+    /**
+     * Whether the statement is a lightweight transaction, the result tells if it was applied.
+     */
+    boolean isConditional() {
+        return (kind == Kind.INSERT || kind == Kind.UPDATE || kind == Kind.DELETE)
+                && (ifNotExists || ifExists || !conditions.isEmpty());
+    }
+
+    /**
+     * Value of a statement: a bind marker or a literal.
+     */
+    static final class Term {
+
+        /** Index of the bind marker, -1 for a literal. */
+        final int marker;
+
+        /** CQL literal, as parsed by the codecs. */
+        final String literal;
+
+        private Term(int marker, String literal) {
+            this.marker  = marker;
+            this.literal = literal;
+        }
+
+        static Term marker(int index) {
+            return new Term(index, null);
+        }
+
+        static Term literal(String literal) {
+            return new Term(-1, literal);
+        }
+
+        boolean isMarker() {
+            return marker >= 0;
+        }
+    }
+
+    /**
+     * Restriction of a WHERE clause, on a column or on the token of the partition key.
+     */
+    static final class Relation {
+
+        /** Column restricted, null for a token restriction. */
+        final CqlIdentifier column;
+
+        /** One of '=', '<', '<=', '>', '>='. */
+        final String operator;
+
+        final Term term;
+
+        Relation(CqlIdentifier column, String operator, Term term) {
+            this.column   = column;
+            this.operator = operator;
+            this.term     = term;
+        }
+
+        boolean isToken() {
+            return null == column;
+        }
+    }
+
+    /**
+     * Bind marker with the column receiving its value, or the type of its special value.
+     */
+    static final class Variable {
+
+        /** Name of the marker (':name'), name of the receiver for positional markers. */
+        final CqlIdentifier name;
+
+        /** Statement of the marker, a statement of a batch for batches. */
+        final ParsedStatement statement;
+
+        /** Column receiving the value, null for special values. */
+        final CqlIdentifier column;
+
+        /** Type of a special value (token, limit, timestamp). */
+        final DataType type;
+
+        private Variable(CqlIdentifier name, ParsedStatement statement, CqlIdentifier column, DataType type) {
+            this.name      = name;
+            this.statement = statement;
+            this.column    = column;
+            this.type      = type;
+        }
+
+        static Variable column(CqlIdentifier name, ParsedStatement statement, CqlIdentifier column) {
+            return new Variable((null == name) ? column : name, statement, column, null);
+        }
+
+        static Variable special(CqlIdentifier name, CqlIdentifier specialName, DataType type) {
+            return new Variable((null == name) ? specialName : name, null, null, type);
+        }
+
+        static Variable token(CqlIdentifier name) {
+            return special(name, TOKEN_VARIABLE, DataTypes.BIGINT);
+        }
+    }
+
+}
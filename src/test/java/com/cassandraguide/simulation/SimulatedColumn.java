@@ -0,0 +1,70 @@
+package com.cassandraguide.simulation;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.detach.AttachmentPoint;
+import com.datastax.oss.driver.api.core.type.DataType;
+
+/**
+ * Column of a result or variable of a prepared statement, typed with the schema of the table.
+ */
+final class SimulatedColumn implements ColumnDefinition {
+
+    private final CqlIdentifier keyspace;
+
+    private final CqlIdentifier table;
+
+    private final CqlIdentifier name;
+
+    private final DataType type;
+
+    SimulatedColumn(CqlIdentifier keyspace, CqlIdentifier table, CqlIdentifier name, DataType type) {
+        this.keyspace = keyspace;
+        this.table    = table;
+        this.name     = name;
+        this.type     = type;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CqlIdentifier getKeyspace() {
+        return keyspace;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CqlIdentifier getTable() {
+        return table;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CqlIdentifier getName() {
+        return name;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DataType getType() {
+        return type;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isDetached() {
+        return type.isDetached();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void attach(AttachmentPoint attachmentPoint) {
+        type.attach(attachmentPoint);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return name.asCql(true) + " " + type.asCql(true, true);
+    }
+
+}
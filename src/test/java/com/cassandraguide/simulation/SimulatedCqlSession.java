@@ -0,0 +1,1103 @@
+package com.cassandraguide.simulation;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.util.Assert;
+
+import com.cassandraguide.simulation.ParsedStatement.Kind;
+import com.cassandraguide.simulation.ParsedStatement.Relation;
+import com.cassandraguide.simulation.ParsedStatement.Term;
+import com.cassandraguide.simulation.ParsedStatement.Variable;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.ProtocolVersion;
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import com.datastax.oss.driver.api.core.config.DriverConfigLoader;
+import com.datastax.oss.driver.api.core.config.DriverExecutionProfile;
+import com.datastax.oss.driver.api.core.context.DriverContext;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinition;
+import com.datastax.oss.driver.api.core.cql.ColumnDefinitions;
+import com.datastax.oss.driver.api.core.cql.PrepareRequest;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.NodeState;
+import com.datastax.oss.driver.api.core.metadata.schema.ColumnMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.SchemaChangeListener;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+import com.datastax.oss.driver.api.core.metrics.Metrics;
+import com.datastax.oss.driver.api.core.servererrors.AlreadyExistsException;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.tracker.RequestTracker;
+import com.datastax.oss.driver.api.core.type.DataType;
+import com.datastax.oss.driver.api.core.type.DataTypes;
+import com.datastax.oss.driver.api.core.type.UserDefinedType;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodec;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodecs;
+import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+import com.datastax.oss.driver.api.core.type.reflect.GenericType;
+import com.datastax.oss.driver.internal.core.context.DefaultDriverContext;
+import com.datastax.oss.driver.internal.core.context.InternalDriverContext;
+import com.datastax.oss.driver.internal.core.cql.DefaultAsyncResultSet;
+import com.datastax.oss.driver.internal.core.cql.DefaultColumnDefinitions;
+import com.datastax.oss.driver.internal.core.cql.DefaultPreparedStatement;
+import com.datastax.oss.driver.internal.core.cql.EmptyColumnDefinitions;
+import com.datastax.oss.driver.internal.core.cql.ResultSets;
+import com.datastax.oss.driver.internal.core.metadata.schema.DefaultKeyspaceMetadata;
+import com.datastax.oss.driver.internal.core.metadata.schema.parsing.DataTypeCqlNameParser;
+import com.datastax.oss.driver.internal.core.type.UserDefinedTypeBuilder;
+import com.datastax.oss.driver.internal.core.util.concurrent.CompletableFutures;
+import com.datastax.oss.protocol.internal.ProtocolConstants;
+
+/**
+ * In-memory stand-in for a {@link CqlSession} connected to a cluster of one or more nodes, to run the
+ * repositories without Cassandra: the tables are created by the DDL statements executed (CREATE KEYSPACE,
+ * TYPE, TABLE) and the statements are those parsed by {@link CqlParser}, simple, prepared and batched,
+ * sync and async, with paging. All the nodes share the same data (a replication factor of the number of
+ * nodes, always consistent).
+ *
+ * Each request is executed when submitted, its response is delivered after the latency of
+ * {@link SimulatedLatency} by a scheduler thread (as the I/O threads of the driver). The nodes return the
+ * errors of {@link SimulatedFailure} and can be stopped: retries, speculative executions, timeouts and the
+ * request tracker are handled as by the driver ({@link SimulatedRequestHandler}). Latency and failures can be
+ * changed at runtime (for instance no latency while loading data).
+ *
+ * The configuration is the one of the application (application.conf: profiles, page size, timeouts,
+ * policies...). Tables 'system.local' and 'system.peers' describe the cluster as seen from the first node,
+ * 'system_schema.tables' the tables of the keyspaces; the other tables of the keyspaces 'system*' do not exist,
+ * their queries return no rows. Errors of invalid
+ * statements are reported by the first node.
+ */
+public class SimulatedCqlSession implements CqlSession {
+
+    /** Counter of the sessions, for their names. */
+    private static final AtomicInteger SESSIONS = new AtomicInteger();
+
+    /** Keyspace of the tables describing the cluster. */
+    private static final CqlIdentifier SYSTEM = CqlIdentifier.fromInternal("system");
+
+    /** Keyspace of the tables describing the schema. */
+    private static final CqlIdentifier SYSTEM_SCHEMA = CqlIdentifier.fromInternal("system_schema");
+
+    /** Table describing the tables of the schema. */
+    private static final CqlIdentifier SYSTEM_SCHEMA_TABLES = CqlIdentifier.fromInternal("tables");
+
+    /** Column of the result of a conditional statement. */
+    private static final CqlIdentifier APPLIED = CqlIdentifier.fromInternal("[applied]");
+
+    /** Column of the result of 'SELECT count(*)'. */
+    private static final CqlIdentifier COUNT = CqlIdentifier.fromInternal("count");
+
+    private final InternalDriverContext context;
+
+    private final CodecRegistry codecRegistry;
+
+    private final ProtocolVersion protocolVersion;
+
+    /** Keyspace of the session, created with it. */
+    private final CqlIdentifier keyspace;
+
+    private final List<SimulatedNode> nodes;
+
+    /** First node, reporting the errors of invalid statements. */
+    private final SimulatedNode node;
+
+    /** First node of the next query plan. */
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    /** Completes the responses after their latency. */
+    private final ScheduledExecutorService scheduler;
+
+    private final SimulatedRequestHandler requestHandler;
+
+    private volatile SimulatedLatency latency;
+
+    private volatile SimulatedFailure failure = SimulatedFailure.none();
+
+    /** Statements parsed, by query. */
+    private final Map<String, ParsedStatement> statements = new ConcurrentHashMap<>();
+
+    /** Tables by keyspace. */
+    private final Map<CqlIdentifier, Map<CqlIdentifier, SimulatedTable>> tables = new ConcurrentHashMap<>();
+
+    /** User defined types by keyspace. */
+    private final Map<CqlIdentifier, Map<CqlIdentifier, UserDefinedType>> types = new ConcurrentHashMap<>();
+
+    /** Schema changes are serialized. */
+    private final Object schemaLock = new Object();
+
+    /** Tables described in 'system_schema.tables', keyspace and table. */
+    private final Set<List<CqlIdentifier>> describedTables = new HashSet<>();
+
+    private volatile SimulatedMetadata metadata;
+
+    private final CompletableFuture<Void> closeFuture = new CompletableFuture<>();
+
+    /**
+     * Session connected to a single node, with the request tracker of the configuration.
+     *
+     * @param keyspace
+     *      keyspace of the session, created
+     * @param latency
+     *      latency of the requests
+     */
+    public SimulatedCqlSession(CqlIdentifier keyspace, SimulatedLatency latency) {
+        this(keyspace, latency, null);
+    }
+
+    /**
+     * Session connected to a single node, notifying a request tracker.
+     *
+     * @param keyspace
+     *      keyspace of the session, created
+     * @param latency
+     *      latency of the requests
+     * @param requestTracker
+     *      tracker of the requests, the one of the configuration if null
+     */
+    public SimulatedCqlSession(CqlIdentifier keyspace, SimulatedLatency latency, RequestTracker requestTracker) {
+        this(keyspace, 1, latency, requestTracker);
+    }
+
+    /**
+     * Session connected to a cluster.
+     *
+     * @param keyspace
+     *      keyspace of the session, created
+     * @param nodeCount
+     *      number of nodes of the cluster (addresses 127.0.0.1, 127.0.0.2...)
+     * @param latency
+     *      latency of the requests
+     * @param requestTracker
+     *      tracker of the requests, the one of the configuration if null
+     */
+    public SimulatedCqlSession(CqlIdentifier keyspace, int nodeCount, SimulatedLatency latency, RequestTracker requestTracker) {
+        this(keyspace, nodeCount, latency, requestTracker, null);
+    }
+
+    /**
+     * Session connected to a cluster, notifying a schema change listener of the tables created and dropped.
+     *
+     * @param keyspace
+     *      keyspace of the session, created
+     * @param nodeCount
+     *      number of nodes of the cluster (addresses 127.0.0.1, 127.0.0.2...)
+     * @param latency
+     *      latency of the requests
+     * @param requestTracker
+     *      tracker of the requests, the one of the configuration if null
+     * @param schemaChangeListener
+     *      listener of the schema changes, the one of the configuration if null
+     */
+    public SimulatedCqlSession(CqlIdentifier keyspace, int nodeCount, SimulatedLatency latency, RequestTracker requestTracker,
+            SchemaChangeListener schemaChangeListener) {
+        Assert.notNull(keyspace, "Keyspace should not be null");
+        Assert.isTrue(nodeCount > 0 && nodeCount < 255, "Node count should be between 1 and 254");
+        Assert.notNull(latency, "Latency should not be null");
+        String name = "simulated" + SESSIONS.getAndIncrement();
+        // Protocol version forced, it is not negotiated without a connection
+        DriverConfigLoader configLoader = DriverConfigLoader.programmaticBuilder()
+                .withString(DefaultDriverOption.SESSION_NAME, name)
+                .withString(DefaultDriverOption.PROTOCOL_VERSION, "V4")
+                .build();
+        this.context         = new DefaultDriverContext(configLoader, List.of(), null, schemaChangeListener, requestTracker,
+                Map.of(), Map.of(), SimulatedCqlSession.class.getClassLoader());
+        this.codecRegistry   = context.getCodecRegistry();
+        this.protocolVersion = context.getProtocolVersion();
+        this.keyspace        = keyspace;
+        this.latency         = latency;
+        List<SimulatedNode> clusterNodes = new ArrayList<>();
+        for (int i = 1; i <= nodeCount; i++) {
+            // Literal addresses, resolved without lookup
+            clusterNodes.add(new SimulatedNode(new InetSocketAddress("127.0.0." + i, 9042)));
+        }
+        this.nodes           = List.copyOf(clusterNodes);
+        this.node            = nodes.get(0);
+        this.scheduler       = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread thread = new Thread(r, name + "-io");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.requestHandler  = new SimulatedRequestHandler(this, context, scheduler);
+        createSystemTables();
+        tables.put(keyspace, new ConcurrentHashMap<>());
+        types.put(keyspace, new ConcurrentHashMap<>());
+        schemaChanged();
+    }
+
+    /**
+     * Tables of the keyspaces 'system' and 'system_schema' read by the application (schema agreement, warm up,
+     * migrations).
+     */
+    private void createSystemTables() {
+        schema(CqlParser.parse("CREATE KEYSPACE system WITH replication = {'class': 'LocalStrategy'}"));
+        schema(CqlParser.parse("CREATE TABLE system.local (key text PRIMARY KEY, broadcast_address inet, "
+                + "cluster_name text, data_center text, host_id uuid, listen_address inet, partitioner text, "
+                + "rack text, release_version text, rpc_address inet, schema_version uuid)"));
+        schema(CqlParser.parse("CREATE TABLE system.peers (peer inet PRIMARY KEY, data_center text, host_id uuid, "
+                + "preferred_ip inet, rack text, release_version text, rpc_address inet, schema_version uuid)"));
+        schema(CqlParser.parse("CREATE KEYSPACE system_schema WITH replication = {'class': 'LocalStrategy'}"));
+        schema(CqlParser.parse("CREATE TABLE system_schema.tables (keyspace_name text, table_name text, "
+                + "PRIMARY KEY (keyspace_name, table_name))"));
+    }
+
+    /**
+     * Change the latency of the next requests.
+     *
+     * @param latency
+     *      latency of the requests
+     */
+    public void setLatency(SimulatedLatency latency) {
+        Assert.notNull(latency, "Latency should not be null");
+        this.latency = latency;
+    }
+
+    /**
+     * Getter accessor for attribute 'latency'.
+     *
+     * @return
+     *       latency of the requests
+     */
+    public SimulatedLatency getLatency() {
+        return latency;
+    }
+
+    /**
+     * Change the errors returned by the nodes for the next requests.
+     *
+     * @param failure
+     *      errors of the nodes, {@link SimulatedFailure#none()} for none
+     */
+    public void setFailure(SimulatedFailure failure) {
+        Assert.notNull(failure, "Failure should not be null");
+        this.failure = failure;
+    }
+
+    /**
+     * Getter accessor for attribute 'failure'.
+     *
+     * @return
+     *       errors returned by the nodes
+     */
+    public SimulatedFailure getFailure() {
+        return failure;
+    }
+
+    /**
+     * Stop a node: the next requests are not sent to it, the ones in flight are answered.
+     *
+     * @param stopped
+     *      node of the metadata of the session
+     */
+    public void stopNode(Node stopped) {
+        simulatedNode(stopped).setState(NodeState.DOWN);
+    }
+
+    /**
+     * Start a node stopped.
+     *
+     * @param started
+     *      node of the metadata of the session
+     */
+    public void startNode(Node started) {
+        simulatedNode(started).setState(NodeState.UP);
+    }
+
+    private SimulatedNode simulatedNode(Node clusterNode) {
+        Assert.isTrue(nodes.contains(clusterNode), "Node " + clusterNode + " is not a node of the session");
+        return (SimulatedNode) clusterNode;
+    }
+
+    /**
+     * Nodes to try for a request: the node of the request, or the nodes up starting with the next one in
+     * round robin.
+     */
+    Queue<Node> queryPlan(Request request) {
+        Queue<Node> queryPlan = new ArrayDeque<>(nodes.size());
+        if (null != request.getNode()) {
+            if (request.getNode().getState() == NodeState.UP) {
+                queryPlan.add(request.getNode());
+            }
+            return queryPlan;
+        }
+        int first = Math.floorMod(roundRobin.getAndIncrement(), nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            SimulatedNode candidate = nodes.get((first + i) % nodes.size());
+            if (candidate.getState() == NodeState.UP) {
+                queryPlan.add(candidate);
+            }
+        }
+        return queryPlan;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <RequestT extends Request, ResultT> ResultT execute(RequestT request, GenericType<ResultT> resultType) {
+        if ((Statement.ASYNC.equals(resultType) || PrepareRequest.ASYNC.equals(resultType)) && closeFuture.isDone()) {
+            return (ResultT) CompletableFutures.failedFuture(new IllegalStateException("Session is closed"));
+        }
+        if (Statement.ASYNC.equals(resultType)) {
+            return (ResultT) requestHandler.execute((Statement<?>) request);
+        } else if (Statement.SYNC.equals(resultType)) {
+            return (ResultT) ResultSets.newInstance(
+                    CompletableFutures.getUninterruptibly(executeAsync((Statement<?>) request)));
+        } else if (PrepareRequest.ASYNC.equals(resultType)) {
+            return (ResultT) requestHandler.prepare((PrepareRequest) request);
+        } else if (PrepareRequest.SYNC.equals(resultType)) {
+            return (ResultT) CompletableFutures.getUninterruptibly(
+                    execute((PrepareRequest) request, PrepareRequest.ASYNC));
+        }
+        throw new IllegalArgumentException("No processor for " + request.getClass().getSimpleName() + " returning " + resultType);
+    }
+
+    /**
+     * Execution profile of a request.
+     */
+    DriverExecutionProfile executionProfile(Request request) {
+        if (null != request.getExecutionProfile()) {
+            return request.getExecutionProfile();
+        }
+        return (null == request.getExecutionProfileName())
+                ? context.getConfig().getDefaultProfile()
+                : context.getConfig().getProfile(request.getExecutionProfileName());
+    }
+
+    /**
+     * Prepare a statement: variables and columns typed with the schema of the table.
+     */
+    PreparedStatement prepareNow(PrepareRequest request) {
+        String query = request.getQuery();
+        ParsedStatement parsed = parse(query);
+        List<ColumnDefinition> variables = new ArrayList<>();
+        List<Integer> partitionKeyIndices = new ArrayList<>();
+        ParsedStatement target = (parsed.kind == Kind.BATCH) ? parsed.batch.get(0) : parsed;
+        SimulatedTable table = isDataStatement(target) ? table(target, request.getKeyspace()) : null;
+        for (Variable variable : parsed.variables) {
+            if (null == variable.column) {
+                variables.add(new SimulatedColumn(table.getKeyspace(), table.getName(), variable.name, variable.type));
+            } else {
+                SimulatedTable variableTable = table(variable.statement, request.getKeyspace());
+                variables.add(new SimulatedColumn(variableTable.getKeyspace(), variableTable.getName(),
+                        variable.name, variableTable.type(variable.column)));
+            }
+        }
+        if (null != table && parsed.kind != Kind.BATCH) {
+            for (ColumnMetadata partitionKey : table.getMetadata().getPartitionKey()) {
+                for (int i = 0; i < parsed.variables.size(); i++) {
+                    if (partitionKey.getName().equals(parsed.variables.get(i).column)) {
+                        partitionKeyIndices.add(i);
+                        break;
+                    }
+                }
+            }
+            if (partitionKeyIndices.size() != table.getMetadata().getPartitionKey().size()) {
+                partitionKeyIndices.clear();
+            }
+        }
+        ColumnDefinitions resultDefinitions = (parsed.kind == Kind.SELECT && null != table)
+                ? DefaultColumnDefinitions.valueOf(selection(parsed, table))
+                : EmptyColumnDefinitions.INSTANCE;
+        return new DefaultPreparedStatement(
+                ByteBuffer.wrap(md5(query)),
+                query,
+                DefaultColumnDefinitions.valueOf(variables),
+                partitionKeyIndices,
+                null,
+                resultDefinitions,
+                request.getKeyspace(),
+                request.getCustomPayload(),
+                request.getExecutionProfileNameForBoundStatements(),
+                request.getExecutionProfileForBoundStatements(),
+                request.getRoutingKeyspaceForBoundStatements(),
+                request.getRoutingKeyForBoundStatements(),
+                request.getRoutingTokenForBoundStatements(),
+                request.getCustomPayloadForBoundStatements(),
+                request.areBoundStatementsIdempotent(),
+                request.getTimeoutForBoundStatements(),
+                request.getPagingStateForBoundStatements(),
+                request.getPageSizeForBoundStatements(),
+                request.getConsistencyLevelForBoundStatements(),
+                request.getSerialConsistencyLevelForBoundStatements(),
+                request.areBoundStatementsTracing(),
+                codecRegistry,
+                protocolVersion);
+    }
+
+    /**
+     * Whether a statement writes data, reads it, or none of them (DDL, system tables).
+     *
+     * @return
+     *      true for writes, false for reads, null for other statements
+     */
+    Boolean isWrite(Statement<?> statement) {
+        if (statement instanceof BatchStatement) {
+            return Boolean.TRUE;
+        }
+        ParsedStatement parsed;
+        try {
+            parsed = parse(statement);
+        } catch (RuntimeException e) {
+            // Invalid statement, rejected by its execution
+            return null;
+        }
+        switch (parsed.kind) {
+            case SELECT:
+                return isSystem(keyspace(parsed, statement.getKeyspace())) ? null : Boolean.FALSE;
+            case INSERT:
+            case UPDATE:
+            case DELETE:
+            case BATCH:
+                return Boolean.TRUE;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Execute a statement.
+     */
+    Response executeNow(Statement<?> statement) {
+        if (statement instanceof BatchStatement) {
+            BatchStatement batch = (BatchStatement) statement;
+            long timestamp = timestamp(statement);
+            for (BatchableStatement<?> child : batch) {
+                ParsedStatement parsed = parse(child);
+                List<ByteBuffer> values = values(parsed, child, batch.getKeyspace());
+                write(parsed, values, batch.getKeyspace(), timestamp);
+            }
+            return Response.empty();
+        }
+        ParsedStatement parsed = parse(statement);
+        List<ByteBuffer> values = values(parsed, statement, statement.getKeyspace());
+        switch (parsed.kind) {
+            case SELECT:
+                return select(statement, parsed, values);
+            case INSERT:
+            case UPDATE:
+            case DELETE:
+            case BATCH:
+                boolean applied = write(parsed, values, statement.getKeyspace(), timestamp(statement));
+                if (!parsed.isConditional()) {
+                    return Response.empty();
+                }
+                Queue<List<ByteBuffer>> rows = new ArrayDeque<>();
+                rows.add(List.of(TypeCodecs.BOOLEAN.encodePrimitive(applied, protocolVersion)));
+                return new Response(DefaultColumnDefinitions.valueOf(List.of(
+                        new SimulatedColumn(keyspace(parsed, statement.getKeyspace()), parsed.name, APPLIED, DataTypes.BOOLEAN))),
+                        rows, null);
+            default:
+                schema(parsed);
+                return Response.empty();
+        }
+    }
+
+    /**
+     * Result set of a response.
+     */
+    AsyncResultSet resultSet(Statement<?> statement, Response response, SimulatedExecutionInfo executionInfo) {
+        return new DefaultAsyncResultSet(response.definitions, executionInfo, response.rows, this, context);
+    }
+
+    /**
+     * Page of the rows of a SELECT. The paging state is the number of rows returned and the key of the last one.
+     */
+    private Response select(Statement<?> statement, ParsedStatement parsed, List<ByteBuffer> values) {
+        CqlIdentifier keyspaceName = keyspace(parsed, statement.getKeyspace());
+        if (isSystem(keyspaceName) && !tables.getOrDefault(keyspaceName, Map.of()).containsKey(parsed.name)) {
+            List<ColumnDefinition> columns = new ArrayList<>();
+            if (null != parsed.selectors) {
+                parsed.selectors.forEach(c -> columns.add(new SimulatedColumn(keyspaceName, parsed.name, c, DataTypes.BLOB)));
+            }
+            return new Response(DefaultColumnDefinitions.valueOf(columns), new ArrayDeque<>(), null);
+        }
+        SimulatedTable table = table(parsed, statement.getKeyspace());
+        List<ByteBuffer> restrictions = new ArrayList<>();
+        for (Relation relation : parsed.where) {
+            DataType type = relation.isToken() ? DataTypes.BIGINT : table.type(relation.column);
+            restrictions.add(value(relation.term, type, values, true));
+        }
+        SimulatedTable.Selection selection = table.selection(parsed.where, restrictions);
+        int limit = (null == parsed.limit) ? Integer.MAX_VALUE
+                : TypeCodecs.INT.decodePrimitive(value(parsed.limit, DataTypes.INT, values, true), protocolVersion);
+        if (parsed.count) {
+            long count = table.select(selection, null, limit).size();
+            Queue<List<ByteBuffer>> rows = new ArrayDeque<>();
+            rows.add(List.of(TypeCodecs.BIGINT.encodePrimitive(count, protocolVersion)));
+            return new Response(DefaultColumnDefinitions.valueOf(List.of(
+                    new SimulatedColumn(table.getKeyspace(), table.getName(), COUNT, DataTypes.BIGINT))), rows, null);
+        }
+        int returned = 0;
+        SimulatedTable.RowKey after = null;
+        ByteBuffer pagingState = statement.getPagingState();
+        if (null != pagingState) {
+            ByteBuffer state = pagingState.duplicate();
+            returned = state.getInt();
+            after    = table.decode(state.slice());
+        }
+        int pageSize = (statement.getPageSize() > 0) ? statement.getPageSize()
+                : executionProfile(statement).getInt(DefaultDriverOption.REQUEST_PAGE_SIZE);
+        int max = Math.min(pageSize, limit - returned);
+        List<Map.Entry<SimulatedTable.RowKey, ByteBuffer[]>> page = table.select(selection, after, max + 1);
+        ByteBuffer nextPagingState = null;
+        if (page.size() > max) {
+            page = page.subList(0, max);
+            ByteBuffer key = table.encode(page.get(max - 1).getKey());
+            nextPagingState = ByteBuffer.allocate(4 + key.remaining()).putInt(returned + max).put(key).flip();
+        }
+        List<ColumnDefinition> columns = selection(parsed, table);
+        int[] indices = new int[columns.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = table.index(columns.get(i).getName());
+        }
+        Queue<List<ByteBuffer>> rows = new ArrayDeque<>(page.size());
+        for (Map.Entry<SimulatedTable.RowKey, ByteBuffer[]> row : page) {
+            ByteBuffer[] selected = new ByteBuffer[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                selected[i] = row.getValue()[indices[i]];
+            }
+            rows.add(Arrays.asList(selected));
+        }
+        return new Response(DefaultColumnDefinitions.valueOf(columns), rows, nextPagingState);
+    }
+
+    /**
+     * Columns of the result of a SELECT.
+     */
+    private List<ColumnDefinition> selection(ParsedStatement parsed, SimulatedTable table) {
+        if (parsed.count) {
+            return List.of(new SimulatedColumn(table.getKeyspace(), table.getName(), COUNT, DataTypes.BIGINT));
+        }
+        List<ColumnDefinition> columns = new ArrayList<>();
+        for (CqlIdentifier column : (null == parsed.selectors) ? table.getColumns() : parsed.selectors) {
+            columns.add(new SimulatedColumn(table.getKeyspace(), table.getName(), column, table.type(column)));
+        }
+        return columns;
+    }
+
+    /**
+     * Apply an INSERT, UPDATE, DELETE or the statements of a batch.
+     *
+     * @return
+     *      whether the write was applied (conditional statements)
+     */
+    private boolean write(ParsedStatement parsed, List<ByteBuffer> values, CqlIdentifier requestKeyspace, long timestamp) {
+        if (parsed.kind == Kind.BATCH) {
+            long batchTimestamp = timestamp(parsed, values, timestamp);
+            for (ParsedStatement statement : parsed.batch) {
+                write(statement, values, requestKeyspace, batchTimestamp);
+            }
+            return true;
+        }
+        SimulatedTable table = table(parsed, requestKeyspace);
+        long writeTimestamp = timestamp(parsed, values, timestamp);
+        Map<CqlIdentifier, ByteBuffer> key = new HashMap<>();
+        Map<CqlIdentifier, ByteBuffer> cells = new LinkedHashMap<>();
+        for (Relation relation : parsed.where) {
+            if (relation.isToken() || !"=".equals(relation.operator)) {
+                throw new InvalidQueryException(node, "Only EQ relations are supported on the primary key of "
+                        + parsed.kind + " statements");
+            }
+            key.put(relation.column, value(relation.term, table.type(relation.column), values, true));
+        }
+        for (Map.Entry<CqlIdentifier, Term> assignment : parsed.assignments.entrySet()) {
+            CqlIdentifier column = assignment.getKey();
+            if (parsed.kind == Kind.DELETE) {
+                cells.put(column, null);
+                continue;
+            }
+            boolean inPrimaryKey = table.index(column) < primaryKeySize(table);
+            ByteBuffer value = value(assignment.getValue(), table.type(column), values, inPrimaryKey);
+            if (ProtocolConstants.UNSET_VALUE.equals(value)) {
+                continue;
+            }
+            if (inPrimaryKey) {
+                key.put(column, value);
+            } else {
+                cells.put(column, value);
+            }
+        }
+        switch (parsed.kind) {
+            case INSERT:
+                return table.write(key, cells, writeTimestamp, true, parsed.ifNotExists ? Boolean.TRUE : null);
+            case UPDATE:
+                return table.write(key, cells, writeTimestamp, false, parsed.ifExists ? Boolean.FALSE : null);
+            default:
+                Map<CqlIdentifier, ByteBuffer> conditions = new LinkedHashMap<>();
+                parsed.conditions.forEach((column, term) ->
+                    conditions.put(column, value(term, table.type(column), values, false)));
+                return table.delete(key, cells.keySet(), writeTimestamp, parsed.ifExists, conditions);
+        }
+    }
+
+    private static int primaryKeySize(SimulatedTable table) {
+        return table.getMetadata().getPrimaryKey().size();
+    }
+
+    /**
+     * Timestamp of 'USING TIMESTAMP', the one of the statement otherwise.
+     */
+    private long timestamp(ParsedStatement parsed, List<ByteBuffer> values, long timestamp) {
+        return (null == parsed.timestamp) ? timestamp
+                : TypeCodecs.BIGINT.decodePrimitive(value(parsed.timestamp, DataTypes.BIGINT, values, true), protocolVersion);
+    }
+
+    /**
+     * Timestamp of the statement, generated by the driver if not set (client side timestamps).
+     */
+    private long timestamp(Statement<?> statement) {
+        long timestamp = statement.getQueryTimestamp();
+        return (timestamp != Long.MIN_VALUE) ? timestamp : context.getTimestampGenerator().next();
+    }
+
+    /**
+     * Value of a term: bound value of a marker, literal parsed with the codec of the type.
+     */
+    private ByteBuffer value(Term term, DataType type, List<ByteBuffer> values, boolean required) {
+        if (term.isMarker()) {
+            ByteBuffer value = values.get(term.marker);
+            if (required && (null == value || ProtocolConstants.UNSET_VALUE.equals(value))) {
+                throw new InvalidQueryException(node, "Invalid " + ((null == value) ? "null" : "unset")
+                        + " value for bind marker " + term.marker);
+            }
+            return value;
+        }
+        if ("null".equals(term.literal)) {
+            if (required) {
+                throw new InvalidQueryException(node, "Invalid null value in: " + term.literal);
+            }
+            return null;
+        }
+        TypeCodec<Object> codec = codecRegistry.codecFor(type);
+        return codec.encode(codec.parse(term.literal), protocolVersion);
+    }
+
+    /**
+     * Serialized values of the bind markers of a statement.
+     */
+    private List<ByteBuffer> values(ParsedStatement parsed, Statement<?> statement, CqlIdentifier requestKeyspace) {
+        List<Variable> variables = parsed.variables;
+        if (statement instanceof BoundStatement) {
+            return ((BoundStatement) statement).getValues();
+        }
+        if (!(statement instanceof SimpleStatement)) {
+            throw new IllegalArgumentException("Unsupported statement " + statement.getClass().getName());
+        }
+        SimpleStatement simple = (SimpleStatement) statement;
+        List<ByteBuffer> values = new ArrayList<>(variables.size());
+        if (!simple.getNamedValues().isEmpty()) {
+            for (Variable variable : variables) {
+                if (!simple.getNamedValues().containsKey(variable.name)) {
+                    throw new InvalidQueryException(node, "No value for bind marker " + variable.name.asCql(true));
+                }
+                values.add(encode(simple.getNamedValues().get(variable.name), variable, requestKeyspace));
+            }
+        } else {
+            List<Object> positional = simple.getPositionalValues();
+            if (positional.size() != variables.size()) {
+                throw new InvalidQueryException(node, "Invalid amount of bind variables: expected "
+                        + variables.size() + ", got " + positional.size());
+            }
+            for (int i = 0; i < positional.size(); i++) {
+                values.add(encode(positional.get(i), variables.get(i), requestKeyspace));
+            }
+        }
+        return values;
+    }
+
+    private ByteBuffer encode(Object value, Variable variable, CqlIdentifier requestKeyspace) {
+        if (null == value) {
+            return null;
+        }
+        DataType type = (null == variable.column) ? variable.type
+                : table(variable.statement, requestKeyspace).type(variable.column);
+        return codecRegistry.codecFor(type, value).encode(value, protocolVersion);
+    }
+
+    /**
+     * Apply a DDL statement.
+     */
+    private void schema(ParsedStatement parsed) {
+        synchronized (schemaLock) {
+            SimulatedMetadata previous = metadata;
+            switch (parsed.kind) {
+                case CREATE_KEYSPACE:
+                    if (tables.containsKey(parsed.name)) {
+                        if (!parsed.ifNotExists) {
+                            throw new AlreadyExistsException(node, parsed.name.asInternal(), "");
+                        }
+                        return;
+                    }
+                    tables.put(parsed.name, new ConcurrentHashMap<>());
+                    types.put(parsed.name, new ConcurrentHashMap<>());
+                    break;
+                case CREATE_TYPE:
+                    createType(parsed);
+                    break;
+                case CREATE_TABLE:
+                    createTable(parsed);
+                    break;
+                case DROP_KEYSPACE:
+                    if (null == tables.remove(parsed.name) && !parsed.ifExists) {
+                        throw new InvalidQueryException(node, "Cannot drop non existing keyspace '" + parsed.name.asInternal() + "'.");
+                    }
+                    types.remove(parsed.name);
+                    break;
+                case DROP_TABLE:
+                    Map<CqlIdentifier, SimulatedTable> keyspaceTables = tables.get(keyspace(parsed, null));
+                    if ((null == keyspaceTables || null == keyspaceTables.remove(parsed.name)) && !parsed.ifExists) {
+                        throw new InvalidQueryException(node, "Table '" + parsed.name.asInternal() + "' doesn't exist");
+                    }
+                    break;
+                case TRUNCATE:
+                    table(parsed, null).truncate();
+                    return;
+                default:
+                    return;
+            }
+            schemaChanged();
+            notifySchemaChange(parsed, previous);
+        }
+    }
+
+    /**
+     * Tables created or dropped and keyspaces dropped, as the driver notifies them when its schema
+     * metadata is refreshed.
+     */
+    private void notifySchemaChange(ParsedStatement parsed, SimulatedMetadata previous) {
+        SchemaChangeListener listener = context.getSchemaChangeListener();
+        switch (parsed.kind) {
+            case CREATE_TABLE:
+                CqlIdentifier keyspaceName = keyspace(parsed, null);
+                if (!table(previous, keyspaceName, parsed.name).isPresent()) {
+                    table(metadata, keyspaceName, parsed.name).ifPresent(listener::onTableCreated);
+                }
+                break;
+            case DROP_TABLE:
+                table(previous, keyspace(parsed, null), parsed.name).ifPresent(listener::onTableDropped);
+                break;
+            case DROP_KEYSPACE:
+                previous.getKeyspace(parsed.name).ifPresent(listener::onKeyspaceDropped);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Optional<TableMetadata> table(Metadata snapshot, CqlIdentifier keyspaceName, CqlIdentifier table) {
+        return snapshot.getKeyspace(keyspaceName).flatMap(keyspaceMetadata -> keyspaceMetadata.getTable(table));
+    }
+
+    private void createType(ParsedStatement parsed) {
+        CqlIdentifier keyspaceName = keyspace(parsed, null);
+        Map<CqlIdentifier, UserDefinedType> keyspaceTypes = keyspaceTypes(keyspaceName);
+        if (keyspaceTypes.containsKey(parsed.name)) {
+            if (!parsed.ifNotExists) {
+                throw new AlreadyExistsException(node, keyspaceName.asInternal(), parsed.name.asInternal());
+            }
+            return;
+        }
+        UserDefinedTypeBuilder builder = new UserDefinedTypeBuilder(keyspaceName, parsed.name);
+        parsed.columns.forEach((field, type) -> builder.withField(field, parseType(keyspaceName, type)));
+        UserDefinedType type = builder.build();
+        type.attach(context);
+        keyspaceTypes.put(parsed.name, type);
+    }
+
+    private void createTable(ParsedStatement parsed) {
+        CqlIdentifier keyspaceName = keyspace(parsed, null);
+        Map<CqlIdentifier, SimulatedTable> keyspaceTables = tables.get(keyspaceName);
+        keyspaceTypes(keyspaceName);
+        if (keyspaceTables.containsKey(parsed.name)) {
+            if (!parsed.ifNotExists) {
+                throw new AlreadyExistsException(node, keyspaceName.asInternal(), parsed.name.asInternal());
+            }
+            return;
+        }
+        Map<CqlIdentifier, DataType> columns = new LinkedHashMap<>();
+        parsed.columns.forEach((column, type) -> columns.put(column, parseType(keyspaceName, type)));
+        keyspaceTables.put(parsed.name, new SimulatedTable(keyspaceName, parsed.name, columns,
+                parsed.partitionKey, parsed.clusteringColumns, parsed.descending, codecRegistry, protocolVersion));
+    }
+
+    private DataType parseType(CqlIdentifier keyspaceName, String type) {
+        return new DataTypeCqlNameParser().parse(keyspaceName, type, types.get(keyspaceName), context);
+    }
+
+    private Map<CqlIdentifier, UserDefinedType> keyspaceTypes(CqlIdentifier keyspaceName) {
+        Map<CqlIdentifier, UserDefinedType> keyspaceTypes = types.get(keyspaceName);
+        if (null == keyspaceTypes) {
+            throw new InvalidQueryException(node, "Keyspace " + keyspaceName.asInternal() + " doesn't exist");
+        }
+        return keyspaceTypes;
+    }
+
+    /**
+     * New snapshot of the metadata and new schema version.
+     */
+    private void schemaChanged() {
+        Map<CqlIdentifier, KeyspaceMetadata> keyspaces = new HashMap<>();
+        tables.forEach((name, keyspaceTables) -> {
+            Map<CqlIdentifier, TableMetadata> tablesMetadata = new HashMap<>();
+            keyspaceTables.forEach((table, simulated) -> tablesMetadata.put(table, simulated.getMetadata()));
+            keyspaces.put(name, new DefaultKeyspaceMetadata(name, true, false,
+                    Map.of("class", "org.apache.cassandra.locator.SimpleStrategy", "replication_factor", "1"),
+                    Map.copyOf(types.get(name)), tablesMetadata, Map.of(), Map.of(), Map.of()));
+        });
+        Map<UUID, Node> clusterNodes = new HashMap<>();
+        nodes.forEach(clusterNode -> clusterNodes.put(clusterNode.getHostId(), clusterNode));
+        metadata = new SimulatedMetadata(clusterNodes, keyspaces);
+        UUID schemaVersion = UUID.randomUUID();
+        nodes.forEach(clusterNode -> clusterNode.schemaChanged(schemaVersion));
+        if (tables.get(SYSTEM).containsKey(CqlIdentifier.fromInternal("peers"))) {
+            describeCluster(schemaVersion);
+        }
+        if (tables.getOrDefault(SYSTEM_SCHEMA, Map.of()).containsKey(SYSTEM_SCHEMA_TABLES)) {
+            describeTables();
+        }
+    }
+
+    /**
+     * Rows of 'system_schema.tables', of the tables created and dropped since the previous change.
+     */
+    private void describeTables() {
+        Set<List<CqlIdentifier>> existing = new HashSet<>();
+        tables.forEach((keyspaceName, keyspaceTables) ->
+            keyspaceTables.keySet().forEach(table -> existing.add(List.of(keyspaceName, table))));
+        for (List<CqlIdentifier> table : existing) {
+            if (describedTables.add(table)) {
+                executeNow(SimpleStatement.newInstance(
+                        "INSERT INTO system_schema.tables (keyspace_name, table_name) VALUES (?, ?)",
+                        table.get(0).asInternal(), table.get(1).asInternal()));
+            }
+        }
+        for (Iterator<List<CqlIdentifier>> dropped = describedTables.iterator(); dropped.hasNext();) {
+            List<CqlIdentifier> table = dropped.next();
+            if (!existing.contains(table)) {
+                dropped.remove();
+                executeNow(SimpleStatement.newInstance(
+                        "DELETE FROM system_schema.tables WHERE keyspace_name = ? AND table_name = ?",
+                        table.get(0).asInternal(), table.get(1).asInternal()));
+            }
+        }
+    }
+
+    /**
+     * Rows of 'system.local' (first node) and 'system.peers' (other nodes).
+     */
+    private void describeCluster(UUID schemaVersion) {
+        InetAddress local = node.getBroadcastAddress().get().getAddress();
+        executeNow(SimpleStatement.newInstance("INSERT INTO system.local (key, broadcast_address, cluster_name, "
+                + "data_center, host_id, listen_address, partitioner, rack, release_version, rpc_address, schema_version) "
+                + "VALUES ('local', ?, 'Simulated Cluster', ?, ?, ?, 'org.apache.cassandra.dht.Murmur3Partitioner', ?, ?, ?, ?)",
+                local, node.getDatacenter(), node.getHostId(), local, node.getRack(),
+                node.getCassandraVersion().toString(), local, schemaVersion));
+        for (SimulatedNode peer : nodes.subList(1, nodes.size())) {
+            InetAddress address = peer.getBroadcastAddress().get().getAddress();
+            executeNow(SimpleStatement.newInstance("INSERT INTO system.peers (peer, data_center, host_id, preferred_ip, "
+                    + "rack, release_version, rpc_address, schema_version) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    address, peer.getDatacenter(), peer.getHostId(), address, peer.getRack(),
+                    peer.getCassandraVersion().toString(), address, schemaVersion));
+        }
+    }
+
+    private ParsedStatement parse(Statement<?> statement) {
+        if (statement instanceof BoundStatement) {
+            return parse(((BoundStatement) statement).getPreparedStatement().getQuery());
+        } else if (statement instanceof SimpleStatement) {
+            return parse(((SimpleStatement) statement).getQuery());
+        }
+        throw new IllegalArgumentException("Unsupported statement " + statement.getClass().getName());
+    }
+
+    private ParsedStatement parse(String query) {
+        ParsedStatement parsed = statements.get(query);
+        if (null == parsed) {
+            parsed = CqlParser.parse(query);
+            statements.putIfAbsent(query, parsed);
+        }
+        return parsed;
+    }
+
+    private static boolean isDataStatement(ParsedStatement parsed) {
+        return parsed.kind == Kind.SELECT || parsed.kind == Kind.INSERT
+            || parsed.kind == Kind.UPDATE || parsed.kind == Kind.DELETE;
+    }
+
+    private static boolean isSystem(CqlIdentifier keyspaceName) {
+        return keyspaceName.asInternal().startsWith("system");
+    }
+
+    /**
+     * Keyspace of a statement: the one of the table, of the request, or of the session.
+     */
+    private CqlIdentifier keyspace(ParsedStatement parsed, CqlIdentifier requestKeyspace) {
+        if (null != parsed.keyspace) {
+            return parsed.keyspace;
+        }
+        return (null != requestKeyspace) ? requestKeyspace : keyspace;
+    }
+
+    /**
+     * Table of a statement.
+     *
+     * @throws InvalidQueryException
+     *      when the keyspace or the table does not exist
+     */
+    private SimulatedTable table(ParsedStatement parsed, CqlIdentifier requestKeyspace) {
+        CqlIdentifier keyspaceName = keyspace(parsed, requestKeyspace);
+        Map<CqlIdentifier, SimulatedTable> keyspaceTables = tables.get(keyspaceName);
+        if (null == keyspaceTables) {
+            throw new InvalidQueryException(node, "Keyspace " + keyspaceName.asInternal() + " does not exist");
+        }
+        SimulatedTable table = keyspaceTables.get(parsed.name);
+        if (null == table) {
+            throw new InvalidQueryException(node, "unconfigured table " + parsed.name.asInternal());
+        }
+        return table;
+    }
+
+    private static byte[] md5(String query) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(query.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Response of a node: page of rows, before it is wrapped in a result set with its execution info.
+     */
+    static final class Response {
+
+        final ColumnDefinitions definitions;
+
+        final Queue<List<ByteBuffer>> rows;
+
+        final ByteBuffer pagingState;
+
+        Response(ColumnDefinitions definitions, Queue<List<ByteBuffer>> rows, ByteBuffer pagingState) {
+            this.definitions = definitions;
+            this.rows        = rows;
+            this.pagingState = pagingState;
+        }
+
+        /**
+         * Response without rows (writes, DDL, ignored errors).
+         */
+        static Response empty() {
+            return new Response(EmptyColumnDefinitions.INSTANCE, new ArrayDeque<>(), null);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return context.getSessionName();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Metadata getMetadata() {
+        return metadata;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isSchemaMetadataEnabled() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Metadata> setSchemaMetadataEnabled(Boolean newValue) {
+        return CompletableFuture.completedFuture(metadata);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Metadata> refreshSchemaAsync() {
+        return CompletableFuture.completedFuture(metadata);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Boolean> checkSchemaAgreementAsync() {
+        return CompletableFuture.completedFuture(true);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DriverContext getContext() {
+        return context;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<CqlIdentifier> getKeyspace() {
+        return Optional.of(keyspace);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<Metrics> getMetrics() {
+        return Optional.empty();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Void> closeFuture() {
+        return closeFuture;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Void> closeAsync() {
+        scheduler.shutdown();
+        context.getConfigLoader().close();
+        closeFuture.complete(null);
+        return closeFuture;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<Void> forceCloseAsync() {
+        scheduler.shutdownNow();
+        context.getConfigLoader().close();
+        closeFuture.complete(null);
+        return closeFuture;
+    }
+
+}
@@ -0,0 +1,324 @@
+package com.cassandraguide.simulation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.cassandraguide.model.Reservation;
+import com.cassandraguide.model.ReservationPage;
+import com.cassandraguide.repository.ReservationRepository;
+import com.cassandraguide.repository.ReservationRepositorySimpleStatement;
+import com.cassandraguide.repository.ReservationRepositoryWithMapper;
+import com.cassandraguide.repository.ReservationRepositoryWithQueryBuilder;
+import com.cassandraguide.repository.SchemaMigrator;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.NoNodeAvailableException;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.data.UdtValue;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.servererrors.UnavailableException;
+import com.datastax.oss.driver.api.core.servererrors.WriteTimeoutException;
+import com.datastax.oss.driver.api.core.type.UserDefinedType;
+
+public class SimulatedCqlSessionUnitTest {
+
+    private static final CqlIdentifier KEYSPACE = CqlIdentifier.fromCql("reservation");
+
+    private static final String INSERT = "INSERT INTO reservations_by_confirmation "
+            + "(confirmation_number, hotel_id, start_date, end_date, room_number, guest_id) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT = "SELECT * FROM reservations_by_confirmation WHERE confirmation_number = ?";
+
+    private SimulatedCqlSession session;
+
+    @AfterEach
+    public void close() {
+        if (null != session) {
+            session.close();
+        }
+    }
+
+    /**
+     * Session with the tables of the application, created by the migrations.
+     */
+    private SimulatedCqlSession session(int nodeCount) {
+        session = new SimulatedCqlSession(KEYSPACE, nodeCount, SimulatedLatency.none(), null);
+        new SchemaMigrator(session, KEYSPACE).migrate();
+        return session;
+    }
+
+    private static Reservation reservation(String hotelId, LocalDate startDate) {
+        Reservation reservation = new Reservation();
+        reservation.setHotelId(hotelId);
+        reservation.setStartDate(startDate);
+        reservation.setEndDate(startDate.plusDays(2));
+        reservation.setRoomNumber((short) 42);
+        reservation.setGuestId(UUID.randomUUID());
+        return reservation;
+    }
+
+    private void insert(String confirmationNumber) {
+        session.execute(SimpleStatement.newInstance(INSERT, confirmationNumber, "NY123",
+                LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 3), (short) 42, UUID.randomUUID()));
+    }
+
+    private List<Node> nodes() {
+        return session.getMetadata().getNodes().values().stream()
+                .sorted((n1, n2) -> n1.getEndPoint().toString().compareTo(n2.getEndPoint().toString()))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("Each repository creates, finds and deletes reservations")
+    public void repositories_should_run_against_session() {
+        session(1);
+        List<ReservationRepository> repositories = List.of(
+                new ReservationRepositorySimpleStatement(session, KEYSPACE),
+                new ReservationRepositoryWithQueryBuilder(session, KEYSPACE),
+                new ReservationRepositoryWithMapper(session, KEYSPACE));
+        LocalDate startDate = LocalDate.of(2020, 6, 1);
+        for (ReservationRepository repository : repositories) {
+            Reservation reservation = reservation("NY" + repositories.indexOf(repository), startDate);
+            String confirmationNumber = repository.create(reservation);
+            assertThat(repository.exists(confirmationNumber)).isTrue();
+            assertThat(repository.findByConfirmationNumber(confirmationNumber).get().getHotelId())
+                    .isEqualTo(reservation.getHotelId());
+            assertThat(repository.findByHotelAndDate(reservation.getHotelId(), startDate)).hasSize(1);
+            assertThat(repository.findAll()).extracting(Reservation::getConfirmationNumber).contains(confirmationNumber);
+            List<String> scanned = new ArrayList<>();
+            repository.scanAll(r -> scanned.add(r.getConfirmationNumber()));
+            assertThat(scanned).contains(confirmationNumber);
+            assertThat(repository.delete(confirmationNumber)).isPresent();
+            assertThat(repository.exists(confirmationNumber)).isFalse();
+            assertThat(repository.findByHotelAndDate(reservation.getHotelId(), startDate)).isEmpty();
+        }
+    }
+
+    @Test
+    @DisplayName("Pages end with a null paging state")
+    public void findAll_should_page_reservations() {
+        ReservationRepository repository = new ReservationRepositoryWithMapper(session(1), KEYSPACE);
+        for (int i = 0; i < 25; i++) {
+            repository.create(reservation("NY" + i, LocalDate.of(2020, 6, 1)));
+        }
+        List<Reservation> reservations = new ArrayList<>();
+        String pagingState = null;
+        int pages = 0;
+        do {
+            ReservationPage page = repository.findAll(10, pagingState);
+            reservations.addAll(page.getReservations());
+            pagingState = page.getPagingState();
+            pages++;
+        } while (null != pagingState);
+        assertThat(pages).isEqualTo(3);
+        assertThat(reservations.stream().map(Reservation::getConfirmationNumber).distinct()).hasSize(25);
+    }
+
+    @Test
+    @DisplayName("Altered paging state is rejected as an invalid argument by all implementations")
+    public void findAll_should_reject_altered_paging_state() {
+        SimulatedCqlSession session = session(1);
+        ReservationRepository mapper = new ReservationRepositoryWithMapper(session, KEYSPACE);
+        for (int i = 0; i < 25; i++) {
+            mapper.create(reservation("NY" + i, LocalDate.of(2020, 6, 1)));
+        }
+        String cursor  = mapper.findAll(10, null).getPagingState();
+        String altered = cursor.substring(0, 2) + (cursor.charAt(2) == 'A' ? 'B' : 'A') + cursor.substring(3);
+
+        for (ReservationRepository repository : List.of(mapper,
+                new ReservationRepositoryWithQueryBuilder(session, KEYSPACE),
+                new ReservationRepositorySimpleStatement(session, KEYSPACE))) {
+            assertThat(repository.findAll(10, cursor).getReservations()).hasSize(10);
+            assertThatThrownBy(() -> repository.findAll(10, altered))
+                .isInstanceOf(IllegalArgumentException.class);
+            // Thrown by the call, or failing the future (mapper)
+            assertThatThrownBy(() -> repository.findAllAsync(10, altered).toCompletableFuture().join())
+                .satisfies(error -> assertThat(error instanceof CompletionException ? error.getCause() : error)
+                    .isInstanceOf(IllegalArgumentException.class));
+        }
+    }
+
+    @Test
+    @DisplayName("Collections and user defined types are stored and read back")
+    public void guests_should_store_collections_and_udt() {
+        session(1);
+        UserDefinedType addressType = session.getMetadata().getKeyspace(KEYSPACE).get()
+                .getUserDefinedType("address").get();
+        UdtValue address = addressType.newValue()
+                .setString("street", "1 Main Street").setString("city", "New York").setString("country", "USA");
+        UUID guestId = UUID.randomUUID();
+        session.execute(SimpleStatement.newInstance("INSERT INTO guests (guest_id, first_name, emails, phone_numbers, "
+                + "addresses) VALUES (?, ?, ?, ?, ?)", guestId, "Jane", Set.of("jane@example.com"),
+                List.of("555-0100", "555-0101"), Map.of("home", address)));
+
+        Row row = session.execute(SimpleStatement.newInstance("SELECT * FROM guests WHERE guest_id = ?", guestId)).one();
+        assertThat(row.getString("first_name")).isEqualTo("Jane");
+        assertThat(row.getSet("emails", String.class)).containsExactly("jane@example.com");
+        assertThat(row.getList("phone_numbers", String.class)).containsExactly("555-0100", "555-0101");
+        assertThat(row.getMap("addresses", String.class, UdtValue.class).get("home").getString("city"))
+                .isEqualTo("New York");
+        assertThat(row.isNull("title")).isTrue();
+    }
+
+    @Test
+    @DisplayName("System tables describe the nodes and their schema version")
+    public void system_tables_should_describe_cluster() {
+        session(3);
+        Row local = session.execute("SELECT schema_version, release_version FROM system.local WHERE key = 'local'").one();
+        List<Row> peers = session.execute("SELECT peer, schema_version FROM system.peers").all();
+        assertThat(local.getUuid("schema_version")).isEqualTo(nodes().get(0).getSchemaVersion());
+        assertThat(local.getString("release_version")).isEqualTo("3.11.4");
+        assertThat(peers).hasSize(2);
+        assertThat(peers).allMatch(peer -> peer.getUuid("schema_version").equals(local.getUuid("schema_version")));
+    }
+
+    @Test
+    @DisplayName("Responses are delivered after the latency")
+    public void executeAsync_should_complete_after_latency() throws Exception {
+        session(1).setLatency(SimulatedLatency.fixed(Duration.ofMillis(100)));
+        long start = System.nanoTime();
+        CompletionStage<AsyncResultSet> response = session.executeAsync(SimpleStatement.newInstance(SELECT, "none"));
+        assertThat(response.toCompletableFuture().isDone()).isFalse();
+        assertThat(response.toCompletableFuture().get().currentPage()).isEmpty();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(Duration.ofMillis(100).toNanos());
+    }
+
+    @Test
+    @DisplayName("Random latencies are reproducible and follow their percentiles")
+    public void logNormal_should_be_reproducible() {
+        SimulatedLatency latency = SimulatedLatency.logNormal(Duration.ofMillis(1), Duration.ofMillis(10), 42);
+        SimulatedLatency same    = SimulatedLatency.logNormal(Duration.ofMillis(1), Duration.ofMillis(10), 42);
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            Duration next = latency.next(null, null);
+            assertThat(same.next(null, null)).isEqualTo(next);
+            latencies.add(next.toNanos());
+        }
+        latencies.sort(Long::compare);
+        assertThat(latencies.get(5000)).isBetween(Duration.ofMillis(1).toNanos() * 9 / 10, Duration.ofMillis(1).toNanos() * 11 / 10);
+        assertThat(latencies.get(9900)).isBetween(Duration.ofMillis(8).toNanos(), Duration.ofMillis(12).toNanos());
+    }
+
+    @Test
+    @DisplayName("A response later than the timeout fails, the write is applied")
+    public void execute_should_time_out() {
+        session(1).setLatency(SimulatedLatency.fixed(Duration.ofSeconds(5)));
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> session.execute(SimpleStatement.newInstance(INSERT, "late", "NY123",
+                LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 3), (short) 42, UUID.randomUUID())
+                .setTimeout(Duration.ofMillis(100))))
+            .isInstanceOf(DriverTimeoutException.class);
+        assertThat(System.nanoTime() - start).isLessThan(Duration.ofSeconds(5).toNanos());
+
+        session.setLatency(SimulatedLatency.none());
+        assertThat(session.execute(SimpleStatement.newInstance(SELECT, "late")).one()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Requests go to the nodes up, and fail when all nodes are down")
+    public void execute_should_skip_nodes_down() {
+        session(3);
+        List<Node> nodes = nodes();
+        session.stopNode(nodes.get(0));
+        for (int i = 0; i < 6; i++) {
+            ResultSet rs = session.execute(SimpleStatement.newInstance(SELECT, "none"));
+            assertThat(rs.getExecutionInfo().getCoordinator()).isNotEqualTo(nodes.get(0));
+        }
+        assertThatThrownBy(() -> session.execute(SimpleStatement.newInstance(SELECT, "none").setNode(nodes.get(0))))
+            .isInstanceOf(NoNodeAvailableException.class);
+
+        session.stopNode(nodes.get(1));
+        session.stopNode(nodes.get(2));
+        assertThatThrownBy(() -> session.execute(SimpleStatement.newInstance(SELECT, "none")))
+            .isInstanceOf(NoNodeAvailableException.class);
+
+        session.startNode(nodes.get(2));
+        assertThat(session.execute(SimpleStatement.newInstance(SELECT, "none")).getExecutionInfo().getCoordinator())
+            .isEqualTo(nodes.get(2));
+    }
+
+    @Test
+    @DisplayName("Unavailable errors are retried on the next node by the retry policy")
+    public void execute_should_retry_unavailable_on_next_node() {
+        session(2);
+        Node failing = nodes().get(0);
+        insert("retried");
+        session.setFailure(SimulatedFailure.unavailable(1, 42).onlyOn(failing));
+        for (int i = 0; i < 4; i++) {
+            ResultSet rs = session.execute(SimpleStatement.newInstance(SELECT, "retried"));
+            assertThat(rs.one()).isNotNull();
+            assertThat(rs.getExecutionInfo().getCoordinator()).isNotEqualTo(failing);
+            rs.getExecutionInfo().getErrors().forEach(error -> {
+                assertThat(error.getKey()).isEqualTo(failing);
+                assertThat(error.getValue()).isInstanceOf(UnavailableException.class);
+            });
+        }
+        // Default retry policy: a single retry
+        session.setFailure(SimulatedFailure.unavailable(1, 42));
+        assertThatThrownBy(() -> session.execute(SimpleStatement.newInstance(SELECT, "retried")))
+            .isInstanceOf(UnavailableException.class);
+    }
+
+    @Test
+    @DisplayName("Write timeouts of statements not idempotent are not retried, the write is applied")
+    public void execute_should_not_retry_write_timeout_if_not_idempotent() {
+        session(2).setFailure(SimulatedFailure.timeout(1, 42));
+        assertThatThrownBy(this::insertTimedOut).isInstanceOf(WriteTimeoutException.class);
+
+        session.setFailure(SimulatedFailure.none());
+        ResultSet rs = session.execute(SimpleStatement.newInstance(SELECT, "timed-out"));
+        assertThat(rs.one()).isNotNull();
+    }
+
+    private void insertTimedOut() {
+        session.execute(SimpleStatement.newInstance(INSERT, "timed-out", "NY123",
+                LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 3), (short) 42, UUID.randomUUID())
+                .setIdempotent(false));
+    }
+
+    @Test
+    @DisplayName("Idempotent reads on a slow node are answered by a speculative execution")
+    public void execute_should_hedge_reads_on_slow_node() throws InterruptedException, ExecutionException {
+        session(2);
+        insert("hedged");
+        Node slow = nodes().get(0);
+        session.setLatency(SimulatedLatency.fixed(Duration.ofMillis(1)).onNode(slow, SimulatedLatency.fixed(Duration.ofSeconds(1))));
+        int hedged = 0;
+        // Round robin: one of the reads starts on the slow node
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            AsyncResultSet rs = session.executeAsync(SimpleStatement.newInstance(SELECT, "hedged")
+                    .setExecutionProfileName(ReservationRepository.PROFILE_READ)
+                    .setIdempotent(true)).toCompletableFuture().get();
+            // Speculative execution after the delay of the profile (50 ms), long before the slow response
+            assertThat(System.nanoTime() - start).isLessThan(Duration.ofMillis(500).toNanos());
+            assertThat(rs.one()).isNotNull();
+            assertThat(rs.getExecutionInfo().getCoordinator()).isNotEqualTo(slow);
+            if (rs.getExecutionInfo().getSpeculativeExecutionCount() > 0) {
+                assertThat(rs.getExecutionInfo().getSuccessfulExecutionIndex()).isEqualTo(1);
+                hedged++;
+            }
+        }
+        assertThat(hedged).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.cassandraguide.simulation;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+
+import com.datastax.oss.driver.api.core.cql.ExecutionInfo;
+import com.datastax.oss.driver.api.core.cql.QueryTrace;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.internal.core.util.concurrent.CompletableFutures;
+
+/**
+ * Execution of a statement by {@link SimulatedCqlSession}: coordinator of the response, errors of the
+ * executions which failed before it (retries), speculative executions. No warnings, no tracing.
+ */
+final class SimulatedExecutionInfo implements ExecutionInfo {
+
+    private final Statement<?> statement;
+
+    private final Node coordinator;
+
+    private final ByteBuffer pagingState;
+
+    private final int speculativeExecutionCount;
+
+    private final int successfulExecutionIndex;
+
+    private final List<Map.Entry<Node, Throwable>> errors;
+
+    SimulatedExecutionInfo(Statement<?> statement, Node coordinator, ByteBuffer pagingState,
+            int speculativeExecutionCount, int successfulExecutionIndex, List<Map.Entry<Node, Throwable>> errors) {
+        this.statement                 = statement;
+        this.coordinator               = coordinator;
+        this.pagingState               = pagingState;
+        this.speculativeExecutionCount = speculativeExecutionCount;
+        this.successfulExecutionIndex  = successfulExecutionIndex;
+        this.errors                    = List.copyOf(errors);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Statement<?> getStatement() {
+        return statement;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Node getCoordinator() {
+        return coordinator;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSpeculativeExecutionCount() {
+        return speculativeExecutionCount;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSuccessfulExecutionIndex() {
+        return successfulExecutionIndex;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Map.Entry<Node, Throwable>> getErrors() {
+        return errors;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public ByteBuffer getPagingState() {
+        return (null == pagingState) ? null : pagingState.duplicate();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<String> getWarnings() {
+        return List.of();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, ByteBuffer> getIncomingPayload() {
+        return Map.of();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isSchemaInAgreement() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public UUID getTracingId() {
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletionStage<QueryTrace> getQueryTraceAsync() {
+        return CompletableFutures.failedFuture(new IllegalStateException("Tracing was disabled for this request"));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getResponseSizeInBytes() {
+        return -1;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getCompressedResponseSizeInBytes() {
+        return -1;
+    }
+
+}
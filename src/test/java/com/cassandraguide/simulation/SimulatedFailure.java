@@ -0,0 +1,152 @@
+package com.cassandraguide.simulation;
+
+import java.util.Random;
+
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.DefaultBatchType;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.servererrors.CoordinatorException;
+import com.datastax.oss.driver.api.core.servererrors.DefaultWriteType;
+import com.datastax.oss.driver.api.core.servererrors.OverloadedException;
+import com.datastax.oss.driver.api.core.servererrors.ReadTimeoutException;
+import com.datastax.oss.driver.api.core.servererrors.UnavailableException;
+import com.datastax.oss.driver.api.core.servererrors.WriteTimeoutException;
+import com.datastax.oss.driver.api.core.servererrors.WriteType;
+
+/**
+ * Errors returned by the nodes of {@link SimulatedCqlSession} for the reads and writes of data (not for
+ * DDL statements nor queries on system tables). Invoked concurrently, once per execution, before the statement
+ * is applied: the statement is not applied when the error is returned, except for a write timeout (the
+ * coordinator got the write, the replicas did not acknowledge it in time).
+ *
+ * The errors are handled as the driver does: the retry policy of the execution profile decides whether the
+ * execution is retried, on the same node or on the next one.
+ */
+@FunctionalInterface
+public interface SimulatedFailure {
+
+    /**
+     * Error of an execution.
+     *
+     * @param statement
+     *      statement executed
+     * @param coordinator
+     *      node executing the statement
+     * @param consistencyLevel
+     *      consistency level of the statement
+     * @param write
+     *      whether the statement is a write (INSERT, UPDATE, DELETE or batch), a read otherwise
+     * @return
+     *      error returned by the coordinator, null if the execution succeeds
+     */
+    CoordinatorException next(Statement<?> statement, Node coordinator, ConsistencyLevel consistencyLevel, boolean write);
+
+    /**
+     * No error.
+     *
+     * @return
+     *      failure
+     */
+    static SimulatedFailure none() {
+        return (statement, coordinator, consistencyLevel, write) -> null;
+    }
+
+    /**
+     * Not enough replicas alive for the consistency level.
+     *
+     * @param probability
+     *      probability of an error for each execution, between 0 and 1
+     * @param seed
+     *      seed of the random generator
+     * @return
+     *      failure
+     */
+    static SimulatedFailure unavailable(double probability, long seed) {
+        return random(probability, seed, (statement, coordinator, consistencyLevel, write) ->
+            new UnavailableException(coordinator, consistencyLevel, 2, 1));
+    }
+
+    /**
+     * Replicas did not answer in time: {@link ReadTimeoutException} for reads, {@link WriteTimeoutException}
+     * for writes.
+     *
+     * @param probability
+     *      probability of an error for each execution, between 0 and 1
+     * @param seed
+     *      seed of the random generator
+     * @return
+     *      failure
+     */
+    static SimulatedFailure timeout(double probability, long seed) {
+        return random(probability, seed, (statement, coordinator, consistencyLevel, write) -> {
+            if (!write) {
+                return new ReadTimeoutException(coordinator, consistencyLevel, 1, 2, false);
+            }
+            WriteType writeType = DefaultWriteType.SIMPLE;
+            if (statement instanceof BatchStatement) {
+                writeType = (((BatchStatement) statement).getBatchType() == DefaultBatchType.LOGGED)
+                        ? DefaultWriteType.BATCH : DefaultWriteType.UNLOGGED_BATCH;
+            }
+            return new WriteTimeoutException(coordinator, consistencyLevel, 1, 2, writeType);
+        });
+    }
+
+    /**
+     * Coordinator too busy to handle the request.
+     *
+     * @param probability
+     *      probability of an error for each execution, between 0 and 1
+     * @param seed
+     *      seed of the random generator
+     * @return
+     *      failure
+     */
+    static SimulatedFailure overloaded(double probability, long seed) {
+        return random(probability, seed, (statement, coordinator, consistencyLevel, write) ->
+            new OverloadedException(coordinator));
+    }
+
+    private static SimulatedFailure random(double probability, long seed, SimulatedFailure failure) {
+        Assert.isTrue(probability >= 0 && probability <= 1, "Probability should be between 0 and 1");
+        Random random = new Random(seed);
+        return (statement, coordinator, consistencyLevel, write) -> (random.nextDouble() < probability)
+                ? failure.next(statement, coordinator, consistencyLevel, write)
+                : null;
+    }
+
+    /**
+     * The errors of this failure on a single node, the other ones succeed.
+     *
+     * @param node
+     *      node of the simulated cluster
+     * @return
+     *      failure
+     */
+    default SimulatedFailure onlyOn(Node node) {
+        Assert.notNull(node, "Node should not be null");
+        return (statement, coordinator, consistencyLevel, write) -> node.equals(coordinator)
+                ? next(statement, coordinator, consistencyLevel, write)
+                : null;
+    }
+
+    /**
+     * The errors of this failure, then the ones of another failure for the executions which succeeded.
+     *
+     * @param other
+     *      another failure
+     * @return
+     *      failure
+     */
+    default SimulatedFailure or(SimulatedFailure other) {
+        Assert.notNull(other, "Failure should not be null");
+        return (statement, coordinator, consistencyLevel, write) -> {
+            CoordinatorException error = next(statement, coordinator, consistencyLevel, write);
+            return (null != error) ? error : other.next(statement, coordinator, consistencyLevel, write);
+        };
+    }
+
+}
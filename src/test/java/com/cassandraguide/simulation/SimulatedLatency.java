@@ -0,0 +1,140 @@
+package com.cassandraguide.simulation;
+
+import java.time.Duration;
+import java.util.Random;
+
+import org.springframework.util.Assert;
+
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.session.Request;
+
+/**
+ * Latency of the requests executed by {@link SimulatedCqlSession}: time between the submission of a request
+ * to a node and its response, network and coordinator included. Invoked concurrently, once per execution
+ * (each page of a result, each retry and each speculative execution is an execution).
+ *
+ * Random latencies are drawn from a generator seeded by the caller: a run issuing the same requests in the
+ * same order sees the same latencies.
+ */
+@FunctionalInterface
+public interface SimulatedLatency {
+
+    /**
+     * Latency of an execution.
+     *
+     * @param request
+     *      statement or request to prepare
+     * @param coordinator
+     *      node executing the request
+     * @return
+     *      delay of the response, zero or positive
+     */
+    Duration next(Request request, Node coordinator);
+
+    /**
+     * No latency, the response is computed by the thread submitting the request.
+     *
+     * @return
+     *      latency
+     */
+    static SimulatedLatency none() {
+        return (request, coordinator) -> Duration.ZERO;
+    }
+
+    /**
+     * Same latency for all requests.
+     *
+     * @param latency
+     *      latency of each request
+     * @return
+     *      latency
+     */
+    static SimulatedLatency fixed(Duration latency) {
+        Assert.isTrue(null != latency && !latency.isNegative(), "Latency should not be null nor negative");
+        return (request, coordinator) -> latency;
+    }
+
+    /**
+     * Latency uniformly distributed between two bounds.
+     *
+     * @param min
+     *      lowest latency
+     * @param max
+     *      highest latency
+     * @param seed
+     *      seed of the random generator
+     * @return
+     *      latency
+     */
+    static SimulatedLatency uniform(Duration min, Duration max, long seed) {
+        Assert.isTrue(null != min && !min.isNegative(), "Min should not be null nor negative");
+        Assert.isTrue(null != max && max.compareTo(min) >= 0, "Max should not be null nor lower than min");
+        Random random = new Random(seed);
+        long range = max.toNanos() - min.toNanos();
+        return (request, coordinator) -> min.plusNanos((long) (random.nextDouble() * range));
+    }
+
+    /**
+     * Log-normal latency, the usual shape of service times: most requests close to the median and a long
+     * tail.
+     *
+     * @param median
+     *      latency at the 50th percentile
+     * @param p99
+     *      latency at the 99th percentile, greater or equal to the median
+     * @param seed
+     *      seed of the random generator
+     * @return
+     *      latency
+     */
+    static SimulatedLatency logNormal(Duration median, Duration p99, long seed) {
+        Assert.isTrue(null != median && !median.isNegative() && !median.isZero(), "Median should be positive");
+        Assert.isTrue(null != p99 && p99.compareTo(median) >= 0, "P99 should not be null nor lower than the median");
+        Random random = new Random(seed);
+        // 2.326 is the 99th percentile of the standard normal distribution
+        double sigma = Math.log((double) p99.toNanos() / median.toNanos()) / 2.3263478740408408;
+        return (request, coordinator) ->
+            Duration.ofNanos((long) (median.toNanos() * Math.exp(sigma * random.nextGaussian())));
+    }
+
+    /**
+     * Add an outlier to a part of the requests (garbage collection pause, compaction, network hiccup).
+     *
+     * @param probability
+     *      probability of an outlier for each execution, between 0 and 1
+     * @param outlier
+     *      latency added to the latency of the execution
+     * @param seed
+     *      seed of the random generator
+     * @return
+     *      latency with outliers
+     */
+    default SimulatedLatency withOutliers(double probability, Duration outlier, long seed) {
+        Assert.isTrue(probability >= 0 && probability <= 1, "Probability should be between 0 and 1");
+        Assert.isTrue(null != outlier && !outlier.isNegative(), "Outlier should not be null nor negative");
+        Random random = new Random(seed);
+        return (request, coordinator) -> {
+            Duration latency = next(request, coordinator);
+            return (random.nextDouble() < probability) ? latency.plus(outlier) : latency;
+        };
+    }
+
+    /**
+     * Another latency for the executions on a node, for instance a slow replica.
+     *
+     * @param node
+     *      node of the simulated cluster
+     * @param latency
+     *      latency of the executions on this node
+     * @return
+     *      latency
+     */
+    default SimulatedLatency onNode(Node node, SimulatedLatency latency) {
+        Assert.notNull(node, "Node should not be null");
+        Assert.notNull(latency, "Latency should not be null");
+        return (request, coordinator) -> node.equals(coordinator)
+                ? latency.next(request, coordinator)
+                : next(request, coordinator);
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.cassandraguide.simulation;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.metadata.Metadata;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.datastax.oss.driver.api.core.metadata.schema.KeyspaceMetadata;
+
+/**
+ * Immutable snapshot of the metadata of {@link SimulatedCqlSession}, replaced on each schema change.
+ *
+ * There is no token map: token aware features see a cluster without token metadata (as with token
+ * metadata disabled in the driver).
+ */
+final class SimulatedMetadata implements Metadata {
+
+    private final Map<UUID, Node> nodes;
+
+    private final Map<CqlIdentifier, KeyspaceMetadata> keyspaces;
+
+    SimulatedMetadata(Map<UUID, Node> nodes, Map<CqlIdentifier, KeyspaceMetadata> keyspaces) {
+        this.nodes     = Map.copyOf(nodes);
+        this.keyspaces = Map.copyOf(keyspaces);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<UUID, Node> getNodes() {
+        return nodes;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<CqlIdentifier, KeyspaceMetadata> getKeyspaces() {
+        return keyspaces;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<TokenMap> getTokenMap() {
+        return Optional.empty();
+    }
+
+}
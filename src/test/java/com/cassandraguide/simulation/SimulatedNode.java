@@ -0,0 +1,154 @@
+package com.cassandraguide.simulation;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import com.datastax.oss.driver.api.core.Version;
+import com.datastax.oss.driver.api.core.loadbalancing.NodeDistance;
+import com.datastax.oss.driver.api.core.metadata.EndPoint;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metadata.NodeState;
+import com.datastax.oss.driver.internal.core.metadata.DefaultEndPoint;
+
+/**
+ * Node of the simulated cluster, coordinator of the requests of {@link SimulatedCqlSession}. Its state is
+ * changed by the session ({@link SimulatedCqlSession#stopNode(Node)}): the requests are not sent to nodes
+ * down.
+ */
+final class SimulatedNode implements Node {
+
+    /** Version reported by the nodes. */
+    private static final Version CASSANDRA_VERSION = Version.parse("3.11.4");
+
+    private final EndPoint endPoint;
+
+    private final InetSocketAddress address;
+
+    private final UUID hostId = UUID.randomUUID();
+
+    private volatile NodeState state = NodeState.UP;
+
+    private volatile long upSinceMillis = System.currentTimeMillis();
+
+    /** Schema version, the same on all nodes. */
+    private volatile UUID schemaVersion = UUID.randomUUID();
+
+    SimulatedNode(InetSocketAddress address) {
+        this.address  = address;
+        this.endPoint = new DefaultEndPoint(address);
+    }
+
+    /**
+     * The schema changed.
+     */
+    void schemaChanged(UUID schemaVersion) {
+        this.schemaVersion = schemaVersion;
+    }
+
+    /**
+     * The node was stopped or restarted.
+     */
+    void setState(NodeState state) {
+        this.upSinceMillis = (state == NodeState.UP) ? System.currentTimeMillis() : -1;
+        this.state         = state;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public EndPoint getEndPoint() {
+        return endPoint;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<InetSocketAddress> getBroadcastRpcAddress() {
+        return Optional.of(address);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<InetSocketAddress> getBroadcastAddress() {
+        return Optional.of(address);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Optional<InetSocketAddress> getListenAddress() {
+        return Optional.of(address);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getDatacenter() {
+        return "datacenter1";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getRack() {
+        return "rack1";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Version getCassandraVersion() {
+        return CASSANDRA_VERSION;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Object> getExtras() {
+        return Map.of();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public NodeState getState() {
+        return state;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getUpSinceMillis() {
+        return upSinceMillis;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getOpenConnections() {
+        return (state == NodeState.UP) ? 1 : 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isReconnecting() {
+        return state == NodeState.DOWN;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public NodeDistance getDistance() {
+        return NodeDistance.LOCAL;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public UUID getHostId() {
+        return hostId;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public UUID getSchemaVersion() {
+        return schemaVersion;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return endPoint.toString();
+    }
+
+}
@@ -0,0 +1,387 @@
+package com.cassandraguide.simulation;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.datastax.oss.driver.api.core.AllNodesFailedException;
+import com.datastax.oss.driver.api.core.ConsistencyLevel;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.NoNodeAvailableException;
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import com.datastax.oss.driver.api.core.config.DriverExecutionProfile;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.PrepareRequest;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.Statement;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.retry.RetryDecision;
+import com.datastax.oss.driver.api.core.retry.RetryPolicy;
+import com.datastax.oss.driver.api.core.servererrors.CoordinatorException;
+import com.datastax.oss.driver.api.core.servererrors.OverloadedException;
+import com.datastax.oss.driver.api.core.servererrors.ReadTimeoutException;
+import com.datastax.oss.driver.api.core.servererrors.ServerError;
+import com.datastax.oss.driver.api.core.servererrors.UnavailableException;
+import com.datastax.oss.driver.api.core.servererrors.WriteTimeoutException;
+import com.datastax.oss.driver.api.core.session.Request;
+import com.datastax.oss.driver.api.core.specex.SpeculativeExecutionPolicy;
+import com.datastax.oss.driver.api.core.tracker.RequestTracker;
+import com.datastax.oss.driver.internal.core.context.InternalDriverContext;
+import com.datastax.oss.driver.internal.core.util.concurrent.CompletableFutures;
+
+/**
+ * Requests of {@link SimulatedCqlSession}, handled as the driver does (CqlRequestHandler) on a simulated
+ * timeline: each execution is applied when the request is submitted and takes the latency of
+ * {@link SimulatedLatency} on its node; the response is completed by the scheduler once the winning
+ * execution is over.
+ *
+ * <ul>
+ * <li>nodes are tried in the order of the query plan of the session (round robin over the nodes up, or the
+ * node of the statement), {@link NoNodeAvailableException} when none is up</li>
+ * <li>the errors of {@link SimulatedFailure} are handed to the retry policy of the execution profile: retry on
+ * the same node, on the next one, ignore or rethrow. Write timeouts and other errors are only retried for
+ * idempotent statements</li>
+ * <li>idempotent statements get the speculative executions of the speculative execution policy of the
+ * profile, on the next nodes of the query plan: the first execution answering wins</li>
+ * <li>a response later than the timeout of the request fails with {@link DriverTimeoutException} at the
+ * timeout; the statement was applied nonetheless, as on a real cluster</li>
+ * </ul>
+ *
+ * The request tracker is notified of each execution which ended before the response, and of the response.
+ */
+final class SimulatedRequestHandler {
+
+    private final SimulatedCqlSession session;
+
+    private final InternalDriverContext context;
+
+    /** Completes the responses after their latency. */
+    private final ScheduledExecutorService scheduler;
+
+    SimulatedRequestHandler(SimulatedCqlSession session, InternalDriverContext context,
+            ScheduledExecutorService scheduler) {
+        this.session   = session;
+        this.context   = context;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Execute a statement.
+     */
+    CompletionStage<AsyncResultSet> execute(Statement<?> statement) {
+        long start = System.nanoTime();
+        DriverExecutionProfile profile = session.executionProfile(statement);
+        Queue<Node> queryPlan = session.queryPlan(statement);
+        Node first = queryPlan.poll();
+        if (null == first) {
+            NoNodeAvailableException error = new NoNodeAvailableException();
+            context.getRequestTracker().onError(statement, error, System.nanoTime() - start, profile, null,
+                    context.getSessionName());
+            return CompletableFutures.failedFuture(error);
+        }
+        boolean idempotent = (null != statement.isIdempotent()) ? statement.isIdempotent()
+                : profile.getBoolean(DefaultDriverOption.REQUEST_DEFAULT_IDEMPOTENCE);
+        Settings settings = new Settings(statement, profile, idempotent, queryPlan);
+        List<Execution> executions = new ArrayList<>();
+        Execution response = execute(settings, 0, 0, first);
+        executions.add(response);
+        if (idempotent) {
+            SpeculativeExecutionPolicy policy = context.getSpeculativeExecutionPolicy(profile.getName());
+            CqlIdentifier keyspace = (null != statement.getKeyspace()) ? statement.getKeyspace()
+                    : session.getKeyspace().orElse(null);
+            long offset = 0;
+            long delay = policy.nextExecution(first, keyspace, statement, 1);
+            while (delay >= 0) {
+                offset += TimeUnit.MILLISECONDS.toNanos(delay);
+                Node next = (offset < response.end && offset < settings.timeoutNanos) ? queryPlan.poll() : null;
+                if (null == next) {
+                    // Response before the next execution, or no node left
+                    break;
+                }
+                Execution speculative = execute(settings, executions.size(), offset, next);
+                executions.add(speculative);
+                if (speculative.end < response.end) {
+                    response = speculative;
+                }
+                delay = policy.nextExecution(next, keyspace, statement, executions.size());
+            }
+        }
+        Execution winner = response;
+        long end = Math.min(winner.end, settings.timeoutNanos);
+        Throwable error = (winner.end > settings.timeoutNanos)
+                ? new DriverTimeoutException("Query timed out after " + settings.timeout)
+                : winner.error;
+        CompletableFuture<AsyncResultSet> result = new CompletableFuture<>();
+        complete(start, end, () -> {
+            List<Map.Entry<Node, Throwable>> errors = track(settings, executions, end);
+            long latency = System.nanoTime() - start;
+            String logPrefix = context.getSessionName();
+            if (null == error) {
+                context.getRequestTracker().onSuccess(statement, latency, profile, winner.node, logPrefix);
+                result.complete(session.resultSet(statement, winner.response, new SimulatedExecutionInfo(
+                        statement, winner.node, winner.response.pagingState, executions.size() - 1, winner.index, errors)));
+            } else {
+                context.getRequestTracker().onError(statement, error, latency, profile, winner.node, logPrefix);
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Execution on a node, and its retries.
+     *
+     * @param index
+     *      index of the execution, 0 for the initial one, greater for speculative executions
+     * @param startNanos
+     *      start of the execution, since the submission of the request
+     */
+    private Execution execute(Settings settings, int index, long startNanos, Node first) {
+        Statement<?> statement = settings.statement;
+        Execution execution = new Execution(index);
+        Boolean write = session.isWrite(statement);
+        Node node = first;
+        long time = startNanos;
+        int retryCount = 0;
+        while (null != node) {
+            long latency = session.getLatency().next(statement, node).toNanos();
+            CoordinatorException failure = (null == write) ? null
+                    : session.getFailure().next(statement, node, settings.consistencyLevel, write);
+            SimulatedCqlSession.Response response = null;
+            Throwable error = failure;
+            if (null == failure || failure instanceof WriteTimeoutException) {
+                try {
+                    response = session.executeNow(statement);
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+            time += latency;
+            execution.attempts.add(new Attempt(node, latency, time, error));
+            if (null == error) {
+                return execution.done(node, time, response, null);
+            }
+            switch (retryDecision(settings, error, retryCount)) {
+                case RETRY_SAME:
+                    break;
+                case RETRY_NEXT:
+                    node = settings.queryPlan.poll();
+                    break;
+                case IGNORE:
+                    return execution.done(node, time, SimulatedCqlSession.Response.empty(), null);
+                default:
+                    return execution.done(node, time, null, error);
+            }
+            retryCount++;
+        }
+        List<Map.Entry<Node, Throwable>> errors = new ArrayList<>();
+        execution.attempts.forEach(attempt -> errors.add(new AbstractMap.SimpleEntry<>(attempt.node, attempt.error)));
+        return execution.done(null, time, null, AllNodesFailedException.fromErrors(errors));
+    }
+
+    /**
+     * Decision of the retry policy, as in the driver: validation errors are never retried, write timeouts
+     * and other server errors only for idempotent statements.
+     */
+    private RetryDecision retryDecision(Settings settings, Throwable error, int retryCount) {
+        RetryPolicy policy = context.getRetryPolicy(settings.profile.getName());
+        if (error instanceof ReadTimeoutException) {
+            ReadTimeoutException readTimeout = (ReadTimeoutException) error;
+            return policy.onReadTimeout(settings.statement, readTimeout.getConsistencyLevel(),
+                    readTimeout.getBlockFor(), readTimeout.getReceived(), readTimeout.wasDataPresent(), retryCount);
+        } else if (error instanceof WriteTimeoutException) {
+            WriteTimeoutException writeTimeout = (WriteTimeoutException) error;
+            return settings.idempotent
+                    ? policy.onWriteTimeout(settings.statement, writeTimeout.getConsistencyLevel(),
+                            writeTimeout.getWriteType(), writeTimeout.getBlockFor(), writeTimeout.getReceived(), retryCount)
+                    : RetryDecision.RETHROW;
+        } else if (error instanceof UnavailableException) {
+            UnavailableException unavailable = (UnavailableException) error;
+            return policy.onUnavailable(settings.statement, unavailable.getConsistencyLevel(),
+                    unavailable.getRequired(), unavailable.getAlive(), retryCount);
+        } else if (error instanceof OverloadedException || error instanceof ServerError) {
+            return settings.idempotent
+                    ? policy.onErrorResponse(settings.statement, (CoordinatorException) error, retryCount)
+                    : RetryDecision.RETHROW;
+        }
+        return RetryDecision.RETHROW;
+    }
+
+    /**
+     * Notify the request tracker of the executions on the nodes which ended before the response.
+     *
+     * @return
+     *      errors of these executions, in the order they happened
+     */
+    private List<Map.Entry<Node, Throwable>> track(Settings settings, List<Execution> executions, long end) {
+        RequestTracker tracker = context.getRequestTracker();
+        String logPrefix = context.getSessionName();
+        List<Attempt> attempts = new ArrayList<>();
+        executions.forEach(execution -> attempts.addAll(execution.attempts));
+        attempts.sort(Comparator.comparingLong(attempt -> attempt.end));
+        List<Map.Entry<Node, Throwable>> errors = new ArrayList<>();
+        for (Attempt attempt : attempts) {
+            if (attempt.end > end) {
+                break;
+            }
+            if (null == attempt.error) {
+                tracker.onNodeSuccess(settings.statement, attempt.latency, settings.profile, attempt.node, logPrefix);
+            } else {
+                tracker.onNodeError(settings.statement, attempt.error, attempt.latency, settings.profile, attempt.node, logPrefix);
+                errors.add(new AbstractMap.SimpleEntry<>(attempt.node, attempt.error));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Prepare a statement on a node. No failures, no retries.
+     */
+    CompletionStage<PreparedStatement> prepare(PrepareRequest request) {
+        long start = System.nanoTime();
+        Node node = session.queryPlan(request).poll();
+        if (null == node) {
+            return CompletableFutures.failedFuture(new NoNodeAvailableException());
+        }
+        long latency = session.getLatency().next(request, node).toNanos();
+        PreparedStatement prepared = null;
+        Throwable failure = null;
+        try {
+            prepared = session.prepareNow(request);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        Duration timeout = timeout(request, session.executionProfile(request));
+        long timeoutNanos = timeoutNanos(timeout);
+        PreparedStatement success = prepared;
+        Throwable error = (latency > timeoutNanos) ? new DriverTimeoutException("Query timed out after " + timeout) : failure;
+        CompletableFuture<PreparedStatement> result = new CompletableFuture<>();
+        complete(start, Math.min(latency, timeoutNanos), () -> {
+            if (null == error) {
+                result.complete(success);
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Run the completion of a response at its end on the simulated timeline, inline when it is already over.
+     */
+    private void complete(long start, long end, Runnable completion) {
+        long delay = end - (System.nanoTime() - start);
+        if (delay <= 0) {
+            completion.run();
+        } else {
+            scheduler.schedule(completion, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Duration timeout(Request request, DriverExecutionProfile profile) {
+        return (null != request.getTimeout()) ? request.getTimeout() : profile.getDuration(DefaultDriverOption.REQUEST_TIMEOUT);
+    }
+
+    /** Zero or negative timeouts are disabled. */
+    private static long timeoutNanos(Duration timeout) {
+        return (timeout.isZero() || timeout.isNegative()) ? Long.MAX_VALUE : timeout.toNanos();
+    }
+
+    /**
+     * Settings of a statement.
+     */
+    private final class Settings {
+
+        private final Statement<?> statement;
+
+        private final DriverExecutionProfile profile;
+
+        private final boolean idempotent;
+
+        private final ConsistencyLevel consistencyLevel;
+
+        private final Duration timeout;
+
+        private final long timeoutNanos;
+
+        /** Nodes not tried yet, shared by the executions. */
+        private final Queue<Node> queryPlan;
+
+        Settings(Statement<?> statement, DriverExecutionProfile profile, boolean idempotent, Queue<Node> queryPlan) {
+            this.statement        = statement;
+            this.profile          = profile;
+            this.idempotent       = idempotent;
+            this.queryPlan        = queryPlan;
+            this.consistencyLevel = (null != statement.getConsistencyLevel()) ? statement.getConsistencyLevel()
+                    : context.getConsistencyLevelRegistry().codeToLevel(context.getConsistencyLevelRegistry()
+                            .nameToCode(profile.getString(DefaultDriverOption.REQUEST_CONSISTENCY)));
+            this.timeout          = timeout(statement, profile);
+            this.timeoutNanos     = timeoutNanos(timeout);
+        }
+    }
+
+    /**
+     * Execution of a statement on a node (initial or speculative), with its retries.
+     */
+    private static final class Execution {
+
+        private final int index;
+
+        private final List<Attempt> attempts = new ArrayList<>();
+
+        /** Node of the last attempt. */
+        private Node node;
+
+        /** End of the execution, since the submission of the request. */
+        private long end;
+
+        private SimulatedCqlSession.Response response;
+
+        private Throwable error;
+
+        Execution(int index) {
+            this.index = index;
+        }
+
+        Execution done(Node node, long end, SimulatedCqlSession.Response response, Throwable error) {
+            this.node     = node;
+            this.end      = end;
+            this.response = response;
+            this.error    = error;
+            return this;
+        }
+    }
+
+    /**
+     * Attempt of an execution on a node.
+     */
+    private static final class Attempt {
+
+        private final Node node;
+
+        private final long latency;
+
+        /** End of the attempt, since the submission of the request. */
+        private final long end;
+
+        /** Error of the node, null on success. */
+        private final Throwable error;
+
+        Attempt(Node node, long latency, long end, Throwable error) {
+            this.node    = node;
+            this.latency = latency;
+            this.end     = end;
+            this.error   = error;
+        }
+    }
+
+}
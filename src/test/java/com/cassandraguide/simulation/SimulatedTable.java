@@ -0,0 +1,630 @@
+package com.cassandraguide.simulation;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.cassandraguide.simulation.ParsedStatement.Relation;
+import com.datastax.oss.driver.api.core.CqlIdentifier;
+import com.datastax.oss.driver.api.core.ProtocolVersion;
+import com.datastax.oss.driver.api.core.metadata.schema.ClusteringOrder;
+import com.datastax.oss.driver.api.core.metadata.schema.ColumnMetadata;
+import com.datastax.oss.driver.api.core.metadata.schema.TableMetadata;
+import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import com.datastax.oss.driver.api.core.type.DataType;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodec;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodecs;
+import com.datastax.oss.driver.api.core.type.codec.registry.CodecRegistry;
+import com.datastax.oss.driver.internal.core.metadata.schema.DefaultColumnMetadata;
+import com.datastax.oss.driver.internal.core.metadata.schema.DefaultTableMetadata;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3Token;
+import com.datastax.oss.driver.internal.core.metadata.token.Murmur3TokenFactory;
+import com.datastax.oss.driver.internal.core.util.RoutingKey;
+
+/**
+ * Rows of a table of {@link SimulatedCqlSession}, sorted as by Cassandra: by Murmur3 token of the partition
+ * key, then by clustering columns (in their clustering order).
+ *
+ * Cells are written with their timestamp and the most recent write wins, deletions are tombstones with a
+ * timestamp: writes with an older timestamp than a deletion are not visible, as in Cassandra. Tombstones are
+ * never purged. Each row is updated atomically, like a partition in Cassandra.
+ */
+final class SimulatedTable {
+
+    private static final Murmur3TokenFactory TOKEN_FACTORY = new Murmur3TokenFactory();
+
+    private final CqlIdentifier keyspace;
+
+    private final CqlIdentifier name;
+
+    private final List<CqlIdentifier> partitionKey;
+
+    private final List<CqlIdentifier> clusteringColumns;
+
+    /** Columns not in the primary key, sorted by name as by Cassandra. */
+    private final List<CqlIdentifier> regularColumns;
+
+    /** All columns, primary key first: order of 'SELECT *' and of the values of a row. */
+    private final Map<CqlIdentifier, DataType> columns = new LinkedHashMap<>();
+
+    /** Index of a column in {@link #columns}. */
+    private final Map<CqlIdentifier, Integer> indexes = new LinkedHashMap<>();
+
+    private final boolean[] descending;
+
+    private final List<TypeCodec<Object>> codecs;
+
+    private final ProtocolVersion protocolVersion;
+
+    private final ConcurrentSkipListMap<RowKey, StoredRow> rows = new ConcurrentSkipListMap<>(this::compare);
+
+    private final TableMetadata metadata;
+
+    @SuppressWarnings("unchecked")
+    SimulatedTable(CqlIdentifier keyspace, CqlIdentifier name, Map<CqlIdentifier, DataType> columns,
+            List<CqlIdentifier> partitionKey, List<CqlIdentifier> clusteringColumns, List<CqlIdentifier> descending,
+            CodecRegistry codecRegistry, ProtocolVersion protocolVersion) {
+        this.keyspace          = keyspace;
+        this.name              = name;
+        this.partitionKey      = List.copyOf(partitionKey);
+        this.clusteringColumns = List.copyOf(clusteringColumns);
+        this.protocolVersion   = protocolVersion;
+        List<CqlIdentifier> regular = new ArrayList<>(columns.keySet());
+        regular.removeAll(partitionKey);
+        regular.removeAll(clusteringColumns);
+        regular.sort((a, b) -> a.asInternal().compareTo(b.asInternal()));
+        this.regularColumns = List.copyOf(regular);
+        List<CqlIdentifier> ordered = new ArrayList<>(partitionKey);
+        ordered.addAll(clusteringColumns);
+        ordered.addAll(regular);
+        for (CqlIdentifier column : ordered) {
+            DataType type = columns.get(column);
+            if (null == type) {
+                throw new InvalidQueryException(null, "Unknown definition " + column.asCql(true) + " referenced in PRIMARY KEY");
+            }
+            this.indexes.put(column, this.columns.size());
+            this.columns.put(column, type);
+        }
+        List<TypeCodec<Object>> orderedCodecs = new ArrayList<>(ordered.size());
+        for (CqlIdentifier column : ordered) {
+            orderedCodecs.add(codecRegistry.codecFor(this.columns.get(column)));
+        }
+        this.codecs = List.copyOf(orderedCodecs);
+        this.descending = new boolean[clusteringColumns.size()];
+        for (int i = 0; i < clusteringColumns.size(); i++) {
+            this.descending[i] = descending.contains(clusteringColumns.get(i));
+        }
+        this.metadata = metadata();
+    }
+
+    private TableMetadata metadata() {
+        Map<CqlIdentifier, ColumnMetadata> all = new LinkedHashMap<>();
+        columns.forEach((column, type) -> all.put(column, new DefaultColumnMetadata(keyspace, name, column, type, false)));
+        List<ColumnMetadata> partition = new ArrayList<>();
+        partitionKey.forEach(column -> partition.add(all.get(column)));
+        Map<ColumnMetadata, ClusteringOrder> clustering = new LinkedHashMap<>();
+        for (int i = 0; i < clusteringColumns.size(); i++) {
+            clustering.put(all.get(clusteringColumns.get(i)), descending[i] ? ClusteringOrder.DESC : ClusteringOrder.ASC);
+        }
+        return new DefaultTableMetadata(keyspace, name, UUID.randomUUID(), false, false,
+                partition, clustering, all, Map.of(), Map.of());
+    }
+
+    CqlIdentifier getKeyspace() {
+        return keyspace;
+    }
+
+    CqlIdentifier getName() {
+        return name;
+    }
+
+    TableMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * All columns, in the order of 'SELECT *'.
+     */
+    Collection<CqlIdentifier> getColumns() {
+        return columns.keySet();
+    }
+
+    /**
+     * Type of a column.
+     *
+     * @throws InvalidQueryException
+     *      when the column does not exist
+     */
+    DataType type(CqlIdentifier column) {
+        index(column);
+        return columns.get(column);
+    }
+
+    /**
+     * Index of a column in the values of a row.
+     *
+     * @throws InvalidQueryException
+     *      when the column does not exist
+     */
+    int index(CqlIdentifier column) {
+        Integer index = indexes.get(column);
+        if (null == index) {
+            throw new InvalidQueryException(null, "Undefined column name " + column.asCql(true)
+                    + " in table " + keyspace.asCql(true) + "." + name.asCql(true));
+        }
+        return index;
+    }
+
+    /**
+     * Number of rows, live or deleted.
+     */
+    int size() {
+        return rows.size();
+    }
+
+    void truncate() {
+        rows.clear();
+    }
+
+    /**
+     * Write cells of a row, insert its row marker for an INSERT.
+     *
+     * @param key
+     *      values of the primary key
+     * @param cells
+     *      values of regular columns, null for a deletion
+     * @param timestamp
+     *      timestamp of the write
+     * @param insert
+     *      whether the row exists even without cells (INSERT)
+     * @param ifNotExists
+     *      true for 'IF NOT EXISTS', false for 'IF EXISTS', null if the write is not conditional
+     * @return
+     *      whether the write was applied
+     */
+    boolean write(Map<CqlIdentifier, ByteBuffer> key, Map<CqlIdentifier, ByteBuffer> cells, long timestamp,
+            boolean insert, Boolean ifNotExists) {
+        RowKey rowKey = rowKey(key, true);
+        int[] indices = new int[cells.size()];
+        ByteBuffer[] values = new ByteBuffer[cells.size()];
+        int i = 0;
+        for (Map.Entry<CqlIdentifier, ByteBuffer> cell : cells.entrySet()) {
+            int index = index(cell.getKey());
+            if (index < partitionKey.size() + clusteringColumns.size()) {
+                throw new InvalidQueryException(null, "PRIMARY KEY part " + cell.getKey().asCql(true) + " found in SET part");
+            }
+            indices[i]  = index - partitionKey.size() - clusteringColumns.size();
+            values[i++] = cell.getValue();
+        }
+        StoredRow row = rows.computeIfAbsent(rowKey, k -> new StoredRow(regularColumns.size()));
+        return row.write(indices, values, timestamp, insert, ifNotExists);
+    }
+
+    /**
+     * Delete a row or cells of a row, or all rows of a partition.
+     *
+     * @param key
+     *      values of the partition key and of the clustering columns, clustering columns missing for a partition
+     * @param cells
+     *      columns to delete, empty to delete the rows
+     * @param timestamp
+     *      timestamp of the deletion
+     * @param ifExists
+     *      whether the row should exist ('IF EXISTS')
+     * @param conditions
+     *      expected values of regular columns ('IF column = value'), empty if none
+     * @return
+     *      whether the deletion was applied
+     */
+    boolean delete(Map<CqlIdentifier, ByteBuffer> key, Collection<CqlIdentifier> cells, long timestamp, boolean ifExists,
+            Map<CqlIdentifier, ByteBuffer> conditions) {
+        int[] indices = new int[cells.size()];
+        int i = 0;
+        for (CqlIdentifier cell : cells) {
+            indices[i++] = regularIndex(cell);
+        }
+        int[] conditionIndices = new int[conditions.size()];
+        ByteBuffer[] expected = new ByteBuffer[conditions.size()];
+        i = 0;
+        for (Map.Entry<CqlIdentifier, ByteBuffer> condition : conditions.entrySet()) {
+            conditionIndices[i] = regularIndex(condition.getKey());
+            expected[i++]       = condition.getValue();
+        }
+        if (clusteringColumns.stream().allMatch(key::containsKey)) {
+            StoredRow row = rows.computeIfAbsent(rowKey(key, true), k -> new StoredRow(regularColumns.size()));
+            return row.delete(cells.isEmpty() ? null : indices, timestamp, ifExists, conditionIndices, expected);
+        }
+        if (ifExists || !cells.isEmpty() || !conditions.isEmpty()) {
+            throw new InvalidQueryException(null, "Some clustering keys are missing: " + clusteringColumns);
+        }
+        // Range of the rows of the partition, rows written later with an older timestamp are not shadowed
+        RowKey prefix = rowKey(key, false);
+        for (StoredRow row : rows.subMap(prefix.bound(-1), true, prefix.bound(1), true).values()) {
+            row.delete(null, timestamp, false, new int[0], new ByteBuffer[0]);
+        }
+        return true;
+    }
+
+    /**
+     * Index of a regular column among the cells of a row.
+     */
+    private int regularIndex(CqlIdentifier column) {
+        int index = index(column) - partitionKey.size() - clusteringColumns.size();
+        if (index < 0) {
+            throw new InvalidQueryException(null, "PRIMARY KEY column " + column.asCql(true) + " cannot be deleted nor conditioned");
+        }
+        return index;
+    }
+
+    /**
+     * Live rows of a selection, in order.
+     *
+     * @param selection
+     *      restrictions of the rows
+     * @param after
+     *      key of the last row of the previous page, null for the first page
+     * @param max
+     *      max number of rows
+     * @return
+     *      values of the rows (in the order of {@link #getColumns()}) by key
+     */
+    List<Map.Entry<RowKey, ByteBuffer[]>> select(Selection selection, RowKey after, int max) {
+        NavigableMap<RowKey, StoredRow> range;
+        if (compare(selection.lower, selection.upper) > 0) {
+            return List.of();
+        } else if (null != after && compare(after, selection.lower) > 0) {
+            if (compare(after, selection.upper) >= 0) {
+                return List.of();
+            }
+            range = rows.subMap(after, false, selection.upper, true);
+        } else {
+            range = rows.subMap(selection.lower, true, selection.upper, true);
+        }
+        List<Map.Entry<RowKey, ByteBuffer[]>> result = new ArrayList<>();
+        for (Map.Entry<RowKey, StoredRow> entry : range.entrySet()) {
+            ByteBuffer[] cells = entry.getValue().snapshot();
+            if (null == cells) {
+                continue;
+            }
+            ByteBuffer[] values = new ByteBuffer[columns.size()];
+            ByteBuffer[] primaryKey = entry.getKey().values;
+            System.arraycopy(primaryKey, 0, values, 0, primaryKey.length);
+            System.arraycopy(cells, 0, values, primaryKey.length, cells.length);
+            if (selection.matches(values)) {
+                result.add(Map.entry(entry.getKey(), values));
+                if (result.size() >= max) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Selection of the rows restricted by a WHERE clause: by partition key, by token range or all rows,
+     * other restrictions filter the rows.
+     *
+     * @param relations
+     *      restrictions
+     * @param values
+     *      value of each restriction
+     * @return
+     *      selection
+     */
+    Selection selection(List<Relation> relations, List<ByteBuffer> values) {
+        Map<CqlIdentifier, ByteBuffer> equalities = new LinkedHashMap<>();
+        List<Filter> filters = new ArrayList<>();
+        RowKey lower = new RowKey(Long.MIN_VALUE, new Object[0], null, -1);
+        RowKey upper = new RowKey(Long.MAX_VALUE, new Object[0], null, 1);
+        for (int i = 0; i < relations.size(); i++) {
+            Relation relation = relations.get(i);
+            ByteBuffer value = values.get(i);
+            if (relation.isToken()) {
+                long token = TypeCodecs.BIGINT.decodePrimitive(value, protocolVersion);
+                switch (relation.operator) {
+                    case ">":  lower = new RowKey(token, new Object[0], null, 1);  break;
+                    case ">=": lower = new RowKey(token, new Object[0], null, -1); break;
+                    case "<":  upper = new RowKey(token, new Object[0], null, -1); break;
+                    case "<=": upper = new RowKey(token, new Object[0], null, 1);  break;
+                    default:
+                        throw new InvalidQueryException(null, "Unsupported operator on token: " + relation.operator);
+                }
+                continue;
+            }
+            int index = index(relation.column);
+            if (null == value) {
+                throw new InvalidQueryException(null, "Invalid null value in condition for column " + relation.column.asCql(true));
+            }
+            if ("=".equals(relation.operator) && index < partitionKey.size()) {
+                equalities.put(relation.column, value);
+            }
+            filters.add(new Filter(index, relation.operator, value));
+        }
+        if (equalities.size() == partitionKey.size()) {
+            RowKey partition = rowKey(equalities, false);
+            lower = partition.bound(-1);
+            upper = partition.bound(1);
+        }
+        return new Selection(lower, upper, filters);
+    }
+
+    /**
+     * Key of a row, or of a partition when clustering columns are not required.
+     */
+    private RowKey rowKey(Map<CqlIdentifier, ByteBuffer> key, boolean withClustering) {
+        ByteBuffer[] partition = new ByteBuffer[partitionKey.size()];
+        for (int i = 0; i < partition.length; i++) {
+            partition[i] = requireKey(key, partitionKey.get(i), "Some partition key parts are missing: ");
+        }
+        ByteBuffer routingKey = (partition.length == 1) ? partition[0] : RoutingKey.compose(partition);
+        long token = ((Murmur3Token) TOKEN_FACTORY.hash(routingKey)).getValue();
+        int clustering = withClustering ? clusteringColumns.size() : 0;
+        Object[] components = new Object[1 + clustering];
+        ByteBuffer[] values = new ByteBuffer[partition.length + clustering];
+        components[0] = routingKey;
+        System.arraycopy(partition, 0, values, 0, partition.length);
+        for (int i = 0; i < clustering; i++) {
+            ByteBuffer value = requireKey(key, clusteringColumns.get(i), "Some clustering keys are missing: ");
+            components[1 + i] = codecs.get(partition.length + i).decode(value.duplicate(), protocolVersion);
+            values[partition.length + i] = value;
+        }
+        return new RowKey(token, components, values, 0);
+    }
+
+    private ByteBuffer requireKey(Map<CqlIdentifier, ByteBuffer> key, CqlIdentifier column, String missing) {
+        ByteBuffer value = key.get(column);
+        if (null == value) {
+            throw new InvalidQueryException(null, key.containsKey(column)
+                    ? "Invalid null value for primary key part " + column.asCql(true)
+                    : missing + column.asCql(true));
+        }
+        return value;
+    }
+
+    /**
+     * Serialized key of a row, to resume a scan after it.
+     */
+    ByteBuffer encode(RowKey key) {
+        int size = 8;
+        for (ByteBuffer value : key.values) {
+            size += 4 + value.remaining();
+        }
+        ByteBuffer encoded = ByteBuffer.allocate(size).putLong(key.token);
+        for (ByteBuffer value : key.values) {
+            encoded.putInt(value.remaining()).put(value.duplicate());
+        }
+        return encoded.flip();
+    }
+
+    /**
+     * Key of a row serialized by {@link #encode(RowKey)}.
+     */
+    RowKey decode(ByteBuffer encoded) {
+        ByteBuffer buffer = encoded.duplicate();
+        buffer.getLong(); // The token is computed again from the partition key
+        Map<CqlIdentifier, ByteBuffer> key = new LinkedHashMap<>();
+        List<CqlIdentifier> primaryKey = new ArrayList<>(partitionKey);
+        primaryKey.addAll(clusteringColumns);
+        for (CqlIdentifier column : primaryKey) {
+            int length = buffer.getInt();
+            key.put(column, buffer.slice().limit(length));
+            buffer.position(buffer.position() + length);
+        }
+        return rowKey(key, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(RowKey a, RowKey b) {
+        int c = Long.compare(a.token, b.token);
+        int common = Math.min(a.components.length, b.components.length);
+        for (int i = 0; c == 0 && i < common; i++) {
+            if (i == 0) {
+                c = ((ByteBuffer) a.components[0]).compareTo((ByteBuffer) b.components[0]);
+            } else {
+                Object x = a.components[i];
+                Object y = b.components[i];
+                c = (x instanceof Comparable) ? ((Comparable<Object>) x).compareTo(y) : String.valueOf(x).compareTo(String.valueOf(y));
+                c = descending[i - 1] ? -c : c;
+            }
+        }
+        if (c != 0) {
+            return c;
+        } else if (a.components.length == b.components.length) {
+            return Integer.compare(a.bound, b.bound);
+        } else if (a.components.length < b.components.length) {
+            // Bound on a prefix of b
+            return (a.bound > 0) ? 1 : -1;
+        } else {
+            return (b.bound > 0) ? -1 : 1;
+        }
+    }
+
+    /**
+     * Key of a row, or bound of a range of rows: before (-1) or after (1) all rows starting with its components.
+     */
+    static final class RowKey {
+
+        final long token;
+
+        /** Partition key (routing key), then values of the clustering columns, decoded. */
+        final Object[] components;
+
+        /** Values of the primary key, null for a bound. */
+        final ByteBuffer[] values;
+
+        final int bound;
+
+        RowKey(long token, Object[] components, ByteBuffer[] values, int bound) {
+            this.token      = token;
+            this.components = components;
+            this.values     = values;
+            this.bound      = bound;
+        }
+
+        RowKey bound(int bound) {
+            return new RowKey(token, components, null, bound);
+        }
+    }
+
+    /**
+     * Restriction on the values of a row.
+     */
+    private final class Filter {
+
+        private final int index;
+
+        private final String operator;
+
+        private final ByteBuffer value;
+
+        private final Object decoded;
+
+        Filter(int index, String operator, ByteBuffer value) {
+            this.index    = index;
+            this.operator = operator;
+            this.value    = value;
+            this.decoded  = "=".equals(operator) ? null : codecs.get(index).decode(value.duplicate(), protocolVersion);
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean matches(ByteBuffer[] values) {
+            ByteBuffer actual = values[index];
+            if (null == actual) {
+                return false;
+            }
+            if ("=".equals(operator)) {
+                return value.equals(actual);
+            }
+            int c = ((Comparable<Object>) codecs.get(index).decode(actual.duplicate(), protocolVersion)).compareTo(decoded);
+            switch (operator) {
+                case "<":  return c < 0;
+                case "<=": return c <= 0;
+                case ">":  return c > 0;
+                default:   return c >= 0;
+            }
+        }
+    }
+
+    /**
+     * Range of rows with filters.
+     */
+    static final class Selection {
+
+        private final RowKey lower;
+
+        private final RowKey upper;
+
+        private final List<Filter> filters;
+
+        private Selection(RowKey lower, RowKey upper, List<Filter> filters) {
+            this.lower   = lower;
+            this.upper   = upper;
+            this.filters = filters;
+        }
+
+        private boolean matches(ByteBuffer[] values) {
+            for (Filter filter : filters) {
+                if (!filter.matches(values)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Cells of the regular columns of a row with their timestamps, row marker and row deletion.
+     */
+    private static final class StoredRow {
+
+        private final ByteBuffer[] values;
+
+        private final long[] timestamps;
+
+        /** Timestamp of the last INSERT. */
+        private long marker = Long.MIN_VALUE;
+
+        /** Timestamp of the last deletion of the row. */
+        private long deletedAt = Long.MIN_VALUE;
+
+        StoredRow(int columns) {
+            this.values     = new ByteBuffer[columns];
+            this.timestamps = new long[columns];
+            Arrays.fill(timestamps, Long.MIN_VALUE);
+        }
+
+        synchronized boolean write(int[] indices, ByteBuffer[] cells, long timestamp, boolean insert, Boolean ifNotExists) {
+            if (null != ifNotExists && ifNotExists == isLive()) {
+                return false;
+            }
+            if (insert && timestamp >= marker) {
+                marker = timestamp;
+            }
+            for (int i = 0; i < indices.length; i++) {
+                if (timestamp >= timestamps[indices[i]]) {
+                    timestamps[indices[i]] = timestamp;
+                    values[indices[i]]     = cells[i];
+                }
+            }
+            return true;
+        }
+
+        synchronized boolean delete(int[] indices, long timestamp, boolean ifExists, int[] conditions, ByteBuffer[] expected) {
+            if ((ifExists || conditions.length > 0) && !isLive()) {
+                return false;
+            }
+            for (int i = 0; i < conditions.length; i++) {
+                ByteBuffer current = (timestamps[conditions[i]] > deletedAt) ? values[conditions[i]] : null;
+                if (!Objects.equals(current, expected[i])) {
+                    return false;
+                }
+            }
+            if (null == indices) {
+                deletedAt = Math.max(deletedAt, timestamp);
+            } else {
+                for (int index : indices) {
+                    if (timestamp >= timestamps[index]) {
+                        timestamps[index] = timestamp;
+                        values[index]     = null;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Live cells, null if the row is not live.
+         */
+        synchronized ByteBuffer[] snapshot() {
+            if (!isLive()) {
+                return null;
+            }
+            ByteBuffer[] live = new ByteBuffer[values.length];
+            for (int i = 0; i < values.length; i++) {
+                live[i] = (timestamps[i] > deletedAt && null != values[i]) ? values[i].duplicate() : null;
+            }
+            return live;
+        }
+
+        private boolean isLive() {
+            if (marker > deletedAt) {
+                return true;
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (timestamps[i] > deletedAt && null != values[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
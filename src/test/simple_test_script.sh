@@ -18,3 +18,10 @@ curl http://localhost:8080/reservations/
 # deleteReservation()
 # Change the confirmation code as needed
 curl -X DELETE http://localhost:8080/reservations/RS2G0Z
+
+# bulkCreateReservations()
+# One reservation per line, one result per line in completion order
+printf '%s\n' \
+  '{"hotelId": "NY456", "startDate": "2017-06-08", "endDate": "2017-06-10", "roomNumber": "111", "guestId": "1b4d86f4-ccff-4256-a63d-45c905df2677"}' \
+  '{"hotelId": "NY456", "startDate": "2017-06-08", "endDate": "2017-06-10", "roomNumber": "112", "guestId": "1b4d86f4-ccff-4256-a63d-45c905df2677"}' \
+  | curl -X POST --data-binary @- -H "Content-Type: application/x-ndjson" http://localhost:8080/api/v1/reservations/bulk